@@ -30,6 +30,7 @@ public class TimeEvent {
     private long useTime;// 耗时
     private long number = 1;// 数量，默认为1，批量操作时该值为批量数量
     private long errorNum = 0;// 异常数量 默认为0
+    private long distinctHash;// 去重统计（StatisticType.DISTINCT）使用的值的hash，如redis key、sql指纹、远端地址，字符串可使用HyperLogLog.hash
     protected static final StatisticType[] DEFAULT_STATISTIC_TYPES = new StatisticType[]{StatisticType.RT};
 
     public TimeEvent() {
@@ -91,6 +92,14 @@ public class TimeEvent {
         this.errorNum = errorNum;
     }
 
+    public long getDistinctHash() {
+        return distinctHash;
+    }
+
+    public void setDistinctHash(long distinctHash) {
+        this.distinctHash = distinctHash;
+    }
+
     public StatisticType[] getStatisticTypes() {
         return statisticTypes;
     }
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.common;
+
+import java.util.Base64;
+
+/**
+ * HyperLogLog基数（去重数）估算，寄存器数组固定为2^precision个字节，可合并，估算的标准误差约为1.04/sqrt(2^precision)
+ * 默认precision=11，2048个寄存器，标准误差约2.3%；小基数时使用线性计数（Linear Counting）修正
+ * 记录的值为64位hash，内部会再做一次混合，调用方可直接使用质量一般的hash（如String.hashCode）
+ * 记录非线程安全，与SecondStatisticBean一致由单个消费线程写入，合并在输出线程中进行
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class HyperLogLog {
+	public static final int DEFAULT_PRECISION = 11;
+	private static final char SPLIT = ';';
+	private static final char BUCKET_SPLIT = ',';
+	private static final char VALUE_SPLIT = ':';
+	private static final char SPARSE = 'S';
+	private static final char DENSE = 'D';
+	private static final double[] INVERSE_POWERS = new double[65];// 2^-rank，估算时避免逐个计算
+	static {
+		for(int i = 0; i < INVERSE_POWERS.length; i++) {
+			INVERSE_POWERS[i] = Math.scalb(1.0, -i);
+		}
+	}
+	private final int precision;
+	private final byte[] registers;
+
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * @param precision	寄存器个数为2^precision，取值4~16
+	 */
+	public HyperLogLog(int precision) {
+		if(precision < 4 || precision > 16) {
+			throw new IllegalArgumentException("precision错误：" + precision);
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * 记录一个值
+	 * @param hash	值的hash
+	 */
+	public void record(long hash) {
+		long mixed = mix(hash);
+		int index = (int) (mixed >>> (64 - precision));
+		byte rank = (byte) (Long.numberOfLeadingZeros((mixed << precision) | (1L << (precision - 1))) + 1);
+		if(registers[index] < rank) {
+			registers[index] = rank;
+		}
+	}
+
+	/**
+	 * 合并其他HyperLogLog，两者的精度必须一致
+	 * @param other	其他HyperLogLog
+	 */
+	public void merge(HyperLogLog other) {
+		if(other.precision != precision) {
+			throw new IllegalArgumentException("HyperLogLog精度不一致，无法合并：" + precision + "/" + other.precision);
+		}
+		for(int i = 0; i < registers.length; i++) {
+			if(registers[i] < other.registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+	/**
+	 * @return	估算的去重数
+	 */
+	public long cardinality() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for(byte register : registers) {
+			sum += INVERSE_POWERS[register];
+			if(register == 0) {
+				zeros++;
+			}
+		}
+		double estimate = alpha(m) * m * m / sum;
+		if(estimate <= 2.5 * m && zeros > 0) {
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	public void reset() {
+		for(int i = 0; i < registers.length; i++) {
+			registers[i] = 0;
+		}
+	}
+
+	/**
+	 * 序列化为字符串，格式为：precision;S;下标:值,下标:值...（非0寄存器较少时）或precision;D;每个寄存器6位压缩后的Base64
+	 * @return	序列化后的字符串
+	 */
+	public String encode() {
+		int nonZero = 0;
+		for(byte register : registers) {
+			if(register != 0) {
+				nonZero++;
+			}
+		}
+		StringBuilder builder = new StringBuilder();
+		builder.append(precision).append(SPLIT);
+		if(nonZero * 8 < registers.length) {
+			builder.append(SPARSE).append(SPLIT);
+			boolean first = true;
+			for(int i = 0; i < registers.length; i++) {
+				if(registers[i] == 0) {
+					continue;
+				}
+				if(!first) {
+					builder.append(BUCKET_SPLIT);
+				}
+				builder.append(i).append(VALUE_SPLIT).append(registers[i]);
+				first = false;
+			}
+			return builder.toString();
+		}
+		byte[] packed = new byte[registers.length * 6 / 8];// 寄存器最大值为65-precision，6位足够
+		for(int i = 0; i < registers.length; i++) {
+			int bit = i * 6;
+			int value = registers[i] << (10 - bit % 8);// 放在16位中的对应位置
+			packed[bit / 8] |= (byte) (value >>> 8);
+			if(bit / 8 + 1 < packed.length) {
+				packed[bit / 8 + 1] |= (byte) value;
+			}
+		}
+		return builder.append(DENSE).append(SPLIT).append(Base64.getEncoder().encodeToString(packed)).toString();
+	}
+
+	/**
+	 * 反序列化encode的结果
+	 * @param encoded	encode生成的字符串
+	 * @return	HyperLogLog
+	 */
+	public static HyperLogLog decode(String encoded) {
+		int precisionEnd = encoded.indexOf(SPLIT);
+		if(precisionEnd < 0 || encoded.length() < precisionEnd + 3 || encoded.charAt(precisionEnd + 2) != SPLIT) {
+			throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded);
+		}
+		HyperLogLog hll;
+		try {
+			hll = new HyperLogLog(Integer.parseInt(encoded.substring(0, precisionEnd)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded, e);
+		}
+		int maxRank = 65 - hll.precision;
+		char format = encoded.charAt(precisionEnd + 1);
+		String body = encoded.substring(precisionEnd + 3);
+		if(format == DENSE) {
+			byte[] packed;
+			try {
+				packed = Base64.getDecoder().decode(body);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded, e);
+			}
+			if(packed.length != hll.registers.length * 6 / 8) {
+				throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded);
+			}
+			for(int i = 0; i < hll.registers.length; i++) {
+				int bit = i * 6;
+				int value = (packed[bit / 8] & 0xFF) << 8;
+				if(bit / 8 + 1 < packed.length) {
+					value |= packed[bit / 8 + 1] & 0xFF;
+				}
+				int register = (value >>> (10 - bit % 8)) & 0x3F;
+				if(register > maxRank) {
+					throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded);
+				}
+				hll.registers[i] = (byte) register;
+			}
+			return hll;
+		}
+		if(format != SPARSE) {
+			throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded);
+		}
+		int start = 0;
+		while(start < body.length()) {
+			int end = body.indexOf(BUCKET_SPLIT, start);
+			if(end < 0) {
+				end = body.length();
+			}
+			int valueSplit = body.indexOf(VALUE_SPLIT, start);
+			if(valueSplit < 0 || valueSplit > end) {
+				throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded);
+			}
+			int index;
+			int register;
+			try {
+				index = Integer.parseInt(body.substring(start, valueSplit));
+				register = Integer.parseInt(body.substring(valueSplit + 1, end));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded, e);
+			}
+			if(index < 0 || index >= hll.registers.length || register < 0 || register > maxRank) {
+				throw new IllegalArgumentException("HyperLogLog格式错误：" + encoded);
+			}
+			hll.registers[index] = (byte) Math.max(hll.registers[index], register);
+			start = end + 1;
+		}
+		return hll;
+	}
+
+	/**
+	 * 字符串的64位hash（FNV-1a），用于没有现成hash的值
+	 * @param value	值
+	 * @return	hash
+	 */
+	public static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * MurmurHash3的fmix64，使hash的每一位都均匀分布
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+}
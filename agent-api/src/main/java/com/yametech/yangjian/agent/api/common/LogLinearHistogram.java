@@ -0,0 +1,270 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的直方图（HDR Histogram的简化实现），内存固定，记录无锁，可合并
+ * 小于2^subBucketBits的值每个值一个桶（精确），之后每个2的幂区间[2^n, 2^(n+1))等分为2^(subBucketBits-1)个桶，
+ * 百分位数的相对误差不超过2^(1-subBucketBits)，默认subBucketBits=6，误差不超过3.125%
+ * 超过2^maxValueBits-1的值记录到最后一个桶
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class LogLinearHistogram {
+	public static final int DEFAULT_SUB_BUCKET_BITS = 6;
+	public static final int DEFAULT_MAX_VALUE_BITS = 31;// 毫秒耗时约24天
+	private static final char HEADER_SPLIT = ';';
+	private static final char BUCKET_SPLIT = ',';
+	private static final char COUNT_SPLIT = ':';
+	private final int subBucketBits;
+	private final int maxValueBits;
+	private final int subBucketCount;
+	private final int halfSubBucketCount;
+	private final long maxValue;
+	private final AtomicLongArray counts;
+	private final LongAdder totalCount = new LongAdder();
+	private final AtomicLong min = new AtomicLong(-1);
+	private final AtomicLong max = new AtomicLong(-1);
+
+	public LogLinearHistogram() {
+		this(DEFAULT_SUB_BUCKET_BITS, DEFAULT_MAX_VALUE_BITS);
+	}
+
+	/**
+	 * @param subBucketBits	精度，每个2的幂区间分桶数为2^(subBucketBits-1)，取值1~16
+	 * @param maxValueBits	可记录的最大值为2^maxValueBits-1，取值subBucketBits~62
+	 */
+	public LogLinearHistogram(int subBucketBits, int maxValueBits) {
+		if(subBucketBits < 1 || subBucketBits > 16 || maxValueBits < subBucketBits || maxValueBits > 62) {
+			throw new IllegalArgumentException("subBucketBits/maxValueBits错误：" + subBucketBits + "/" + maxValueBits);
+		}
+		this.subBucketBits = subBucketBits;
+		this.maxValueBits = maxValueBits;
+		this.subBucketCount = 1 << subBucketBits;
+		this.halfSubBucketCount = subBucketCount >> 1;
+		this.maxValue = (1L << maxValueBits) - 1;
+		this.counts = new AtomicLongArray(subBucketCount + (maxValueBits - subBucketBits) * halfSubBucketCount);
+	}
+
+	/**
+	 * 记录一次
+	 * @param value	值，小于0的按0记录
+	 */
+	public void record(long value) {
+		record(value, 1);
+	}
+
+	/**
+	 * 记录多次相同的值
+	 * @param value	值，小于0的按0记录
+	 * @param count	次数
+	 */
+	public void record(long value, long count) {
+		if(count <= 0) {
+			return;
+		}
+		value = value < 0 ? 0 : Math.min(value, maxValue);
+		counts.getAndAdd(index(value), count);
+		totalCount.add(count);
+		setMin(value);
+		setMax(value);
+	}
+
+	/**
+	 * 合并其他直方图，两者的精度及范围必须一致
+	 * @param other	其他直方图
+	 */
+	public void merge(LogLinearHistogram other) {
+		checkCompatible(other);
+		if(other.max.get() == -1) {
+			return;
+		}
+		for(int i = 0; i < other.counts.length(); i++) {
+			long count = other.counts.get(i);
+			if(count > 0) {
+				counts.getAndAdd(i, count);
+				totalCount.add(count);
+			}
+		}
+		setMin(other.min.get());
+		setMax(other.max.get());
+	}
+
+	/**
+	 * 获取百分位数，返回值所在桶的最大值（不超过记录的最大值）
+	 * @param percentile	百分位，取值0~100，如：99.9
+	 * @return	百分位数，无记录时返回-1
+	 */
+	public long percentile(double percentile) {
+		long total = totalCount.sum();
+		if(total == 0) {
+			return -1;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long cumulative = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			cumulative += counts.get(i);
+			if(cumulative >= rank) {
+				return Math.max(min.get(), Math.min(highestEquivalentValue(i), max.get()));
+			}
+		}
+		return max.get();// 记录过程中读取，count与totalCount可能短暂不一致
+	}
+
+	public long getTotalCount() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * @return	记录的最小值，无记录时为-1
+	 */
+	public long getMin() {
+		return min.get();
+	}
+
+	/**
+	 * @return	记录的最大值，无记录时为-1
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	public void reset() {
+		for(int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		totalCount.reset();
+		min.set(-1);
+		max.set(-1);
+	}
+
+	/**
+	 * 序列化为字符串，只包含非0的桶，格式为：subBucketBits,maxValueBits;桶下标:数量,桶下标:数量...
+	 * @return	序列化后的字符串
+	 */
+	public String encode() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(subBucketBits).append(BUCKET_SPLIT).append(maxValueBits).append(HEADER_SPLIT);
+		boolean first = true;
+		for(int i = 0; i < counts.length(); i++) {
+			long count = counts.get(i);
+			if(count == 0) {
+				continue;
+			}
+			if(!first) {
+				builder.append(BUCKET_SPLIT);
+			}
+			builder.append(i).append(COUNT_SPLIT).append(count);
+			first = false;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 反序列化encode的结果，最小、最大值取所在桶的边界
+	 * @param encoded	encode生成的字符串
+	 * @return	LogLinearHistogram
+	 */
+	public static LogLinearHistogram decode(String encoded) {
+		int headerEnd = encoded.indexOf(HEADER_SPLIT);
+		int bitsSplit = encoded.indexOf(BUCKET_SPLIT);
+		if(headerEnd < 0 || bitsSplit < 0 || bitsSplit > headerEnd) {
+			throw new IllegalArgumentException("histogram格式错误：" + encoded);
+		}
+		LogLinearHistogram histogram = new LogLinearHistogram(Integer.parseInt(encoded.substring(0, bitsSplit)),
+				Integer.parseInt(encoded.substring(bitsSplit + 1, headerEnd)));
+		int start = headerEnd + 1;
+		while(start < encoded.length()) {
+			int end = encoded.indexOf(BUCKET_SPLIT, start);
+			if(end < 0) {
+				end = encoded.length();
+			}
+			int countSplit = encoded.indexOf(COUNT_SPLIT, start);
+			if(countSplit < 0 || countSplit > end) {
+				throw new IllegalArgumentException("histogram格式错误：" + encoded);
+			}
+			int index = Integer.parseInt(encoded.substring(start, countSplit));
+			long count = Long.parseLong(encoded.substring(countSplit + 1, end));
+			if(index < 0 || index >= histogram.counts.length() || count < 0) {
+				throw new IllegalArgumentException("histogram格式错误：" + encoded);
+			}
+			if(count > 0) {
+				histogram.counts.getAndAdd(index, count);
+				histogram.totalCount.add(count);
+				histogram.setMin(histogram.lowestEquivalentValue(index));
+				histogram.setMax(histogram.highestEquivalentValue(index));
+			}
+			start = end + 1;
+		}
+		return histogram;
+	}
+
+	int index(long value) {
+		if(value < subBucketCount) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - subBucketBits;// 所在2的幂区间的桶宽度为2^shift
+		return subBucketCount + (shift - 1) * halfSubBucketCount + (int) ((value >>> shift) - halfSubBucketCount);
+	}
+
+	long lowestEquivalentValue(int index) {
+		if(index < subBucketCount) {
+			return index;
+		}
+		int offset = index - subBucketCount;
+		int shift = offset / halfSubBucketCount + 1;
+		return (long) (offset % halfSubBucketCount + halfSubBucketCount) << shift;
+	}
+
+	long highestEquivalentValue(int index) {
+		if(index < subBucketCount) {
+			return index;
+		}
+		int shift = (index - subBucketCount) / halfSubBucketCount + 1;
+		return lowestEquivalentValue(index) + (1L << shift) - 1;
+	}
+
+	private void checkCompatible(LogLinearHistogram other) {
+		if(other.subBucketBits != subBucketBits || other.maxValueBits != maxValueBits) {
+			throw new IllegalArgumentException("histogram精度不一致，无法合并：" + subBucketBits + "/" + maxValueBits
+					+ "，" + other.subBucketBits + "/" + other.maxValueBits);
+		}
+	}
+
+	private void setMin(long value) {
+		while(true) {
+			long currentValue = min.get();
+			if((currentValue != -1 && currentValue <= value) || min.compareAndSet(currentValue, value)) {
+				break;
+			}
+		}
+	}
+
+	private void setMax(long value) {
+		while(true) {
+			long currentValue = max.get();
+			if((currentValue != -1 && currentValue >= value) || max.compareAndSet(currentValue, value)) {
+				break;
+			}
+		}
+	}
+
+}
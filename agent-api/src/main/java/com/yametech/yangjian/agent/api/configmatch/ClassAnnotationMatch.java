@@ -36,6 +36,10 @@ public class ClassAnnotationMatch implements IConfigMatch {
 				&& methodDefined.getClassDefined().getClassAnnotations().stream().anyMatch(ann -> ann.getName().equals(annotation));
 	}
 	
+	public String getAnnotation() {
+		return annotation;
+	}
+	
 	@Override
 	public String toString() {
 		return "ClassAnnotation[" + annotation + "]";
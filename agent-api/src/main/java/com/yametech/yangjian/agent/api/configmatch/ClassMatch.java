@@ -35,6 +35,10 @@ public class ClassMatch implements IConfigMatch {
 		return methodDefined.getClassDefined().getClassName() != null && methodDefined.getClassDefined().getClassName().equals(cls);
 	}
 	
+	public String getCls() {
+		return cls;
+	}
+	
 	@Override
 	public String toString() {
 		return "Class[" + cls + "]";
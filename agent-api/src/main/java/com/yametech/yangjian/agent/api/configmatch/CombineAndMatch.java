@@ -38,6 +38,10 @@ public class CombineAndMatch implements IConfigMatch {
 		return !notMatch;
 	}
 	
+	public List<IConfigMatch> getMatches() {
+		return matches;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder build = new StringBuilder(" AND(");
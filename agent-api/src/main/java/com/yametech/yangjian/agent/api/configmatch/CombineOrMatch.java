@@ -37,6 +37,10 @@ public class CombineOrMatch implements IConfigMatch {
 		return matches.stream().anyMatch(match -> match.isMatch(methodDefined));
 	}
 	
+	public List<IConfigMatch> getMatches() {
+		return matches;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder build = new StringBuilder(" OR(");
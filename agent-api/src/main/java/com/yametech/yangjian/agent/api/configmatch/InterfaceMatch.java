@@ -35,6 +35,10 @@ public class InterfaceMatch implements IConfigMatch {
 		return methodDefined.getClassDefined().getInterfaces() != null && methodDefined.getClassDefined().getInterfaces().contains(interfaceName);
 	}
 	
+	public String getInterfaceName() {
+		return interfaceName;
+	}
+	
 	@Override
 	public String toString() {
 		return "Interface[" + interfaceName + "]";
@@ -35,6 +35,10 @@ public class SuperClassMatch implements IConfigMatch {
 		return methodDefined.getClassDefined().getParents() != null && methodDefined.getClassDefined().getParents().contains(superClass);
 	}
 	
+	public String getSuperClass() {
+		return superClass;
+	}
+	
 	@Override
 	public String toString() {
 		return "SuperClass[" + superClass + "]";
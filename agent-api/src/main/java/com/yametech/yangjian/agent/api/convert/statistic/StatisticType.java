@@ -15,22 +15,28 @@
  */
 package com.yametech.yangjian.agent.api.convert.statistic;
 
+import java.util.function.Supplier;
+
 import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.DistinctStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.HistogramStatistic;
 import com.yametech.yangjian.agent.api.convert.statistic.impl.QPSStatistic;
 import com.yametech.yangjian.agent.api.convert.statistic.impl.RTStatistic;
 
 public enum StatisticType {
-	QPS(QPSStatistic.class),
-	RT(RTStatistic.class);
+	QPS(QPSStatistic::new),
+	RT(RTStatistic::new),
+	HISTOGRAM(HistogramStatistic::new),// 耗时分布，含百分位数，内存占用较大（每个标识每秒约7KB），按需使用
+	DISTINCT(DistinctStatistic::new);// 去重数（HyperLogLog），需设置TimeEvent.distinctHash，每个标识每秒约2KB，按需使用
 	
-	private Class<? extends BaseStatistic> cls;
+	private Supplier<? extends BaseStatistic> supplier;
 	
-	StatisticType(Class<? extends BaseStatistic> cls) {
-		this.cls = cls;
+	StatisticType(Supplier<? extends BaseStatistic> supplier) {
+		this.supplier = supplier;
 	}
 	
-	// 返回对应实例
+	// 返回对应实例，不再通过反射创建，保留异常声明兼容之前的调用方
 	public BaseStatistic getStatistic() throws InstantiationException, IllegalAccessException {
-		return cls.newInstance();
+		return supplier.get();
 	}
 }
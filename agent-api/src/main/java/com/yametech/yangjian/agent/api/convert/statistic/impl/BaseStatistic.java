@@ -31,6 +31,7 @@ public abstract class BaseStatistic implements IStatistic {
 	private String type;// 事件类型
 	private String sign;// 事件唯一标识
 	private long second;// 统计的秒数
+	private long foldNum;// 标识数超过上限时淘汰合并到该统计值的次数，仅合并标识的统计值大于0
 	
 	public String getType() {
 		return type;
@@ -50,6 +51,7 @@ public abstract class BaseStatistic implements IStatistic {
 		this.type = type;
 		this.sign = sign;
 		this.second = second;
+		this.foldNum = 0;
 		clear();
 	}
 	
@@ -60,9 +62,12 @@ public abstract class BaseStatistic implements IStatistic {
 		if(kvs == null || kvs.size() == 0) {
 			return null;
 		}
-		Entry<String, Object>[] entrys = new SimpleEntry[kvs.size() + 1];
+		Entry<String, Object>[] entrys = new SimpleEntry[kvs.size() + (foldNum > 0 ? 2 : 1)];
 		entrys[0] = new SimpleEntry<>("sign", sign);
 		int index = 1;
+		if(foldNum > 0) {
+			entrys[index++] = new SimpleEntry<>("fold_num", foldNum);
+		}
 		for(Entry<String, Object> entry : kvs.entrySet()) {
 			entrys[index++] = new SimpleEntry<>(entry);
 		}
@@ -73,6 +78,18 @@ public abstract class BaseStatistic implements IStatistic {
 		return sign;
 	}
 
+	public long getFoldNum() {
+		return foldNum;
+	}
+
+	/**
+	 * 累加淘汰合并的次数，输出时增加fold_num
+	 * @param foldNum	淘汰合并的次数
+	 */
+	public void addFoldNum(long foldNum) {
+		this.foldNum += foldNum;
+	}
+
 	/**
 	 * 清除状态
 	 */
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.convert.statistic.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.common.HyperLogLog;
+import com.yametech.yangjian.agent.api.convert.statistic.IStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+
+/**
+ * 去重数统计，使用TimeEvent.distinctHash记录到HyperLogLog，输出估算的去重数及序列化后的寄存器（可在服务端按周期、实例合并后重新估算）
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class DistinctStatistic extends BaseStatistic {
+	private final LongAdder num = new LongAdder();// 当前秒数的总调用次数
+	private final HyperLogLog hll = new HyperLogLog();// 当前秒数的去重寄存器
+
+	@Override
+	public void combine(TimeEvent timeEvent) {
+		this.num.add(timeEvent.getNumber());
+		hll.record(timeEvent.getDistinctHash());
+	}
+
+	@Override
+	public void combine(IStatistic statistic) {
+		if(!(statistic instanceof DistinctStatistic)) {
+			return;
+		}
+		DistinctStatistic other = (DistinctStatistic) statistic;
+		this.num.add(other.num.longValue());
+		hll.merge(other.hll);
+	}
+
+	@Override
+	protected void clear() {
+		num.reset();
+		hll.reset();
+	}
+
+	@Override
+	public Map<String, Object> statisticKV() {
+		Map<String, Object> kvs = new HashMap<>();
+		kvs.put("num", num.sum());
+		kvs.put("distinct", hll.cardinality());
+		kvs.put("hll", hll.encode());
+		return kvs;
+	}
+
+	@Override
+	public StatisticType statisticType() {
+		return StatisticType.DISTINCT;
+	}
+
+	public HyperLogLog getHll() {
+		return hll;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + " : " + num.sum() + "	" + hll.cardinality();
+	}
+
+}
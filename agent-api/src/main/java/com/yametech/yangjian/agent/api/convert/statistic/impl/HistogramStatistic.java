@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.convert.statistic.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.common.LogLinearHistogram;
+import com.yametech.yangjian.agent.api.convert.statistic.IStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+
+/**
+ * 耗时分布统计，在RT的基础上输出p50、p90、p99、p999及序列化后的直方图（可在服务端按周期、实例合并后重新计算百分位数）
+ * 批量事件按平均耗时记录number次
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class HistogramStatistic extends BaseStatistic {
+	private final LongAdder errorNum = new LongAdder();// 当前秒数的总异常次数
+	private final LongAdder total = new LongAdder();// 当前秒数的总耗时（毫秒）
+	private final LogLinearHistogram histogram = new LogLinearHistogram();// 当前秒数的耗时分布（毫秒）
+
+	@Override
+	public void combine(TimeEvent timeEvent) {
+		this.errorNum.add(timeEvent.getErrorNum());
+		this.total.add(timeEvent.getUseTime());
+		histogram.record(timeEvent.getUseTime() / timeEvent.getNumber(), timeEvent.getNumber());
+	}
+
+	@Override
+	public void combine(IStatistic statistic) {
+		if(!(statistic instanceof HistogramStatistic)) {
+			return;
+		}
+		HistogramStatistic other = (HistogramStatistic) statistic;
+		this.errorNum.add(other.errorNum.longValue());
+		this.total.add(other.total.longValue());
+		histogram.merge(other.histogram);
+	}
+
+	@Override
+	protected void clear() {
+		errorNum.reset();
+		total.reset();
+		histogram.reset();
+	}
+
+	@Override
+	public Map<String, Object> statisticKV() {
+		Map<String, Object> kvs = new HashMap<>();
+		kvs.put("num", histogram.getTotalCount());
+		kvs.put("error_total", errorNum.sum());
+		kvs.put("rt_total", total.sum());
+		kvs.put("rt_min", histogram.getMin());
+		kvs.put("rt_max", histogram.getMax());
+		kvs.put("rt_p50", histogram.percentile(50));
+		kvs.put("rt_p90", histogram.percentile(90));
+		kvs.put("rt_p99", histogram.percentile(99));
+		kvs.put("rt_p999", histogram.percentile(99.9));
+		kvs.put("histogram", histogram.encode());
+		return kvs;
+	}
+
+	@Override
+	public StatisticType statisticType() {
+		return StatisticType.HISTOGRAM;
+	}
+
+	public LogLinearHistogram getHistogram() {
+		return histogram;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + " : " + histogram.getTotalCount() + "	" + errorNum.sum() + "	" + total.sum() + "	"
+				+ histogram.getMin() + " " + histogram.getMax() + " " + histogram.percentile(99);
+	}
+
+}
@@ -49,6 +49,16 @@ public class QPSStatistic extends BaseStatistic {
 		this.errorNum.add(qps.errorNum.longValue());
 	}
 
+	/**
+	 * 合并已汇总的值
+	 * @param num	调用次数
+	 * @param errorNum	异常次数
+	 */
+	public void combine(long num, long errorNum) {
+		this.num.add(num);
+		this.errorNum.add(errorNum);
+	}
+
 	@Override
 	public Map<String, Object> statisticKV() {
 		Map<String, Object> kvs = new HashMap<>();
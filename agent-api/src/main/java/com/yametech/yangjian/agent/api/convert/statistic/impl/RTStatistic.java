@@ -54,6 +54,26 @@ public class RTStatistic extends BaseStatistic {
 		setMin(rt.min.get());
 	}
 
+	/**
+	 * 合并已汇总的值
+	 * @param num	调用次数
+	 * @param errorNum	异常次数
+	 * @param total	总耗时（毫秒）
+	 * @param min	最小耗时（毫秒），-1表示无
+	 * @param max	最大耗时（毫秒），-1表示无
+	 */
+	public void combine(long num, long errorNum, long total, long min, long max) {
+		this.num.add(num);
+		this.errorNum.add(errorNum);
+		this.total.add(total);
+		if(max != -1) {
+			setMax(max);
+		}
+		if(min != -1) {
+			setMin(min);
+		}
+	}
+
 	@Override
 	protected void clear() {
 		num.reset();
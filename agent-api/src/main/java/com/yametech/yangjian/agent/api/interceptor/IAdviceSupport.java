@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.interceptor;
+
+/**
+ * IMethodAOP/IStaticMethodAOP实现该接口，表示拦截器不会替换被增强方法的参数及返回值，
+ * 配置了enhance.mode=advice时，可将拦截逻辑内联到被增强方法中（byte-buddy Advice），减少调用栈及代理类的开销
+ * 注意：使用advice方式时，before返回值中的ret、after的返回值都会被忽略
+ * 
+ * @author agent
+ * @date 2026/10/18
+ */
+public interface IAdviceSupport {
+
+	/**
+	 * @return	当前实例是否可使用advice方式增强，返回false时自动使用MethodDelegation方式
+	 */
+	default boolean adviceSupport() {
+		return true;
+	}
+}
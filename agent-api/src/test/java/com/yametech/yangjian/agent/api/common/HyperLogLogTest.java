@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.DistinctStatistic;
+
+public class HyperLogLogTest {
+	private static final int[] CARDINALITIES = {1, 10, 100, 1000, 5000, 10000, 100000, 1000000};
+
+	/**
+	 * 每个基数使用多组随机值：平均相对误差不超过标准误差的1.5倍，单次不超过4倍
+	 */
+	@Test
+	public void errorBound() {
+		for(int precision : new int[] {8, HyperLogLog.DEFAULT_PRECISION, 14}) {
+			double standardError = 1.04 / Math.sqrt(1 << precision);
+			for(int cardinality : CARDINALITIES) {
+				int rounds = cardinality >= 1000000 ? 3 : 10;
+				double errorSum = 0;
+				for(int round = 0; round < rounds; round++) {
+					Random random = new Random(precision * 1000L + cardinality + round);
+					HyperLogLog hll = new HyperLogLog(precision);
+					for(int i = 0; i < cardinality; i++) {
+						long value = random.nextLong();
+						hll.record(value);
+						hll.record(value);// 重复值不影响结果
+					}
+					double error = Math.abs(hll.cardinality() - cardinality) / (double) cardinality;
+					assertTrue(precision + "/" + cardinality + ": " + hll.cardinality(), error <= standardError * 4);
+					errorSum += error;
+				}
+				assertTrue(precision + "/" + cardinality + ": " + errorSum / rounds, errorSum / rounds <= standardError * 1.5);
+			}
+		}
+	}
+
+	/**
+	 * 连续的整数及String.hashCode等质量一般的hash同样可用
+	 */
+	@Test
+	public void sequentialHash() {
+		HyperLogLog ints = new HyperLogLog();
+		HyperLogLog strings = new HyperLogLog();
+		for(int i = 0; i < 50000; i++) {
+			ints.record(i);
+			strings.record(("key:" + i).hashCode());
+		}
+		assertEquals(50000, ints.cardinality(), 50000 * 0.1);
+		assertEquals(50000, strings.cardinality(), 50000 * 0.1);
+		assertTrue(HyperLogLog.hash("a") != HyperLogLog.hash("b"));
+	}
+
+	/**
+	 * 合并的结果与记录全部值完全一致
+	 */
+	@Test
+	public void merge() {
+		Random random = new Random(1);
+		HyperLogLog all = new HyperLogLog();
+		HyperLogLog merged = new HyperLogLog();
+		Set<Long> distinct = new HashSet<>();
+		for(int i = 0; i < 8; i++) {
+			HyperLogLog part = new HyperLogLog();
+			for(int j = 0; j < 5000; j++) {
+				long value = random.nextInt(20000);// 各部分有重复值
+				part.record(value);
+				all.record(value);
+				distinct.add(value);
+			}
+			merged.merge(part);
+		}
+		assertEquals(all.encode(), merged.encode());
+		assertEquals(distinct.size(), merged.cardinality(), distinct.size() * 0.1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void mergeIncompatible() {
+		new HyperLogLog(10).merge(new HyperLogLog(11));
+	}
+
+	/**
+	 * 寄存器较少时为稀疏格式，否则为6位压缩的Base64，反序列化后完全一致
+	 */
+	@Test
+	public void encode() {
+		HyperLogLog empty = new HyperLogLog();
+		assertEquals("11;S;", empty.encode());
+		assertEquals(0, HyperLogLog.decode(empty.encode()).cardinality());
+		Random random = new Random(2);
+		for(int cardinality : CARDINALITIES) {
+			HyperLogLog hll = new HyperLogLog();
+			for(int i = 0; i < cardinality; i++) {
+				hll.record(random.nextLong());
+			}
+			String encoded = hll.encode();
+			assertTrue(encoded.length() <= 2048 + 5);
+			HyperLogLog decoded = HyperLogLog.decode(encoded);
+			assertEquals(encoded, decoded.encode());
+			assertEquals(hll.cardinality(), decoded.cardinality());
+		}
+		HyperLogLog small = new HyperLogLog(4);
+		small.record(1);
+		assertEquals(small.cardinality(), HyperLogLog.decode(small.encode()).cardinality());
+	}
+
+	@Test
+	public void decodeInvalid() {
+		String[] invalids = {"", "11", "11;", "11;X;", "3;S;", "11;S;1", "11;S;2048:1", "11;S;1:60", "11;S;a:1", "11;D;AAAA", "11;D;***"};
+		for(String invalid : invalids) {
+			try {
+				HyperLogLog.decode(invalid);
+				throw new AssertionError("未校验：" + invalid);
+			} catch (IllegalArgumentException e) {
+				// 预期的异常
+			}
+		}
+	}
+
+	@Test
+	public void statistic() {
+		DistinctStatistic statistic = new DistinctStatistic();
+		statistic.reset("redis", "get", 1);
+		for(int i = 0; i < 1000; i++) {
+			TimeEvent event = new TimeEvent();
+			event.setDistinctHash(HyperLogLog.hash("key" + (i % 100)));
+			statistic.combine(event);
+		}
+		DistinctStatistic group = new DistinctStatistic();
+		group.reset("redis", "get", 1);
+		group.combine(statistic);
+		assertEquals(1000L, group.statisticKV().get("num"));
+		assertEquals(100L, (long) group.statisticKV().get("distinct"), 3);
+		assertEquals(statistic.getHll().encode(), group.statisticKV().get("hll"));
+	}
+}
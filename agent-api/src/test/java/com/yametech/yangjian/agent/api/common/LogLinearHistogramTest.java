@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.api.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.HistogramStatistic;
+
+public class LogLinearHistogramTest {
+	private static final double[] PERCENTILES = {0, 1, 10, 25, 50, 75, 90, 95, 99, 99.9, 99.99, 100};
+
+	@Test
+	public void bucketBoundary() {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		int lastIndex = -1;
+		for(long value = 0; value < (1 << 20); value++) {
+			int index = histogram.index(value);
+			assertTrue(index == lastIndex || index == lastIndex + 1);
+			assertTrue(histogram.lowestEquivalentValue(index) <= value);
+			assertTrue(histogram.highestEquivalentValue(index) >= value);
+			lastIndex = index;
+		}
+		// 最大值在最后一个桶：64个精确桶 + 25个2的幂区间 * 32
+		assertEquals(64 + 25 * 32 - 1, histogram.index((1L << LogLinearHistogram.DEFAULT_MAX_VALUE_BITS) - 1));
+	}
+
+	@Test
+	public void accuracyUniform() {
+		Random random = new Random(1);
+		long[] values = new long[100000];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(10000);
+		}
+		assertAccuracy(values);
+	}
+
+	@Test
+	public void accuracyLongTail() {
+		Random random = new Random(2);
+		long[] values = new long[100000];
+		for(int i = 0; i < values.length; i++) {
+			// 对数正态分布，模拟长尾耗时
+			values[i] = (long) Math.exp(3 + random.nextGaussian() * 1.5);
+		}
+		assertAccuracy(values);
+	}
+
+	@Test
+	public void mergeAndEncode() {
+		Random random = new Random(3);
+		LogLinearHistogram all = new LogLinearHistogram();
+		LogLinearHistogram merged = new LogLinearHistogram();
+		for(int i = 0; i < 10; i++) {
+			LogLinearHistogram part = new LogLinearHistogram();
+			for(int j = 0; j < 1000; j++) {
+				long value = random.nextInt(1 << (i + 4));
+				part.record(value);
+				all.record(value);
+			}
+			merged.merge(part);
+		}
+		assertEquals(all.encode(), merged.encode());
+		assertEquals(all.getMin(), merged.getMin());
+		assertEquals(all.getMax(), merged.getMax());
+		LogLinearHistogram decoded = LogLinearHistogram.decode(all.encode());
+		assertEquals(all.encode(), decoded.encode());
+		assertEquals(all.getTotalCount(), decoded.getTotalCount());
+		for(double percentile : PERCENTILES) {
+			long expected = all.percentile(percentile);
+			long actual = decoded.percentile(percentile);
+			assertEquals(all.highestEquivalentValue(all.index(expected)), decoded.highestEquivalentValue(decoded.index(actual)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void mergeIncompatible() {
+		new LogLinearHistogram().merge(new LogLinearHistogram(7, 31));
+	}
+
+	@Test
+	public void emptyAndOverflow() {
+		LogLinearHistogram histogram = new LogLinearHistogram(6, 20);
+		assertEquals(-1, histogram.percentile(99));
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.getMin());
+		assertEquals((1 << 20) - 1, histogram.getMax());
+		assertEquals(0, histogram.percentile(50));
+		assertEquals((1 << 20) - 1, histogram.percentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals("6,20;", histogram.encode());
+	}
+
+	@Test
+	public void concurrentRecord() throws InterruptedException {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		int threads = 4;
+		int num = 100000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch latch = new CountDownLatch(threads);
+		for(int i = 0; i < threads; i++) {
+			executor.execute(() -> {
+				for(int j = 0; j < num; j++) {
+					histogram.record(j % 1000);
+				}
+				latch.countDown();
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertEquals(threads * num, histogram.getTotalCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(999, histogram.getMax());
+		assertEquals(499, histogram.percentile(50), 499 * 0.03125);
+	}
+
+	@Test
+	public void statistic() {
+		HistogramStatistic statistic = new HistogramStatistic();
+		statistic.reset("test", "sign", 1);
+		for(int i = 1; i <= 100; i++) {
+			TimeEvent event = new TimeEvent();
+			event.setUseTime(i);
+			statistic.combine(event);
+		}
+		TimeEvent batch = new TimeEvent();
+		batch.setUseTime(1000);
+		batch.setNumber(10);
+		statistic.combine(batch);
+		HistogramStatistic group = new HistogramStatistic();
+		group.reset("test", "sign", 1);
+		group.combine(statistic);
+		assertEquals(110L, group.statisticKV().get("num"));
+		assertEquals(6050L, group.statisticKV().get("rt_total"));
+		assertEquals(1L, group.statisticKV().get("rt_min"));
+		assertEquals(100L, group.statisticKV().get("rt_max"));
+		assertEquals(statistic.getHistogram().encode(), group.statisticKV().get("histogram"));
+	}
+
+	/**
+	 * 与排序后精确的百分位数对比，相对误差不超过2^(1-subBucketBits)
+	 */
+	private static void assertAccuracy(long[] values) {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		for(long value : values) {
+			histogram.record(value);
+		}
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double maxError = 1.0 / (1 << (LogLinearHistogram.DEFAULT_SUB_BUCKET_BITS - 1));
+		for(double percentile : PERCENTILES) {
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * sorted.length));
+			long expected = sorted[(int) rank - 1];
+			long actual = histogram.percentile(percentile);
+			assertTrue(percentile + ": " + expected + " " + actual, actual >= expected);
+			assertTrue(percentile + ": " + expected + " " + actual, actual - expected <= expected * maxError);
+		}
+		assertEquals(sorted[0], histogram.getMin());
+		assertEquals(sorted[sorted.length - 1], histogram.getMax());
+	}
+}
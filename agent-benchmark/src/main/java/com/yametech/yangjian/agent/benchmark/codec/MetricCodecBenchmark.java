@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.benchmark.codec;
+
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.util.codec.MetricDecoder;
+import com.yametech.yangjian.agent.util.codec.MetricEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一批统计数据（默认500条，同一秒的mysql统计值）编码及解码的吞吐量，可加-prof gc查看每批的内存分配
+ * string为当前的MetricData.toString()格式（URL编码，按行分隔），解码与agent-server一致（按?、&、=拆分后URL解码）
+ * binary为MetricEncoder/MetricDecoder的二进制格式，编码器、解码器复用
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MetricCodecBenchmark {
+    @Param({"500"})
+    private int batchSize;
+    private List<MetricData> metrics;
+    private final MetricEncoder encoder = new MetricEncoder();
+    private final MetricDecoder decoder = new MetricDecoder();
+    private String stringBatch;
+    private ByteBuffer binaryBatch;
+
+    @Setup
+    public void setup() {
+        metrics = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("sign", "select id, name from t_user_" + (i % 50) + " where id = ? and status in (?)");
+            params.put("num", 100L + i);
+            params.put("error_total", (long) (i % 3));
+            params.put("rt_total", 1200L + i * 7);
+            params.put("rt_min", 1L);
+            params.put("rt_max", 80L + i % 20);
+            params.put("period", 1);
+            MetricData metric = new MetricData();
+            metric.setServiceName("demo-service");
+            metric.setSecond(1600000000L + i / 100);
+            metric.setMetricType("statistic/mysql-sql/RT");
+            metric.setParams(params);
+            metrics.add(metric);
+        }
+        stringBatch = stringLines();
+        ByteBuffer encoded = encoder.encode(metrics);
+        binaryBatch = ByteBuffer.allocateDirect(encoded.remaining());
+        binaryBatch.put(encoded).flip();
+    }
+
+    @Benchmark
+    public int encodeString() {
+        return stringLines().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private String stringLines() {
+        StringBuilder builder = new StringBuilder();
+        for (MetricData metric : metrics) {
+            builder.append(metric.toString()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        return encoder.encode(metrics).remaining();
+    }
+
+    @Benchmark
+    public void decodeString(Blackhole blackhole) throws UnsupportedEncodingException {
+        for (String line : stringBatch.split("\n")) {
+            int paramStart = line.indexOf('?');
+            String[] path = line.substring(0, paramStart).split("/", 3);
+            Map<String, Object> params = new HashMap<>();
+            for (String kv : line.substring(paramStart + 1).split("&")) {
+                String[] split = kv.split("=");
+                if (split.length == 2) {
+                    params.put(URLDecoder.decode(split[0], StandardCharsets.UTF_8.name()),
+                            URLDecoder.decode(split[1], StandardCharsets.UTF_8.name()));
+                }
+            }
+            blackhole.consume(path);
+            blackhole.consume(params);
+        }
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole blackhole) {
+        decoder.decode(binaryBatch.duplicate(), blackhole::consume);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MetricCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.benchmark.mysql;
+
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.SQLUtils;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.ast.SQLStatement;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.visitor.SchemaStatVisitor;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.util.JdbcConstants;
+import com.yametech.yangjian.agent.plugin.mysql.commons.util.SqlNormalizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拼接字面量的sql（每次都不同，缓存无法命中）参数化及表提取耗时
+ * druid为语法树解析（优化前），lexer为SqlNormalizer词法分析
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MysqlSqlNormalizeBenchmark {
+    private static final String[] TEMPLATES = {
+            "select id, name, age from t_user where id = %d and status = 'normal'",
+            "update t_order set status = 2, update_time = now() where order_no = 'NO%d'",
+            "insert into t_log (user_id, action, create_time) values (%d, 'login', '2020-01-01 00:00:00'), (%<d, 'logout', '2020-01-01 00:00:01')",
+            "delete from t_cart where user_id = %d and sku_id in (1, 2, 3, 4, 5)",
+            "select o.id, u.name from t_order o left join t_user u on o.user_id = u.id where o.create_time > %d limit 100"
+    };
+    private String[] sqls;
+    private int index;
+
+    @Setup
+    public void before() {
+        sqls = new String[1024];
+        for (int i = 0; i < sqls.length; i++) {
+            sqls[i] = String.format(TEMPLATES[i % TEMPLATES.length], i);
+        }
+    }
+
+    @Benchmark
+    public void druid(Blackhole blackhole) {
+        String sql = sqls[index++ & (sqls.length - 1)];
+        SQLStatement stmt = SQLUtils.parseStatements(sql, JdbcConstants.MYSQL).get(0);
+        SchemaStatVisitor statVisitor = SQLUtils.createSchemaStatVisitor(JdbcConstants.MYSQL);
+        stmt.accept(statVisitor);
+        blackhole.consume(statVisitor.getTables());
+        blackhole.consume(ParameterizedOutputVisitorUtils.parameterize(sql, JdbcConstants.MYSQL));
+    }
+
+    @Benchmark
+    public SqlNormalizer.NormalizedSql lexer() {
+        return SqlNormalizer.normalize(sqls[index++ & (sqls.length - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MysqlSqlNormalizeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
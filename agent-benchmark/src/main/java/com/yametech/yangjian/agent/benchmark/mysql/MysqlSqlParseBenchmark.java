@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.benchmark.mysql;
+
+import com.mysql.jdbc.SimulateConnection;
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.common.Config;
+import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlBean;
+import com.yametech.yangjian.agent.plugin.mysql.commons.util.MysqlUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次execute的sql统计转换耗时（MysqlUtil.buildSqlTimeEvent，在agent中由metric消费线程执行）
+ * cacheSize=0为不使用解析缓存（优化前），sqlNum为不同sql的个数
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MysqlSqlParseBenchmark {
+    private static final String[] TEMPLATES = {
+            "select id, name, age from t_user where id = ? and status = ?",
+            "update t_order set status = ?, update_time = now() where order_no = ?",
+            "insert into t_log (user_id, action, create_time) values (?, ?, ?)",
+            "delete from t_cart where user_id = ? and sku_id in (?, ?, ?)",
+            "select o.id, u.name from t_order o left join t_user u on o.user_id = u.id where o.create_time > ? limit 100"
+    };
+    @Param({"0", "2048"})
+    private int cacheSize;
+    @Param({"100"})
+    private int sqlNum;
+    private Statement statement;
+    private String[] sqls;
+    private int index;
+
+    @Setup
+    public void before() throws SQLException {
+        // 需在MysqlUtil初始化之前设置，每组参数使用独立的fork
+        Config.setConfig("mysql.sqlCache.maxSize", String.valueOf(cacheSize));
+        statement = new SimulateConnection().createStatement();
+        sqls = new String[sqlNum];
+        for (int i = 0; i < sqlNum; i++) {
+            // 模拟PreparedStatement的sql，不同的sql（增加注释区分）
+            sqls[i] = "/* " + i + " */ " + TEMPLATES[i % TEMPLATES.length];
+        }
+    }
+
+    @Benchmark
+    public List<TimeEvent> execute() throws SQLException {
+        String sql = sqls[index++ % sqls.length];
+        statement.executeQuery(sql);
+        return MysqlUtil.buildSqlTimeEvent(new SqlBean(sql, System.currentTimeMillis(), 1));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MysqlSqlParseBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.benchmark.server;
+
+import com.yametech.yangjian.agent.server.storage.MetricFileReader;
+import com.yametech.yangjian.agent.server.storage.MetricPosition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * agent-server读取指标文件的耗时，文件生成在-Dmetric.bench.dir指定的目录（默认为临时目录），已存在且大小一致时复用
+ * drain：按字节偏移读取整个文件（每次5000行）的总耗时
+ * tailByLine：一天结束时按行号读取一次（优化前，Files.lines跳过已读取的行）的耗时，tailByOffset为按字节偏移读取一次的耗时
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MetricFileReadBenchmark {
+    private static final String FILE_NAME = "metrics.log";
+    private static final int LIMIT = 5000;
+    @Param({"2048"})
+    private int fileSizeMb;
+    private Path directory;
+    private Path file;
+    private long totalLines;
+    private long tailOffset;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Paths.get(System.getProperty("metric.bench.dir", System.getProperty("java.io.tmpdir")), "metric-bench-" + fileSizeMb);
+        file = directory.resolve(FILE_NAME);
+        long size = fileSizeMb * 1024L * 1024L;
+        if (!Files.exists(file) || Files.size(file) < size) {
+            generate(size);
+        }
+        // 计算最后LIMIT行之前的行数及偏移
+        long lines = 0;
+        MetricFileReader reader = new MetricFileReader(directory, FILE_NAME);
+        List<String> metrics;
+        while (!(metrics = reader.read(LIMIT)).isEmpty()) {
+            lines += metrics.size();
+        }
+        reader.close();
+        totalLines = lines;
+        tailOffset = Files.size(file);
+        try (Stream<String> allLines = Files.lines(file)) {
+            long tailBytes = allLines.skip(totalLines - LIMIT).mapToLong(line -> line.getBytes(StandardCharsets.UTF_8).length + 1).sum();
+            tailOffset -= tailBytes;
+        }
+        System.out.println("\nfile: " + file + ", size: " + Files.size(file) + ", lines: " + totalLines);
+    }
+
+    private void generate(long size) throws IOException {
+        Files.createDirectories(directory);
+        long written = 0;
+        long second = 1584633600L;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; written < size; i++) {
+                String line = "dataType=statistic/mysql-sql/RT&second=" + (second + i / 1000) + "&ip=10.1.2." + (i % 200)
+                        + "&serviceName=order-service-" + (i % 20) + "&sign=select+*+from+t_order_" + (i % 100)
+                        + "+where+id+%3D+%3F&num=" + (i % 97) + "&rt_total=" + (i % 1013) + "&rt_min=1&rt_max=" + (i % 311) + "&error_total=0";
+                writer.write(line);
+                writer.write('\n');
+                written += line.length() + 1;
+            }
+        }
+    }
+
+    @Benchmark
+    public long drain() throws IOException {
+        long lines = 0;
+        try (MetricFileReader reader = new MetricFileReader(directory, FILE_NAME)) {
+            List<String> metrics;
+            while (!(metrics = reader.read(LIMIT)).isEmpty()) {
+                lines += metrics.size();
+            }
+        }
+        return lines;
+    }
+
+    @Benchmark
+    public List<String> tailByLine() throws IOException {
+        try (Stream<String> allLines = Files.lines(file)) {
+            return allLines.skip(totalLines - LIMIT).limit(LIMIT).collect(toList());
+        }
+    }
+
+    @Benchmark
+    public List<String> tailByOffset() throws IOException {
+        try (MetricFileReader reader = new MetricFileReader(directory, FILE_NAME)) {
+            reader.restore(new MetricPosition(FILE_NAME, null, tailOffset));
+            return reader.read(LIMIT);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MetricFileReadBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
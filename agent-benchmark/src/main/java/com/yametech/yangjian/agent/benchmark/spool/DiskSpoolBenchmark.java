@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.benchmark.spool;
+
+import com.yametech.yangjian.agent.util.spool.DiskSpool;
+import com.yametech.yangjian.agent.util.spool.SpoolBatch;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * DiskSpool写入及重放（peek + commit）的吞吐量
+ * channelAppend为对比的FileChannel逐条write（相同的记录格式），每条记录一次系统调用
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class DiskSpoolBenchmark {
+    @Param({"200", "2000"})
+    private int recordSize;
+    private Path dir;
+    private DiskSpool spool;
+    private FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer header = ByteBuffer.allocate(8);
+    private byte[] record;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("spool-benchmark");
+        spool = new DiskSpool(dir.resolve("spool"), 256L << 20, 8 << 20);
+        channel = FileChannel.open(dir.resolve("channel.log"), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        record = new byte[recordSize];
+        Arrays.fill(record, (byte) 'a');
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        spool.close();
+        channel.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean spoolAppend() {
+        return spool.append(record);
+    }
+
+    @Benchmark
+    public int channelAppend() throws IOException {
+        crc.reset();
+        crc.update(record, 0, record.length);
+        header.clear();
+        header.putInt(record.length).putInt((int) crc.getValue()).flip();
+        return channel.write(new ByteBuffer[]{header, ByteBuffer.wrap(record)}) > 0 ? 1 : 0;
+    }
+
+    /**
+     * 写入100条后按批量重放
+     */
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void spoolAppendReplay(Blackhole blackhole) {
+        for (int i = 0; i < 100; i++) {
+            spool.append(record);
+        }
+        SpoolBatch batch = spool.peek(100);
+        blackhole.consume(batch.getRecords());
+        spool.commit(batch);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(DiskSpoolBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -123,7 +123,7 @@ public class YMAgent {
 						.or(ElementMatchers.<TypeDescription>isSynthetic())
 						.or(new ClassElementMatcher(new CombineOrMatch(ignoreMatches), "class_ignore")))// byte-buddy代理的类会包含该字符串
 //        		.with(AgentBuilder.LambdaInstrumentationStrategy.ENABLED)
-				.type(new ClassElementMatcher(new CombineOrMatch(TYPE_MATCHES), "class_match"))
+				.type(new ClassElementMatcher(TYPE_MATCHES, "class_match"))
 //                .type(ElementMatchers.nameEndsWith("Timed"))
 				.transform(new AgentTransformer(TRANSFORMER_MATCHERS, new CombineOrMatch(ignoreMethodMatches), CLASS_MATCHES, Config.IGNORE_CLASSLOADERNAMES.getValue()))
 //                .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)// 使用后会异常
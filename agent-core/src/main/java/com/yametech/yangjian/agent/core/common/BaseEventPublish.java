@@ -17,6 +17,7 @@ package com.yametech.yangjian.agent.core.common;
 
 import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
 import com.yametech.yangjian.agent.api.IAppStatusListener;
 import com.yametech.yangjian.agent.api.IConfigReader;
 import com.yametech.yangjian.agent.api.ISchedule;
@@ -35,6 +36,7 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * 事件缓存基类，附带metric
@@ -154,14 +156,81 @@ public abstract class BaseEventPublish<T> implements IAppStatusListener, ISchedu
         });
     }
 
+    /**
+     * 发布一个代表多个事件的事件（如预聚合的分段），发布成功时按代表的事件数计数，缓存已满时不计数、不丢弃，由调用方暂存后重试
+     * @param consumer	初始化事件值
+     * @param num	代表的事件数
+     * @return	是否发布成功
+     */
+    protected boolean publishMerged(Consumer<T> consumer, long num) {
+        if(eventBus == null) {
+            log.warn("eventBus未初始化");
+            return false;
+        }
+        boolean published = eventBus.publish(event -> {
+            if (event != null) {
+                consumer.accept(event);
+            }
+        });
+        if(published) {
+            addTotalNum(num);
+        }
+        return published;
+    }
+
+    /**
+     * 批量发布，一次申请多个连续的事件实例，缓存不足且配置为丢弃时，丢弃超出部分
+     * @param consumer	初始化事件值，参数为事件及在批量中的下标，按下标顺序回调，丢弃的事件不会回调
+     * @param num	发布数量
+     * @return	发布成功的数量
+     */
+    public int publish(ObjIntConsumer<T> consumer, int num) {
+        if(eventBus == null) {
+            log.warn("eventBus未初始化");
+            return 0;
+        }
+        if(num <= 0) {
+            return 0;
+        }
+        int published = 0;
+        try {
+            published = eventBus.publish(consumer, num);
+        } finally {
+            addTotalNum(num);// 计数放在发布后，批量中只增加一次计数
+            if(published < num) {
+                addDiscardNum(num - published);
+            }
+        }
+        return published;
+    }
+
+    /**
+     * @return	缓存当前的占用比例，0~1，未初始化时为0
+     */
+    protected double fillRatio() {
+        if(eventBus == null) {
+            return 0;
+        }
+        RingBuffer<T> ringBuffer = eventBus.getRingBuffer();
+        return 1 - (double) ringBuffer.remainingCapacity() / ringBuffer.getBufferSize();
+    }
+
     private void incrDiscardNum() {
-        discardNum.getAndIncrement();
-        periodDiscardNum.getAndIncrement();
+        addDiscardNum(1);
     }
 
     private void incrTotalNum() {
-        totalNum.getAndIncrement();
-        periodTotalNum.getAndIncrement();
+        addTotalNum(1);
+    }
+
+    private void addDiscardNum(long num) {
+        discardNum.getAndAdd(num);
+        periodDiscardNum.getAndAdd(num);
+    }
+
+    protected void addTotalNum(long num) {
+        totalNum.getAndAdd(num);
+        periodTotalNum.getAndAdd(num);
     }
 
     @Override
@@ -212,9 +281,17 @@ public abstract class BaseEventPublish<T> implements IAppStatusListener, ISchedu
         params.put("period_num", periodTotal);
         params.put("total_discard_num", discardNum.get());
         params.put("period_discard_num", periodDiscard);
+        reportParams(params);
         MetricData metricData = MetricData.get(null, "product/" + metricType, params);
         if(!report.report(metricData)) {
         	log.warn("report failed {}", metricData);
         }
     }
+
+    /**
+     * 子类增加需要输出的指标
+     * @param params	输出的指标
+     */
+    protected void reportParams(Map<String, Object> params) {
+    }
 }
@@ -32,6 +32,13 @@ public abstract class BaseMatcherProxy<T extends InterceptorMatcher, V> implemen
 	public BaseMatcherProxy(T matcher) {
 		this.matcher = matcher;
 	}
+
+	/**
+	 * @return	被代理的matcher实例
+	 */
+	public T getMatcher() {
+		return matcher;
+	}
 	
 	@Override
 	public IConfigMatch match() {
@@ -31,7 +31,7 @@ public class AgentListener implements AgentBuilder.Listener {
 	
     @Override
     public void onDiscovery(String typeName, ClassLoader classLoader, JavaModule javaModule, boolean loaded) {
-
+    	ElementMatcherConvert.discover(classLoader);
     }
 
     @Override
@@ -66,6 +66,7 @@ public class AgentListener implements AgentBuilder.Listener {
 
     @Override
     public void onError(String typeName, ClassLoader classLoader, JavaModule javaModule, boolean loaded, Throwable throwable) {
+		ElementMatcherConvert.clearCache();
 		log.warn(throwable, "Enhance class {} error.classLoader = {}", typeName, classLoader);
 		try {
 			EnhanceListener.notifyAndUnregister(typeName, classLoader, loaded, throwable);
@@ -76,6 +77,7 @@ public class AgentListener implements AgentBuilder.Listener {
 
     @Override
     public void onComplete(String typeName, ClassLoader classLoader, JavaModule javaModule, boolean loaded) {
+    	ElementMatcherConvert.clearCache();
     	try {
 			EnhanceListener.notifyAndUnregister(typeName, classLoader, loaded, null);
     	} catch (Throwable e) {
@@ -21,18 +21,23 @@ import com.yametech.yangjian.agent.api.base.*;
 import com.yametech.yangjian.agent.api.bean.ClassDefined;
 import com.yametech.yangjian.agent.api.bean.LoadClassKey;
 import com.yametech.yangjian.agent.api.bean.MethodDefined;
+import com.yametech.yangjian.agent.api.common.Config;
 import com.yametech.yangjian.agent.api.common.InstanceManage;
+import com.yametech.yangjian.agent.api.interceptor.IAdviceSupport;
 import com.yametech.yangjian.agent.api.interceptor.IConstructorListener;
 import com.yametech.yangjian.agent.api.interceptor.IMethodAOP;
 import com.yametech.yangjian.agent.api.interceptor.IStaticMethodAOP;
 import com.yametech.yangjian.agent.api.log.ILogger;
 import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.common.BaseMatcherProxy;
 import com.yametech.yangjian.agent.core.core.classloader.InterceptorInstanceLoader;
 import com.yametech.yangjian.agent.core.core.elementmatch.ElementMatcherConvert;
+import com.yametech.yangjian.agent.core.core.elementmatch.MatchIndex;
 import com.yametech.yangjian.agent.core.core.elementmatch.MethodElementMatcher;
 import com.yametech.yangjian.agent.core.core.interceptor.*;
 import com.yametech.yangjian.agent.core.util.Util;
 import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
@@ -46,6 +51,7 @@ import net.bytebuddy.matcher.ElementMatchers;
 import net.bytebuddy.utility.JavaModule;
 
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,11 +59,16 @@ import java.util.stream.Collectors;
 
 public class AgentTransformer implements AgentBuilder.Transformer {
 	public static final String OBJECT_CONTEXT_FIELD_NAME = "__context_field__";// 继承Icontext接口的对象全局变量名称
+	public static final String ENHANCE_MODE_KEY = "enhance.mode";// 方法增强方式配置，可增加.插件类名单独配置
+	public static final String ENHANCE_MODE_ADVICE = "advice";
 	private static ILogger log = LoggerFactory.getLogger(AgentTransformer.class);
     private List<InterceptorMatcher> interceptorMatchers;
     private List<IEnhanceClassMatch> classMatches;
     private ElementMatcher<? super MethodDescription> notMatches;
     private Set<String> ignoreClassLoaderName;// 忽略增强的classLoader，saturn容器化部署时，因为类加载器问题导致服务无法启动
+    private final MatchIndex<InterceptorMatcher> interceptorIndex = new MatchIndex<>(InterceptorMatcher::match);
+    private final MatchIndex<IMatch> matchIndex = new MatchIndex<>(IMatch::match);
+    private final MatchIndex<IEnhanceClassMatch> classMatchIndex = new MatchIndex<>(IEnhanceClassMatch::classMatch);
 
 	public AgentTransformer(List<InterceptorMatcher> interceptorMatchers, 
 			IConfigMatch ignoreMethods, List<IEnhanceClassMatch> classMatches, Set<String> ignoreClassLoaderName) {
@@ -103,21 +114,29 @@ public class AgentTransformer implements AgentBuilder.Transformer {
      */
     @SuppressWarnings("unchecked")
 	private DynamicType.Builder<?> enhanceMethod(TypeDescription typeDescription, DynamicType.Builder<?> builder, ClassLoader classLoader) {
-    	List<IMatch> matches = InstanceManage.listInstance(IMatch.class);
 		Set<IMatch> enhanceMatches = new HashSet<>();
         // builder针对同一个类方法设置多次intercept，仅最后一次生效，所以多个MethodInterceptor拦截同一个方法时需合并到一个intercept中
-		ClassDefined classDefined = ElementMatcherConvert.convert(typeDescription);
+		ClassDefined classDefined = ElementMatcherConvert.convert(typeDescription, classLoader);
+		// 仅使用类名、父类、接口、类注解可能匹配的候选项做方法匹配
+		List<IMatch> matches = matchIndex.candidates(InstanceManage.listInstance(IMatch.class), classDefined);
+		List<InterceptorMatcher> candidateMatchers = interceptorIndex.candidates(interceptorMatchers, classDefined);
+		if(matches.isEmpty() && candidateMatchers.isEmpty()) {
+			return builder;
+		}
+		List<MethodDefined> methodDefineds = classDefined.getMethods();
+		int methodIndex = 0;
 		for(MethodDescription.InDefinedShape inDefinedShape : typeDescription.getDeclaredMethods()) {
-            MethodDefined methodDefined = ElementMatcherConvert.convert(classDefined, inDefinedShape);
+            MethodDefined methodDefined = methodDefined(classDefined, methodDefineds, methodIndex++, inDefinedShape);
             matches.stream().filter(match -> match.match() != null && match.match().isMatch(methodDefined))
             	.forEach(match -> {
             		match.method(methodDefined);
 					enhanceMatches.add(match);
 				});
             MethodType type = getMethodType(inDefinedShape);
+            Map<Object, InterceptorMatcher> interceptorSources = new IdentityHashMap<>();// 拦截器实例对应的matcher，用于判断插件的增强方式
 //    		List<InterceptorMatcher> interceptors = interceptorMatchers.stream()
             @SuppressWarnings({ "unchecked", "rawtypes" })
-            Set<Object> interceptors = interceptorMatchers.stream()// 此处修改为set避免一个实例重复调用
+            Set<Object> interceptors = candidateMatchers.stream()// 此处修改为set避免一个实例重复调用
     			.filter(aop -> aop.match() != null && aop.match().isMatch(methodDefined))
     			.map(matcher -> {
     				LoadClassKey loadClass = matcher.loadClass(type, methodDefined);
@@ -140,6 +159,7 @@ public class AgentTransformer implements AgentBuilder.Transformer {
 						if(matcher instanceof IMatcherProxy) {
 							((IMatcherProxy)matcher).init(obj, classLoader, type, methodDefined);
 						}
+						interceptorSources.put(obj, matcher);
 						log.info("enhanceMethod:{},\n\t\t{},\n\t\t{},\n\t\t{},\n\t\t{}", obj,
 								Util.join(" > ", Util.listClassLoaders(classLoader)),
 								loadClass, inDefinedShape, matcher.match());
@@ -161,7 +181,13 @@ public class AgentTransformer implements AgentBuilder.Transformer {
     		if(log.isDebugEnable()) {
     			log.debug("match method:{} - {}", inDefinedShape, listClass(interceptors));
     		}
-            if(inDefinedShape.isStatic()) {// 静态方法
+            if(!inDefinedShape.isConstructor() && useAdvice(interceptors, interceptorSources)) {// advice方式，内联到方法中
+            	int id = AdviceDispatcher.register(interceptors.toArray(new InterceptorWrapper[0]),
+            			inDefinedShape.getInternalName(), inDefinedShape.getDescriptor());
+            	builder = builder.visit(Advice.withCustomMapping().bind(AdviceId.class, id)
+            			.to(inDefinedShape.isStatic() ? YmStaticAdvice.class : YmInstanceAdvice.class)
+            			.on(getMethodMatch(inDefinedShape)));
+            } else if(inDefinedShape.isStatic()) {// 静态方法
         		builder = builder.method(getMethodMatch(inDefinedShape))
         				.intercept(MethodDelegation.withDefaultConfiguration()
         						.to(new YmStaticInterceptor(interceptors.toArray(new InterceptorWrapper[0]))));
@@ -185,6 +211,55 @@ public class AgentTransformer implements AgentBuilder.Transformer {
         return builder;
     }
     
+    /**
+     * 按方法签名查找已转换的MethodDefined，优先检查相同下标（通常与getDeclaredMethods顺序一致），不存在时重新转换
+     * @param classDefined	方法所属类
+     * @param methodDefineds	类已转换的方法
+     * @param index	方法在getDeclaredMethods中的下标
+     * @param inDefinedShape	方法
+     * @return	MethodDefined
+     */
+    static MethodDefined methodDefined(ClassDefined classDefined, List<MethodDefined> methodDefineds, int index, MethodDescription.InDefinedShape inDefinedShape) {
+    	String methodDes = inDefinedShape.toString();
+    	if(index < methodDefineds.size() && methodDes.equals(methodDefineds.get(index).getMethodDes())) {
+    		return methodDefineds.get(index);
+    	}
+    	for(MethodDefined methodDefined : methodDefineds) {
+    		if(methodDes.equals(methodDefined.getMethodDes())) {
+    			return methodDefined;
+    		}
+    	}
+    	return ElementMatcherConvert.convert(classDefined, inDefinedShape);
+    }
+
+    /**
+     * 方法的所有拦截器所属插件均配置为advice方式，且拦截器均支持advice时，才使用advice方式增强，否则使用MethodDelegation
+     * @param interceptors	方法的拦截器
+     * @param interceptorSources	拦截器实例对应的matcher
+     * @return	是否使用advice方式
+     */
+    static boolean useAdvice(Set<Object> interceptors, Map<Object, InterceptorMatcher> interceptorSources) {
+    	String defaultMode = Config.getKv(ENHANCE_MODE_KEY);
+    	for(Object wrapper : interceptors) {
+    		Object interceptor = ((InterceptorWrapper<?>) wrapper).getInterceptor();
+    		InterceptorMatcher matcher = interceptorSources.get(interceptor);
+    		if(matcher instanceof BaseMatcherProxy) {
+    			matcher = ((BaseMatcherProxy<?, ?>) matcher).getMatcher();
+    		}
+    		String mode = matcher == null ? defaultMode : Config.getKv(ENHANCE_MODE_KEY + "." + matcher.getClass().getSimpleName(), defaultMode);
+    		if(!ENHANCE_MODE_ADVICE.equals(mode)) {
+    			return false;
+    		}
+    		if(!(interceptor instanceof IAdviceSupport) || !((IAdviceSupport) interceptor).adviceSupport()) {
+    			if(log.isDebugEnable()) {
+    				log.debug("advice not support, use delegation: {}", interceptor);
+    			}
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+
     private String listClass(Set<Object> interceptors) {
     	if(interceptors == null || interceptors.isEmpty()) {
     		return "";
@@ -224,9 +299,9 @@ public class AgentTransformer implements AgentBuilder.Transformer {
     		return builder;
     	}
 //    	log.info("{}:Defined", typeDescription);
-    	ClassDefined classDefined = ElementMatcherConvert.convert(typeDescription);
+    	ClassDefined classDefined = ElementMatcherConvert.convert(typeDescription, classLoader);
     	MethodDefined methodDefined = new MethodDefined(classDefined);
-    	boolean match = classMatches.stream().anyMatch(aop -> aop.classMatch() != null && aop.classMatch().isMatch(methodDefined));
+    	boolean match = classMatchIndex.candidates(classMatches, classDefined).stream().anyMatch(aop -> aop.classMatch() != null && aop.classMatch().isMatch(methodDefined));
     	if(!match) {
     		return builder;
     	}
@@ -25,17 +25,12 @@ import com.yametech.yangjian.agent.api.log.LoggerFactory;
 import com.yametech.yangjian.agent.core.util.AgentPath;
 import com.yametech.yangjian.agent.core.util.Util;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 /**
  * The <code>AgentClassLoader</code> represents a classloader,
@@ -48,8 +43,13 @@ public class AgentClassLoader extends ClassLoader {
     private static AgentClassLoader DEFAULT_LOADER;
     private static Map<ClassLoader, AgentClassLoader> CLASS_LOADERS = new ConcurrentHashMap<>();
     private static final String EXTEND_PLUGIN_DEFAULT_DIR = "/data/www/soft/agent-custom";
+    // 未找到的类名缓存的最大数量，超过后清空重新缓存
+    private static final int MAX_MISSING_CLASS_CACHE = 10000;
     private static List<File> classpath = new LinkedList<>();
-    private static List<Jar> allJars = new LinkedList<>();
+    private static JarIndex defaultJarIndex;
+    private final JarIndex jarIndex;
+    // 当前classloader在插件jar中未找到的类，避免重复查找（如parent加载不到的业务类通过当前classloader反复加载）
+    private final Set<String> missingClasses = ConcurrentHashMap.newKeySet();
 
     static {
         tryRegisterAsParallelCapable();
@@ -100,6 +100,7 @@ public class AgentClassLoader extends ClassLoader {
      * 加载jar包
      */
     private static void initJar() {
+        List<File> jarFiles = new ArrayList<>();
         for (File path : classpath) {
             if (!path.exists() || !path.isDirectory()) {
                 continue;
@@ -109,16 +110,10 @@ public class AgentClassLoader extends ClassLoader {
                 continue;
             }
             for (String fileName : jarFileNames) {
-                try {
-                    File file = new File(path, fileName);
-                    Jar jar = new Jar(new JarFile(file), file);
-                    allJars.add(jar);
-                    log.info("{} loaded.", file.toString());
-                } catch (IOException e) {
-                    log.error(e, "{} jar file can't be resolved", fileName);
-                }
+                jarFiles.add(new File(path, fileName));
             }
         }
+        defaultJarIndex = JarIndex.build(jarFiles);
     }
 
     public static AgentClassLoader getDefault() {
@@ -138,7 +133,12 @@ public class AgentClassLoader extends ClassLoader {
     }
 
     public AgentClassLoader(ClassLoader parent) {
+        this(parent, defaultJarIndex);
+    }
+
+    AgentClassLoader(ClassLoader parent, JarIndex jarIndex) {
         super(parent);
+        this.jarIndex = jarIndex;
         log.info("create AgentClassLoader:{}", Util.join(" > ", Util.listClassLoaders(parent)));
 //        classLoaders =  new ArrayList<>();
 ////        classLoaders.add(parent);
@@ -177,88 +177,34 @@ public class AgentClassLoader extends ClassLoader {
     
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (missingClasses.contains(name)) {
+            throw new ClassNotFoundException("Can't find " + name);
+        }
         String path = name.replace('.', '/').concat(".class");
-        for (Jar jar : allJars) {
-            JarEntry entry = jar.jarFile.getJarEntry(path);
-            if (entry != null) {
-                try {
-                    URL classFileUrl = new URL("jar:file:" + jar.sourceFile.getAbsolutePath() + "!/" + path);
-                    byte[] data;
-                    BufferedInputStream is = null;
-                    ByteArrayOutputStream baos = null;
-                    try {
-                        is = new BufferedInputStream(classFileUrl.openStream());
-                        baos = new ByteArrayOutputStream();
-                        int ch;
-                        while ((ch = is.read()) != -1) {
-                            baos.write(ch);
-                        }
-                        data = baos.toByteArray();
-                    } finally {
-                        if (is != null)
-                            try {
-                                is.close();
-                            } catch (IOException ignored) {
-                            }
-                        if (baos != null)
-                            try {
-                                baos.close();
-                            } catch (IOException ignored) {
-                            }
-                    }
-                    return defineClass(name, data, 0, data.length);
-                } catch (IOException e) {
-                	log.error(e, "find class fail.");
-                }
+        byte[] data;
+        try {
+            data = jarIndex.read(path);
+        } catch (IOException e) {
+            log.error(e, "find class fail.");
+            throw new ClassNotFoundException("Can't find " + name, e);
+        }
+        if (data == null) {
+            if (missingClasses.size() >= MAX_MISSING_CLASS_CACHE) {
+                missingClasses.clear();
             }
+            missingClasses.add(name);
+            throw new ClassNotFoundException("Can't find " + name);
         }
-        throw new ClassNotFoundException("Can't find " + name);
+        return defineClass(name, data, 0, data.length);
     }
 
     @Override
     protected URL findResource(String name) {
-        for (Jar jar : allJars) {
-            JarEntry entry = jar.jarFile.getJarEntry(name);
-            if (entry == null) {
-                continue;
-            }
-            try {
-                return new URL("jar:file:" + jar.sourceFile.getAbsolutePath() + "!/" + name);
-            } catch (MalformedURLException ignored) {}
-        }
-        return null;
+        return jarIndex.findResource(name);
     }
 
     @Override
     protected Enumeration<URL> findResources(String name) throws IOException {
-        List<URL> allResources = new LinkedList<>();
-        for (Jar jar : allJars) {
-            JarEntry entry = jar.jarFile.getJarEntry(name);
-            if (entry != null) {
-                allResources.add(new URL("jar:file:" + jar.sourceFile.getAbsolutePath() + "!/" + name));
-            }
-        }
-        final Iterator<URL> iterator = allResources.iterator();
-        return new Enumeration<URL>() {
-            @Override
-            public boolean hasMoreElements() {
-                return iterator.hasNext();
-            }
-
-            @Override
-            public URL nextElement() {
-                return iterator.next();
-            }
-        };
-    }
-
-    private static class Jar {
-        private JarFile jarFile;
-        private File sourceFile;
-
-        private Jar(JarFile jarFile, File sourceFile) {
-            this.jarFile = jarFile;
-            this.sourceFile = sourceFile;
-        }
+        return Collections.enumeration(jarIndex.findResources(name));
     }
 }
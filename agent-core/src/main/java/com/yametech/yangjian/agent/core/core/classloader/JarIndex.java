@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.classloader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+
+/**
+ * 插件jar的索引，初始化时遍历一次所有jar的entry，按包路径（entry所在目录）记录包含该包的jar，
+ * 查找类及资源时只需检查包含该包的jar，不再遍历所有jar，类文件直接从已打开的JarFile中批量读取
+ * 实例初始化后只读，线程安全
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+final class JarIndex {
+    private static final ILogger log = LoggerFactory.getLogger(JarIndex.class);
+    private static final Jar[] EMPTY = new Jar[0];
+    private static final int READ_BUFFER_SIZE = 8192;
+    private final List<Jar> jars;
+    private final Map<String, Jar[]> packageJars;
+
+    private JarIndex(List<Jar> jars, Map<String, Jar[]> packageJars) {
+        this.jars = jars;
+        this.packageJars = packageJars;
+    }
+
+    /**
+     * 打开jar并建立索引，无法打开的jar记录日志后忽略
+     * @param jarFiles	jar文件，按顺序查找，同一个类存在于多个jar时使用第一个
+     * @return	JarIndex
+     */
+    static JarIndex build(List<File> jarFiles) {
+        List<Jar> jars = new ArrayList<>(jarFiles.size());
+        Map<String, List<Jar>> packages = new HashMap<>();
+        for (File file : jarFiles) {
+            JarFile jarFile;
+            try {
+                jarFile = new JarFile(file);
+            } catch (IOException e) {
+                log.error(e, "{} jar file can't be resolved", file.getName());
+                continue;
+            }
+            Jar jar = new Jar(jarFile, file);
+            jars.add(jar);
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                List<Jar> packageJars = packages.computeIfAbsent(packageName(entry.getName()), key -> new ArrayList<>(1));
+                if (packageJars.isEmpty() || packageJars.get(packageJars.size() - 1) != jar) {
+                    packageJars.add(jar);
+                }
+            }
+            log.info("{} loaded.", file.toString());
+        }
+        Map<String, Jar[]> packageJars = new HashMap<>(packages.size() * 4 / 3 + 1);
+        packages.forEach((key, value) -> packageJars.put(key, value.toArray(EMPTY)));
+        return new JarIndex(Collections.unmodifiableList(jars), packageJars);
+    }
+
+    /**
+     * 读取第一个包含path的jar中的数据
+     * @param path	entry名称，如：com/yametech/A.class
+     * @return	entry的字节数据，不存在时返回null
+     * @throws IOException	读取失败
+     */
+    byte[] read(String path) throws IOException {
+        for (Jar jar : jars(path)) {
+            JarEntry entry = jar.jarFile.getJarEntry(path);
+            if (entry != null) {
+                return read(jar.jarFile, entry);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name	entry名称
+     * @return	第一个包含name的jar中对应的URL，不存在时返回null
+     */
+    URL findResource(String name) {
+        for (Jar jar : jars(name)) {
+            if (jar.jarFile.getJarEntry(name) == null) {
+                continue;
+            }
+            try {
+                return jar.url(name);
+            } catch (MalformedURLException ignored) {}
+        }
+        return null;
+    }
+
+    /**
+     * @param name	entry名称
+     * @return	所有包含name的jar中对应的URL
+     * @throws IOException	URL格式错误
+     */
+    List<URL> findResources(String name) throws IOException {
+        List<URL> resources = new ArrayList<>();
+        for (Jar jar : jars(name)) {
+            if (jar.jarFile.getJarEntry(name) != null) {
+                resources.add(jar.url(name));
+            }
+        }
+        return resources;
+    }
+
+    private Jar[] jars(String name) {
+        Jar[] matchJars = packageJars.get(packageName(name));
+        return matchJars == null ? EMPTY : matchJars;
+    }
+
+    private static String packageName(String name) {
+        int index = name.lastIndexOf('/');
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
+    private static byte[] read(JarFile jarFile, JarEntry entry) throws IOException {
+        try (InputStream is = jarFile.getInputStream(entry)) {
+            long size = entry.getSize();
+            if (size >= 0 && size <= Integer.MAX_VALUE) {
+                byte[] data = new byte[(int) size];
+                int offset = 0;
+                while (offset < data.length) {
+                    int num = is.read(data, offset, data.length - offset);
+                    if (num < 0) {
+                        throw new EOFException(entry.getName() + "实际大小小于" + size);
+                    }
+                    offset += num;
+                }
+                return data;
+            }
+            // 未知大小时分块读取
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(READ_BUFFER_SIZE);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int num;
+            while ((num = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, num);
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    private static class Jar {
+        private final JarFile jarFile;
+        private final String urlPrefix;
+
+        private Jar(JarFile jarFile, File sourceFile) {
+            this.jarFile = jarFile;
+            this.urlPrefix = "jar:file:" + sourceFile.getAbsolutePath() + "!/";
+        }
+
+        private URL url(String name) throws MalformedURLException {
+            return new URL(urlPrefix + name);
+        }
+    }
+}
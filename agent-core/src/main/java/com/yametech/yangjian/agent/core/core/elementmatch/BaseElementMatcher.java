@@ -77,7 +77,10 @@ public abstract class BaseElementMatcher<T> extends ElementMatcher.Junction.Abst
             log.warn("get MethodDefined exception，enhance error：{} - {} : {}", matchType, className, e.getMessage());
             return false;
         }
-        boolean isMatch = matchNames.stream().anyMatch(match::isMatch);
+        boolean isMatch = isMatch(match, matchNames);
+        if(!log.isDebugEnable()) {// 以下日志需要计算类接口，每个加载的类都会执行，非debug时直接返回
+        	return isMatch;
+        }
         if(o instanceof TypeDescription) {
         	TypeDescription type = ((TypeDescription)o);
         	StringBuilder builder = new StringBuilder();
@@ -94,6 +97,16 @@ public abstract class BaseElementMatcher<T> extends ElementMatcher.Junction.Abst
         return isMatch;
     }
 
+    /**
+     * 判断方法定义是否匹配，只要有一个匹配，就返回true
+     * @param match	匹配规则
+     * @param methodDefineds	name返回的方法定义
+     * @return	是否匹配
+     */
+    protected boolean isMatch(IConfigMatch match, List<MethodDefined> methodDefineds) {
+    	return methodDefineds.stream().anyMatch(match::isMatch);
+    }
+
     /**
      * 返回所有需要匹配的方法定义，针对类匹配，返回类所有的方法定义(只要有一个匹配，就返回true)，针对方法匹配，返回当前方法的定义
      * @param t
@@ -17,6 +17,7 @@ package com.yametech.yangjian.agent.core.core.elementmatch;
 
 import com.yametech.yangjian.agent.api.base.IConfigMatch;
 import com.yametech.yangjian.agent.api.bean.MethodDefined;
+import com.yametech.yangjian.agent.api.configmatch.CombineOrMatch;
 import net.bytebuddy.description.type.TypeDescription;
 
 import java.util.List;
@@ -29,11 +30,36 @@ import java.util.List;
  *
  */
 public class ClassElementMatcher extends BaseElementMatcher<TypeDescription> {
+    private List<IConfigMatch> matches;
+    private MatchIndex<IConfigMatch> index;
 
     public ClassElementMatcher(IConfigMatch match, String matchType) {
         super(match, matchType);
     }
 
+    /**
+     * 多个规则任意一个匹配则匹配，使用索引过滤候选规则
+     * @param matches	匹配规则，只能追加
+     * @param matchType	匹配类型，日志显示需要
+     */
+    public ClassElementMatcher(List<IConfigMatch> matches, String matchType) {
+        super(new CombineOrMatch(matches), matchType);
+        this.matches = matches;
+        this.index = new MatchIndex<>(match -> match);
+    }
+
+    @Override
+    protected boolean isMatch(IConfigMatch match, List<MethodDefined> methodDefineds) {
+        if(index == null || methodDefineds.isEmpty()) {
+            return super.isMatch(match, methodDefineds);
+        }
+        List<IConfigMatch> candidates = index.candidates(matches, methodDefineds.get(0).getClassDefined());
+        if(candidates.isEmpty()) {
+            return false;
+        }
+        return methodDefineds.stream().anyMatch(methodDefined -> candidates.stream().anyMatch(candidate -> candidate.isMatch(methodDefined)));
+    }
+
     @Override
     public List<MethodDefined> name(TypeDescription typeDescription) {
         return ElementMatcherConvert.convert(typeDescription).getMethods();
@@ -32,10 +32,54 @@ import java.util.stream.Collectors;
 public class ElementMatcherConvert {
 
 	private static final ILogger LOGGER = LoggerFactory.getLogger(ElementMatcherConvert.class);
+	// 一个类增强过程中（ignore匹配、type匹配、transform）会多次转换同一个类，缓存当前线程最近一次的转换结果（按类名及classLoader区分），在增强完成后清除
+	private static final ThreadLocal<LastClass> LAST_CLASS = new ThreadLocal<>();
     
 	private ElementMatcherConvert() {}
 
+    /**
+     * 开始处理一个类时调用（AgentListener.onDiscovery），记录类的classLoader，之后不传classLoader的转换使用该classLoader作为缓存key
+     * @param classLoader	加载类的classLoader
+     */
+    public static void discover(ClassLoader classLoader) {
+    	LAST_CLASS.set(new LastClass(classLoader, null));
+    }
+
+    /**
+     * TypeDescription转换为ClassDefined，同一线程连续转换同一个classLoader中的同一个类时复用上次的结果
+     * @param typeDescription
+     * @return
+     */
     public static ClassDefined convert(TypeDescription typeDescription) {
+    	LastClass last = LAST_CLASS.get();
+    	return convert(typeDescription, last == null ? null : last.classLoader);
+    }
+
+    /**
+     * TypeDescription转换为ClassDefined，同一线程连续转换同一个classLoader中的同一个类时复用上次的结果
+     * @param typeDescription
+     * @param classLoader	加载类的classLoader
+     * @return
+     */
+    public static ClassDefined convert(TypeDescription typeDescription, ClassLoader classLoader) {
+    	LastClass last = LAST_CLASS.get();
+    	if(last != null && last.classDefined != null && last.classLoader == classLoader
+    			&& last.classDefined.getClassName().equals(typeDescription.getActualName())) {
+    		return last.classDefined;
+    	}
+    	ClassDefined classDefined = convertClass(typeDescription);
+    	LAST_CLASS.set(new LastClass(classLoader, classDefined));
+    	return classDefined;
+    }
+
+    /**
+     * 清除当前线程缓存的ClassDefined，一个类增强完成后调用，避免持有类相关的对象
+     */
+    public static void clearCache() {
+    	LAST_CLASS.remove();
+    }
+
+    private static ClassDefined convertClass(TypeDescription typeDescription) {
 		ClassDefined classDefined = new ClassDefined(getInterface(typeDescription), getSuperClass(typeDescription), getClassAnnotation(typeDescription), typeDescription.getActualName());
 //		if(!containsMethod) {
 //			return classDefined;
@@ -179,4 +223,14 @@ public class ElementMatcherConvert {
     	});
     	return clsList;
     }
+
+    private static class LastClass {
+    	private final ClassLoader classLoader;
+    	private final ClassDefined classDefined;
+
+    	private LastClass(ClassLoader classLoader, ClassDefined classDefined) {
+    		this.classLoader = classLoader;
+    		this.classDefined = classDefined;
+    	}
+    }
 }
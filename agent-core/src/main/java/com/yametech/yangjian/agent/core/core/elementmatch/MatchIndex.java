@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.elementmatch;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.yametech.yangjian.agent.api.base.IConfigMatch;
+import com.yametech.yangjian.agent.api.bean.Annotation;
+import com.yametech.yangjian.agent.api.bean.ClassDefined;
+import com.yametech.yangjian.agent.api.configmatch.ClassAnnotationMatch;
+import com.yametech.yangjian.agent.api.configmatch.ClassMatch;
+import com.yametech.yangjian.agent.api.configmatch.CombineAndMatch;
+import com.yametech.yangjian.agent.api.configmatch.CombineOrMatch;
+import com.yametech.yangjian.agent.api.configmatch.InterfaceMatch;
+import com.yametech.yangjian.agent.api.configmatch.SuperClassMatch;
+
+/**
+ * 匹配器索引，按照类名、父类、接口、类注解建立索引，类加载时只返回可能匹配的候选项，避免每个类都遍历所有插件的匹配规则
+ * 无法提取类级别索引的匹配规则（方法正则、Not、Any等）每次都作为候选项返回，候选项仍需调用isMatch判断
+ * 注意：索引在源列表长度变化时重建，所以源列表只能追加，且元素的匹配规则中的类名、父类、接口、注解不能在运行中变更
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @param <T>	匹配器类型
+ */
+public class MatchIndex<T> {
+	private static final String CLASS_PREFIX = "C:";
+	private static final String SUPER_PREFIX = "S:";
+	private static final String INTERFACE_PREFIX = "I:";
+	private static final String ANNOTATION_PREFIX = "A:";
+	private final Function<T, IConfigMatch> matchGetter;
+	private volatile Snapshot<T> snapshot = new Snapshot<>(Collections.emptyList(), Collections.emptyMap(), new BitSet());
+
+	/**
+	 * @param matchGetter	获取匹配器的匹配规则
+	 */
+	public MatchIndex(Function<T, IConfigMatch> matchGetter) {
+		this.matchGetter = matchGetter;
+	}
+
+	/**
+	 * 获取可能匹配的候选项，返回顺序与源列表一致
+	 * @param source	所有匹配器
+	 * @param classDefined	类定义
+	 * @return	候选匹配器
+	 */
+	public List<T> candidates(List<T> source, ClassDefined classDefined) {
+		Snapshot<T> thisSnapshot = snapshot;
+		if(thisSnapshot.items.size() != source.size()) {
+			thisSnapshot = rebuild(source);
+		}
+		BitSet hits = (BitSet) thisSnapshot.unindexed.clone();
+		thisSnapshot.mark(CLASS_PREFIX + classDefined.getClassName(), hits);
+		if(classDefined.getParents() != null) {
+			for(String parent : classDefined.getParents()) {
+				thisSnapshot.mark(SUPER_PREFIX + parent, hits);
+			}
+		}
+		if(classDefined.getInterfaces() != null) {
+			for(String inter : classDefined.getInterfaces()) {
+				thisSnapshot.mark(INTERFACE_PREFIX + inter, hits);
+			}
+		}
+		if(classDefined.getClassAnnotations() != null) {
+			for(Annotation annotation : classDefined.getClassAnnotations()) {
+				thisSnapshot.mark(ANNOTATION_PREFIX + annotation.getName(), hits);
+			}
+		}
+		List<T> candidates = new ArrayList<>(hits.cardinality());
+		for(int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+			candidates.add(thisSnapshot.items.get(i));
+		}
+		return candidates;
+	}
+
+	private synchronized Snapshot<T> rebuild(List<T> source) {
+		List<T> items = new ArrayList<>(source);
+		Map<String, BitSet> index = new HashMap<>();
+		BitSet unindexed = new BitSet();
+		for(int i = 0; i < items.size(); i++) {
+			IConfigMatch match = matchGetter.apply(items.get(i));
+			Set<String> keys = match == null ? null : keys(match);
+			if(keys == null) {// 运行中可能变化（如读取配置）或无法索引的规则，总是作为候选项
+				unindexed.set(i);
+				continue;
+			}
+			for(String key : keys) {
+				index.computeIfAbsent(key, k -> new BitSet()).set(i);
+			}
+		}
+		Snapshot<T> newSnapshot = new Snapshot<>(items, index, unindexed);
+		snapshot = newSnapshot;
+		return newSnapshot;
+	}
+
+	/**
+	 * 提取匹配规则的索引键，类匹配时必定命中其中一个键
+	 * @param match	匹配规则
+	 * @return	索引键，null表示无法索引
+	 */
+	static Set<String> keys(IConfigMatch match) {
+		if(match instanceof ClassMatch) {
+			return Collections.singleton(CLASS_PREFIX + ((ClassMatch) match).getCls());
+		} else if(match instanceof SuperClassMatch) {
+			return Collections.singleton(SUPER_PREFIX + ((SuperClassMatch) match).getSuperClass());
+		} else if(match instanceof InterfaceMatch) {
+			return Collections.singleton(INTERFACE_PREFIX + ((InterfaceMatch) match).getInterfaceName());
+		} else if(match instanceof ClassAnnotationMatch) {
+			return Collections.singleton(ANNOTATION_PREFIX + ((ClassAnnotationMatch) match).getAnnotation());
+		} else if(match instanceof CombineAndMatch) {// 任意一个子规则可索引即可，取键最少的
+			Set<String> minKeys = null;
+			for(IConfigMatch child : ((CombineAndMatch) match).getMatches()) {
+				Set<String> childKeys = keys(child);
+				if(childKeys != null && (minKeys == null || childKeys.size() < minKeys.size())) {
+					minKeys = childKeys;
+				}
+			}
+			return minKeys;
+		} else if(match instanceof CombineOrMatch) {// 所有子规则均可索引才能索引
+			Set<String> allKeys = new HashSet<>();
+			for(IConfigMatch child : ((CombineOrMatch) match).getMatches()) {
+				Set<String> childKeys = keys(child);
+				if(childKeys == null) {
+					return null;
+				}
+				allKeys.addAll(childKeys);
+			}
+			return allKeys;
+		}
+		return null;
+	}
+
+	private static class Snapshot<T> {
+		private final List<T> items;
+		private final Map<String, BitSet> index;
+		private final BitSet unindexed;
+
+		Snapshot(List<T> items, Map<String, BitSet> index, BitSet unindexed) {
+			this.items = items;
+			this.index = index;
+			this.unindexed = unindexed;
+		}
+
+		void mark(String key, BitSet hits) {
+			BitSet keyHits = index.get(key);
+			if(keyHits != null) {
+				hits.or(keyHits);
+			}
+		}
+	}
+}
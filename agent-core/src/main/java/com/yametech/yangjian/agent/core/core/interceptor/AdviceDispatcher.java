@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.yametech.yangjian.agent.api.bean.BeforeResult;
+import com.yametech.yangjian.agent.api.interceptor.IMethodAOP;
+import com.yametech.yangjian.agent.api.interceptor.IStaticMethodAOP;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.util.RateLimit;
+
+import net.bytebuddy.jar.asm.Type;
+
+/**
+ * advice方式增强时内联代码调用的入口，增强时通过register注册方法的拦截器并获得常量id，运行时通过id找到拦截器，
+ * 避免生成委托类字段及每次调用创建callable实例
+ * 注意：advice方式无法替换返回值、跳过原方法执行，所以before返回的ret及after的返回值会被忽略
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class AdviceDispatcher {
+	private static final ILogger LOG = LoggerFactory.getLogger(AdviceDispatcher.class);
+	private static final RateLimit LIMITER = RateLimit.create(10);
+	private static volatile AdviceMethod[] methods = new AdviceMethod[64];
+	private static int count;
+
+	private AdviceDispatcher() {}
+
+	/**
+	 * 注册增强方法的拦截器
+	 * @param interceptors	拦截器
+	 * @param methodName	方法名称
+	 * @param descriptor	方法描述符，用于运行时定位Method
+	 * @return	注册的id，内联到增强代码中
+	 */
+	public static synchronized int register(InterceptorWrapper<?>[] interceptors, String methodName, String descriptor) {
+		AdviceMethod[] current = methods;
+		if(count >= current.length) {
+			current = Arrays.copyOf(current, current.length << 1);
+		}
+		current[count] = new AdviceMethod(interceptors, methodName, descriptor);
+		methods = current;// volatile写，保证运行时读取到完整的注册数据
+		return count++;
+	}
+
+	@SuppressWarnings({ "rawtypes" })
+	public static InvocationFrame enterInstance(int id, Class<?> cls, Object thisObj, Object[] allArguments) {
+		AdviceMethod adviceMethod = methods[id];
+		Method method = adviceMethod.method(cls);
+		if(method == null) {
+			return null;
+		}
+		InvocationFrame frame = InvocationFrameStack.enter();
+		try {
+			frame.invocation(thisObj, allArguments, method);
+			for (InterceptorWrapper<?> interceptorWrap : adviceMethod.interceptors) {
+				if(!interceptorWrap.isEnable()) {
+					continue;
+				}
+				IMethodAOP interceptor = (IMethodAOP) interceptorWrap.getInterceptor();
+				try {
+					frame.add(interceptor, interceptor.before(thisObj, allArguments, method));
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {
+						LOG.warn(t, "advice interceptor before");// before异常，不再执行after和exception
+					}
+				}
+			}
+		} catch (Throwable t) {
+			InvocationFrameStack.exit(frame);// 出现异常时exit不会执行，在此处出栈，避免frame泄漏
+			throw t;
+		}
+		return frame;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static void exitInstance(InvocationFrame frame, Object ret, Throwable methodThrowable) {
+		if(frame == null) {
+			return;
+		}
+		try {
+			Object thisObj = frame.thisObj();
+			Object[] allArguments = frame.arguments();
+			Method method = frame.method();
+			Map<Class<?>, Object> globalVar = frame.globalVar();
+			for (int i = frame.size() - 1; i >= 0; i--) {
+				IMethodAOP interceptor = (IMethodAOP) frame.interceptor(i);
+				BeforeResult result = frame.result(i);
+				try {
+					if (methodThrowable != null) {
+						interceptor.exception(thisObj, allArguments, method, result, methodThrowable, globalVar);
+					}
+					interceptor.after(thisObj, allArguments, method, result, ret, methodThrowable, globalVar);
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {
+						LOG.warn(t, "advice interceptor exception/after");
+					}
+				}
+			}
+		} finally {
+			InvocationFrameStack.exit(frame);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes" })
+	public static InvocationFrame enterStatic(int id, Class<?> cls, Object[] allArguments) {
+		AdviceMethod adviceMethod = methods[id];
+		Method method = adviceMethod.method(cls);
+		if(method == null) {
+			return null;
+		}
+		InvocationFrame frame = InvocationFrameStack.enter();
+		try {
+			frame.invocation(null, allArguments, method);
+			for (InterceptorWrapper<?> interceptorWrap : adviceMethod.interceptors) {
+				if(!interceptorWrap.isEnable()) {
+					continue;
+				}
+				IStaticMethodAOP interceptor = (IStaticMethodAOP) interceptorWrap.getInterceptor();
+				try {
+					frame.add(interceptor, interceptor.before(allArguments, method));
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {
+						LOG.warn(t, "advice interceptor before");
+					}
+				}
+			}
+		} catch (Throwable t) {
+			InvocationFrameStack.exit(frame);// 出现异常时exit不会执行，在此处出栈，避免frame泄漏
+			throw t;
+		}
+		return frame;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static void exitStatic(InvocationFrame frame, Object ret, Throwable methodThrowable) {
+		if(frame == null) {
+			return;
+		}
+		try {
+			Object[] allArguments = frame.arguments();
+			Method method = frame.method();
+			Map<Class<?>, Object> globalVar = frame.globalVar();
+			for (int i = frame.size() - 1; i >= 0; i--) {
+				IStaticMethodAOP interceptor = (IStaticMethodAOP) frame.interceptor(i);
+				BeforeResult result = frame.result(i);
+				try {
+					if (methodThrowable != null) {
+						interceptor.exception(allArguments, method, result, methodThrowable, globalVar);
+					}
+					interceptor.after(allArguments, method, result, ret, methodThrowable, globalVar);
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {
+						LOG.warn(t, "advice interceptor exception/after");
+					}
+				}
+			}
+		} finally {
+			InvocationFrameStack.exit(frame);
+		}
+	}
+
+	/**
+	 * 一个增强方法的注册信息，Method在首次调用时通过类反射获取并缓存
+	 */
+	private static class AdviceMethod {
+		private final InterceptorWrapper<?>[] interceptors;
+		private final String methodName;
+		private final String descriptor;
+		private volatile Method method;
+		private volatile boolean notFound;
+
+		AdviceMethod(InterceptorWrapper<?>[] interceptors, String methodName, String descriptor) {
+			this.interceptors = interceptors;
+			this.methodName = methodName;
+			this.descriptor = descriptor;
+		}
+
+		Method method(Class<?> cls) {
+			Method thisMethod = method;
+			if(thisMethod != null || notFound) {
+				return thisMethod;
+			}
+			for(Method declaredMethod : cls.getDeclaredMethods()) {
+				if(declaredMethod.getName().equals(methodName) && Type.getMethodDescriptor(declaredMethod).equals(descriptor)) {
+					method = declaredMethod;
+					return declaredMethod;
+				}
+			}
+			notFound = true;
+			LOG.warn("advice method not found: {}.{}{}", cls.getName(), methodName, descriptor);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 可复用的globalVar，拦截器个数很少，使用数组线性查找，put/get不产生对象
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+final class FrameGlobalVar extends AbstractMap<Class<?>, Object> {
+	private Class<?>[] keys = new Class<?>[2];
+	private Object[] values = new Object[2];
+	private int size;
+
+	@Override
+	public Object put(Class<?> key, Object value) {
+		for(int i = 0; i < size; i++) {
+			if(keys[i] == key) {
+				Object old = values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		if(size == keys.length) {
+			Class<?>[] newKeys = new Class<?>[size << 1];
+			Object[] newValues = new Object[size << 1];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			keys = newKeys;
+			values = newValues;
+		}
+		keys[size] = key;
+		values[size] = value;
+		size++;
+		return null;
+	}
+
+	@Override
+	public Object get(Object key) {
+		for(int i = 0; i < size; i++) {
+			if(keys[i] == key) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		for(int i = 0; i < size; i++) {
+			if(keys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			keys[i] = null;
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public Set<Entry<Class<?>, Object>> entrySet() {
+		return new AbstractSet<Entry<Class<?>, Object>>() {
+			@Override
+			public Iterator<Entry<Class<?>, Object>> iterator() {
+				return new Iterator<Entry<Class<?>, Object>>() {
+					private int index;
+
+					@Override
+					public boolean hasNext() {
+						return index < size;
+					}
+
+					@Override
+					public Entry<Class<?>, Object> next() {
+						if(index >= size) {
+							throw new NoSuchElementException();
+						}
+						Entry<Class<?>, Object> entry = new SimpleImmutableEntry<>(keys[index], values[index]);
+						index++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import com.yametech.yangjian.agent.api.bean.BeforeResult;
+
+/**
+ * 一次拦截调用的上下文，避免每次调用创建拦截器数组、before返回值包装对象及globalVar的HashMap
+ * 实例由InvocationFrameStack按线程、按调用深度复用，调用结束后必须通过InvocationFrameStack.exit释放
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class InvocationFrame {
+	private static final int INIT_CAPACITY = 4;
+	private Object[] interceptors = new Object[INIT_CAPACITY];
+	private BeforeResult<?>[] results = new BeforeResult<?>[INIT_CAPACITY];
+	private TimeBeforeResult[] timeResults = new TimeBeforeResult[INIT_CAPACITY];
+	private final FrameGlobalVar globalVar = new FrameGlobalVar();
+	private int size;
+	// 以下字段仅advice方式使用，在enter中保存，exit中使用，避免内联代码重复包装参数
+	private Object thisObj;
+	private Object[] arguments;
+	private Method method;
+
+	InvocationFrame() {
+	}
+
+	/**
+	 * 记录已成功执行before的拦截器及before返回值，after按添加的逆序执行
+	 * @param interceptor	拦截器实例
+	 * @param result	before返回值，可为null
+	 */
+	void add(Object interceptor, BeforeResult<?> result) {
+		ensureCapacity(size + 1);
+		interceptors[size] = interceptor;
+		results[size] = result;
+		size++;
+		if(result != null && result.getGlobalVar() != null) {
+			globalVar.put(interceptor.getClass(), result.getGlobalVar());
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	Object interceptor(int index) {
+		return interceptors[index];
+	}
+
+	BeforeResult<?> result(int index) {
+		return results[index];
+	}
+
+	/**
+	 * @return	before中产生的globalVar，没有则为null（与之前的逻辑保持一致），仅在本次调用期间有效，不能在调用结束后继续持有
+	 */
+	Map<Class<?>, Object> globalVar() {
+		return globalVar.isEmpty() ? null : globalVar;
+	}
+
+	/**
+	 * 获取当前正在执行before的拦截器可复用的BeforeResult，每个拦截器位置对应一个实例，避免同一次调用中的多个拦截器互相覆盖
+	 * @param startMillis	开始时间
+	 * @return	TimeBeforeResult
+	 */
+	public TimeBeforeResult timeResult(long startMillis) {
+		ensureCapacity(size + 1);
+		TimeBeforeResult result = timeResults[size];
+		if(result == null) {
+			result = new TimeBeforeResult();
+			timeResults[size] = result;
+		}
+		result.setStartMillis(startMillis);
+		return result;
+	}
+
+	void invocation(Object thisObj, Object[] arguments, Method method) {
+		this.thisObj = thisObj;
+		this.arguments = arguments;
+		this.method = method;
+	}
+
+	Object thisObj() {
+		return thisObj;
+	}
+
+	Object[] arguments() {
+		return arguments;
+	}
+
+	Method method() {
+		return method;
+	}
+
+	/**
+	 * 清除引用，避免复用时持有业务对象导致无法回收
+	 */
+	void clear() {
+		for(int i = 0; i < size; i++) {
+			interceptors[i] = null;
+			results[i] = null;
+		}
+		size = 0;
+		globalVar.clear();
+		thisObj = null;
+		arguments = null;
+		method = null;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity <= interceptors.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, interceptors.length << 1);
+		Object[] newInterceptors = new Object[newCapacity];
+		System.arraycopy(interceptors, 0, newInterceptors, 0, size);
+		interceptors = newInterceptors;
+		BeforeResult<?>[] newResults = new BeforeResult<?>[newCapacity];
+		System.arraycopy(results, 0, newResults, 0, size);
+		results = newResults;
+		TimeBeforeResult[] newTimeResults = new TimeBeforeResult[newCapacity];
+		System.arraycopy(timeResults, 0, newTimeResults, 0, timeResults.length);
+		timeResults = newTimeResults;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+/**
+ * 线程内的InvocationFrame栈，每一层嵌套/重入的增强方法调用使用一个独立的InvocationFrame，稳定运行后不再创建对象
+ * 使用方式：enter与exit必须成对出现（exit放在finally中）
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class InvocationFrameStack {
+	private static final ThreadLocal<InvocationFrameStack> STACK = ThreadLocal.withInitial(InvocationFrameStack::new);
+	private InvocationFrame[] frames = new InvocationFrame[8];
+	private int depth;
+
+	private InvocationFrameStack() {
+	}
+
+	/**
+	 * 进入一次增强方法调用
+	 * @return	当前调用深度对应的InvocationFrame
+	 */
+	static InvocationFrame enter() {
+		return STACK.get().push();
+	}
+
+	/**
+	 * 退出增强方法调用，释放frame
+	 * @param frame	enter返回的实例
+	 */
+	static void exit(InvocationFrame frame) {
+		STACK.get().pop(frame);
+	}
+
+	/**
+	 * @return	当前线程正在执行的最内层InvocationFrame，不在增强方法调用中时返回null
+	 */
+	public static InvocationFrame current() {
+		InvocationFrameStack stack = STACK.get();
+		return stack.depth == 0 ? null : stack.frames[stack.depth - 1];
+	}
+
+	/**
+	 * @return	当前线程的调用深度，测试使用
+	 */
+	static int depth() {
+		return STACK.get().depth;
+	}
+
+	private InvocationFrame push() {
+		if(depth == frames.length) {
+			InvocationFrame[] newFrames = new InvocationFrame[depth << 1];
+			System.arraycopy(frames, 0, newFrames, 0, depth);
+			frames = newFrames;
+		}
+		InvocationFrame frame = frames[depth];
+		if(frame == null) {
+			frame = new InvocationFrame();
+			frames[depth] = frame;
+		}
+		depth++;
+		return frame;
+	}
+
+	private void pop(InvocationFrame frame) {
+		frame.clear();
+		// 正常情况下frame为栈顶，此处按实例查找，避免异常情况下栈深度错乱
+		for(int i = depth - 1; i >= 0; i--) {
+			if(frames[i] == frame) {
+				depth = i;
+				return;
+			}
+		}
+	}
+}
@@ -17,28 +17,33 @@ package com.yametech.yangjian.agent.core.core.interceptor;
 
 import com.yametech.yangjian.agent.api.bean.BeforeResult;
 
-public class InterceptBean<T> {
-    private T interceptor;
-    private BeforeResult<?> result;
+/**
+ * 仅传递开始时间的BeforeResult，使用long保存避免装箱，由InvocationFrame复用
+ *
+ * @author liuzhao
+ */
+public final class TimeBeforeResult extends BeforeResult<Long> {
+	private long startMillis;
 
-    public InterceptBean(T interceptor, BeforeResult<?> result) {
-        this.interceptor = interceptor;
-        this.result = result;
-    }
+	TimeBeforeResult() {
+		super(null, null, null);
+	}
 
-    public T getInterceptor() {
-        return interceptor;
-    }
+	public long getStartMillis() {
+		return startMillis;
+	}
 
-    public void setInterceptor(T interceptor) {
-        this.interceptor = interceptor;
-    }
+	void setStartMillis(long startMillis) {
+		this.startMillis = startMillis;
+	}
 
-    public BeforeResult<?> getResult() {
-        return result;
-    }
+	@Override
+	public Long getLocalVar() {
+		return startMillis;
+	}
 
-    public void setResult(BeforeResult<?> result) {
-        this.result = result;
-    }
+	@Override
+	public void setLocalVar(Long localVar) {
+		this.startMillis = localVar == null ? 0 : localVar;
+	}
 }
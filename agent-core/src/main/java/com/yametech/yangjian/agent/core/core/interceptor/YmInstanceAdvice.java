@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+
+/**
+ * 实例方法advice，代码会内联到被增强方法中，所以方法体只能调用public的静态方法
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class YmInstanceAdvice {
+
+	private YmInstanceAdvice() {}
+
+	@Advice.OnMethodEnter(suppress = Throwable.class)
+	public static InvocationFrame enter(@AdviceId int id, @Advice.Origin Class<?> cls,
+			@Advice.This Object thisObj, @Advice.AllArguments Object[] allArguments) {
+		return AdviceDispatcher.enterInstance(id, cls, thisObj, allArguments);
+	}
+
+	@Advice.OnMethodExit(onThrowable = Throwable.class, suppress = Throwable.class)
+	public static void exit(@Advice.Enter InvocationFrame frame,
+			@Advice.Return(typing = Assigner.Typing.DYNAMIC) Object ret, @Advice.Thrown Throwable t) {
+		AdviceDispatcher.exitInstance(frame, ret, t);
+	}
+}
@@ -23,7 +23,6 @@ import com.yametech.yangjian.agent.core.util.RateLimit;
 import net.bytebuddy.implementation.bind.annotation.*;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
 
 public class YmInstanceInterceptor {
@@ -38,65 +37,60 @@ public class YmInstanceInterceptor {
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@RuntimeType
 	public Object intercept(@This Object thisObj, @AllArguments Object[] allArguments, @Morph OverrideCallable callable, @Origin Method method) throws Throwable {
-		InterceptBean<IMethodAOP<?>>[] interceptBeans = new InterceptBean[interceptors.length];
-		int index = 0;
-		Object ret = null;
-		Map<Class<?>, Object> globalVar = null;
-		for (InterceptorWrapper<IMethodAOP<?>> interceptorWrap : interceptors) {
-			if(!interceptorWrap.isEnable()) {
-				continue;
-			}
-			IMethodAOP<?> interceptor = interceptorWrap.getInterceptor();
-			try {
-				BeforeResult<?> result = interceptor.before(thisObj, allArguments, method);
-				interceptBeans[index++] = new InterceptBean<>(interceptor, result);
-				if (result != null) {
-					if (result.getRet() != null) {
+		InvocationFrame frame = InvocationFrameStack.enter();
+		try {
+			Object ret = null;
+			for (InterceptorWrapper<IMethodAOP<?>> interceptorWrap : interceptors) {
+				if(!interceptorWrap.isEnable()) {
+					continue;
+				}
+				IMethodAOP<?> interceptor = interceptorWrap.getInterceptor();
+				try {
+					BeforeResult<?> result = interceptor.before(thisObj, allArguments, method);
+					frame.add(interceptor, result);
+					if (result != null && result.getRet() != null) {
 						ret = result.getRet();
 					}
-					if (result.getGlobalVar() != null) {
-						if (globalVar == null) {
-							globalVar = new HashMap<>();
-						}
-						globalVar.put(interceptor.getClass(), result.getGlobalVar());
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {
+						LOG.warn(t, "interceptor before");// before异常，不再执行after和exception，通过frame中记录的拦截器控制
 					}
 				}
-			} catch (Throwable t) {
-				if(LIMITER.tryAcquire()) {
-					LOG.warn(t, "interceptor before");// before异常，不再执行after和exception，通过index控制
-				}
 			}
-		}
 
-		Throwable methodThrowable = null;
-		if (ret == null && callable != null) {
-			try {
-				ret = callable.call(allArguments);
-			} catch (Throwable t) {
-//				log.warn(t, "interceptor call");// 增加打印速率限制(每秒N条)，不需要打印业务异常日志
-				methodThrowable = t;
+			Throwable methodThrowable = null;
+			if (ret == null && callable != null) {
+				try {
+					ret = callable.call(allArguments);
+				} catch (Throwable t) {
+//					log.warn(t, "interceptor call");// 增加打印速率限制(每秒N条)，不需要打印业务异常日志
+					methodThrowable = t;
+				}
 			}
-		}
 
-		for (int i = index - 1; i >= 0; i--) {
-			IMethodAOP<?> interceptor = interceptBeans[i].getInterceptor();
-			BeforeResult result = interceptBeans[i].getResult();
-			try {
-				if (methodThrowable != null) {
-					// exception处理异常，不再执行after
-					interceptor.exception(thisObj, allArguments, method, result, methodThrowable, globalVar);
-				}
-				ret = interceptor.after(thisObj, allArguments, method, result, ret, methodThrowable, globalVar);
-			} catch (Throwable t) {
-				if(LIMITER.tryAcquire()) {// 增加打印速率限制(每秒N条)，防止因插件写的有问题，发生大量异常时影响方法调用速度
-					LOG.warn(t, "interceptor exception/after");
+			Map<Class<?>, Object> globalVar = frame.globalVar();
+			for (int i = frame.size() - 1; i >= 0; i--) {
+				IMethodAOP interceptor = (IMethodAOP) frame.interceptor(i);
+				BeforeResult result = frame.result(i);
+				try {
+					if (methodThrowable != null) {
+						// exception处理异常，不再执行after
+						interceptor.exception(thisObj, allArguments, method, result, methodThrowable, globalVar);
+					}
+					ret = interceptor.after(thisObj, allArguments, method, result, ret, methodThrowable, globalVar);
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {// 增加打印速率限制(每秒N条)，防止因插件写的有问题，发生大量异常时影响方法调用速度
+						LOG.warn(t, "interceptor exception/after");
+					}
 				}
 			}
-		}
-		if (methodThrowable == null) {
-			return ret;
-		} else {
-			throw methodThrowable;
+			if (methodThrowable == null) {
+				return ret;
+			} else {
+				throw methodThrowable;
+			}
+		} finally {
+			InvocationFrameStack.exit(frame);
 		}
 	}
 
@@ -26,7 +26,6 @@ import net.bytebuddy.implementation.bind.annotation.RuntimeType;
 import net.bytebuddy.implementation.bind.annotation.SuperCall;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -43,65 +42,60 @@ public class YmStaticInterceptor {
 	@RuntimeType
 	public Object intercept(@Origin Class<?> clazz, @AllArguments Object[] allArguments, @SuperCall Callable<?> callable, @Origin Method method)
 			throws Throwable {
-		InterceptBean<IStaticMethodAOP<?>>[] interceptBeans = new InterceptBean[interceptors.length];
-		int index = 0;
-		Object ret = null;
-		Map<Class<?>, Object> globalVar = null;
-		for (InterceptorWrapper<IStaticMethodAOP<?>> interceptorWrap : interceptors) {
-			if(!interceptorWrap.isEnable()) {
-				continue;
-			}
-			IStaticMethodAOP<?> interceptor = interceptorWrap.getInterceptor();
-			try {
-				BeforeResult<?> result = interceptor.before(allArguments, method);
-				interceptBeans[index++] = new InterceptBean<>(interceptor, result);
-				if (result != null) {
-					if (result.getRet() != null) {
+		InvocationFrame frame = InvocationFrameStack.enter();
+		try {
+			Object ret = null;
+			for (InterceptorWrapper<IStaticMethodAOP<?>> interceptorWrap : interceptors) {
+				if(!interceptorWrap.isEnable()) {
+					continue;
+				}
+				IStaticMethodAOP<?> interceptor = interceptorWrap.getInterceptor();
+				try {
+					BeforeResult<?> result = interceptor.before(allArguments, method);
+					frame.add(interceptor, result);
+					if (result != null && result.getRet() != null) {
 						ret = result.getRet();
 					}
-					if (result.getGlobalVar() != null) {
-						if (globalVar == null) {
-							globalVar = new HashMap<>();
-						}
-						globalVar.put(interceptor.getClass(), result.getGlobalVar());
+				} catch (Throwable t) {// before异常，不再执行after和exception，通过frame中记录的拦截器控制
+					if(LIMITER.tryAcquire()) {// 增加打印速率限制(每秒N条)，防止因插件写的有问题，发生大量异常时影响方法调用速度
+						LOG.warn(t, "interceptor before");
 					}
 				}
-			} catch (Throwable t) {// before异常，不再执行after和exception，通过index控制
-				if(LIMITER.tryAcquire()) {// 增加打印速率限制(每秒N条)，防止因插件写的有问题，发生大量异常时影响方法调用速度
-					LOG.warn(t, "interceptor before");
-				}
 			}
-		}
 
-		Throwable methodThrowable = null;
-		if (ret == null && callable != null) {
-			try {
-				ret = callable.call();
-			} catch (Throwable t) {
-//				log.warn(t, "interceptor call");// 业务异常，不打印
-				methodThrowable = t;
+			Throwable methodThrowable = null;
+			if (ret == null && callable != null) {
+				try {
+					ret = callable.call();
+				} catch (Throwable t) {
+//					log.warn(t, "interceptor call");// 业务异常，不打印
+					methodThrowable = t;
+				}
 			}
-		}
 
-		for (int i = index - 1; i >= 0; i--) {
-			IStaticMethodAOP<?> interceptor = interceptBeans[i].getInterceptor();
-			BeforeResult result = interceptBeans[i].getResult();
-			try {
-				if (methodThrowable != null) {
-					// exception处理异常，不再执行after
-					interceptor.exception(allArguments, method, result, methodThrowable, globalVar);
-				}
-				ret = interceptor.after(allArguments, method, result, ret, methodThrowable, globalVar);
-			} catch (Throwable t) {
-				if(LIMITER.tryAcquire()) {// 增加打印速率限制(每秒N条)，防止因插件写的有问题，发生大量异常时影响方法调用速度
-					LOG.warn(t, "interceptor exception/after");
+			Map<Class<?>, Object> globalVar = frame.globalVar();
+			for (int i = frame.size() - 1; i >= 0; i--) {
+				IStaticMethodAOP interceptor = (IStaticMethodAOP) frame.interceptor(i);
+				BeforeResult result = frame.result(i);
+				try {
+					if (methodThrowable != null) {
+						// exception处理异常，不再执行after
+						interceptor.exception(allArguments, method, result, methodThrowable, globalVar);
+					}
+					ret = interceptor.after(allArguments, method, result, ret, methodThrowable, globalVar);
+				} catch (Throwable t) {
+					if(LIMITER.tryAcquire()) {// 增加打印速率限制(每秒N条)，防止因插件写的有问题，发生大量异常时影响方法调用速度
+						LOG.warn(t, "interceptor exception/after");
+					}
 				}
 			}
-		}
-		if (methodThrowable == null) {
-			return ret;
-		} else {
-			throw methodThrowable;
+			if (methodThrowable == null) {
+				return ret;
+			} else {
+				throw methodThrowable;
+			}
+		} finally {
+			InvocationFrameStack.exit(frame);
 		}
 	}
 
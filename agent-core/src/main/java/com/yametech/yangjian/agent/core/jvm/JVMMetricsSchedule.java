@@ -38,19 +38,32 @@ import java.util.*;
 public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfigReader {
     private static final ILogger LOG = LoggerFactory.getLogger(JVMMetricsSchedule.class);
     private static final String CONFIG_KEY = "metricOutput.interval.jvm";
+    private static final String THREAD_TOP_CONFIG_KEY = "metricOutput.threadTop.num";
+    private static final String LOCK_TOP_CONFIG_KEY = "metricOutput.lockTop.num";
+    private static final String GC_PAUSE = "gc-pause";
+    private static final String THREAD_TOP = "thread-top";
+    private static final String LOCK_TOP = "lock-top";
+    private static final String DEADLOCK = "deadlock";
     private IReportData report = MultiReportFactory.getReport("jvmMetric");
     private BufferPoolCollector bufferPoolCollector;
     private GcCollector gcCollector;
+    private GcNotificationCollector gcNotificationCollector;
     private ThreadCollector threadCollector;
     private MemoryCollector memoryCollector;
     private MemoryPoolCollector memoryPoolCollector;
     private ProcessCollector processCollector;
     private ClassCollector classCollector;
+    private ThreadUsageCollector threadUsageCollector;
+    private LockContentionCollector lockContentionCollector;
     private int interval = 5;
+    private int threadTopNum = 10;
+    private int lockTopNum = 10;
 
     @Override
     public Set<String> configKey() {
-        return new HashSet<>(Collections.singletonList(CONFIG_KEY.replaceAll("\\.", "\\\\.")));
+        return new HashSet<>(Arrays.asList(CONFIG_KEY.replaceAll("\\.", "\\\\."),
+                THREAD_TOP_CONFIG_KEY.replaceAll("\\.", "\\\\."),
+                LOCK_TOP_CONFIG_KEY.replaceAll("\\.", "\\\\.")));
     }
 
     @Override
@@ -67,17 +80,40 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
             	LOG.warn("{} config error: {}", CONFIG_KEY, intervalStr);
             }
     	}
+        String threadTopStr = kv.get(THREAD_TOP_CONFIG_KEY);
+        if (threadTopStr != null) {
+            try {
+                threadTopNum = Integer.parseInt(threadTopStr);
+            } catch (Exception e) {
+                LOG.warn("{} config error: {}", THREAD_TOP_CONFIG_KEY, threadTopStr);
+            }
+        }
+        String lockTopStr = kv.get(LOCK_TOP_CONFIG_KEY);
+        if (lockTopStr != null) {
+            try {
+                lockTopNum = Integer.parseInt(lockTopStr);
+            } catch (Exception e) {
+                LOG.warn("{} config error: {}", LOCK_TOP_CONFIG_KEY, lockTopStr);
+            }
+        }
     }
 
     @Override
     public void beforeRun() {
         bufferPoolCollector = new BufferPoolCollector();
         gcCollector = new GcCollector();
+        gcNotificationCollector = new GcNotificationCollector();
         threadCollector = new ThreadCollector();
         memoryCollector = new MemoryCollector();
         memoryPoolCollector = new MemoryPoolCollector();
         processCollector = new ProcessCollector();
         classCollector = new ClassCollector();
+        if (threadTopNum > 0) {
+            threadUsageCollector = new ThreadUsageCollector(threadTopNum);
+        }
+        if (lockTopNum > 0) {
+            lockContentionCollector = new LockContentionCollector(lockTopNum);
+        }
     }
 
     @Override
@@ -92,6 +128,7 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
             processBufferPoolMetrics();
             processJVMMetrics();
             processThreadMetrics();
+            processThreadTopMetrics();
         } catch (Exception e) {
         	LOG.error(e, "collect jvm metrics error");
         }
@@ -99,6 +136,9 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
 
     @Override
     public boolean shutdown(Duration duration) {
+        if (gcNotificationCollector != null) {
+            gcNotificationCollector.close();
+        }
         return true;
     }
 
@@ -117,6 +157,12 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
         params.put("cpu", processMetrics.getCpuUsagePercent());
         params.put("memory_total", processMetrics.getMemoryUsage());
         params.put("sys_mem_total", processMetrics.getSysMemTotal());
+        params.put("memory_swap", processMetrics.getSwapUsage());
+        params.put("voluntary_ctxt_switches", processMetrics.getVoluntaryCtxtSwitches());
+        params.put("nonvoluntary_ctxt_switches", processMetrics.getNonvoluntaryCtxtSwitches());
+        params.put("io_read_bytes", processMetrics.getReadBytes());
+        params.put("io_write_bytes", processMetrics.getWriteBytes());
+        params.put("run_queue_wait", processMetrics.getRunQueueWait());
         params.put("interval", interval);
     	report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + Constants.Status.RESOURCES, params));
     }
@@ -135,8 +181,18 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
 
     private void processJVMMetrics() {
     	Map<String, Object> params = new HashMap<>();
-        JVMGcMetrics jvmGcMetrics = gcCollector.collect();
+        GcNotificationMetrics gcNotificationMetrics = gcNotificationCollector.collect();
+        // 都支持GC通知时按gcAction区分年轻代、老年代，不依赖回收器名称
+        JVMGcMetrics jvmGcMetrics = gcNotificationCollector.isNotificationEnabled() ?
+                gcNotificationMetrics.toJVMGcMetrics() : gcCollector.collect();
         ClassMetrics classMetrics = classCollector.collect();
+        for (GcPoolMetrics gcPoolMetrics : gcNotificationMetrics.getPools()) {
+            if (gcPoolMetrics.isYoung()) {
+                params.put(gcPoolMetrics.getKey() + "_allocation_rate", gcPoolMetrics.getAllocationRate());
+            } else if (gcPoolMetrics.isOld()) {
+                params.put(gcPoolMetrics.getKey() + "_promotion_rate", gcPoolMetrics.getPromotionRate());
+            }
+        }
         params.put("young_gc_count", jvmGcMetrics.getYoungGcCount());
         params.put("young_gc_time", jvmGcMetrics.getYoungGcTime());
         params.put("avg_young_gc_time", jvmGcMetrics.getAvgYoungGcTime());
@@ -147,6 +203,29 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
         params.put("class_unloaded", classMetrics.getUnloaded());
         params.put("interval", interval);
         report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + Constants.Status.RESOURCES, params));
+        processGcPauseMetrics(gcNotificationMetrics);
+    }
+
+    private void processGcPauseMetrics(GcNotificationMetrics gcNotificationMetrics) {
+        for (GcPauseMetrics gcPauseMetrics : gcNotificationMetrics.getPauses()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("gc_name", gcPauseMetrics.getName());
+            params.put("gc_cause", gcPauseMetrics.getCause());
+            params.put("gc_kind", gcPauseMetrics.getKind());
+            params.put("count", gcPauseMetrics.getCount());
+            params.put("time_total", gcPauseMetrics.getTotalTime());
+            params.put("time_max", gcPauseMetrics.getMaxTime());
+            // 累计分布，le_X为耗时小于等于Xms的次数
+            long cumulative = 0;
+            long[] buckets = gcPauseMetrics.getBuckets();
+            for (int i = 0; i < GcPauseMetrics.BUCKET_BOUNDS.length; i++) {
+                cumulative += buckets[i];
+                params.put("le_" + GcPauseMetrics.BUCKET_BOUNDS[i], cumulative);
+            }
+            params.put("le_inf", gcPauseMetrics.getCount());
+            params.put("interval", interval);
+            report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + GC_PAUSE, params));
+        }
     }
 
     private void processThreadMetrics() {
@@ -162,7 +241,72 @@ public class JVMMetricsSchedule implements IAppStatusListener, ISchedule, IConfi
         params.put("thread_terminated", threadMetrics.getTerminated());
         params.put("thread_peak", threadMetrics.getPeak());
         params.put("thread_news", threadMetrics.getNews());
+        LockTopMetrics lockTopMetrics = lockContentionCollector == null ? null : lockContentionCollector.collect();
+        if (lockTopMetrics != null) {
+            params.put("thread_blocked_count", lockTopMetrics.getBlockedCount());
+            params.put("thread_blocked_time", lockTopMetrics.getBlockedTime());
+            params.put("thread_deadlocked", lockTopMetrics.getDeadlocks().size());
+        }
         params.put("interval", interval);
         report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + Constants.Status.RESOURCES, params));
+        if (lockTopMetrics != null) {
+            processLockTopMetrics(lockTopMetrics);
+        }
+    }
+
+    private void processLockTopMetrics(LockTopMetrics lockTopMetrics) {
+        processLockTopMetrics(lockTopMetrics.getMonitors());
+        processLockTopMetrics(lockTopMetrics.getSynchronizers());
+        for (DeadlockMetrics deadlockMetrics : lockTopMetrics.getDeadlocks()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("thread", deadlockMetrics.getThreadName());
+            params.put("lock_name", deadlockMetrics.getLockName());
+            params.put("lock_owner", deadlockMetrics.getOwnerName());
+            params.put("interval", interval);
+            report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + DEADLOCK, params));
+        }
+    }
+
+    private void processLockTopMetrics(List<LockContentionMetrics> lockContentionMetricsList) {
+        for (LockContentionMetrics lockContentionMetrics : lockContentionMetricsList) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("type", lockContentionMetrics.getType());
+            params.put("lock", lockContentionMetrics.getLockClass());
+            params.put("owner_frame", lockContentionMetrics.getOwnerFrame());
+            params.put("threads", lockContentionMetrics.getThreads());
+            params.put("blocked_count", lockContentionMetrics.getBlockedCount());
+            params.put("blocked_time", lockContentionMetrics.getBlockedTime());
+            params.put("waited_count", lockContentionMetrics.getWaitedCount());
+            params.put("waited_time", lockContentionMetrics.getWaitedTime());
+            params.put("interval", interval);
+            report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + LOCK_TOP, params));
+        }
+    }
+
+    private void processThreadTopMetrics() {
+        if (threadUsageCollector == null) {
+            return;
+        }
+        ThreadTopMetrics threadTopMetrics = threadUsageCollector.collect();
+        processThreadTopMetrics("pool", "cpu", threadTopMetrics.getPoolsByCpu());
+        processThreadTopMetrics("pool", "allocation", threadTopMetrics.getPoolsByAllocation());
+        processThreadTopMetrics("thread", "cpu", threadTopMetrics.getThreadsByCpu());
+        processThreadTopMetrics("thread", "allocation", threadTopMetrics.getThreadsByAllocation());
+    }
+
+    private void processThreadTopMetrics(String scope, String sortBy, List<ThreadUsageMetrics> threadUsageMetricsList) {
+        for (ThreadUsageMetrics threadUsageMetrics : threadUsageMetricsList) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("scope", scope);
+            params.put("sort_by", sortBy);
+            params.put("name", threadUsageMetrics.getName());
+            params.put("threads", threadUsageMetrics.getThreads());
+            params.put("cpu_time", threadUsageMetrics.getCpuTime() / 1000000);
+            params.put("cpu_usage", threadUsageMetrics.getCpuUsagePercent());
+            params.put("allocated", threadUsageMetrics.getAllocatedBytes());
+            params.put("allocation_rate", threadUsageMetrics.getAllocationRate());
+            params.put("interval", interval);
+            report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + THREAD_TOP, params));
+        }
     }
 }
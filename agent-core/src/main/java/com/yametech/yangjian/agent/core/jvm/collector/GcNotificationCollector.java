@@ -0,0 +1,320 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.collector;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.jvm.metrics.GcNotificationMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.GcPauseMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.GcPoolMetrics;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于GC通知（GarbageCollectionNotificationInfo）的GC数据采集：每次GC结束时记录耗时分布（按回收器及GC原因），
+ * 不依赖回收器名称，按gcAction区分minor/major/pause/cycle（ZGC、Shenandoah的Cycles为并发周期耗时，不是停顿），
+ * 并根据GC前后各堆内存池的使用量计算分配及晋升数据；
+ * 不支持通知的回收器在采集时轮询累计次数及时间（读取计数器，不需要进入安全点），此时只能按平均耗时计入分布
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class GcNotificationCollector implements IMetricsCollector<GcNotificationMetrics>, NotificationListener, AutoCloseable {
+
+    private static final ILogger logger = LoggerFactory.getLogger(GcNotificationCollector.class);
+
+    private static final String MINOR_GC_ACTION = "end of minor GC";
+
+    private static final String MAJOR_GC_ACTION = "end of major GC";
+
+    private static final String CYCLE_GC_ACTION = "cycle";
+
+    private static final String UNKNOWN_CAUSE = "unknown";
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+    private final List<PollingGc> pollingGcs = new ArrayList<>();
+
+    /**
+     * 堆内存池名称 -> 上报使用的名称
+     */
+    private final Map<String, String> heapPools = new LinkedHashMap<>();
+
+    /**
+     * 堆内存池名称 -> 所属分代
+     */
+    private final Map<String, String> generations = new HashMap<>();
+
+    /**
+     * 堆内存池名称 -> 最近一次GC后的使用量
+     */
+    private final Map<String, Long> lastUsage = new HashMap<>();
+
+    /**
+     * 堆内存池名称 -> 时间片内累计的分配、晋升字节数
+     */
+    private final Map<String, long[]> poolStats = new HashMap<>();
+
+    private final LongSupplier clock;
+
+    private Map<String, PauseStat> pauseStats = new LinkedHashMap<>();
+
+    private long lastCollectTime;
+
+    public GcNotificationCollector() {
+        this(ManagementFactory.getGarbageCollectorMXBeans(), heapPoolUsage(), System::currentTimeMillis);
+    }
+
+    /**
+     * @param heapPoolUsage 堆内存池名称 -> 当前使用量
+     */
+    GcNotificationCollector(List<GarbageCollectorMXBean> beans, Map<String, Long> heapPoolUsage, LongSupplier clock) {
+        this.clock = clock;
+        this.lastCollectTime = clock.getAsLong();
+        for (Map.Entry<String, Long> entry : heapPoolUsage.entrySet()) {
+            heapPools.put(entry.getKey(), key(entry.getKey()));
+            generations.put(entry.getKey(), generation(entry.getKey(), heapPoolUsage.size()));
+            lastUsage.put(entry.getKey(), entry.getValue());
+            poolStats.put(entry.getKey(), new long[2]);
+        }
+        for (GarbageCollectorMXBean bean : beans) {
+            if (bean instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) bean).addNotificationListener(this, null, null);
+                    emitters.add((NotificationEmitter) bean);
+                    continue;
+                } catch (Exception e) {
+                    logger.warn(e, "Fail to add gc notification listener to {}, use polling", bean.getName());
+                }
+            }
+            pollingGcs.add(new PollingGc(bean));
+        }
+    }
+
+    /**
+     * @return 是否所有回收器都通过通知采集，此时可以按GC类型区分年轻代、老年代GC
+     */
+    public boolean isNotificationEnabled() {
+        return !emitters.isEmpty() && pollingGcs.isEmpty();
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        try {
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            record(info.getGcName(), info.getGcAction(), info.getGcCause(), info.getGcInfo().getDuration(),
+                    info.getGcInfo().getMemoryUsageBeforeGc(), info.getGcInfo().getMemoryUsageAfterGc());
+        } catch (Exception e) {
+            logger.warn(e, "Fail to resolve gc notification");
+        }
+    }
+
+    /**
+     * 记录一次GC
+     *
+     * @param duration 耗时（ms）
+     * @param before GC前各内存池的使用量
+     * @param after GC后各内存池的使用量
+     */
+    synchronized void record(String name, String action, String cause, long duration,
+                             Map<String, MemoryUsage> before, Map<String, MemoryUsage> after) {
+        pauseStat(name, cause == null ? UNKNOWN_CAUSE : cause, kind(action)).add(duration, 1, duration);
+        if (before == null || after == null) {
+            return;
+        }
+        for (String pool : heapPools.keySet()) {
+            MemoryUsage beforeUsage = before.get(pool);
+            MemoryUsage afterUsage = after.get(pool);
+            if (beforeUsage == null || afterUsage == null) {
+                continue;
+            }
+            long[] stat = poolStats.get(pool);
+            Long last = lastUsage.get(pool);
+            if (last != null && beforeUsage.getUsed() > last) {
+                stat[0] += beforeUsage.getUsed() - last;
+            }
+            if (afterUsage.getUsed() > beforeUsage.getUsed()) {
+                stat[1] += afterUsage.getUsed() - beforeUsage.getUsed();
+            }
+            lastUsage.put(pool, afterUsage.getUsed());
+        }
+    }
+
+    @Override
+    public GcNotificationMetrics collect() {
+        Map<String, PauseStat> stats;
+        List<GcPoolMetrics> pools = new ArrayList<>();
+        long now = clock.getAsLong();
+        long interval = now - lastCollectTime;
+        lastCollectTime = now;
+        synchronized (this) {
+            for (PollingGc pollingGc : pollingGcs) {
+                pollingGc.poll();
+            }
+            stats = pauseStats;
+            pauseStats = new LinkedHashMap<>();
+            for (Map.Entry<String, String> pool : heapPools.entrySet()) {
+                long[] stat = poolStats.get(pool.getKey());
+                pools.add(new GcPoolMetrics(pool.getKey(), pool.getValue(), generations.get(pool.getKey()), stat[0], stat[1], interval));
+                stat[0] = 0;
+                stat[1] = 0;
+            }
+        }
+        List<GcPauseMetrics> pauses = new ArrayList<>(stats.size());
+        for (PauseStat stat : stats.values()) {
+            pauses.add(new GcPauseMetrics(stat.name, stat.cause, stat.kind, stat.count, stat.totalTime, stat.maxTime, stat.buckets));
+        }
+        return new GcNotificationMetrics(pauses, pools);
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                // 忽略
+            }
+        }
+        emitters.clear();
+    }
+
+    private PauseStat pauseStat(String name, String cause, String kind) {
+        String statKey = name + '\n' + cause;
+        PauseStat stat = pauseStats.get(statKey);
+        if (stat == null) {
+            stat = new PauseStat(name, cause, kind);
+            pauseStats.put(statKey, stat);
+        }
+        return stat;
+    }
+
+    static String kind(String action) {
+        if (MINOR_GC_ACTION.equals(action)) {
+            return GcPauseMetrics.KIND_MINOR;
+        } else if (MAJOR_GC_ACTION.equals(action)) {
+            return GcPauseMetrics.KIND_MAJOR;
+        } else if (action != null && action.toLowerCase(Locale.ROOT).contains(CYCLE_GC_ACTION)) {
+            return GcPauseMetrics.KIND_CYCLE;
+        }
+        return GcPauseMetrics.KIND_PAUSE;
+    }
+
+    static String key(String poolName) {
+        return poolName.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    /**
+     * 按内存池名称判断所属分代，只有一个堆内存池时（如ZHeap、Shenandoah）增长量即为分配量，按年轻代处理
+     */
+    static String generation(String poolName, int poolNum) {
+        String key = key(poolName);
+        if (key.contains("eden") || key.contains("young")) {
+            return GcPoolMetrics.GENERATION_YOUNG;
+        }
+        if (key.contains("old") || key.contains("tenured")) {
+            return GcPoolMetrics.GENERATION_OLD;
+        }
+        return poolNum == 1 ? GcPoolMetrics.GENERATION_YOUNG : GcPoolMetrics.GENERATION_OTHER;
+    }
+
+    private static Map<String, Long> heapPoolUsage() {
+        Map<String, Long> usage = new LinkedHashMap<>();
+        for (MemoryPoolMXBean bean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (bean.getType() == MemoryType.HEAP) {
+                MemoryUsage memoryUsage = bean.getUsage();
+                usage.put(bean.getName(), memoryUsage == null ? 0L : memoryUsage.getUsed());
+            }
+        }
+        return usage;
+    }
+
+    private static class PauseStat {
+        private final String name;
+        private final String cause;
+        private final String kind;
+        private final long[] buckets = new long[GcPauseMetrics.BUCKET_BOUNDS.length + 1];
+        private long count;
+        private long totalTime;
+        private long maxTime;
+
+        private PauseStat(String name, String cause, String kind) {
+            this.name = name;
+            this.cause = cause;
+            this.kind = kind;
+        }
+
+        /**
+         * @param time 累计耗时（ms）
+         * @param num 次数
+         * @param duration 计入分布的单次耗时（ms）
+         */
+        private void add(long time, long num, long duration) {
+            count += num;
+            totalTime += time;
+            maxTime = Math.max(maxTime, duration);
+            buckets[GcPauseMetrics.bucketIndex(duration)] += num;
+        }
+    }
+
+    /**
+     * 不支持通知的回收器，采集时计算次数及时间的增量
+     */
+    private class PollingGc {
+        private final GarbageCollectorMXBean bean;
+        private long lastCount;
+        private long lastTime;
+
+        private PollingGc(GarbageCollectorMXBean bean) {
+            this.bean = bean;
+            this.lastCount = Math.max(0, bean.getCollectionCount());
+            this.lastTime = Math.max(0, bean.getCollectionTime());
+        }
+
+        private void poll() {
+            long count = bean.getCollectionCount();
+            long time = bean.getCollectionTime();
+            if (count > lastCount) {
+                long num = count - lastCount;
+                long total = Math.max(0, time - lastTime);
+                // 只有累计时间，按平均耗时计入分布
+                pauseStat(bean.getName(), UNKNOWN_CAUSE, GcPauseMetrics.KIND_PAUSE).add(total, num, (total + num - 1) / num);
+            }
+            lastCount = Math.max(lastCount, count);
+            lastTime = Math.max(lastTime, time);
+        }
+    }
+}
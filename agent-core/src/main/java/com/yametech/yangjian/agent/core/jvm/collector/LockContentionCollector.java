@@ -0,0 +1,436 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.collector;
+
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.jvm.metrics.DeadlockMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.LockContentionMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.LockTopMetrics;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计一个时间片内的锁竞争，按锁类型及持有者栈帧聚合后输出前N个：
+ * 开启线程竞争监控后，每次采集通过getThreadInfo(ids, 0)（不获取堆栈）获取所有线程的BLOCKED/WAITED次数及时间，与上次采集的值相减得到增量；
+ * 采集时处于BLOCKED状态（synchronized）的线程，其BLOCKED增量计入正在等待的monitor，上次采集时在等待、本次已不在等待的线程，
+ * 其增量（部分虚拟机在等待结束时才累加时间）计入上次等待的monitor；
+ * WAITED包含sleep、Object.wait、Condition.await等所有等待，所以等待有持有者的java.util.concurrent锁（如ReentrantLock）的线程只计入该锁的等待：
+ * 第一次发现等待时计1次，连续两次采集都在等待同一个锁（期间WAITED次数不变）时计入两次采集的间隔时间，
+ * 等待结束且期间没有新的等待时计入结束前的时间（不超过采集间隔）；其他增量只计入总数，
+ * 所以两次采集之间开始并结束的竞争、以及采集前已退出的线程只体现在总数中；
+ * 只对锁的持有者获取堆栈：monitor取持有者获取该锁的栈帧，synchronizer取持有者正在执行的第一个非JDK栈帧；
+ * 至少两个线程在等待锁时才调用findDeadlockedThreads检测死锁。非线程安全，由定时任务调用
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class LockContentionCollector implements IMetricsCollector<LockTopMetrics> {
+
+    private static final ILogger logger = LoggerFactory.getLogger(LockContentionCollector.class);
+
+    private static final String UNKNOWN = "unknown";
+
+    private static final String[] JDK_PACKAGES = {"java.", "javax.", "sun.", "jdk.", "com.sun."};
+
+    private final ThreadMXBean threadMXBean;
+
+    private final int topN;
+
+    private final boolean lockedMonitorsSupported;
+
+    private final boolean synchronizerSupported;
+
+    /**
+     * 线程ID -> 线程上次采集的数据
+     */
+    private final Map<Long, ThreadState> threads = new HashMap<>();
+
+    private Set<Long> lastDeadlocked = Collections.emptySet();
+
+    private int generation;
+
+    private long lastCollectNanos = System.nanoTime();
+
+    public LockContentionCollector(int topN) {
+        this(ManagementFactory.getThreadMXBean(), topN);
+    }
+
+    LockContentionCollector(ThreadMXBean threadMXBean, int topN) {
+        this.threadMXBean = threadMXBean;
+        this.topN = topN;
+        this.lockedMonitorsSupported = threadMXBean.isObjectMonitorUsageSupported();
+        this.synchronizerSupported = threadMXBean.isSynchronizerUsageSupported();
+        if (!enableContentionMonitoring()) {
+            logger.warn("Thread contention monitoring disabled, blocked/waited time is not available");
+        }
+        // 记录初始值，之后的采集只计算增量
+        collect();
+    }
+
+    @Override
+    public LockTopMetrics collect() {
+        generation++;
+        long now = System.nanoTime();
+        long intervalMillis = TimeUnit.NANOSECONDS.toMillis(now - lastCollectNanos);
+        lastCollectNanos = now;
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), 0);
+        List<ThreadInfo> contending = new ArrayList<>();
+        Set<Long> ownerIds = new HashSet<>();
+        long blockedCount = 0;
+        long blockedTime = 0;
+        for (ThreadInfo info : infos) {
+            if (info == null) {// 已退出
+                continue;
+            }
+            ThreadState state = threads.get(info.getThreadId());
+            if (state == null) {
+                state = new ThreadState();
+                threads.put(info.getThreadId(), state);
+            }
+            state.generation = generation;
+            // 第一次采集只记录初始值，之后新出现的线程的计数都发生在上次采集之后
+            state.update(info, generation == 1);
+            blockedCount += state.blockedCountDelta;
+            blockedTime += state.blockedTimeDelta;
+            if (isContending(info)) {
+                contending.add(info);
+                if (info.getLockOwnerId() != -1) {
+                    ownerIds.add(info.getLockOwnerId());
+                }
+            }
+        }
+        // 删除已退出的线程
+        Iterator<ThreadState> iterator = threads.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().generation != generation) {
+                iterator.remove();
+            }
+        }
+
+        Map<LockKey, LockState> locks = new HashMap<>();
+        Map<Long, ThreadInfo> owners = owners(ownerIds);
+        for (ThreadInfo info : contending) {
+            String type = info.getThreadState() == Thread.State.BLOCKED ? LockContentionMetrics.TYPE_MONITOR : LockContentionMetrics.TYPE_SYNCHRONIZER;
+            LockKey key = new LockKey(type, info.getLockInfo().getClassName(),
+                    ownerFrame(type, info.getLockInfo(), owners.get(info.getLockOwnerId())));
+            LockState lock = locks.computeIfAbsent(key, LockState::new);
+            lock.threadNum++;
+            ThreadState state = threads.get(info.getThreadId());
+            lock.add(state, intervalMillis);
+            state.currentKey = key;
+        }
+        for (ThreadState state : threads.values()) {
+            if (state.currentKey == null && state.lastKey != null) {
+                locks.computeIfAbsent(state.lastKey, LockState::new).addEnded(state, intervalMillis);
+            }
+            state.lastKey = state.currentKey;
+            state.currentKey = null;
+        }
+        return new LockTopMetrics(top(locks.values(), LockContentionMetrics.TYPE_MONITOR),
+                top(locks.values(), LockContentionMetrics.TYPE_SYNCHRONIZER),
+                contending.size() < 2 ? noDeadlock() : deadlocks(), blockedCount, blockedTime);
+    }
+
+    /**
+     * 线程是否在等待synchronized锁或有持有者的java.util.concurrent锁（Condition.await、Object.wait等没有持有者）
+     */
+    private static boolean isContending(ThreadInfo info) {
+        if (info.getLockInfo() == null) {
+            return false;
+        }
+        Thread.State state = info.getThreadState();
+        return state == Thread.State.BLOCKED
+                || ((state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING) && info.getLockOwnerId() != -1);
+    }
+
+    /**
+     * 获取锁持有者的堆栈及持有的monitor
+     */
+    private Map<Long, ThreadInfo> owners(Set<Long> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        long[] ids = new long[ownerIds.size()];
+        int i = 0;
+        for (Long id : ownerIds) {
+            ids[i++] = id;
+        }
+        Map<Long, ThreadInfo> owners = new HashMap<>();
+        for (ThreadInfo info : threadMXBean.getThreadInfo(ids, lockedMonitorsSupported, false)) {
+            if (info != null) {
+                owners.put(info.getThreadId(), info);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * monitor：持有者最早获取该锁（重入时最外层）的栈帧；synchronizer或未找到时：持有者正在执行的第一个非JDK栈帧
+     */
+    static String ownerFrame(String type, LockInfo lock, ThreadInfo owner) {
+        if (owner == null) {
+            return UNKNOWN;
+        }
+        if (LockContentionMetrics.TYPE_MONITOR.equals(type) && owner.getLockedMonitors() != null) {
+            StackTraceElement lockedFrame = null;
+            for (MonitorInfo monitor : owner.getLockedMonitors()) {
+                if (monitor.getIdentityHashCode() == lock.getIdentityHashCode()
+                        && monitor.getClassName().equals(lock.getClassName()) && monitor.getLockedStackFrame() != null) {
+                    lockedFrame = monitor.getLockedStackFrame();
+                }
+            }
+            if (lockedFrame != null) {
+                return frame(lockedFrame);
+            }
+        }
+        StackTraceElement[] stack = owner.getStackTrace();
+        for (StackTraceElement element : stack) {
+            if (!isJdkClass(element.getClassName())) {
+                return frame(element);
+            }
+        }
+        return stack.length > 0 ? frame(stack[0]) : UNKNOWN;
+    }
+
+    private static boolean isJdkClass(String className) {
+        for (String jdkPackage : JDK_PACKAGES) {
+            if (className.startsWith(jdkPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String frame(StackTraceElement element) {
+        String frame = element.getClassName() + '.' + element.getMethodName();
+        return element.getLineNumber() >= 0 ? frame + ':' + element.getLineNumber() : frame;
+    }
+
+    private List<DeadlockMetrics> noDeadlock() {
+        lastDeadlocked = Collections.emptySet();
+        return Collections.emptyList();
+    }
+
+    private List<DeadlockMetrics> deadlocks() {
+        long[] ids;
+        try {
+            ids = synchronizerSupported ? threadMXBean.findDeadlockedThreads() : threadMXBean.findMonitorDeadlockedThreads();
+        } catch (Exception e) {
+            logger.warn(e, "Fail to find deadlocked threads");
+            return noDeadlock();
+        }
+        if (ids == null || ids.length == 0) {
+            return noDeadlock();
+        }
+        List<DeadlockMetrics> deadlocks = new ArrayList<>(ids.length);
+        for (ThreadInfo info : threadMXBean.getThreadInfo(ids, 0)) {
+            if (info != null) {
+                deadlocks.add(new DeadlockMetrics(info.getThreadName(), info.getLockName(), info.getLockOwnerName()));
+            }
+        }
+        Set<Long> deadlocked = new HashSet<>();
+        for (long id : ids) {
+            deadlocked.add(id);
+        }
+        if (!deadlocked.equals(lastDeadlocked)) {
+            StringBuilder builder = new StringBuilder();
+            for (DeadlockMetrics deadlock : deadlocks) {
+                builder.append(System.lineSeparator()).append(deadlock.getThreadName()).append(" waiting for ")
+                        .append(deadlock.getLockName()).append(" held by ").append(deadlock.getOwnerName());
+            }
+            logger.warn("Deadlock found: {}", builder);
+        }
+        lastDeadlocked = deadlocked;
+        return deadlocks;
+    }
+
+    /**
+     * 按竞争时间、次数、等待线程数降序取前N个，没有竞争的不输出
+     */
+    private List<LockContentionMetrics> top(Collection<LockState> locks, String type) {
+        if (topN <= 0) {
+            return Collections.emptyList();
+        }
+        List<LockState> sorted = new ArrayList<>();
+        for (LockState lock : locks) {
+            if (lock.key.type.equals(type) && (lock.threadNum > 0 || lock.count() > 0 || lock.time() > 0)) {
+                sorted.add(lock);
+            }
+        }
+        sorted.sort(Comparator.comparingLong(LockState::time)
+                .thenComparingLong(LockState::count)
+                .thenComparingInt(lock -> lock.threadNum)
+                .reversed());
+        List<LockContentionMetrics> metrics = new ArrayList<>(Math.min(topN, sorted.size()));
+        for (LockState lock : sorted.subList(0, Math.min(topN, sorted.size()))) {
+            metrics.add(new LockContentionMetrics(lock.key.type, lock.key.lockClass, lock.key.ownerFrame, lock.threadNum,
+                    lock.blockedCount, lock.blockedTime, lock.waitedCount, lock.waitedTime));
+        }
+        return metrics;
+    }
+
+    private boolean enableContentionMonitoring() {
+        try {
+            if (!threadMXBean.isThreadContentionMonitoringSupported()) {
+                return false;
+            }
+            if (!threadMXBean.isThreadContentionMonitoringEnabled()) {
+                threadMXBean.setThreadContentionMonitoringEnabled(true);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn(e, "Fail to enable thread contention monitoring");
+            return false;
+        }
+    }
+
+    private static long delta(long current, long last) {
+        return current < 0 ? 0 : Math.max(0, current - last);
+    }
+
+    private static class ThreadState {
+        private int generation;
+        private long blockedCount;
+        private long blockedTime;
+        private long waitedCount;
+        private long waitedTime;
+        private long blockedCountDelta;
+        private long blockedTimeDelta;
+        private long waitedCountDelta;
+        private long waitedTimeDelta;
+        /**
+         * 本次采集时正在等待的锁
+         */
+        private LockKey currentKey;
+        /**
+         * 上次采集时正在等待的锁
+         */
+        private LockKey lastKey;
+
+        /**
+         * 是否与上次采集时在同一次等待中：等待同一个锁且期间没有新的等待
+         */
+        private boolean isSameWait(LockKey key) {
+            return key.equals(lastKey) && waitedCountDelta == 0;
+        }
+
+        private void update(ThreadInfo info, boolean initial) {
+            blockedCountDelta = initial ? 0 : delta(info.getBlockedCount(), blockedCount);
+            blockedTimeDelta = initial ? 0 : delta(info.getBlockedTime(), blockedTime);
+            waitedCountDelta = initial ? 0 : delta(info.getWaitedCount(), waitedCount);
+            waitedTimeDelta = initial ? 0 : delta(info.getWaitedTime(), waitedTime);
+            blockedCount = Math.max(blockedCount, info.getBlockedCount());
+            blockedTime = Math.max(blockedTime, info.getBlockedTime());
+            waitedCount = Math.max(waitedCount, info.getWaitedCount());
+            waitedTime = Math.max(waitedTime, info.getWaitedTime());
+        }
+    }
+
+    private static class LockKey {
+        private final String type;
+        private final String lockClass;
+        private final String ownerFrame;
+
+        private LockKey(String type, String lockClass, String ownerFrame) {
+            this.type = type;
+            this.lockClass = lockClass;
+            this.ownerFrame = ownerFrame;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LockKey)) {
+                return false;
+            }
+            LockKey that = (LockKey) o;
+            return type.equals(that.type) && lockClass.equals(that.lockClass) && ownerFrame.equals(that.ownerFrame);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, lockClass, ownerFrame);
+        }
+    }
+
+    private static class LockState {
+        private final LockKey key;
+        private int threadNum;
+        private long blockedCount;
+        private long blockedTime;
+        private long waitedCount;
+        private long waitedTime;
+
+        private LockState(LockKey key) {
+            this.key = key;
+        }
+
+        /**
+         * 正在等待该锁的线程：monitor计入BLOCKED增量；synchronizer（LockSupport.park）新的等待计1次，
+         * 上次采集时已在等待则计入采集间隔，WAITED增量中的其他等待不计入
+         */
+        private void add(ThreadState state, long intervalMillis) {
+            if (LockContentionMetrics.TYPE_MONITOR.equals(key.type)) {
+                blockedCount += state.blockedCountDelta;
+                blockedTime += state.blockedTimeDelta;
+            } else if (state.isSameWait(key)) {
+                waitedTime += intervalMillis;
+            } else {
+                waitedCount++;
+            }
+        }
+
+        /**
+         * 上次采集时在等待该锁、本次已结束的线程：monitor计入BLOCKED增量；
+         * synchronizer只在期间没有新的等待时计入WAITED时间增量，不超过采集间隔（之前的时间已计入）
+         */
+        private void addEnded(ThreadState state, long intervalMillis) {
+            if (LockContentionMetrics.TYPE_MONITOR.equals(key.type)) {
+                blockedCount += state.blockedCountDelta;
+                blockedTime += state.blockedTimeDelta;
+            } else if (state.waitedCountDelta == 0) {
+                waitedTime += Math.min(state.waitedTimeDelta, intervalMillis);
+            }
+        }
+
+        private long time() {
+            return blockedTime + waitedTime;
+        }
+
+        private long count() {
+            return blockedCount + waitedCount;
+        }
+    }
+}
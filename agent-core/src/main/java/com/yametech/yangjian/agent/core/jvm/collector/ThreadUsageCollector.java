@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.collector;
+
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.jvm.metrics.ThreadTopMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.ThreadUsageMetrics;
+import com.yametech.yangjian.agent.core.util.ThreadNameUtil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按线程及线程池统计一个时间片内的CPU时间及内存分配，输出前N个：
+ * 通过com.sun.management.ThreadMXBean的批量接口一次获取所有线程的CPU时间及已分配内存，与上次采集的值相减得到增量；
+ * 线程名只在第一次出现时通过getThreadInfo(ids, 0)获取（不获取堆栈），之后缓存，所以线程数很多时每次采集只有两次批量调用；
+ * 线程池名为线程名去掉末尾的数字及分隔符（如pool-3-thread-7为pool-3-thread）。非线程安全，由定时任务调用
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class ThreadUsageCollector implements IMetricsCollector<ThreadTopMetrics> {
+
+    private static final ILogger logger = LoggerFactory.getLogger(ThreadUsageCollector.class);
+
+    private final ThreadMXBean threadMXBean;
+
+    /**
+     * 支持批量获取CPU时间及已分配内存时不为null
+     */
+    private final com.sun.management.ThreadMXBean extThreadMXBean;
+
+    private final int topN;
+
+    private final LongSupplier nanoClock;
+
+    private final boolean cpuEnabled;
+
+    private final boolean allocationEnabled;
+
+    /**
+     * 线程ID -> 线程上次采集的数据
+     */
+    private final Map<Long, ThreadState> threads = new HashMap<>();
+
+    private long lastTime;
+
+    private int generation;
+
+    public ThreadUsageCollector(int topN) {
+        this(ManagementFactory.getThreadMXBean(), topN, System::nanoTime);
+    }
+
+    ThreadUsageCollector(ThreadMXBean threadMXBean, int topN, LongSupplier nanoClock) {
+        this.threadMXBean = threadMXBean;
+        this.extThreadMXBean = threadMXBean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threadMXBean : null;
+        this.topN = topN;
+        this.nanoClock = nanoClock;
+        this.cpuEnabled = enableCpuTime();
+        this.allocationEnabled = enableAllocatedMemory();
+        if (!cpuEnabled || !allocationEnabled) {
+            logger.warn("Thread cpu time enabled: {}, thread allocated memory enabled: {}", cpuEnabled, allocationEnabled);
+        }
+        // 记录初始值，之后的采集只计算增量
+        this.lastTime = nanoClock.getAsLong();
+        sample();
+    }
+
+    @Override
+    public ThreadTopMetrics collect() {
+        long now = nanoClock.getAsLong();
+        long interval = now - lastTime;
+        lastTime = now;
+        Collection<ThreadState> states = sample();
+        Map<String, ThreadState> pools = new HashMap<>();
+        for (ThreadState state : states) {
+            ThreadState pool = pools.get(state.pool);
+            if (pool == null) {
+                pool = new ThreadState(state.pool, state.pool);
+                pool.threadNum = 0;
+                pools.put(state.pool, pool);
+            }
+            pool.threadNum++;
+            pool.cpuDelta += state.cpuDelta;
+            pool.allocatedDelta += state.allocatedDelta;
+        }
+        return new ThreadTopMetrics(
+                top(pools.values(), s -> s.cpuDelta, interval),
+                top(pools.values(), s -> s.allocatedDelta, interval),
+                top(states, s -> s.cpuDelta, interval),
+                top(states, s -> s.allocatedDelta, interval));
+    }
+
+    /**
+     * 获取所有线程当前的CPU时间及已分配内存，计算与上次的增量
+     *
+     * @return 本次采集到的线程
+     */
+    private Collection<ThreadState> sample() {
+        generation++;
+        long[] ids = threadMXBean.getAllThreadIds();
+        long[] cpuTimes = cpuTimes(ids);
+        long[] allocatedBytes = allocatedBytes(ids);
+        resolveNames(ids);
+        List<ThreadState> states = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ThreadState state = threads.get(ids[i]);
+            if (state == null) {// 获取线程名前已退出
+                continue;
+            }
+            state.generation = generation;
+            state.cpuDelta = delta(cpuTimes[i], state.cpuTime);
+            state.allocatedDelta = delta(allocatedBytes[i], state.allocatedBytes);
+            state.cpuTime = Math.max(state.cpuTime, cpuTimes[i]);
+            state.allocatedBytes = Math.max(state.allocatedBytes, allocatedBytes[i]);
+            states.add(state);
+        }
+        // 删除已退出的线程
+        Iterator<ThreadState> iterator = threads.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().generation != generation) {
+                iterator.remove();
+            }
+        }
+        return states;
+    }
+
+    /**
+     * 获取新出现的线程的线程名
+     */
+    private void resolveNames(long[] ids) {
+        long[] newIds = new long[ids.length];
+        int num = 0;
+        for (long id : ids) {
+            if (!threads.containsKey(id)) {
+                newIds[num++] = id;
+            }
+        }
+        if (num == 0) {
+            return;
+        }
+        long[] queryIds = num == ids.length ? newIds : Arrays.copyOf(newIds, num);
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(queryIds, 0);
+        for (ThreadInfo info : infos) {
+            if (info != null) {
+                threads.put(info.getThreadId(), new ThreadState(info.getThreadName(), ThreadNameUtil.poolName(info.getThreadName())));
+            }
+        }
+    }
+
+    private long[] cpuTimes(long[] ids) {
+        if (!cpuEnabled) {
+            return filled(ids.length);
+        }
+        if (extThreadMXBean != null) {
+            return extThreadMXBean.getThreadCpuTime(ids);
+        }
+        long[] values = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = threadMXBean.getThreadCpuTime(ids[i]);
+        }
+        return values;
+    }
+
+    private long[] allocatedBytes(long[] ids) {
+        return allocationEnabled ? extThreadMXBean.getThreadAllocatedBytes(ids) : filled(ids.length);
+    }
+
+    private boolean enableCpuTime() {
+        try {
+            if (!threadMXBean.isThreadCpuTimeSupported()) {
+                return false;
+            }
+            if (!threadMXBean.isThreadCpuTimeEnabled()) {
+                threadMXBean.setThreadCpuTimeEnabled(true);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn(e, "Fail to enable thread cpu time");
+            return false;
+        }
+    }
+
+    private boolean enableAllocatedMemory() {
+        try {
+            if (extThreadMXBean == null || !extThreadMXBean.isThreadAllocatedMemorySupported()) {
+                return false;
+            }
+            if (!extThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                extThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn(e, "Fail to enable thread allocated memory");
+            return false;
+        }
+    }
+
+    /**
+     * 按value降序取前N个，value为0的不输出
+     */
+    private List<ThreadUsageMetrics> top(Collection<ThreadState> states, ToLongFunction<ThreadState> value, long interval) {
+        if (topN <= 0) {
+            return Collections.emptyList();
+        }
+        Comparator<ThreadState> comparator = Comparator.comparingLong(value);
+        PriorityQueue<ThreadState> queue = new PriorityQueue<>(topN + 1, comparator);
+        for (ThreadState state : states) {
+            if (value.applyAsLong(state) <= 0) {
+                continue;
+            }
+            if (queue.size() < topN) {
+                queue.add(state);
+            } else if (comparator.compare(state, queue.peek()) > 0) {
+                queue.poll();
+                queue.add(state);
+            }
+        }
+        List<ThreadState> sorted = new ArrayList<>(queue);
+        sorted.sort(comparator.reversed());
+        List<ThreadUsageMetrics> metrics = new ArrayList<>(sorted.size());
+        for (ThreadState state : sorted) {
+            metrics.add(new ThreadUsageMetrics(state.name, state.threadNum, state.cpuDelta, state.allocatedDelta, interval));
+        }
+        return metrics;
+    }
+
+    private static long delta(long current, long last) {
+        return current < 0 ? 0 : Math.max(0, current - last);
+    }
+
+    private static long[] filled(int length) {
+        long[] values = new long[length];
+        Arrays.fill(values, -1);
+        return values;
+    }
+
+    private static class ThreadState {
+        private final String name;
+        private final String pool;
+        private int threadNum = 1;
+        private int generation;
+        private long cpuTime;
+        private long allocatedBytes;
+        private long cpuDelta;
+        private long allocatedDelta;
+
+        private ThreadState(String name, String pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+}
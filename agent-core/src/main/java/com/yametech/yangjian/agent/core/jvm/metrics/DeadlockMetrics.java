@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+/**
+ * 死锁中的一个线程及其等待的锁
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class DeadlockMetrics implements IMetrics {
+    /**
+     * 线程名
+     */
+    private final String threadName;
+    /**
+     * 等待的锁，格式为类名@identityHashCode
+     */
+    private final String lockName;
+    /**
+     * 锁的持有者线程名
+     */
+    private final String ownerName;
+
+    public DeadlockMetrics(String threadName, String lockName, String ownerName) {
+        this.threadName = threadName;
+        this.lockName = lockName;
+        this.ownerName = ownerName;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getLockName() {
+        return lockName;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+import java.util.List;
+
+/**
+ * 一个时间片内通过GC通知（不支持通知的回收器为轮询）收集的GC数据
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class GcNotificationMetrics implements IMetrics {
+    /**
+     * 按回收器及GC原因统计的耗时分布
+     */
+    private final List<GcPauseMetrics> pauses;
+    /**
+     * 各堆内存池的分配及晋升数据
+     */
+    private final List<GcPoolMetrics> pools;
+
+    public GcNotificationMetrics(List<GcPauseMetrics> pauses, List<GcPoolMetrics> pools) {
+        this.pauses = pauses;
+        this.pools = pools;
+    }
+
+    /**
+     * @return 按GC类型（见GcPauseMetrics.getKind）转换的年轻代、老年代GC次数及时间
+     */
+    public JVMGcMetrics toJVMGcMetrics() {
+        long youngGcCount = 0L;
+        long youngGcTime = 0L;
+        long fullGcCount = 0L;
+        long fullGcTime = 0L;
+        for (GcPauseMetrics pause : pauses) {
+            if (GcPauseMetrics.KIND_MINOR.equals(pause.getKind())) {
+                youngGcCount += pause.getCount();
+                youngGcTime += pause.getTotalTime();
+            } else if (GcPauseMetrics.KIND_MAJOR.equals(pause.getKind())) {
+                fullGcCount += pause.getCount();
+                fullGcTime += pause.getTotalTime();
+            }
+        }
+        return new JVMGcMetrics(youngGcCount, youngGcTime, fullGcCount, fullGcTime);
+    }
+
+    public List<GcPauseMetrics> getPauses() {
+        return pauses;
+    }
+
+    public List<GcPoolMetrics> getPools() {
+        return pools;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+/**
+ * 一个时间片内某个垃圾回收器按GC原因统计的停顿（或并发周期）耗时分布
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class GcPauseMetrics implements IMetrics {
+    public static final String KIND_MINOR = "minor";
+    public static final String KIND_MAJOR = "major";
+    public static final String KIND_PAUSE = "pause";
+    public static final String KIND_CYCLE = "cycle";
+    /**
+     * 耗时分布的各区间上限（ms），最后一个区间为大于最大上限的部分
+     */
+    public static final long[] BUCKET_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+    /**
+     * 垃圾回收器名称，如G1 Young Generation、ZGC Pauses
+     */
+    private final String name;
+    /**
+     * GC原因，如Allocation Failure、System.gc()，无法获取时为unknown
+     */
+    private final String cause;
+    /**
+     * 类型：minor、major、pause（其他停顿）、cycle（并发周期，不是停顿时间）
+     */
+    private final String kind;
+    /**
+     * 一个时间片内的次数
+     */
+    private final long count;
+    /**
+     * 一个时间片内的累计耗时（ms）
+     */
+    private final long totalTime;
+    /**
+     * 一个时间片内的最大耗时（ms）
+     */
+    private final long maxTime;
+    /**
+     * 各区间内的次数（非累计），长度为BUCKET_BOUNDS.length + 1
+     */
+    private final long[] buckets;
+
+    public GcPauseMetrics(String name, String cause, String kind, long count, long totalTime, long maxTime, long[] buckets) {
+        this.name = name;
+        this.cause = cause;
+        this.kind = kind;
+        this.count = count;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+        this.buckets = buckets;
+    }
+
+    /**
+     * @return 耗时所在区间的下标
+     */
+    public static int bucketIndex(long millis) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (millis <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCause() {
+        return cause;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public long[] getBuckets() {
+        return buckets;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+/**
+ * 一个时间片内根据GC前后内存池使用量计算的分配及晋升数据
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class GcPoolMetrics implements IMetrics {
+    /**
+     * 年轻代（eden）内存池，只有分配速率有意义；只有一个堆内存池的回收器（如ZGC、Shenandoah）也按年轻代处理
+     */
+    public static final String GENERATION_YOUNG = "young";
+    /**
+     * 老年代内存池，只有晋升速率有意义
+     */
+    public static final String GENERATION_OLD = "old";
+    /**
+     * 其他内存池（如survivor），不计算速率
+     */
+    public static final String GENERATION_OTHER = "other";
+    /**
+     * 内存池名称，如G1 Eden Space
+     */
+    private final String name;
+    /**
+     * 用于上报的名称，小写且非字母数字替换为下划线，如g1_eden_space
+     */
+    private final String key;
+    /**
+     * 所属分代：GENERATION_YOUNG、GENERATION_OLD、GENERATION_OTHER
+     */
+    private final String generation;
+    /**
+     * 两次GC之间内存池增长的字节数（本次GC前使用量 - 上次GC后使用量），年轻代内存池即为分配量
+     */
+    private final long allocated;
+    /**
+     * GC过程中内存池增长的字节数（GC后使用量 - GC前使用量），老年代内存池即为晋升量
+     */
+    private final long promoted;
+    /**
+     * 分配速率（byte/s）
+     */
+    private final long allocationRate;
+    /**
+     * 晋升速率（byte/s）
+     */
+    private final long promotionRate;
+
+    public GcPoolMetrics(String name, String key, String generation, long allocated, long promoted, long intervalMillis) {
+        this.name = name;
+        this.key = key;
+        this.generation = generation;
+        this.allocated = allocated;
+        this.promoted = promoted;
+        this.allocationRate = intervalMillis > 0 ? allocated * 1000 / intervalMillis : 0;
+        this.promotionRate = intervalMillis > 0 ? promoted * 1000 / intervalMillis : 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getGeneration() {
+        return generation;
+    }
+
+    public boolean isYoung() {
+        return GENERATION_YOUNG.equals(generation);
+    }
+
+    public boolean isOld() {
+        return GENERATION_OLD.equals(generation);
+    }
+
+    public long getAllocated() {
+        return allocated;
+    }
+
+    public long getPromoted() {
+        return promoted;
+    }
+
+    public long getAllocationRate() {
+        return allocationRate;
+    }
+
+    public long getPromotionRate() {
+        return promotionRate;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+/**
+ * 一个时间片内按锁类型及持有者栈帧聚合的锁竞争
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class LockContentionMetrics implements IMetrics {
+    public static final String TYPE_MONITOR = "monitor";
+    public static final String TYPE_SYNCHRONIZER = "synchronizer";
+    /**
+     * monitor为synchronized锁，synchronizer为java.util.concurrent中有持有者的锁（如ReentrantLock）
+     */
+    private final String type;
+    /**
+     * 锁对象的类名，如java.util.concurrent.locks.ReentrantLock$NonfairSync
+     */
+    private final String lockClass;
+    /**
+     * 持有者获取锁的栈帧（monitor）或持有者正在执行的第一个非JDK栈帧（synchronizer），未知时为unknown
+     */
+    private final String ownerFrame;
+    /**
+     * 采集时正在等待该锁的线程数
+     */
+    private final int threads;
+    /**
+     * 一个时间片内进入BLOCKED状态的次数（monitor）
+     */
+    private final long blockedCount;
+    /**
+     * 一个时间片内BLOCKED状态的时间（ms），未开启线程竞争监控时为0
+     */
+    private final long blockedTime;
+    /**
+     * 一个时间片内进入WAITING/TIMED_WAITING状态的次数（synchronizer）
+     */
+    private final long waitedCount;
+    /**
+     * 一个时间片内WAITING/TIMED_WAITING状态的时间（ms），未开启线程竞争监控时为0
+     */
+    private final long waitedTime;
+
+    public LockContentionMetrics(String type, String lockClass, String ownerFrame, int threads,
+                                 long blockedCount, long blockedTime, long waitedCount, long waitedTime) {
+        this.type = type;
+        this.lockClass = lockClass;
+        this.ownerFrame = ownerFrame;
+        this.threads = threads;
+        this.blockedCount = blockedCount;
+        this.blockedTime = blockedTime;
+        this.waitedCount = waitedCount;
+        this.waitedTime = waitedTime;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getLockClass() {
+        return lockClass;
+    }
+
+    public String getOwnerFrame() {
+        return ownerFrame;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    public long getBlockedTime() {
+        return blockedTime;
+    }
+
+    public long getWaitedCount() {
+        return waitedCount;
+    }
+
+    public long getWaitedTime() {
+        return waitedTime;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+import java.util.List;
+
+/**
+ * 一个时间片内竞争最多的前N个monitor及java.util.concurrent锁，以及当前的死锁线程
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class LockTopMetrics implements IMetrics {
+    /**
+     * 按竞争时间、次数降序的synchronized锁
+     */
+    private final List<LockContentionMetrics> monitors;
+    /**
+     * 按竞争时间、次数降序的java.util.concurrent锁
+     */
+    private final List<LockContentionMetrics> synchronizers;
+    /**
+     * 死锁的线程，没有死锁时为空
+     */
+    private final List<DeadlockMetrics> deadlocks;
+    /**
+     * 一个时间片内所有线程进入BLOCKED状态的次数，包含采集时未观察到的竞争
+     */
+    private final long blockedCount;
+    /**
+     * 一个时间片内所有线程BLOCKED状态的时间（ms）
+     */
+    private final long blockedTime;
+
+    public LockTopMetrics(List<LockContentionMetrics> monitors, List<LockContentionMetrics> synchronizers,
+                          List<DeadlockMetrics> deadlocks, long blockedCount, long blockedTime) {
+        this.monitors = monitors;
+        this.synchronizers = synchronizers;
+        this.deadlocks = deadlocks;
+        this.blockedCount = blockedCount;
+        this.blockedTime = blockedTime;
+    }
+
+    public List<LockContentionMetrics> getMonitors() {
+        return monitors;
+    }
+
+    public List<LockContentionMetrics> getSynchronizers() {
+        return synchronizers;
+    }
+
+    public List<DeadlockMetrics> getDeadlocks() {
+        return deadlocks;
+    }
+
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    public long getBlockedTime() {
+        return blockedTime;
+    }
+}
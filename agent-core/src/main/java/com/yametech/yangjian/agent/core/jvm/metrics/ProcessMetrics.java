@@ -30,6 +30,30 @@ public class ProcessMetrics implements IMetrics {
      * 系统总内存
      */
     private long sysMemTotal = 0L;
+    /**
+     * 进程使用的swap（kB）
+     */
+    private long swapUsage = 0L;
+    /**
+     * 采集周期内的主动上下文切换次数
+     */
+    private long voluntaryCtxtSwitches = 0L;
+    /**
+     * 采集周期内的被动上下文切换次数
+     */
+    private long nonvoluntaryCtxtSwitches = 0L;
+    /**
+     * 采集周期内从存储层读取的字节数
+     */
+    private long readBytes = 0L;
+    /**
+     * 采集周期内写入存储层的字节数
+     */
+    private long writeBytes = 0L;
+    /**
+     * 采集周期内所有线程在运行队列中等待CPU的时间（ms）
+     */
+    private long runQueueWait = 0L;
 
     public double getCpuUsagePercent() {
         return cpuUsagePercent;
@@ -54,4 +78,52 @@ public class ProcessMetrics implements IMetrics {
     public void setSysMemTotal(long sysMemTotal) {
         this.sysMemTotal = sysMemTotal;
     }
+
+    public long getSwapUsage() {
+        return swapUsage;
+    }
+
+    public void setSwapUsage(long swapUsage) {
+        this.swapUsage = swapUsage;
+    }
+
+    public long getVoluntaryCtxtSwitches() {
+        return voluntaryCtxtSwitches;
+    }
+
+    public void setVoluntaryCtxtSwitches(long voluntaryCtxtSwitches) {
+        this.voluntaryCtxtSwitches = voluntaryCtxtSwitches;
+    }
+
+    public long getNonvoluntaryCtxtSwitches() {
+        return nonvoluntaryCtxtSwitches;
+    }
+
+    public void setNonvoluntaryCtxtSwitches(long nonvoluntaryCtxtSwitches) {
+        this.nonvoluntaryCtxtSwitches = nonvoluntaryCtxtSwitches;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public void setReadBytes(long readBytes) {
+        this.readBytes = readBytes;
+    }
+
+    public long getWriteBytes() {
+        return writeBytes;
+    }
+
+    public void setWriteBytes(long writeBytes) {
+        this.writeBytes = writeBytes;
+    }
+
+    public long getRunQueueWait() {
+        return runQueueWait;
+    }
+
+    public void setRunQueueWait(long runQueueWait) {
+        this.runQueueWait = runQueueWait;
+    }
 }
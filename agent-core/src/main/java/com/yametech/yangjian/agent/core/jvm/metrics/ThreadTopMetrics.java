@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+import java.util.List;
+
+/**
+ * 一个时间片内CPU时间及内存分配最多的前N个线程池及线程
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ThreadTopMetrics implements IMetrics {
+    /**
+     * 按CPU时间降序的线程池
+     */
+    private final List<ThreadUsageMetrics> poolsByCpu;
+    /**
+     * 按内存分配降序的线程池
+     */
+    private final List<ThreadUsageMetrics> poolsByAllocation;
+    /**
+     * 按CPU时间降序的线程
+     */
+    private final List<ThreadUsageMetrics> threadsByCpu;
+    /**
+     * 按内存分配降序的线程
+     */
+    private final List<ThreadUsageMetrics> threadsByAllocation;
+
+    public ThreadTopMetrics(List<ThreadUsageMetrics> poolsByCpu, List<ThreadUsageMetrics> poolsByAllocation,
+                            List<ThreadUsageMetrics> threadsByCpu, List<ThreadUsageMetrics> threadsByAllocation) {
+        this.poolsByCpu = poolsByCpu;
+        this.poolsByAllocation = poolsByAllocation;
+        this.threadsByCpu = threadsByCpu;
+        this.threadsByAllocation = threadsByAllocation;
+    }
+
+    public List<ThreadUsageMetrics> getPoolsByCpu() {
+        return poolsByCpu;
+    }
+
+    public List<ThreadUsageMetrics> getPoolsByAllocation() {
+        return poolsByAllocation;
+    }
+
+    public List<ThreadUsageMetrics> getThreadsByCpu() {
+        return threadsByCpu;
+    }
+
+    public List<ThreadUsageMetrics> getThreadsByAllocation() {
+        return threadsByAllocation;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.metrics;
+
+/**
+ * 一个时间片内单个线程或线程池（按归一化后的线程名分组）的CPU时间及内存分配
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ThreadUsageMetrics implements IMetrics {
+    /**
+     * 线程名，或去掉数字后缀后的线程池名（如http-nio-8080-exec-12为http-nio-8080-exec）
+     */
+    private final String name;
+    /**
+     * 线程数，单个线程时为1
+     */
+    private final int threads;
+    /**
+     * 一个时间片内使用的CPU时间（ns）
+     */
+    private final long cpuTime;
+    /**
+     * 一个时间片内分配的内存（byte）
+     */
+    private final long allocatedBytes;
+    /**
+     * CPU使用率，占一个CPU核的百分比
+     */
+    private final double cpuUsagePercent;
+    /**
+     * 内存分配速率（byte/s）
+     */
+    private final long allocationRate;
+
+    public ThreadUsageMetrics(String name, int threads, long cpuTime, long allocatedBytes, long intervalNanos) {
+        this.name = name;
+        this.threads = threads;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+        this.cpuUsagePercent = intervalNanos > 0 ? cpuTime * 100d / intervalNanos : 0d;
+        this.allocationRate = intervalNanos > 0 ? (long) (allocatedBytes * 1e9 / intervalNanos) : 0L;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public double getCpuUsagePercent() {
+        return cpuUsagePercent;
+    }
+
+    public long getAllocationRate() {
+        return allocationRate;
+    }
+}
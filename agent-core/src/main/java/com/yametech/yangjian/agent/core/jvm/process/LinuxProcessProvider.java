@@ -18,21 +18,13 @@ package com.yametech.yangjian.agent.core.jvm.process;
 import com.yametech.yangjian.agent.api.log.ILogger;
 import com.yametech.yangjian.agent.api.log.LoggerFactory;
 import com.yametech.yangjian.agent.core.jvm.collector.CPUCollector;
-import com.yametech.yangjian.agent.core.jvm.command.CommandExecutor;
-import com.yametech.yangjian.agent.core.jvm.command.CommandResult;
 import com.yametech.yangjian.agent.core.jvm.metrics.ProcessMetrics;
 
-import java.lang.management.ManagementFactory;
-import java.lang.management.RuntimeMXBean;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author zcn
@@ -47,29 +39,44 @@ public enum LinuxProcessProvider {
 
     private static ILogger logger = LoggerFactory.getLogger(LinuxProcessProvider.class);
 
-    private static Integer PID = getPid();
-
     private static CPUCollector cpuCollector = new CPUCollector();
 
-    private static String MEMORY_COMMAND = MessageFormat.format("cat /proc/{0}/status | grep VmRSS", PID.toString());
-
-    private static Pattern MEMORY_PATTERN = Pattern.compile("[^0-9]*(\\d*)[^0-9]*");
-
     private static final String FILE_MEM_INFO = "/proc/meminfo";
 
+    private static final String DIR_PROC_SELF = "/proc/self";
+
     private static long sysMemTotal = getSystemMemory().getOrDefault("MemTotal", 0L);
 
-    private static Integer getPid() {
-        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
-        // format: "pid@hostname"
-        String name = runtime.getName();
-        return Integer.parseInt(name.substring(0, name.indexOf('@')));
+    /**
+     * 直接读取/proc/self，不再通过shell执行cat/grep
+     */
+    private static ProcReader procReader = new ProcReader(Paths.get(DIR_PROC_SELF));
+
+    private static ProcStat current = new ProcStat();
+
+    /**
+     * 上次采集的累计值，用于计算采集周期内的增量
+     */
+    private static ProcStat last = new ProcStat();
+
+    static {
+        procReader.read(last);
     }
 
-    public ProcessMetrics getProcessMetrics() {
+    public synchronized ProcessMetrics getProcessMetrics() {
         ProcessMetrics metrics = new ProcessMetrics();
         try {
-            metrics.setMemoryUsage(getMemory());
+            if (procReader.read(current)) {
+                metrics.setMemoryUsage(current.getRssKb());
+                metrics.setSwapUsage(current.getSwapKb());
+            }
+            // 上下文切换次数及运行队列等待时间由ProcReader按线程累加增量，不因线程退出而减少
+            metrics.setVoluntaryCtxtSwitches(increment(current.getVoluntaryCtxtSwitches(), last.getVoluntaryCtxtSwitches()));
+            metrics.setNonvoluntaryCtxtSwitches(increment(current.getNonvoluntaryCtxtSwitches(), last.getNonvoluntaryCtxtSwitches()));
+            metrics.setReadBytes(increment(current.getReadBytes(), last.getReadBytes()));
+            metrics.setWriteBytes(increment(current.getWriteBytes(), last.getWriteBytes()));
+            metrics.setRunQueueWait(increment(current.getRunQueueWaitNanos(), last.getRunQueueWaitNanos()) / 1000000);
+            last.copyFrom(current);
             metrics.setCpuUsagePercent(cpuCollector.collect().getUsagePercent());
             metrics.setSysMemTotal(sysMemTotal);
         } catch (Exception e) {
@@ -78,19 +85,8 @@ public enum LinuxProcessProvider {
         return metrics;
     }
 
-    private double getMemory() {
-        CommandResult result = new CommandExecutor().execute(new String[]{"/bin/sh", "-c", MEMORY_COMMAND});
-        if (!result.isSuccess()) {
-            logger.error("Fail to get memory,{}", new String(result.getContent()));
-            return 0d;
-        }
-        String data = new String(result.getContent(), StandardCharsets.UTF_8);
-        Matcher matcher = MEMORY_PATTERN.matcher(data);
-        if (matcher.matches()) {
-            return Double.valueOf(matcher.group(1));
-        }
-        logger.error("Fail to match memory,{}", data);
-        return 0d;
+    private static long increment(long current, long last) {
+        return Math.max(0, current - last);
     }
 
     private static Map<String, Long> getSystemMemory() {
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.process;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接在字节数组上解析/proc/[pid]下的status、io、schedstat文件，不生成String、不使用正则；
+ * 只覆盖解析到的字段，缺少的字段（如内核未开启对应统计）保持原值
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class ProcParser {
+    private static final byte[] VM_RSS = bytes("VmRSS:");
+    private static final byte[] VM_SWAP = bytes("VmSwap:");
+    private static final byte[] VOLUNTARY_CTXT_SWITCHES = bytes("voluntary_ctxt_switches:");
+    private static final byte[] NONVOLUNTARY_CTXT_SWITCHES = bytes("nonvoluntary_ctxt_switches:");
+    private static final byte[] READ_BYTES = bytes("read_bytes:");
+    private static final byte[] WRITE_BYTES = bytes("write_bytes:");
+
+    private ProcParser() {}
+
+    /**
+     * 解析status，格式为每行“名称:\t值[ kB]”
+     *
+     * @return 是否解析到任意一个字段
+     */
+    public static boolean parseStatus(byte[] data, int length, ProcStat out) {
+        boolean found = false;
+        for (int pos = 0; pos < length; pos = nextLine(data, pos, length)) {
+            long value;
+            if ((value = valueOf(data, pos, length, VM_RSS)) >= 0) {
+                out.rssKb = value;
+            } else if ((value = valueOf(data, pos, length, VM_SWAP)) >= 0) {
+                out.swapKb = value;
+            } else if ((value = valueOf(data, pos, length, VOLUNTARY_CTXT_SWITCHES)) >= 0) {
+                out.voluntaryCtxtSwitches = value;
+            } else if ((value = valueOf(data, pos, length, NONVOLUNTARY_CTXT_SWITCHES)) >= 0) {
+                out.nonvoluntaryCtxtSwitches = value;
+            } else {
+                continue;
+            }
+            found = true;
+        }
+        return found;
+    }
+
+    /**
+     * 解析io，格式为每行“名称: 值”
+     *
+     * @return 是否解析到任意一个字段
+     */
+    public static boolean parseIo(byte[] data, int length, ProcStat out) {
+        boolean found = false;
+        for (int pos = 0; pos < length; pos = nextLine(data, pos, length)) {
+            long value;
+            if ((value = valueOf(data, pos, length, READ_BYTES)) >= 0) {
+                out.readBytes = value;
+            } else if ((value = valueOf(data, pos, length, WRITE_BYTES)) >= 0) {
+                out.writeBytes = value;
+            } else {
+                continue;
+            }
+            found = true;
+        }
+        return found;
+    }
+
+    /**
+     * 解析schedstat，格式为“运行时间(ns) 等待时间(ns) 运行次数”，只使用等待时间
+     *
+     * @return 三个字段是否都解析成功
+     */
+    public static boolean parseSchedstat(byte[] data, int length, ProcStat out) {
+        long runQueueWait = 0;
+        int pos = 0;
+        for (int field = 0; field < 3; field++) {
+            while (pos < length && data[pos] == ' ') {
+                pos++;
+            }
+            int start = pos;
+            while (pos < length && data[pos] >= '0' && data[pos] <= '9') {
+                pos++;
+            }
+            if (start == pos) {
+                return false;
+            }
+            if (field == 1) {
+                runQueueWait = parseLong(data, start, pos);
+            }
+        }
+        out.runQueueWaitNanos = runQueueWait;
+        return true;
+    }
+
+    /**
+     * @return 从pos开始的行以key开头时返回之后的数值，否则返回-1
+     */
+    private static long valueOf(byte[] data, int pos, int length, byte[] key) {
+        if (pos + key.length > length) {
+            return -1;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (data[pos + i] != key[i]) {
+                return -1;
+            }
+        }
+        pos += key.length;
+        while (pos < length && (data[pos] == ' ' || data[pos] == '\t')) {
+            pos++;
+        }
+        int start = pos;
+        while (pos < length && data[pos] >= '0' && data[pos] <= '9') {
+            pos++;
+        }
+        return start == pos ? -1 : parseLong(data, start, pos);
+    }
+
+    private static long parseLong(byte[] data, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = data[i];
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static int nextLine(byte[] data, int pos, int length) {
+        while (pos < length && data[pos] != '\n') {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.process;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+
+/**
+ * 读取/proc/self下的status、io、schedstat：文件保持打开，每次从位置0重新读取（procfs每次读取时重新生成内容）到复用的字节数组中解析，不启动子进程；
+ * status中的上下文切换次数及schedstat只是主线程的值，所以另外遍历task目录，按线程id记录上次读取的值，累加各线程的增量
+ * （线程退出后累计值不减少，只丢失其上次读取到退出之间的增量）；
+ * 文件不存在或无权限（如/proc/self/io）时跳过对应字段。非线程安全
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ProcReader implements Closeable {
+    private static final ILogger logger = LoggerFactory.getLogger(ProcReader.class);
+    private final Path dir;
+    private final ProcFile status;
+    private final ProcFile io;
+    private final ProcFile schedstat;
+    private final ProcStat taskStat = new ProcStat();
+    /**
+     * 各线程上次读取的值
+     */
+    private final Map<Long, TaskCounter> tasks = new HashMap<>();
+    private int generation;
+    private long voluntaryCtxtSwitches;
+    private long nonvoluntaryCtxtSwitches;
+    private long runQueueWaitNanos;
+    private boolean taskUnavailable;
+    private byte[] data = new byte[4096];
+    private ByteBuffer buffer = ByteBuffer.wrap(data);
+
+    /**
+     * @param dir 进程目录，如/proc/self
+     */
+    public ProcReader(Path dir) {
+        this.dir = dir;
+        this.status = new ProcFile(dir.resolve("status"));
+        this.io = new ProcFile(dir.resolve("io"));
+        this.schedstat = new ProcFile(dir.resolve("schedstat"));
+    }
+
+    /**
+     * 读取并覆盖out中的字段
+     *
+     * @return 是否读取到status
+     */
+    public boolean read(ProcStat out) {
+        int length = read(status);
+        boolean success = length > 0 && ProcParser.parseStatus(data, length, out);
+        if ((length = read(io)) > 0) {
+            ProcParser.parseIo(data, length, out);
+        }
+        if ((length = read(schedstat)) > 0) {
+            ProcParser.parseSchedstat(data, length, out);
+        }
+        readTask(out);
+        return success;
+    }
+
+    /**
+     * 累加task目录下各线程自上次读取后的上下文切换次数及运行队列等待时间，第一次出现的线程累加其全部值
+     */
+    private void readTask(ProcStat out) {
+        if (taskUnavailable) {
+            return;
+        }
+        generation++;
+        boolean statusFound = false;
+        boolean schedstatFound = false;
+        try (DirectoryStream<Path> taskDirs = Files.newDirectoryStream(dir.resolve("task"))) {
+            for (Path task : taskDirs) {
+                long tid;
+                try {
+                    tid = Long.parseLong(task.getFileName().toString());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                TaskCounter counter = tasks.get(tid);
+                if (counter == null) {
+                    counter = new TaskCounter();
+                    tasks.put(tid, counter);
+                }
+                counter.generation = generation;
+                int length = readOnce(task.resolve("status"));// 线程可能已退出
+                if (length > 0 && ProcParser.parseStatus(data, length, taskStat)) {
+                    voluntaryCtxtSwitches += increment(taskStat.voluntaryCtxtSwitches, counter.voluntaryCtxtSwitches);
+                    nonvoluntaryCtxtSwitches += increment(taskStat.nonvoluntaryCtxtSwitches, counter.nonvoluntaryCtxtSwitches);
+                    counter.voluntaryCtxtSwitches = taskStat.voluntaryCtxtSwitches;
+                    counter.nonvoluntaryCtxtSwitches = taskStat.nonvoluntaryCtxtSwitches;
+                    statusFound = true;
+                }
+                length = readOnce(task.resolve("schedstat"));
+                if (length > 0 && ProcParser.parseSchedstat(data, length, taskStat)) {
+                    runQueueWaitNanos += increment(taskStat.runQueueWaitNanos, counter.runQueueWaitNanos);
+                    counter.runQueueWaitNanos = taskStat.runQueueWaitNanos;
+                    schedstatFound = true;
+                }
+            }
+        } catch (IOException e) {
+            taskUnavailable = true;
+            logger.warn(e, "Fail to list {}, use values of main thread", dir.resolve("task"));
+            return;
+        }
+        // 删除已退出的线程（线程id可能被新线程复用，复用时按新线程从0开始计算）
+        tasks.values().removeIf(counter -> counter.generation != generation);
+        if (statusFound) {
+            out.voluntaryCtxtSwitches = voluntaryCtxtSwitches;
+            out.nonvoluntaryCtxtSwitches = nonvoluntaryCtxtSwitches;
+        }
+        if (schedstatFound) {
+            out.runQueueWaitNanos = runQueueWaitNanos;
+        }
+    }
+
+    /**
+     * @return 线程id在两次读取之间被复用时（值变小）按新线程返回当前值
+     */
+    private static long increment(long current, long last) {
+        return current >= last ? current - last : current;
+    }
+
+    /**
+     * @return 读取的字节数，打开失败时返回-1且之后不再读取该文件
+     */
+    private int read(ProcFile file) {
+        if (file.unavailable) {
+            return -1;
+        }
+        try {
+            if (file.channel == null) {
+                file.channel = FileChannel.open(file.path, StandardOpenOption.READ);
+            }
+        } catch (IOException e) {
+            file.unavailable = true;
+            logger.warn("Fail to open {}, skip it: {}", file.path, e.toString());
+            return -1;
+        }
+        try {
+            return read(file.channel);
+        } catch (IOException e) {
+            logger.warn(e, "Fail to read {}", file.path);
+            file.close();// 下次重新打开
+            return -1;
+        }
+    }
+
+    private int readOnce(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private int read(FileChannel channel) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                buffer = ByteBuffer.wrap(data);
+            }
+            buffer.limit(data.length);
+            buffer.position(length);
+            int num = channel.read(buffer, length);
+            if (num < 0) {
+                return length;
+            }
+            length += num;
+        }
+    }
+
+    @Override
+    public void close() {
+        status.close();
+        io.close();
+        schedstat.close();
+    }
+
+    private static class TaskCounter {
+        private long voluntaryCtxtSwitches;
+        private long nonvoluntaryCtxtSwitches;
+        private long runQueueWaitNanos;
+        private int generation;
+    }
+
+    private static class ProcFile {
+        private final Path path;
+        private FileChannel channel;
+        private boolean unavailable;
+
+        private ProcFile(Path path) {
+            this.path = path;
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // 忽略
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.process;
+
+/**
+ * /proc/self下读取的进程指标，除内存外都是累计值，由ProcParser填充，可复用
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ProcStat {
+    /**
+     * status：VmRSS（kB）
+     */
+    long rssKb;
+    /**
+     * status：VmSwap（kB）
+     */
+    long swapKb;
+    /**
+     * status：voluntary_ctxt_switches，读取task目录时为各线程增量的累计值
+     */
+    long voluntaryCtxtSwitches;
+    /**
+     * status：nonvoluntary_ctxt_switches，读取task目录时为各线程增量的累计值
+     */
+    long nonvoluntaryCtxtSwitches;
+    /**
+     * io：read_bytes，实际从存储层读取的字节数
+     */
+    long readBytes;
+    /**
+     * io：write_bytes，实际写入存储层的字节数
+     */
+    long writeBytes;
+    /**
+     * schedstat：在运行队列中等待的时间（ns），读取task目录时为各线程增量的累计值
+     */
+    long runQueueWaitNanos;
+
+    public void copyFrom(ProcStat other) {
+        this.rssKb = other.rssKb;
+        this.swapKb = other.swapKb;
+        this.voluntaryCtxtSwitches = other.voluntaryCtxtSwitches;
+        this.nonvoluntaryCtxtSwitches = other.nonvoluntaryCtxtSwitches;
+        this.readBytes = other.readBytes;
+        this.writeBytes = other.writeBytes;
+        this.runQueueWaitNanos = other.runQueueWaitNanos;
+    }
+
+    public long getRssKb() {
+        return rssKb;
+    }
+
+    public long getSwapKb() {
+        return swapKb;
+    }
+
+    public long getVoluntaryCtxtSwitches() {
+        return voluntaryCtxtSwitches;
+    }
+
+    public long getNonvoluntaryCtxtSwitches() {
+        return nonvoluntaryCtxtSwitches;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getWriteBytes() {
+        return writeBytes;
+    }
+
+    public long getRunQueueWaitNanos() {
+        return runQueueWaitNanos;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.log.appender;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.yametech.yangjian.agent.api.common.Constants;
+import com.yametech.yangjian.agent.util.Utf8Util;
+
+/**
+ * 按日期及大小滚动的日志文件写入：每行按UTF-8直接编码（Utf8Util）到复用的堆外缓存，缓存满或调用flush时通过FileChannel一次写入；
+ * 文件名为{prefix}.{yyyyMMdd}.{序号}.log，只在首次打开时扫描一次目录，之后当前日期、序号、文件大小及已有文件列表都在内存中维护；
+ * 写入后文件大小超过maxFileSize时下一行写入新文件，跨天时（flush时检查）从序号1开始，文件数超过maxFileNum时删除最早的文件
+ * 非线程安全，由日志写入线程调用
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class FileChannelWriter implements Closeable {
+    private static final byte[] LINE_SEPARATOR = Constants.LINE_SEPARATOR.getBytes();
+    private final File dir;
+    private final String prefix;
+    private final Pattern namePattern;
+    private final long maxFileSize;
+    private final int maxFileNum;
+    private final LongSupplier clock;
+    private final ByteBuffer buffer;
+    /**
+     * 已有的日志文件，按日期、序号升序
+     */
+    private ArrayDeque<File> files;
+    private FileChannel channel;
+    private String day;
+    private long dayEndMillis;
+    private int fileIndex;
+    /**
+     * 当前文件已写入的字节数，不含缓存中待写入的部分（写入一行的过程中缓存满时会先写入文件）
+     */
+    private long fileSize;
+
+    public FileChannelWriter(File dir, String prefix, long maxFileSize, int maxFileNum, int bufferSize) {
+        this(dir, prefix, maxFileSize, maxFileNum, bufferSize, System::currentTimeMillis);
+    }
+
+    FileChannelWriter(File dir, String prefix, long maxFileSize, int maxFileNum, int bufferSize, LongSupplier clock) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.namePattern = Pattern.compile(Pattern.quote(prefix) + "\\.(\\d{8})\\.(\\d+)\\.log");
+        this.maxFileSize = maxFileSize;
+        this.maxFileNum = Math.max(1, maxFileNum);
+        this.clock = clock;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(64, bufferSize));
+    }
+
+    /**
+     * 写入一行（自动追加换行符），缓存满时写入文件
+     *
+     * @param line 日志内容
+     * @throws IOException 目录或文件无法打开、写入失败，失败时缓存中的内容被丢弃
+     */
+    public void write(CharSequence line) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        putUtf8(line);
+        for (byte b : LINE_SEPARATOR) {
+            putByte(b);
+        }
+        if (fileSize + buffer.position() > maxFileSize) {
+            flush();
+            closeChannel();
+            fileIndex++;// 下一行写入新文件
+        }
+    }
+
+    /**
+     * 将缓存的内容写入文件，跨天或上次写入失败时先切换（重新打开）文件
+     *
+     * @throws IOException 写入失败，缓存中的内容被丢弃
+     */
+    public void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        if (channel == null || clock.getAsLong() >= dayEndMillis) {
+            closeChannel();
+            try {
+                open();
+            } catch (IOException e) {
+                buffer.clear();
+                throw e;
+            }
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                fileSize += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            closeChannel();
+            throw e;
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * @return 缓存中未写入文件的字节数
+     */
+    public int pendingBytes() {
+        return buffer.position();
+    }
+
+    /**
+     * @return 当前写入的文件，未打开时为null
+     */
+    public File currentFile() {
+        return channel == null ? null : file(day, fileIndex);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+            channel = null;
+        }
+    }
+
+    private void open() throws IOException {
+        if (!dir.exists() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Log dir " + dir.getAbsolutePath() + " create failed");
+        }
+        if (!dir.isDirectory()) {
+            throw new IOException("Log dir " + dir.getAbsolutePath() + " is not a directory");
+        }
+        long now = clock.getAsLong();
+        if (files == null) {
+            scan();
+        }
+        if (day == null || now >= dayEndMillis) {
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate date = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+            String newDay = String.format("%04d%02d%02d", date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            dayEndMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            if (!newDay.equals(day)) {
+                day = newDay;
+                fileIndex = latestIndex(newDay);
+            }
+        }
+        File file = file(day, fileIndex);
+        if (file.length() >= maxFileSize) {// 重启时最新的文件已满
+            file = file(day, ++fileIndex);
+        }
+        boolean exists = file.exists();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        if (!exists) {
+            files.addLast(file);
+        }
+        while (files.size() > maxFileNum) {
+            File oldest = files.pollFirst();
+            if (!oldest.equals(file) && !oldest.delete() && oldest.exists()) {
+                System.err.println("Log file " + oldest.getAbsolutePath() + " delete failed");
+            }
+        }
+    }
+
+    /**
+     * 启动时扫描目录中已有的日志文件
+     */
+    private void scan() {
+        List<LogFile> logFiles = new ArrayList<>();
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                Matcher matcher = namePattern.matcher(child.getName());
+                if (matcher.matches()) {
+                    logFiles.add(new LogFile(child, matcher.group(1), Integer.parseInt(matcher.group(2))));
+                }
+            }
+        }
+        logFiles.sort((f1, f2) -> f1.day.equals(f2.day) ? Integer.compare(f1.index, f2.index) : f1.day.compareTo(f2.day));
+        files = new ArrayDeque<>();
+        for (LogFile logFile : logFiles) {
+            files.addLast(logFile.file);
+        }
+    }
+
+    /**
+     * @return 当天最新的文件序号，没有时为1
+     */
+    private int latestIndex(String date) {
+        int index = 1;
+        for (File file : files) {
+            Matcher matcher = namePattern.matcher(file.getName());
+            if (matcher.matches() && matcher.group(1).equals(date)) {
+                index = Math.max(index, Integer.parseInt(matcher.group(2)));
+            }
+        }
+        return index;
+    }
+
+    private File file(String date, int index) {
+        return new File(dir, prefix + "." + date + "." + index + ".log");
+    }
+
+    private void putByte(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+    }
+
+    private void putUtf8(CharSequence value) throws IOException {
+        int index = 0;
+        while ((index = Utf8Util.encode(value, index, buffer)) < value.length()) {
+            flush();
+        }
+    }
+
+    private static class LogFile {
+        private final File file;
+        private final String day;
+        private final int index;
+
+        private LogFile(File file, String day, int index) {
+            this.file = file;
+            this.day = day;
+            this.index = index;
+        }
+    }
+}
@@ -16,23 +16,22 @@
 package com.yametech.yangjian.agent.core.log.appender;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.TimeoutHandler;
 import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
 import com.yametech.yangjian.agent.api.common.Config;
 import com.yametech.yangjian.agent.api.common.Constants;
 import com.yametech.yangjian.agent.api.common.CustomThreadFactory;
@@ -46,28 +45,31 @@ import com.yametech.yangjian.agent.core.log.impl.LogMessageHolder;
 /**
  * @author zcn
  * @date: 2019-10-14
- * @description: 日志文件实现类
+ * @description: 日志文件实现类，日志写入线程通过FileChannelWriter写文件：批量结束（endOfBatch）且距上次写入超过log.flush_interval毫秒、
+ * 缓存满或持续log.flush_interval毫秒没有新日志时写入文件，应用关闭时写入缓存中剩余的日志
  */
-public class RollingFileAppender implements IAppender<LogEvent>, EventHandler<LogMessageHolder> {
+public class RollingFileAppender implements IAppender<LogEvent>, EventHandler<LogMessageHolder>, TimeoutHandler {
 
     private static final String DISCARDED_LOG = "log.discarded";
     private static final int RING_BUFFER_SIZE = 512;
     private static final String LOG_FILE_PREFIX_KEY = "log.file.prefix";
     private static final String DEFAULT_LOG_FILE_PREFIX = "statistic";
-    private static String DATE_PATTERN = "yyyyMMdd";
-    private static final long ONE_DAY_MILLISECONDS = 24 * 60 * 60 * 1000L;
+    private static final String FLUSH_INTERVAL_KEY = "log.flush_interval";
+    private static final long DEFAULT_FLUSH_INTERVAL = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SHUTDOWN_WAIT_MILLIS = 1000;
     private static final String AGENT_LOG_THREAD_PREFIX = "agent-log-writer";
+    /**
+     * 所有实例共用一个关闭钩子
+     */
+    private static final List<RollingFileAppender> APPENDERS = new CopyOnWriteArrayList<>();
+    private static final AtomicBoolean SHUTDOWN_HOOK_ADDED = new AtomicBoolean(false);
     private RingBuffer<LogMessageHolder> ringBuffer;
-    private FileOutputStream fileOutputStream;
-    private String dir;
-    private String serviceName;
-    private long maxFileSize;
-    private int maxFileNum;
-    private long currentFileSize;
-    private int lineNum;
+    private final FileChannelWriter writer;
+    private final long flushInterval;
+    private long lastFlushTime;
+    private volatile long flushedSequence = -1;
     private boolean discardedLog = false;
-    private String logFilePrefix;
-    private Pattern logNamePattern;
 
     private static final int PRINT_INTERVAL_SECOND = 10;
     private AtomicLong printTime = new AtomicLong(0);// 打印时间
@@ -77,31 +79,33 @@ public class RollingFileAppender implements IAppender<LogEvent>, EventHandler<Lo
     private AtomicLong periodTotalNum = new AtomicLong(0);// 最近一个输出周期产生的事件量
 
     public RollingFileAppender(String appenderName) {
-        this.serviceName = Config.SERVICE_NAME.getValue();
-        this.dir = getAppenderDir(appenderName);
-        this.maxFileSize = Long.valueOf(Config.getKv(Constants.LOG_MAX_FILE_SIZE, LoggerFactory.DEFAULT_MAX_FILE_SIZE.toString()));
-        this.maxFileNum = Integer.valueOf(Config.getKv(Constants.LOG_MAX_FILE_NUM, LoggerFactory.DEFAULT_MAX_FILE_NUM.toString()));
+        String dir = getAppenderDir(appenderName, Config.SERVICE_NAME.getValue());
+        long maxFileSize = Long.valueOf(Config.getKv(Constants.LOG_MAX_FILE_SIZE, LoggerFactory.DEFAULT_MAX_FILE_SIZE.toString()));
+        int maxFileNum = Integer.valueOf(Config.getKv(Constants.LOG_MAX_FILE_NUM, LoggerFactory.DEFAULT_MAX_FILE_NUM.toString()));
         if (Config.getKv(DISCARDED_LOG) != null) {
             this.discardedLog = Boolean.valueOf(Config.getKv(DISCARDED_LOG));
         }
+        this.flushInterval = Math.max(1, Long.valueOf(Config.getKv(FLUSH_INTERVAL_KEY, String.valueOf(DEFAULT_FLUSH_INTERVAL))));
         // 过滤.字符
-        this.logFilePrefix = Config.getKv(LOG_FILE_PREFIX_KEY, DEFAULT_LOG_FILE_PREFIX).replaceAll("\\.", "");
-        this.logNamePattern = Pattern.compile(logFilePrefix + "\\.(\\d{8})\\.(\\d+)\\.log");
+        String logFilePrefix = Config.getKv(LOG_FILE_PREFIX_KEY, DEFAULT_LOG_FILE_PREFIX).replaceAll("\\.", "");
+        this.writer = new FileChannelWriter(new File(dir), logFilePrefix, maxFileSize, maxFileNum, BUFFER_SIZE);
         Disruptor<LogMessageHolder> disruptor = new Disruptor<>(
                 () -> new LogMessageHolder(),
                 RING_BUFFER_SIZE,
-                new CustomThreadFactory(AGENT_LOG_THREAD_PREFIX, true));
-        disruptor.handleEventsWith(this::onEvent);
+                new CustomThreadFactory(AGENT_LOG_THREAD_PREFIX, true),
+                ProducerType.MULTI,
+                new TimeoutBlockingWaitStrategy(flushInterval, TimeUnit.MILLISECONDS));
+        disruptor.handleEventsWith(this);// 需传入this，使用方法引用时不会回调onTimeout
         ringBuffer = disruptor.getRingBuffer();
-        lineNum = 0;
         disruptor.start();
+        register(this);
     }
 
     public RollingFileAppender() {
         this(AppenderFactory.ROOT_APPENDER);
     }
 
-    private String getAppenderDir(String appenderName) {
+    private String getAppenderDir(String appenderName, String serviceName) {
         // 链路日志
         if (AppenderFactory.TRACE_APPENDER.equals(appenderName)) {
             return Config.getKv(Constants.LOG_TRACE_DIR, LoggerFactory.DEFAULT_TRACE_LOG_DIR) + Constants.PATH_SEPARATOR + serviceName;
@@ -109,21 +113,100 @@ public class RollingFileAppender implements IAppender<LogEvent>, EventHandler<Lo
         return Config.getKv(Constants.LOG_DIR, LoggerFactory.DEFAULT_DIR) + Constants.PATH_SEPARATOR + serviceName;
     }
 
+    /**
+     * message为null的事件为关闭时发布的刷新事件
+     */
     @Override
     public void onEvent(LogMessageHolder msgHolder, long sequence, boolean endOfBatch) {
-        if (isStreamEnable()) {
-            if (discardedLog) {
-                printMetric();
+        if (discardedLog) {
+            printMetric();
+        }
+        String message = msgHolder.getMessage();
+        msgHolder.setMessage(null);
+        try {
+            if (message != null) {
+                writer.write(message);
+            }
+            if (message == null || endOfBatch && System.currentTimeMillis() - lastFlushTime >= flushInterval) {
+                flush();
+            }
+        } catch (IOException e) {
+//            e.printStackTrace();
+        }
+        if (message == null) {
+            flushedSequence = sequence;
+        }
+    }
+
+    /**
+     * 持续flushInterval毫秒没有新日志时写入缓存的内容
+     */
+    @Override
+    public void onTimeout(long sequence) {
+        try {
+            flush();
+        } catch (IOException e) {
+//            e.printStackTrace();
+        }
+    }
+
+    private void flush() throws IOException {
+        lastFlushTime = System.currentTimeMillis();
+        writer.flush();
+    }
+
+    private static void register(RollingFileAppender appender) {
+        APPENDERS.add(appender);
+        if (SHUTDOWN_HOOK_ADDED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(RollingFileAppender::flushOnShutdown, AGENT_LOG_THREAD_PREFIX + "-shutdown"));
+        }
+    }
+
+    /**
+     * 先向所有实例发布刷新事件，再在同一截止时间内等待各日志写入线程处理，日志队列满或等待超时时放弃
+     */
+    private static void flushOnShutdown() {
+        List<RollingFileAppender> appenders = new ArrayList<>(APPENDERS);
+        long[] sequences = new long[appenders.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = appenders.get(i).publishFlush();
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MILLIS;
+        for (int i = 0; i < sequences.length; i++) {
+            if (!appenders.get(i).awaitFlush(sequences[i], deadline)) {
+                return;
             }
+        }
+    }
+
+    /**
+     * @return 刷新事件的序号，日志队列满时返回-1
+     */
+    private long publishFlush() {
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return -1;
+        }
+        ringBuffer.get(sequence).setMessage(null);
+        ringBuffer.publish(sequence);
+        return sequence;
+    }
+
+    /**
+     * @return 是否未被中断
+     */
+    private boolean awaitFlush(long sequence, long deadline) {
+        while (flushedSequence < sequence && System.currentTimeMillis() < deadline) {
             try {
-                write(msgHolder.getMessage(), endOfBatch);
-            } catch (IOException e) {
-//                e.printStackTrace();
-            } finally {
-                msgHolder.setMessage(null);
-                checkFile();
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
+        return true;
     }
 
     private void printMetric() {
@@ -141,6 +224,9 @@ public class RollingFileAppender implements IAppender<LogEvent>, EventHandler<Lo
 
     @Override
     public void append(LogEvent logEvent) {
+        if (logEvent.getMessage() == null) {// null用作刷新事件
+            return;
+        }
         if (discardedLog) {// 防止日志量过多时阻塞，增加日志输出监控（丢弃多少条，发布多少条）
             try {
                 long sequence = ringBuffer.tryNext();
@@ -163,120 +249,4 @@ public class RollingFileAppender implements IAppender<LogEvent>, EventHandler<Lo
             }
         }
     }
-
-    private void write(String message, boolean endOfBatch) throws IOException {
-        message = message + Constants.LINE_SEPARATOR;
-        this.fileOutputStream.write(message.getBytes());
-
-        lineNum++;
-        currentFileSize += message.length();
-
-        if (lineNum % 100 == 0 || endOfBatch) {
-            this.fileOutputStream.flush();
-        }
-        lineNum = (lineNum == Integer.MAX_VALUE) ? 0 : lineNum;
-    }
-
-    private void checkFile() {
-        if (currentFileSize > maxFileSize) {
-            try {
-                fileOutputStream.flush();
-                fileOutputStream.close();
-            } catch (IOException e) {
-//                e.printStackTrace();
-            } finally {
-                fileOutputStream = null;
-            }
-        }
-    }
-
-    private String getFileNamePrefix() {
-        return logFilePrefix + "." + new SimpleDateFormat(DATE_PATTERN).format(new Date());
-    }
-
-    private File createFile(int fileIndex) {
-        return new File(this.dir, getFileNamePrefix() + "." + fileIndex + ".log");
-    }
-
-    private boolean isStreamEnable() {
-        if (fileOutputStream != null) {
-            return true;
-        }
-
-        File dir = new File(this.dir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        } else if (!dir.isDirectory()) {
-            System.err.println("Log dir " + dir.getAbsoluteFile() + " is not a directory");
-            return false;
-        }
-
-        try {
-            File file = switchFile(dir);
-            this.fileOutputStream = new FileOutputStream(file, true);
-            this.currentFileSize = file.length();
-            return true;
-        } catch (Exception e) {
-//            e.printStackTrace();
-            return false;
-        }
-    }
-
-    private File switchFile(File dir) throws ParseException {
-        File[] children = dir.listFiles();
-        if (children.length == 0) {
-            return createFile(1);
-        }
-
-        List<FileInfo> fileInfos = new ArrayList<>();
-        for (int i = 0; i < children.length; i++) {
-            File child = children[i];
-            String name = child.getName();
-            Matcher matcher = logNamePattern.matcher(name);
-            if (matcher.find()) {
-                String date = matcher.group(1);
-                int num = Integer.valueOf(matcher.group(2));
-                fileInfos.add(new FileInfo(child, new SimpleDateFormat(DATE_PATTERN).parse(date), num));
-            }
-        }
-
-        // 该目录不为空并且存在错误格式的日志时
-        if (fileInfos.size() == 0) {
-            return createFile(1);
-        }
-
-        Collections.sort(fileInfos, (f1, f2) -> f1.date.equals(f2.date) ? f1.num - f2.num : f1.date.compareTo(f2.date));
-
-        int outOf = children.length - maxFileNum;
-        if (outOf > 0) {
-            for (int i = 0; outOf > 0; outOf--, i++) {
-                if (!fileInfos.get(i).file.delete()) {
-
-                }
-            }
-        }
-
-        FileInfo latest = fileInfos.get(children.length - 1);
-        if (System.currentTimeMillis() - latest.date.getTime() > ONE_DAY_MILLISECONDS) {
-            return createFile(1);
-        }
-
-        if (latest.file.length() >= maxFileSize) {
-            return createFile(latest.num + 1);
-        }
-
-        return latest.file;
-    }
-
-    private class FileInfo {
-        private File file;
-        private Date date;
-        private Integer num;
-
-        private FileInfo(File file, Date date, Integer num) {
-            this.file = file;
-            this.date = date;
-            this.num = num;
-        }
-    }
 }
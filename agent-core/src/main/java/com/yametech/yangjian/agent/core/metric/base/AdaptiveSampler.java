@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 根据缓存（RingBuffer）的占用比例自适应采样：占用超过highWatermark时采样权重翻倍（最大maxWeight），低于lowWatermark时减半，
+ * 权重为w时每个事件以1/w的概率发布，发布的事件权重为w（消费时number、useTime、errorNum乘以w），统计的期望值与全部发布一致（无偏）；
+ * 增加权重的最小间隔较短以快速响应堆积，降低的间隔较长以避免频繁抖动
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class AdaptiveSampler {
+	public static final double DEFAULT_HIGH_WATERMARK = 0.75;
+	public static final double DEFAULT_LOW_WATERMARK = 0.25;
+	public static final int DEFAULT_MAX_WEIGHT = 64;
+	private static final long RAISE_INTERVAL_NANOS = 1_000_000L;// 增加权重的最小间隔
+	private static final long REDUCE_INTERVAL_NANOS = 200_000_000L;// 降低权重的最小间隔
+	private final double highWatermark;
+	private final double lowWatermark;
+	private final int maxWeight;
+	private final LongSupplier nanoClock;
+	private final AtomicLong lastAdjustNanos;
+	private volatile int weight = 1;
+
+	public AdaptiveSampler() {
+		this(DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK, DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param highWatermark	开始采样（增加权重）的占用比例，取值(0, 1]
+	 * @param lowWatermark	降低权重的占用比例，取值[0, highWatermark)
+	 * @param maxWeight	最大权重，即最低采样率为1/maxWeight
+	 */
+	public AdaptiveSampler(double highWatermark, double lowWatermark, int maxWeight) {
+		this(highWatermark, lowWatermark, maxWeight, System::nanoTime);
+	}
+
+	AdaptiveSampler(double highWatermark, double lowWatermark, int maxWeight, LongSupplier nanoClock) {
+		check(highWatermark, lowWatermark, maxWeight);
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark;
+		this.maxWeight = maxWeight;
+		this.nanoClock = nanoClock;
+		this.lastAdjustNanos = new AtomicLong(nanoClock.getAsLong() - REDUCE_INTERVAL_NANOS);
+	}
+
+	/**
+	 * 检查采样配置
+	 * @throws IllegalArgumentException	配置不合法
+	 */
+	static void check(double highWatermark, double lowWatermark, int maxWeight) {
+		if(highWatermark <= 0 || highWatermark > 1 || lowWatermark < 0 || lowWatermark >= highWatermark || maxWeight < 1) {
+			throw new IllegalArgumentException("采样配置错误：" + highWatermark + "/" + lowWatermark + "/" + maxWeight);
+		}
+	}
+
+	/**
+	 * @return	配置是否与当前实例相同
+	 */
+	boolean matches(double highWatermark, double lowWatermark, int maxWeight) {
+		return Double.compare(this.highWatermark, highWatermark) == 0 && Double.compare(this.lowWatermark, lowWatermark) == 0
+				&& this.maxWeight == maxWeight;
+	}
+
+	/**
+	 * 判断当前事件是否发布
+	 * @param fillRatio	缓存当前的占用比例
+	 * @return	0表示不发布，否则为发布事件的权重
+	 */
+	public int sample(double fillRatio) {
+		int currentWeight = weight;
+		if(fillRatio >= highWatermark ? currentWeight < maxWeight : (fillRatio <= lowWatermark && currentWeight > 1)) {
+			currentWeight = adjust(fillRatio >= highWatermark, currentWeight);
+		}
+		if(currentWeight == 1) {
+			return 1;
+		}
+		return ThreadLocalRandom.current().nextInt(currentWeight) == 0 ? currentWeight : 0;
+	}
+
+	/**
+	 * 按间隔调整权重，多个线程同时调整时只有一个成功
+	 */
+	private int adjust(boolean raise, int currentWeight) {
+		long now = nanoClock.getAsLong();
+		long last = lastAdjustNanos.get();
+		if(now - last < (raise ? RAISE_INTERVAL_NANOS : REDUCE_INTERVAL_NANOS) || !lastAdjustNanos.compareAndSet(last, now)) {
+			return weight;
+		}
+		int newWeight = raise ? Math.min(maxWeight, currentWeight << 1) : currentWeight >> 1;
+		weight = newWeight;
+		return newWeight;
+	}
+
+	/**
+	 * @return	当前权重，1表示未采样
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return	当前采样率
+	 */
+	public double getRate() {
+		return 1.0 / weight;
+	}
+
+}
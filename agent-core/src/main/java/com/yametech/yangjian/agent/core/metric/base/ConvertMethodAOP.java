@@ -27,9 +27,13 @@ import com.yametech.yangjian.agent.api.convert.IMethodBeforeAsyncConvert;
 import com.yametech.yangjian.agent.api.convert.IMethodBeforeConvert;
 import com.yametech.yangjian.agent.api.convert.IMethodConvert;
 import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.interceptor.IAdviceSupport;
 import com.yametech.yangjian.agent.api.interceptor.IMethodAOP;
 import com.yametech.yangjian.agent.api.interceptor.IStaticMethodAOP;
 import com.yametech.yangjian.agent.api.convert.IMethodCallbackConvert;
+import com.yametech.yangjian.agent.core.core.interceptor.InvocationFrame;
+import com.yametech.yangjian.agent.core.core.interceptor.InvocationFrameStack;
+import com.yametech.yangjian.agent.core.core.interceptor.TimeBeforeResult;
 import com.yametech.yangjian.agent.core.metric.BaseConvertAOP;
 
 /**
@@ -37,7 +41,12 @@ import com.yametech.yangjian.agent.core.metric.BaseConvertAOP;
  * @Description
  * @date 2019年12月24日 下午9:50:56
  */
-public class ConvertMethodAOP extends BaseConvertAOP implements IMethodAOP<Long>, IStaticMethodAOP<Long> {
+public class ConvertMethodAOP extends BaseConvertAOP implements IMethodAOP<Long>, IStaticMethodAOP<Long>, IAdviceSupport {
+
+    @Override
+    public boolean adviceSupport() {
+        return !(convert instanceof IMethodCallbackConvert);// 回调方式会替换返回值，不能使用advice
+    }
 
     @Override
     public BeforeResult<Long> before(Object thisObj, Object[] allArguments, Method method) throws Throwable {
@@ -48,13 +57,13 @@ public class ConvertMethodAOP extends BaseConvertAOP implements IMethodAOP<Long>
         } else if (convert instanceof IMethodBeforeConvert) {
             publishEvent(((IMethodBeforeConvert) convert).convert(thisObj, allArguments, method));
         }
-        return new BeforeResult<>(null, System.currentTimeMillis(), null);
+        return startResult();
     }
 
     @Override
     public Object after(Object thisObj, Object[] allArguments, Method method, BeforeResult<Long> beforeResult,
                         Object ret, Throwable t, Map<Class<?>, Object> globalVar) throws Throwable {
-        long startTime = beforeResult.getLocalVar();
+        long startTime = startMillis(beforeResult);
         if (convert instanceof IMethodAsyncConvert) {
             IMethodAsyncConvert thisConvert = (IMethodAsyncConvert) convert;
             List<Object> datas = thisConvert.convert(thisObj, startTime, allArguments, method, ret, t, globalVar);
@@ -76,12 +85,12 @@ public class ConvertMethodAOP extends BaseConvertAOP implements IMethodAOP<Long>
         } else if (convert instanceof IMethodBeforeConvert) {
             publishEvent(((IMethodBeforeConvert) convert).convert(null, allArguments, method));
         }
-        return new BeforeResult<>(null, System.currentTimeMillis(), null);
+        return startResult();
     }
 
     @Override
     public Object after(Object[] allArguments, Method method, BeforeResult<Long> beforeResult, Object ret, Throwable t, Map<Class<?>, Object> globalVar) throws Throwable {
-        long startTime = beforeResult.getLocalVar();
+        long startTime = startMillis(beforeResult);
         if (convert instanceof IMethodAsyncConvert) {
             IMethodAsyncConvert thisConvert = (IMethodAsyncConvert) convert;
             List<Object> datas = thisConvert.convert(null, startTime, allArguments, method, ret, t, globalVar);
@@ -94,35 +103,54 @@ public class ConvertMethodAOP extends BaseConvertAOP implements IMethodAOP<Long>
         return ret;
     }
 
+    /**
+     * 在增强方法调用中复用当前InvocationFrame中的BeforeResult，避免每次调用创建对象及装箱
+     * @return	BeforeResult
+     */
+    private BeforeResult<Long> startResult() {
+        InvocationFrame frame = InvocationFrameStack.current();
+        if (frame == null) {
+            return new BeforeResult<>(null, System.currentTimeMillis(), null);
+        }
+        return frame.timeResult(System.currentTimeMillis());
+    }
+
+    private long startMillis(BeforeResult<Long> beforeResult) {
+        if (beforeResult instanceof TimeBeforeResult) {
+            return ((TimeBeforeResult) beforeResult).getStartMillis();
+        }
+        return beforeResult.getLocalVar();
+    }
+
 	private void publishAsyncEvent(List<Object> datas, IAsyncConvert thisConvert) {
 		if (datas == null) {
 			return;
 		}
-		for (Object data : datas) {
-			// TODO 此处增加批量发布，并且限制每次批量的条数，超过后分批发布
-			metricEventBus.publish(event -> {
-				// 共用对象实例，仅变更字段值，必须包含所有字段设值，否则会包含之前的值（实例共用）
-				initEvent(event, thisConvert, data, null, null, 0, null, 0, 0, 0);
-			});
-		}
+		// 共用对象实例，仅变更字段值，必须包含所有字段设值，否则会包含之前的值（实例共用）
+		metricEventBus.publish((event, index) -> initEvent(event, thisConvert, datas.get(index), null, null, 0, null, 0, 0, 0, 0), datas.size());
 	}
 
     private void publishEvent(List<TimeEvent> datas) {
-		if (datas == null) {
+		if (datas == null || metricEventBus.aggregate(datas, type)) {
 			return;
 		}
-		for (TimeEvent timeEvent : datas) {
-			// TODO 此处增加批量发布，并且限制每次批量的条数，超过后分批发布
-			metricEventBus.publish(event -> {
-				// 共用对象实例，仅变更字段值，必须包含所有字段设值，否则会包含之前的值（实例共用）
-				initEvent(event, null, null, timeEvent.getType(), timeEvent.getStatisticTypes(), timeEvent.getEventTime(),
-						timeEvent.getIdentify(), timeEvent.getUseTime(), timeEvent.getNumber(), timeEvent.getErrorNum());
-			});
+		if (datas.size() == 1) {
+			TimeEvent timeEvent = datas.get(0);
+			metricEventBus.publish(event -> initEvent(event, timeEvent));
+			return;
 		}
+		// 批量发布，超过bufferSize时分批申请
+		metricEventBus.publish((event, index) -> initEvent(event, datas.get(index)), datas.size());
 	}
 
+    private void initEvent(ConvertTimeEvent event, TimeEvent timeEvent) {
+		// 共用对象实例，仅变更字段值，必须包含所有字段设值，否则会包含之前的值（实例共用）
+		initEvent(event, null, null, timeEvent.getType(), timeEvent.getStatisticTypes(), timeEvent.getEventTime(),
+				timeEvent.getIdentify(), timeEvent.getUseTime(), timeEvent.getNumber(), timeEvent.getErrorNum(), timeEvent.getDistinctHash());
+    }
+
     private void initEvent(ConvertTimeEvent event, IAsyncConvert convert, Object data, String type,
-                           StatisticType[] statisticTypes, long eventTime, String identify, long useTime, long number, long errorNum) {
+                           StatisticType[] statisticTypes, long eventTime, String identify, long useTime, long number, long errorNum, long distinctHash) {
         event.setConvert(convert);
         event.setData(data);
         event.setStatisticTypes(statisticTypes);
@@ -132,5 +160,8 @@ public class ConvertMethodAOP extends BaseConvertAOP implements IMethodAOP<Long>
         event.setUseTime(useTime);
         event.setNumber(number);
         event.setErrorNum(errorNum);
+        event.setDistinctHash(distinctHash);
+        event.setWeight(1);
+        event.setPartial(null);
     }
 }
@@ -17,10 +17,13 @@ package com.yametech.yangjian.agent.core.metric.base;
 
 import com.yametech.yangjian.agent.api.bean.TimeEvent;
 import com.yametech.yangjian.agent.api.convert.IAsyncConvert;
+import com.yametech.yangjian.agent.core.metric.consume.SecondStatisticBean;
 
 public class ConvertTimeEvent extends TimeEvent {
 	private IAsyncConvert convert;
 	private Object data;
+	private int weight = 1;// 采样权重，消费时number、useTime、errorNum乘以该值，参见AdaptiveSampler
+	private SecondStatisticBean partial;// 调用线程预聚合的分段统计值，不为null时其他字段无效，参见PreAggregator
 	
 	public IAsyncConvert getConvert() {
 		return convert;
@@ -37,4 +40,20 @@ public class ConvertTimeEvent extends TimeEvent {
 	public void setData(Object data) {
 		this.data = data;
 	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	public SecondStatisticBean getPartial() {
+		return partial;
+	}
+
+	public void setPartial(SecondStatisticBean partial) {
+		this.partial = partial;
+	}
 }
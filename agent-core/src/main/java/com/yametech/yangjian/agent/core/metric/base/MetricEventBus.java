@@ -15,21 +15,47 @@
  */
 package com.yametech.yangjian.agent.core.metric.base;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
 import com.yametech.yangjian.agent.api.common.InstanceManage;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
 import com.yametech.yangjian.agent.core.common.BaseEventPublish;
 import com.yametech.yangjian.agent.core.common.EventBusType;
 import com.yametech.yangjian.agent.core.metric.consume.RTEventListener;
+import com.yametech.yangjian.agent.core.metric.consume.SecondStatisticBean;
 import com.yametech.yangjian.agent.util.eventbus.consume.ConsumeConfig;
 
 /**
+ * 开启采样（默认关闭）时缓存占用较高时按AdaptiveSampler采样发布，未发布的事件由发布事件的权重代表，避免高峰期直接丢弃导致统计值偏低；
+ * 采样期间调用次数、耗时为估算值，DISTINCT（HyperLogLog）只统计发布的事件，去重数偏低
+ * 开启预聚合时同步转换的事件由PreAggregator在调用线程按秒聚合，每个线程每秒仅发布一个分段，分段不参与采样
+ *
  * @author dengliming
  * @date 2019/12/12
  */
 public class MetricEventBus extends BaseEventPublish<ConvertTimeEvent> {
-    
+    private static final ILogger log = LoggerFactory.getLogger(MetricEventBus.class);
+    private static final String SAMPLE_ENABLE_KEY = "eventPublish.sample.metric";
+    private static final String SAMPLE_HIGH_KEY = "eventPublish.sample.metric.highWatermark";
+    private static final String SAMPLE_LOW_KEY = "eventPublish.sample.metric.lowWatermark";
+    private static final String SAMPLE_MAX_WEIGHT_KEY = "eventPublish.sample.metric.maxWeight";
+    private static final String PRE_AGGREGATE_KEY = "eventPublish.preAggregate.metric";
+    private volatile AdaptiveSampler sampler;// 为null时不采样，默认不采样
+    private final AtomicLong sampledNum = new AtomicLong(0);// 总共因采样未发布的数据量
+    private final AtomicLong periodSampledNum = new AtomicLong(0);// 最近一个输出周期因采样未发布的数据量
+    private volatile PreAggregator preAggregator;// 第一次开启预聚合时创建，之后关闭、开启都复用该实例
+    private volatile boolean preAggregate = false;// 是否预聚合，关闭后已聚合的分段仍由preAggregator定时输出
+
     public MetricEventBus() {
 		super(EventBusType.METRIC);
 	}
@@ -42,5 +68,155 @@ public class MetricEventBus extends BaseEventPublish<ConvertTimeEvent> {
 		consumes.add(listener);
 		return consumes;
 	}
+
+    @Override
+    public Set<String> configKey() {
+        Set<String> keys = new HashSet<>(super.configKey());
+        keys.add(SAMPLE_ENABLE_KEY.replaceAll("\\.", "\\\\.") + ".*");
+        keys.add(PRE_AGGREGATE_KEY.replaceAll("\\.", "\\\\."));
+        return keys;
+    }
+
+    @Override
+    public void configKeyValue(Map<String, String> kv) {
+        super.configKeyValue(kv);
+        if (kv == null) {
+            return;
+        }
+        boolean enablePreAggregate = Boolean.parseBoolean(kv.get(PRE_AGGREGATE_KEY));
+        if (enablePreAggregate && preAggregator == null) {
+            PreAggregator aggregator = new PreAggregator(this::publishPartial);
+            InstanceManage.registryInit(aggregator);
+            preAggregator = aggregator;
+        }
+        preAggregate = enablePreAggregate;
+        if (!"true".equalsIgnoreCase(kv.get(SAMPLE_ENABLE_KEY))) {
+            sampler = null;
+            return;
+        }
+        double high;
+        double low;
+        int maxWeight;
+        try {
+            high = parse(kv.get(SAMPLE_HIGH_KEY), AdaptiveSampler.DEFAULT_HIGH_WATERMARK);
+            low = parse(kv.get(SAMPLE_LOW_KEY), AdaptiveSampler.DEFAULT_LOW_WATERMARK);
+            maxWeight = (int) parse(kv.get(SAMPLE_MAX_WEIGHT_KEY), AdaptiveSampler.DEFAULT_MAX_WEIGHT);
+            AdaptiveSampler.check(high, low, maxWeight);
+        } catch (Exception e) {
+            log.warn(e, "{} config error, use default", SAMPLE_ENABLE_KEY);
+            high = AdaptiveSampler.DEFAULT_HIGH_WATERMARK;
+            low = AdaptiveSampler.DEFAULT_LOW_WATERMARK;
+            maxWeight = AdaptiveSampler.DEFAULT_MAX_WEIGHT;
+        }
+        // 配置未变化时保留当前实例，避免刷新配置时重置正在生效的权重
+        AdaptiveSampler current = sampler;
+        if (current == null || !current.matches(high, low, maxWeight)) {
+            sampler = new AdaptiveSampler(high, low, maxWeight);
+        }
+    }
+
+    AdaptiveSampler getSampler() {
+        return sampler;
+    }
+
+    PreAggregator getPreAggregator() {
+        return preAggregator;
+    }
+
+    private static double parse(String value, double defaultValue) {
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @Override
+    public boolean publish(Consumer<ConvertTimeEvent> consumer) {
+        int weight = sample(1);
+        if (weight == 0) {
+            return true;
+        }
+        if (weight == 1) {
+            return super.publish(consumer);
+        }
+        return super.publish(event -> {
+            consumer.accept(event);
+            event.setWeight(weight);
+        });
+    }
+
+    /**
+     * 批量事件使用同一个采样结果，整批发布或整批不发布
+     */
+    @Override
+    public int publish(ObjIntConsumer<ConvertTimeEvent> consumer, int num) {
+        int weight = sample(num);
+        if (weight == 0) {
+            return num;
+        }
+        if (weight == 1) {
+            return super.publish(consumer, num);
+        }
+        return super.publish((event, index) -> {
+            consumer.accept(event, index);
+            event.setWeight(weight);
+        }, num);
+    }
+
+    /**
+     * 开启预聚合时在当前线程聚合同步转换的事件
+     * @param timeEvents	同步转换的事件
+     * @param defaultType	事件未指定type时使用的type
+     * @return	是否已聚合，未开启或存在无法聚合的事件时返回false，需按原方式发布
+     */
+    public boolean aggregate(List<TimeEvent> timeEvents, String defaultType) {
+        PreAggregator aggregator = preAggregator;
+        return preAggregate && aggregator != null && aggregator.add(timeEvents, defaultType);
+    }
+
+    /**
+     * 发布调用线程预聚合的分段，分段已代表多个事件，不采样，按分段聚合的事件数计数
+     * @return	是否发布成功，缓存已满时返回false，由PreAggregator暂存后重试
+     */
+    private boolean publishPartial(SecondStatisticBean partial) {
+        return publishMerged(event -> {
+            event.setConvert(null);
+            event.setData(null);
+            event.setWeight(1);
+            event.setPartial(partial);
+        }, partial.getEventNum());
+    }
+
+    private int sample(int num) {
+        AdaptiveSampler thisSampler = sampler;
+        if (thisSampler == null) {
+            return 1;
+        }
+        int weight = thisSampler.sample(fillRatio());
+        if (weight == 0) {
+            addTotalNum(num);
+            sampledNum.getAndAdd(num);
+            periodSampledNum.getAndAdd(num);
+        }
+        return weight;
+    }
+
+    @Override
+    protected void reportParams(Map<String, Object> params) {
+        AdaptiveSampler thisSampler = sampler;
+        params.put("sample_rate", thisSampler == null ? 1 : thisSampler.getRate());
+        params.put("total_sampled_num", sampledNum.get());
+        params.put("period_sampled_num", periodSampledNum.getAndSet(0));
+        PreAggregator aggregator = preAggregator;
+        if (aggregator != null) {
+            params.put("period_partial_num", aggregator.getPeriodPartialNum());
+        }
+    }
+
+    @Override
+    public boolean shutdown(Duration duration) {
+        PreAggregator aggregator = preAggregator;
+        if (aggregator != null) {
+            aggregator.flushAll();// 输出各线程未结束的分段
+        }
+        return super.shutdown(duration);
+    }
     
 }
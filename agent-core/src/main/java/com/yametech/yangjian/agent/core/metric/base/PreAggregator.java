@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import com.yametech.yangjian.agent.api.ISchedule;
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.common.StringUtil;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.metric.consume.SecondStatisticBean;
+
+/**
+ * 在调用线程预聚合同步转换的事件：每个线程按秒在自己的SecondStatisticBean中累加，秒切换时将上一秒的分段统计值作为一个事件交给消费线程合并，
+ * 高频调用时每个线程每秒仅发布一次，避免RingBuffer成为瓶颈
+ * 线程空闲或已结束时分段不会切换，由定时任务将已结束的分段置为null取走，取走前等待调用线程正在进行的写入完成（与RTEventConsume一致）；
+ * 已结束线程的分段取走后移除该线程的缓存；缓存已满发布失败的分段暂存，下次定时任务重试，超过MAX_RETAINED个时合并
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class PreAggregator implements ISchedule {
+	private static final ILogger LOG = LoggerFactory.getLogger(PreAggregator.class);
+	static final int MAX_RETAINED = 1 << 6;// 发布失败暂存分段的最大个数
+	private final Predicate<SecondStatisticBean> handoff;// 将分段交给消费线程，返回false表示未发布
+	private final LongSupplier clock;
+	private final ThreadLocal<ThreadBuffer> buffers = ThreadLocal.withInitial(this::register);
+	private final Queue<ThreadBuffer> registered = new ConcurrentLinkedQueue<>();// 所有线程的缓存，仅定时任务移除
+	private final Deque<SecondStatisticBean> retained = new ArrayDeque<>();// 发布失败的分段，按时间排序
+	private final AtomicLong partialNum = new AtomicLong(0);// 最近一个输出周期发布的分段数
+
+	public PreAggregator(Predicate<SecondStatisticBean> handoff) {
+		this(handoff, System::currentTimeMillis);
+	}
+
+	PreAggregator(Predicate<SecondStatisticBean> handoff, LongSupplier clock) {
+		this.handoff = handoff;
+		this.clock = clock;
+	}
+
+	/**
+	 * 在当前线程聚合事件，存在无法聚合的事件时整批不聚合，由调用方按原方式发布
+	 * @param timeEvents	同步转换的事件
+	 * @param defaultType	事件未指定type时使用的type
+	 * @return	是否已聚合
+	 */
+	public boolean add(List<TimeEvent> timeEvents, String defaultType) {
+		for(TimeEvent timeEvent : timeEvents) {
+			if(!aggregatable(timeEvent)) {
+				return false;
+			}
+		}
+		SecondStatisticBean expired = buffers.get().add(timeEvents, defaultType, clock.getAsLong() / 1000);
+		if(expired != null) {
+			handoff(expired);
+		}
+		return true;
+	}
+
+	/**
+	 * 在调用线程聚合时，异常会抛到业务方法中，所以不满足统计条件的事件不聚合
+	 */
+	private static boolean aggregatable(TimeEvent timeEvent) {
+		return timeEvent != null && timeEvent.getIdentify() != null && timeEvent.getStatisticTypes() != null && timeEvent.getNumber() > 0;
+	}
+
+	private ThreadBuffer register() {
+		ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread());
+		registered.add(buffer);
+		return buffer;
+	}
+
+	@Override
+	public int interval() {
+		return 1;
+	}
+
+	/**
+	 * 取走空闲线程已结束的分段及已结束线程的分段，重试暂存的分段
+	 */
+	@Override
+	public void execute() {
+		flush(clock.getAsLong() / 1000);
+	}
+
+	/**
+	 * 取走所有分段，用于关闭前输出
+	 */
+	public void flushAll() {
+		flush(Long.MAX_VALUE);
+	}
+
+	private void flush(long nowSecond) {
+		retry();
+		Iterator<ThreadBuffer> iterator = registered.iterator();
+		while(iterator.hasNext()) {
+			ThreadBuffer buffer = iterator.next();
+			boolean dead = buffer.isDead();
+			SecondStatisticBean expired = buffer.take(dead ? Long.MAX_VALUE : nowSecond);
+			if(expired != null) {
+				handoff(expired);
+			}
+			if(dead) {
+				iterator.remove();// 线程已结束，不会再写入
+			}
+		}
+	}
+
+	private void handoff(SecondStatisticBean statisticBean) {
+		if(handoff.test(statisticBean)) {
+			partialNum.getAndIncrement();
+			return;
+		}
+		synchronized (retained) {
+			while(retained.size() >= MAX_RETAINED) {
+				SecondStatisticBean oldest = retained.pollFirst();
+				LOG.warn("预聚合的统计值未及时发布，{}已合并到{}", oldest.getSecond(), statisticBean.getSecond());
+				statisticBean.merge(oldest);
+			}
+			retained.addLast(statisticBean);
+		}
+	}
+
+	private void retry() {
+		synchronized (retained) {
+			SecondStatisticBean statisticBean;
+			while((statisticBean = retained.peekFirst()) != null && handoff.test(statisticBean)) {
+				retained.pollFirst();
+				partialNum.getAndIncrement();
+			}
+		}
+	}
+
+	int getThreadNum() {
+		return registered.size();
+	}
+
+	int getRetainedNum() {
+		synchronized (retained) {
+			return retained.size();
+		}
+	}
+
+	public long getPeriodPartialNum() {
+		return partialNum.getAndSet(0);
+	}
+
+	/**
+	 * 单个线程的分段，仅所属线程写入，定时任务通过current及writeEpoch取走空闲线程的分段
+	 */
+	private static class ThreadBuffer {
+		private final WeakReference<Thread> thread;
+		private final AtomicReference<SecondStatisticBean> current = new AtomicReference<>();
+		private volatile long writeEpoch = 0;// 所属线程每次写入前后各加1，奇数表示正在写入
+
+		ThreadBuffer(Thread thread) {
+			this.thread = new WeakReference<>(thread);
+		}
+
+		/**
+		 * @return	切换出的上一秒分段，需交给消费线程
+		 */
+		SecondStatisticBean add(List<TimeEvent> timeEvents, String defaultType, long second) {
+			SecondStatisticBean expired = null;
+			writeEpoch++;// 单线程写，volatile写保证在读取current之前对定时任务可见
+			try {
+				SecondStatisticBean statisticBean = current.get();
+				if(statisticBean == null || statisticBean.getSecond() != second) {
+					SecondStatisticBean newBean = new SecondStatisticBean(second);
+					if(!current.compareAndSet(statisticBean, newBean)) {
+						current.set(newBean);// 定时任务已取走statisticBean，此时current为null
+					} else {
+						expired = statisticBean;
+					}
+					statisticBean = newBean;
+				}
+				statisticBean.addEventNum(1);
+				for(TimeEvent timeEvent : timeEvents) {
+					statisticBean.statistic(timeEvent, StringUtil.isEmpty(timeEvent.getType()) ? defaultType : timeEvent.getType());
+				}
+			} finally {
+				writeEpoch++;
+			}
+			return expired;
+		}
+
+		/**
+		 * 取走nowSecond之前的分段，取走后所属线程不会再修改该分段
+		 * @return	取走的分段，没有时返回null
+		 */
+		SecondStatisticBean take(long nowSecond) {
+			SecondStatisticBean statisticBean = current.get();
+			if(statisticBean == null || statisticBean.getSecond() >= nowSecond || !current.compareAndSet(statisticBean, null)) {
+				return null;
+			}
+			long epoch = writeEpoch;
+			if((epoch & 1) != 0) {
+				while(writeEpoch == epoch) {
+					Thread.yield();
+				}
+			}
+			return statisticBean;
+		}
+
+		boolean isDead() {
+			Thread owner = thread.get();
+			return owner == null || !owner.isAlive();
+		}
+	}
+}
@@ -17,35 +17,83 @@ package com.yametech.yangjian.agent.core.metric.consume;
 
 import com.yametech.yangjian.agent.api.bean.TimeEvent;
 import com.yametech.yangjian.agent.api.common.StringUtil;
-import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
 import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
 import com.yametech.yangjian.agent.api.log.ILogger;
 import com.yametech.yangjian.agent.api.log.LoggerFactory;
 import com.yametech.yangjian.agent.core.metric.base.ConvertTimeEvent;
 import com.yametech.yangjian.agent.util.eventbus.consume.BaseConsume;
 
-import java.text.SimpleDateFormat;
-import java.util.*;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
+/**
+ * 按时间窗口聚合统计值，消费线程只写当前窗口，窗口结束后切换新窗口并将旧窗口放入待输出队列，输出线程只读取已切换出的窗口
+ * 消费线程长时间没有事件时当前窗口不会切换，由输出线程将已结束的当前窗口置为null取走，取走前等待消费线程正在进行的写入完成（epoch），
+ * 输出不及时时待输出窗口超过MAX_PENDING_WINDOW个，将最早的窗口合并到新切换出的窗口中，统计值不丢失，内存有上限
+ * 已输出（或已合并）的窗口放入recycled，切换窗口时优先原地清空复用
+ */
 public class RTEventConsume implements BaseConsume<ConvertTimeEvent> {
 	private static final ILogger log = LoggerFactory.getLogger(RTEventConsume.class);
-	static final int STATISTICS_SECOND_SIZE = 1 << 3;// 每种类型的统计，内存中存放的最大统计秒数个数
-	private final SecondStatisticBean[] allStatistics = new SecondStatisticBean[STATISTICS_SECOND_SIZE];
+	static final int MAX_PENDING_WINDOW = 1 << 6;// 待输出窗口的最大个数
+	private final int windowSecond;// 窗口的秒数
+	private final int identifyMaxSize;// 每个type下identify最大允许的个数
+	private final LongSupplier clock;
+	private final AtomicReference<SecondStatisticBean> current = new AtomicReference<>();// 当前写入的窗口，仅消费线程写入
+	private final Queue<SecondStatisticBean> pending = new ConcurrentLinkedQueue<>();// 已切换出，等待输出的窗口，按时间排序
+	private final AtomicInteger pendingNum = new AtomicInteger();
+	private final AtomicReference<SecondStatisticBean> recycled = new AtomicReference<>();// 可复用的窗口，仅保留一个
+	private volatile long writeEpoch = 0;// 消费线程每次写入前后各加1，奇数表示正在写入
 	private long totalNum = 0;// 总消费量
 	private final AtomicLong periodTotalNum = new AtomicLong(0);// 最近一个输出周期产生的事件量
 
+	public RTEventConsume() {
+		this(1);
+	}
+
+	public RTEventConsume(int windowSecond) {
+		this(windowSecond, SecondStatisticBean.IDENTIFY_MAX_SIZE);
+	}
+
+	public RTEventConsume(int windowSecond, int identifyMaxSize) {
+		this(windowSecond, identifyMaxSize, System::currentTimeMillis);
+	}
+
+	RTEventConsume(int windowSecond, LongSupplier clock) {
+		this(windowSecond, SecondStatisticBean.IDENTIFY_MAX_SIZE, clock);
+	}
+
+	RTEventConsume(int windowSecond, int identifyMaxSize, LongSupplier clock) {
+		this.windowSecond = Math.max(1, windowSecond);
+		this.identifyMaxSize = identifyMaxSize;
+		this.clock = clock;
+	}
+
 	@Override
 	public boolean test(ConvertTimeEvent event) {
-		totalNum++;
-		periodTotalNum.getAndIncrement();
+		SecondStatisticBean partial = event.getPartial();
+		long num = partial == null ? 1 : partial.getEventNum();// 预聚合的分段按聚合的事件数计数
+		totalNum += num;
+		periodTotalNum.getAndAdd(num);
 		return true;
 	}
 
 	@Override
 	public void accept(ConvertTimeEvent event) {
+		SecondStatisticBean partial = event.getPartial();
+		if(partial != null) {
+			merge(partial);
+			return;
+		}
+		int weight = event.getWeight();
 		if(event.getConvert() == null) {
+			weight(event, weight);
 			consume(event);
 			return;
 		}
@@ -61,25 +109,94 @@ public class RTEventConsume implements BaseConsume<ConvertTimeEvent> {
 				if (StringUtil.isEmpty(timeEvent.getType())) {
 					timeEvent.setType(event.getType());
 				}
+				weight(timeEvent, weight);
 				consume(timeEvent);
 			});
 	}
 
 	/**
-	 * 在RTEventListener中配置了一个当前实例仅被一个线程调用，所以此处的consume为线程安全的，但是与getReportStatistics可能出现并发操作
+	 * 采样发布的事件代表weight个事件，按权重放大次数、耗时及异常数，平均耗时不变
+	 */
+	private static void weight(TimeEvent timeEvent, int weight) {
+		if(weight <= 1) {
+			return;
+		}
+		timeEvent.setNumber(timeEvent.getNumber() * weight);
+		timeEvent.setUseTime(timeEvent.getUseTime() * weight);
+		timeEvent.setErrorNum(timeEvent.getErrorNum() * weight);
+	}
+
+	/**
+	 * 在RTEventListener中配置了一个当前实例仅被一个线程调用，所以此处的consume为线程安全的，与getReportStatistics的并发通过current及writeEpoch处理
 	 * @param timeEvent
 	 */
 	private void consume(TimeEvent timeEvent) {
-		long nowSecond = System.currentTimeMillis() / 1000;// 此处以当前时间聚合数据，避免因为eventTime时间延迟导致的allStatistics超出范围以及输出过多日志（之前的统计值输出后又产生了之前的统计值，导致同一秒的统计值输出多次）
-		int index = (int) (nowSecond & (STATISTICS_SECOND_SIZE - 1));
-		if(allStatistics[index] == null || nowSecond != allStatistics[index].getSecond()) {
-			if(allStatistics[index] != null && nowSecond != allStatistics[index].getSecond()) {
-				log.warn("未及时输出统计值，已丢弃 {}", allStatistics[index].getSecond());
+		writeEpoch++;// 单线程写，volatile写保证在读取current之前对输出线程可见
+		try {
+			currentWindow().statistic(timeEvent);
+		} finally {
+			writeEpoch++;
+		}
+	}
+
+	/**
+	 * 将调用线程预聚合的分段合并到当前窗口，与单个事件一样以当前时间聚合
+	 * @param partial	PreAggregator发布的分段，合并后不再使用
+	 */
+	private void merge(SecondStatisticBean partial) {
+		writeEpoch++;
+		try {
+			currentWindow().merge(partial);
+		} finally {
+			writeEpoch++;
+		}
+	}
+
+	/**
+	 * 获取当前时间所在的窗口，窗口已结束时切换，需在writeEpoch为奇数时调用
+	 */
+	private SecondStatisticBean currentWindow() {
+		long nowSecond = clock.getAsLong() / 1000;// 此处以当前时间聚合数据，避免因为eventTime时间延迟导致输出过多日志（之前的统计值输出后又产生了之前的统计值，导致同一秒的统计值输出多次）
+		long windowStart = windowSecond > 1 ? RTEventListener.getPeriodStartSecond(nowSecond, windowSecond) : nowSecond;
+		SecondStatisticBean statisticBean = current.get();
+		if(statisticBean == null || statisticBean.getSecond() != windowStart) {
+			SecondStatisticBean newBean = newWindow(windowStart);
+			if(!current.compareAndSet(statisticBean, newBean)) {
+				current.set(newBean);// 输出线程已取走statisticBean，此时current为null
+			} else if(statisticBean != null) {
+				handoff(statisticBean);
 			}
-			allStatistics[index] = new SecondStatisticBean(nowSecond);
+			statisticBean = newBean;
 		}
-		SecondStatisticBean statisticBean = allStatistics[index];
-		statisticBean.statistic(timeEvent);
+		return statisticBean;
+	}
+
+	/**
+	 * 将切换出的窗口放入待输出队列，超过上限时将最早的窗口合并到该窗口
+	 * @param statisticBean	切换出的窗口，仅当前线程持有
+	 */
+	private void handoff(SecondStatisticBean statisticBean) {
+		while(pendingNum.get() >= MAX_PENDING_WINDOW) {
+			SecondStatisticBean oldest = pending.poll();
+			if(oldest == null) {
+				break;
+			}
+			pendingNum.decrementAndGet();
+			log.warn("未及时输出统计值，{}已合并到{}", oldest.getSecond(), statisticBean.getSecond());
+			statisticBean.merge(oldest);
+			recycled.set(oldest);
+		}
+		pending.add(statisticBean);
+		pendingNum.incrementAndGet();
+	}
+
+	private SecondStatisticBean newWindow(long windowStart) {
+		SecondStatisticBean statisticBean = recycled.getAndSet(null);
+		if(statisticBean == null) {
+			return new SecondStatisticBean(windowStart, identifyMaxSize);
+		}
+		statisticBean.reset(windowStart);
+		return statisticBean;
 	}
 
 	/**
@@ -88,32 +205,70 @@ public class RTEventConsume implements BaseConsume<ConvertTimeEvent> {
 	 * @return
 	 */
 	public List<BaseStatistic> getReportStatistics(int periodSecond) {
+		return getReportStatistics(periodSecond, clock.getAsLong());
+	}
+
+	/**
+	 * 获取指定时间之前的统计值，每个窗口仅输出一次，需单线程调用
+	 * @param periodSecond	周期值，用于获取周期开始时间，判断数据是否可输出，小于1时（关闭中）不等待窗口及周期结束，输出当前秒之前的所有窗口
+	 * @param nowMillis	当前时间毫秒数
+	 * @return
+	 */
+	public List<BaseStatistic> getReportStatistics(int periodSecond, long nowMillis) {
 		List<BaseStatistic> reportStatistic = new ArrayList<>();
-		long nowMillis = System.currentTimeMillis();
-		for(int i = 0; i < allStatistics.length; i++) {
-			SecondStatisticBean statistic = allStatistics[i];
-			if(statistic == null) {
-				continue;
-			}
-			long statisticStartSecond = statistic.getSecond();
-			if(periodSecond > 1) {
-				statisticStartSecond = RTEventListener.getPeriodStartSecond(statistic.getSecond(), periodSecond);
+		long nowSecond = nowMillis / 1000;
+		SecondStatisticBean statisticBean;
+		// 待输出队列按时间排序，遇到未完成的周期即停止
+		while((statisticBean = pending.peek()) != null && isComplete(statisticBean, periodSecond, nowSecond)) {
+			// 消费线程可能同时将最早的窗口取出合并到新窗口（handoff），此时移除失败，统计值随新窗口输出
+			if(pending.remove(statisticBean)) {
+				pendingNum.decrementAndGet();
+				addStatistics(reportStatistic, statisticBean);
 			}
-			if(nowMillis / 1000 - statisticStartSecond <= periodSecond) {// 周期统计还未完成不输出，如果输出了，会因并发导致数据丢失
-				continue;
-			}
-			for(Entry<String, Map<String, Map<StatisticType, BaseStatistic>>> entryType : statistic.getStatistics().entrySet()) {
-				for(Entry<String, Map<StatisticType, BaseStatistic>> entrySign : entryType.getValue().entrySet()) {
-					for(Entry<StatisticType, BaseStatistic> entry : entrySign.getValue().entrySet()) {
-						reportStatistic.add(entry.getValue());
-					}
-				}
-			}
-			allStatistics[i] = null;// 输出后重置
+		}
+		// 待输出队列已输出完时，取走已完成的当前窗口
+		statisticBean = current.get();
+		if(pending.isEmpty() && statisticBean != null && isComplete(statisticBean, periodSecond, nowSecond)
+				&& current.compareAndSet(statisticBean, null)) {
+			waitWriting();
+			addStatistics(reportStatistic, statisticBean);
 		}
 		return reportStatistic;
 	}
 
+	/**
+	 * 等待消费线程已开始的写入完成，之后的写入会读取到新的current，不会再修改已取走的窗口
+	 */
+	private void waitWriting() {
+		long epoch = writeEpoch;
+		if((epoch & 1) == 0) {
+			return;
+		}
+		while(writeEpoch == epoch) {
+			Thread.yield();
+		}
+	}
+
+	private boolean isComplete(SecondStatisticBean statisticBean, int periodSecond, long nowSecond) {
+		if(periodSecond < 1) {
+			return nowSecond > statisticBean.getSecond();
+		}
+		long statisticStartSecond = statisticBean.getSecond();
+		int completeSecond = Math.max(periodSecond, windowSecond);
+		if(completeSecond > 1) {
+			statisticStartSecond = RTEventListener.getPeriodStartSecond(statisticBean.getSecond(), completeSecond);
+		}
+		return nowSecond - statisticStartSecond > completeSecond;// 周期统计还未完成不输出，如果输出了，同一周期会输出多次
+	}
+
+	/**
+	 * 输出窗口的统计值，输出后窗口仅当前线程持有，可交给消费线程复用
+	 */
+	private void addStatistics(List<BaseStatistic> reportStatistic, SecondStatisticBean statisticBean) {
+		statisticBean.report(reportStatistic);
+		recycled.set(statisticBean);
+	}
+
 	public long getTotalNum() {
 		return totalNum;
 	}
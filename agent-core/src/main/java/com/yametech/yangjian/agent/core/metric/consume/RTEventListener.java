@@ -31,6 +31,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.LongSupplier;
 
 /**
  * @author liuzhao
@@ -41,21 +42,33 @@ public class RTEventListener extends BaseEventListener<ConvertTimeEvent> {
 	private static final ILogger log = LoggerFactory.getLogger(RTEventListener.class);
     private static final String CONFIG_KEY = "metricOutput.interval.metric";
     private static final String METRIC_PERIOD_CONFIG_KEY = "metric.period.second";
+    private static final String WINDOW_CONFIG_KEY = "metric.window.second";
+    private static final String IDENTIFY_MAX_CONFIG_KEY = "metric.identify.maxSize";
     private static final long PERIOD_START_SECOND = LocalDateTime.of(2020, 11, 1, 0, 0,0).toEpochSecond(ZoneOffset.of("+8"));
     private final List<RTEventConsume> consumes = new ArrayList<>();
     private final IReportData report = MultiReportFactory.getReport("statistic");
+    private final LongSupplier clock;
     private int interval = 1;
     private int metricPeriod = 1;
+    private int windowSecond = 1;
+    private int identifyMaxSize = SecondStatisticBean.IDENTIFY_MAX_SIZE;
     private volatile boolean shutdown = false;
 
     public RTEventListener() {
-		super(EventBusType.METRIC);
+		this(System::currentTimeMillis);
 	}
 
+    RTEventListener(LongSupplier clock) {
+        super(EventBusType.METRIC);
+        this.clock = clock;
+    }
+
     @Override
     public Set<String> configKeyOverride() {
         return new HashSet<>(Arrays.asList(CONFIG_KEY.replaceAll("\\.", "\\\\."),
-                METRIC_PERIOD_CONFIG_KEY.replaceAll("\\.", "\\\\.")));
+                METRIC_PERIOD_CONFIG_KEY.replaceAll("\\.", "\\\\."),
+                WINDOW_CONFIG_KEY.replaceAll("\\.", "\\\\."),
+                IDENTIFY_MAX_CONFIG_KEY.replaceAll("\\.", "\\\\.")));
     }
 
     @Override
@@ -82,22 +95,48 @@ public class RTEventListener extends BaseEventListener<ConvertTimeEvent> {
             }
         }
 
-        if(interval + metricPeriod >= RTEventConsume.STATISTICS_SECOND_SIZE) {
+        String windowStr = kv.get(WINDOW_CONFIG_KEY);
+        if(windowStr != null) {
+            try {
+                windowSecond = Integer.parseInt(windowStr);
+            } catch(Exception e) {
+                log.warn("{} config error: {}", WINDOW_CONFIG_KEY, windowStr);
+            }
+        }
+
+        String identifyMaxStr = kv.get(IDENTIFY_MAX_CONFIG_KEY);
+        if(identifyMaxStr != null) {
+            try {
+                identifyMaxSize = Integer.parseInt(identifyMaxStr);
+            } catch(Exception e) {
+                log.warn("{} config error: {}", IDENTIFY_MAX_CONFIG_KEY, identifyMaxStr);
+            }
+        }
+
+        if(interval < 1 || metricPeriod < 1) {
             interval = 1;
             metricPeriod = 1;
-            log.warn("{}、{}和值大于{}，设置错误，都已重置为默认值1", CONFIG_KEY, METRIC_PERIOD_CONFIG_KEY, RTEventConsume.STATISTICS_SECOND_SIZE);
+            log.warn("{}、{}必须大于0，都已重置为默认值1", CONFIG_KEY, METRIC_PERIOD_CONFIG_KEY);
+        }
+        if(windowSecond < 1 || metricPeriod % windowSecond != 0) {
+            log.warn("{}必须大于0且能整除{}，已重置为默认值1", WINDOW_CONFIG_KEY, METRIC_PERIOD_CONFIG_KEY);
+            windowSecond = 1;
+        }
+        if(identifyMaxSize < 1) {
+            log.warn("{}必须大于0，已重置为默认值{}", IDENTIFY_MAX_CONFIG_KEY, SecondStatisticBean.IDENTIFY_MAX_SIZE);
+            identifyMaxSize = SecondStatisticBean.IDENTIFY_MAX_SIZE;
         }
     }
 
     @Override
     public BaseConsume<ConvertTimeEvent> getConsume() {
         // 该方法会调用parallelism次，如果返回同一个实例且parallelism>0，则实例为多线程消费
-        RTEventConsume consume = new RTEventConsume();
+        RTEventConsume consume = new RTEventConsume(windowSecond, identifyMaxSize, clock);
         consumes.add(consume);
         return consume;
     }
 
-    // 注意interval的执行间隔要低于RTEventConsume.STATISTICS_SECOND_SIZE，否则会丢失
+    // 输出不及时时，超过RTEventConsume.MAX_PENDING_WINDOW个窗口的统计值会合并到之后的窗口中
     @Override
     public int interval() {
         return interval;
@@ -105,32 +144,39 @@ public class RTEventListener extends BaseEventListener<ConvertTimeEvent> {
     
     @Override
     public void executeOverride() {
-        // 循环consumes输出累加统计值
-        for (RTEventConsume consume : consumes) {// 每个consume中的type不重叠
-            Collection<BaseStatistic> statistics;
-            if(metricPeriod > 1) {
-                statistics = groupStatistic(consume.getReportStatistics(shutdown ? 1 : metricPeriod));
-            } else {
-                statistics = consume.getReportStatistics(metricPeriod);
+        for (BaseStatistic statistic : getReportStatistics(clock.getAsLong())) {
+            Entry<String, Object>[] kvs = statistic.kv();
+            if (kvs == null) {
+                continue;
             }
-            for (BaseStatistic statistic : statistics) {
-                Entry<String, Object>[] kvs = statistic.kv();
-                if (kvs == null) {
-                	continue;
-                }
-                Map<String, Object> thisParams = new HashMap<>();
-                for(Entry<String, Object> entry : kvs) {
-                	thisParams.put(entry.getKey(), entry.getValue());
-                }
-                thisParams.put("period", metricPeriod);
-                MetricData metricData = MetricData.get(statistic.getSecond(), "statistic/" + statistic.getType() + "/" + statistic.statisticType().name(), thisParams);
-                if(!report.report(metricData)) {
-                	log.warn("report failed: {}", metricData);
-                }
+            Map<String, Object> thisParams = new HashMap<>();
+            for(Entry<String, Object> entry : kvs) {
+                thisParams.put(entry.getKey(), entry.getValue());
+            }
+            thisParams.put("period", metricPeriod);
+            MetricData metricData = MetricData.get(statistic.getSecond(), "statistic/" + statistic.getType() + "/" + statistic.statisticType().name(), thisParams);
+            if(!report.report(metricData)) {
+                log.warn("report failed: {}", metricData);
             }
         }
     }
 
+    /**
+     * 获取所有consume中可输出的统计值，同一type、sign可能分布在多个consume中，需合并后输出
+     * @param nowMillis	当前时间，所有consume使用同一时间判断是否可输出，避免同一秒的统计值部分输出
+     * @return	关闭中时不等待窗口及周期结束，尽快输出剩余的统计值
+     */
+    Collection<BaseStatistic> getReportStatistics(long nowMillis) {
+        List<BaseStatistic> statistics = new ArrayList<>();
+        for (RTEventConsume consume : consumes) {
+            statistics.addAll(consume.getReportStatistics(shutdown ? 0 : metricPeriod, nowMillis));
+        }
+        if(metricPeriod > 1 || consumes.size() > 1) {
+            return groupStatistic(statistics);
+        }
+        return statistics;
+    }
+
     /**
      * 将每秒统计值按照输出间隔汇总为周期统计值
      * @param secondStatistic
@@ -150,6 +196,7 @@ public class RTEventListener extends BaseEventListener<ConvertTimeEvent> {
                     groupStatistic.put(key, groupValue);
                 }
                 groupValue.combine(statistic);
+                groupValue.addFoldNum(statistic.getFoldNum());
             }
             return groupStatistic.values();
         } catch (InstantiationException | IllegalAccessException e) {
@@ -190,8 +237,19 @@ public class RTEventListener extends BaseEventListener<ConvertTimeEvent> {
         return periodNum;
     }
     
+	/**
+	 * 按type、identify分配消费线程，避免同一类型（如全部为mysql）的事件集中在一个线程，各线程的统计值在输出时合并
+	 * 异步转换的事件在消费时才能获取identify，按转换数据分配；预聚合的分段包含多个identify，按分段分配
+	 */
 	@Override
 	protected int eventHashCode(ConvertTimeEvent event) {
-		return event.getType().hashCode();
+		if(event.getPartial() != null) {
+			return System.identityHashCode(event.getPartial());
+		}
+		if(event.getConvert() != null) {
+			return System.identityHashCode(event.getData());
+		}
+		String identify = event.getIdentify();
+		return 31 * event.getType().hashCode() + (identify == null ? 0 : identify.hashCode());
 	}
 }
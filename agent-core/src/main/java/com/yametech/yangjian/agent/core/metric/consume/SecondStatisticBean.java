@@ -3,60 +3,563 @@ package com.yametech.yangjian.agent.core.metric.consume;
 import com.yametech.yangjian.agent.api.bean.TimeEvent;
 import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
 import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.DistinctStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.HistogramStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.QPSStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.RTStatistic;
 import com.yametech.yangjian.agent.api.log.ILogger;
 import com.yametech.yangjian.agent.api.log.LoggerFactory;
 
-import java.util.EnumMap;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * 一个窗口的统计值，按(type, identify)开放寻址（线性探测）存储，QPS、RT的计数使用平行的long数组，HISTOGRAM、DISTINCT按需创建，
+ * 统计时不截取identify、不创建统计实例，仅新增标识时分配内存；输出时再生成BaseStatistic，输出后可通过reset原地清空复用
+ * 每个type的identify数量达到上限后按Space-Saving算法淘汰：淘汰权重（调用次数+继承的权重）最小的标识，
+ * 其统计值合并到该type的OTHER_IDENTIFY中，新标识继承被淘汰标识的权重，因此调用次数超过总次数/上限的标识一定会保留，
+ * 保留标识的统计值偏少的部分不超过继承的权重，所有统计值的合计不变
+ * 此处为单线程调用，不会有并发
+ *
+ * @author liuzhao
+ */
 public class SecondStatisticBean {
 	private static final ILogger LOG = LoggerFactory.getLogger(SecondStatisticBean.class);
-	private static final Integer IDENTIFY_MAX_SIZE = 10000;// identify最大允许的个数
-	private static final Integer IDENTIFY_MAX_LENGTH = 300;// identify最大允许的长度
-	private final long second;
-	private final Map<String, Map<String, Map<StatisticType, BaseStatistic>>> statistics = new HashMap<>();// 此处为单线程调用，不会有并发
-	
+	static final int IDENTIFY_MAX_SIZE = 10000;// 每个type下identify默认最大允许的个数
+	private static final int IDENTIFY_MAX_LENGTH = 300;// identify最大允许的长度
+	static final String OTHER_IDENTIFY = "__other__";// 淘汰的identify合并后的标识
+	private static final int INIT_CAPACITY = 1 << 4;
+	private static final StatisticType[] STATISTIC_TYPES = StatisticType.values();
+	private final int identifyMaxSize;
+	private long second;
+	private int size;// 已使用的条目数
+	private int[] slots;// 开放寻址表，值为条目下标+1，0表示空，长度为2的幂且不小于条目容量的2倍
+	// 以下为按条目下标存储的平行数组
+	private int[] hashes;
+	private String[] types;
+	private String[] identifies;// 已截取至IDENTIFY_MAX_LENGTH
+	private TypeSketch[] sketches;// 所属type的淘汰状态
+	private long[] weights;// 淘汰使用的权重
+	private int[] heapPositions;// 在TypeSketch.heap中的位置，-1表示不在堆中
+	private int[] statisticTypes;// 出现过的StatisticType，按ordinal占位
+	private long[] qpsNum;
+	private long[] qpsErrorNum;
+	private long[] rtNum;
+	private long[] rtErrorNum;
+	private long[] rtTotal;
+	private long[] rtMin;
+	private long[] rtMax;
+	private HistogramStatistic[] histograms;
+	private DistinctStatistic[] distincts;
+	private final Map<String, TypeSketch> typeSketches = new HashMap<>();
+	private long eventNum;// 聚合的原始事件数，用于预聚合分段的消费计数
+
 	public SecondStatisticBean(long second) {
+		this(second, IDENTIFY_MAX_SIZE);
+	}
+
+	/**
+	 * @param second	窗口时间
+	 * @param identifyMaxSize	每个type下identify最大允许的个数（不含OTHER_IDENTIFY）
+	 */
+	public SecondStatisticBean(long second, int identifyMaxSize) {
+		if(identifyMaxSize < 1) {
+			throw new IllegalArgumentException("identifyMaxSize必须大于0：" + identifyMaxSize);
+		}
 		this.second = second;
+		this.identifyMaxSize = identifyMaxSize;
+		slots = new int[INIT_CAPACITY << 1];
+		resize(INIT_CAPACITY);
 	}
-	
+
 	public Long getSecond() {
 		return second;
 	}
-	
+
+	/**
+	 * 清空统计值并设置新的窗口时间，保留已分配的数组；之前输出的统计值不受影响
+	 * @param second	窗口时间
+	 */
+	public void reset(long second) {
+		this.second = second;
+		Arrays.fill(slots, 0);
+		Arrays.fill(types, 0, size, null);
+		Arrays.fill(identifies, 0, size, null);
+		Arrays.fill(sketches, 0, size, null);
+		for(int i = 0; i < size; i++) {
+			clearEntry(i);
+		}
+		for(TypeSketch sketch : typeSketches.values()) {
+			sketch.clear();
+		}
+		size = 0;
+		eventNum = 0;
+	}
+
 	public void statistic(TimeEvent timeEvent) {
-		String identify = timeEvent.getIdentify().length() > IDENTIFY_MAX_LENGTH ? timeEvent.getIdentify().substring(0, IDENTIFY_MAX_LENGTH) : timeEvent.getIdentify();
-		Map<String, Map<StatisticType, BaseStatistic>> identifyMap =  statistics.computeIfAbsent(timeEvent.getType(), key -> new HashMap<>());
-//		Map<StatisticType, BaseStatistic> statisticTypeMap = identifyMap.computeIfAbsent(timeEvent.getIdentify(), key -> new EnumMap<>(StatisticType.class));
-		Map<StatisticType, BaseStatistic> statisticTypeMap = identifyMap.get(identify);
-		if(statisticTypeMap == null) {
-			if(identifyMap.size() > IDENTIFY_MAX_SIZE) {
-				LOG.warn("忽略过多的统计标识：{}", timeEvent);
-				return;
-			}
-			statisticTypeMap = new EnumMap<>(StatisticType.class);
-			identifyMap.put(identify, statisticTypeMap);
-		}
-		
-		for(StatisticType type : timeEvent.getStatisticTypes()) {
-			BaseStatistic secondStatistic = statisticTypeMap.get(type);
-			if(secondStatistic == null) {
-				try {
-					secondStatistic = type.getStatistic();
-					secondStatistic.reset(timeEvent.getType(), identify, second);
-					statisticTypeMap.put(type, secondStatistic);
-				} catch (InstantiationException | IllegalAccessException e) {
-					LOG.warn(e, "create baseStatistic instance exception: {}", type);
+		statistic(timeEvent, timeEvent.getType());
+	}
+
+	/**
+	 * @param timeEvent	事件
+	 * @param type	统计的type，用于不修改事件实例时指定默认type
+	 */
+	public void statistic(TimeEvent timeEvent, String type) {
+		String identify = timeEvent.getIdentify();
+		int length = Math.min(identify.length(), IDENTIFY_MAX_LENGTH);
+		int hash = hash(type, identify, length);
+		int index = find(hash, type, identify, length);
+		if(index < 0) {
+			index = add(hash, type, identify.length() > length ? identify.substring(0, length) : identify);
+		}
+		long number = timeEvent.getNumber();
+		long errorNum = timeEvent.getErrorNum();
+		long useTime = timeEvent.getUseTime();
+		increaseWeight(index, number);
+		for(StatisticType statisticType : timeEvent.getStatisticTypes()) {
+			statisticTypes[index] |= 1 << statisticType.ordinal();
+			switch (statisticType) {
+				case QPS:
+					qpsNum[index] += number;
+					qpsErrorNum[index] += errorNum;
+					break;
+				case RT:
+					rtNum[index] += number;
+					rtErrorNum[index] += errorNum;
+					rtTotal[index] += useTime;
+					long avg = useTime / number;// 与RTStatistic一致，批量事件按平均耗时计算最大、最小值
+					rtMin[index] = rtMin[index] == -1 ? avg : Math.min(rtMin[index], avg);
+					rtMax[index] = rtMax[index] == -1 ? avg : Math.max(rtMax[index], avg);
+					break;
+				case HISTOGRAM:
+					histogram(index).combine(timeEvent);
+					break;
+				case DISTINCT:
+					distinct(index).combine(timeEvent);
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/**
+	 * 将其他窗口的统计值合并到当前窗口，合并后统计值的时间为当前窗口的时间
+	 * @param other	其他窗口，合并后不可再使用
+	 */
+	public void merge(SecondStatisticBean other) {
+		for(int i = 0; i < other.size; i++) {
+			String type = other.types[i];
+			String identify = other.identifies[i];
+			int index = find(other.hashes[i], type, identify, identify.length());
+			if(index < 0) {
+				index = add(other.hashes[i], type, identify);
+			}
+			combine(index, other, i);
+			increaseWeight(index, other.weights[i]);
+		}
+		for(TypeSketch otherSketch : other.typeSketches.values()) {
+			if(otherSketch.foldNum > 0) {
+				sketch(otherSketch.type).foldNum += otherSketch.foldNum;
+			}
+		}
+		eventNum += other.eventNum;
+	}
+
+	/**
+	 * 生成当前窗口的统计值，HISTOGRAM、DISTINCT统计实例直接输出，输出后不再由当前窗口持有；
+	 * 淘汰的次数作为OTHER_IDENTIFY统计值的fold_num输出
+	 * @param reportStatistic	输出的统计值
+	 */
+	public void report(List<BaseStatistic> reportStatistic) {
+		for(int i = 0; i < size; i++) {
+			long foldNum = i == sketches[i].otherIndex ? sketches[i].foldNum : 0;
+			for(StatisticType statisticType : STATISTIC_TYPES) {
+				if((statisticTypes[i] & (1 << statisticType.ordinal())) == 0) {
 					continue;
 				}
+				int reportIndex = reportStatistic.size();
+				switch (statisticType) {
+					case QPS:
+						QPSStatistic qps = new QPSStatistic();
+						qps.reset(types[i], identifies[i], second);
+						qps.combine(qpsNum[i], qpsErrorNum[i]);
+						reportStatistic.add(qps);
+						break;
+					case RT:
+						RTStatistic rt = new RTStatistic();
+						rt.reset(types[i], identifies[i], second);
+						rt.combine(rtNum[i], rtErrorNum[i], rtTotal[i], rtMin[i], rtMax[i]);
+						reportStatistic.add(rt);
+						break;
+					case HISTOGRAM:
+						reportStatistic.add(histogram(i));
+						histograms[i] = null;
+						break;
+					case DISTINCT:
+						reportStatistic.add(distinct(i));
+						distincts[i] = null;
+						break;
+					default:
+						break;
+				}
+				if(foldNum > 0 && reportStatistic.size() > reportIndex) {// 淘汰次数输出到合并标识的统计值中
+					reportStatistic.get(reportIndex).addFoldNum(foldNum);
+				}
+			}
+		}
+		for(TypeSketch sketch : typeSketches.values()) {
+			if(sketch.foldNum > 0) {
+				LOG.warn("{}的统计标识超过{}个，{}时间窗口内{}次淘汰的统计值已合并到{}", sketch.type, identifyMaxSize, second, sketch.foldNum, OTHER_IDENTIFY);
+			}
+		}
+	}
+
+	/**
+	 * @return	聚合的原始事件数
+	 */
+	public long getEventNum() {
+		return eventNum;
+	}
+
+	/**
+	 * @param num	增加聚合的原始事件数
+	 */
+	public void addEventNum(long num) {
+		eventNum += num;
+	}
+
+	/**
+	 * @return	统计的标识数
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param type	事件类型
+	 * @return	当前窗口内该type淘汰标识的次数
+	 */
+	long foldNum(String type) {
+		TypeSketch sketch = typeSketches.get(type);
+		return sketch == null ? 0 : sketch.foldNum;
+	}
+
+	private HistogramStatistic histogram(int index) {
+		HistogramStatistic histogram = histograms[index];
+		if(histogram == null) {
+			histogram = new HistogramStatistic();
+			histogram.reset(types[index], identifies[index], second);
+			histograms[index] = histogram;
+		}
+		return histogram;
+	}
+
+	private DistinctStatistic distinct(int index) {
+		DistinctStatistic distinct = distincts[index];
+		if(distinct == null) {
+			distinct = new DistinctStatistic();
+			distinct.reset(types[index], identifies[index], second);
+			distincts[index] = distinct;
+		}
+		return distinct;
+	}
+
+	/**
+	 * 将from中下标为fromIndex的统计值合并到index，不修改权重
+	 */
+	private void combine(int index, SecondStatisticBean from, int fromIndex) {
+		statisticTypes[index] |= from.statisticTypes[fromIndex];
+		qpsNum[index] += from.qpsNum[fromIndex];
+		qpsErrorNum[index] += from.qpsErrorNum[fromIndex];
+		rtNum[index] += from.rtNum[fromIndex];
+		rtErrorNum[index] += from.rtErrorNum[fromIndex];
+		rtTotal[index] += from.rtTotal[fromIndex];
+		rtMin[index] = mergeValue(rtMin[index], from.rtMin[fromIndex], true);
+		rtMax[index] = mergeValue(rtMax[index], from.rtMax[fromIndex], false);
+		if(from.histograms[fromIndex] != null) {
+			histogram(index).combine(from.histograms[fromIndex]);
+		}
+		if(from.distincts[fromIndex] != null) {
+			distinct(index).combine(from.distincts[fromIndex]);
+		}
+	}
+
+	private void clearEntry(int index) {
+		weights[index] = 0;
+		heapPositions[index] = -1;
+		statisticTypes[index] = 0;
+		qpsNum[index] = 0;
+		qpsErrorNum[index] = 0;
+		rtNum[index] = 0;
+		rtErrorNum[index] = 0;
+		rtTotal[index] = 0;
+		rtMin[index] = -1;
+		rtMax[index] = -1;
+		histograms[index] = null;
+		distincts[index] = null;
+	}
+
+	private int find(int hash, String type, String identify, int length) {
+		int mask = slots.length - 1;
+		for(int i = hash & mask; ; i = (i + 1) & mask) {
+			int slot = slots[i];
+			if(slot == 0) {
+				return -1;
+			}
+			int index = slot - 1;
+			if(hashes[index] == hash && type.equals(types[index]) && identifyEquals(identifies[index], identify, length)) {
+				return index;
+			}
+		}
+	}
+
+	private TypeSketch sketch(String type) {
+		TypeSketch sketch = typeSketches.get(type);
+		if(sketch == null) {
+			sketch = new TypeSketch(type);
+			typeSketches.put(type, sketch);
+		}
+		return sketch;
+	}
+
+	/**
+	 * 新增标识，type下的标识已达到上限时淘汰权重最小的标识，复用其条目
+	 * @return	条目下标
+	 */
+	private int add(int hash, String type, String identify) {
+		TypeSketch sketch = sketch(type);
+		if(OTHER_IDENTIFY.equals(identify)) {
+			sketch.otherIndex = put(hash, type, identify, sketch);
+			return sketch.otherIndex;
+		}
+		if(sketch.size < identifyMaxSize) {
+			sketch.size++;
+			return put(hash, type, identify, sketch);
+		}
+		if(!sketch.saturated) {
+			heapify(sketch);
+		}
+		int victim = sketch.heap[0];
+		combine(otherIndex(sketch), this, victim);
+		removeSlot(victim);
+		long weight = weights[victim];
+		clearEntry(victim);
+		hashes[victim] = hash;
+		identifies[victim] = identify;
+		weights[victim] = weight;
+		heapPositions[victim] = 0;
+		putSlot(victim);
+		sketch.foldNum++;
+		return victim;
+	}
+
+	private int otherIndex(TypeSketch sketch) {
+		if(sketch.otherIndex < 0) {
+			sketch.otherIndex = put(hash(sketch.type, OTHER_IDENTIFY, OTHER_IDENTIFY.length()), sketch.type, OTHER_IDENTIFY, sketch);
+		}
+		return sketch.otherIndex;
+	}
+
+	private int put(int hash, String type, String identify, TypeSketch sketch) {
+		if(size == hashes.length) {
+			resize(size << 1);
+			rehash();
+		}
+		int index = size++;
+		hashes[index] = hash;
+		types[index] = type;
+		identifies[index] = identify;
+		sketches[index] = sketch;
+		putSlot(index);
+		return index;
+	}
+
+	private void putSlot(int index) {
+		int mask = slots.length - 1;
+		int i = hashes[index] & mask;
+		while(slots[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		slots[i] = index + 1;
+	}
+
+	/**
+	 * 删除条目在开放寻址表中的位置，之后的条目向前移动（backward shift），不使用删除标记
+	 */
+	private void removeSlot(int index) {
+		int mask = slots.length - 1;
+		int i = hashes[index] & mask;
+		while(slots[i] != index + 1) {
+			i = (i + 1) & mask;
+		}
+		for(int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+			int home = hashes[slots[j] - 1] & mask;
+			boolean stay = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if(!stay) {
+				slots[i] = slots[j];
+				i = j;
 			}
-			secondStatistic.combine(timeEvent);
+		}
+		slots[i] = 0;
+	}
+
+	private void increaseWeight(int index, long weight) {
+		weights[index] += weight;
+		TypeSketch sketch = sketches[index];
+		if(sketch.saturated && heapPositions[index] >= 0) {
+			siftDown(sketch.heap, sketch.heapSize, heapPositions[index]);
 		}
 	}
-	
-	public Map<String, Map<String, Map<StatisticType, BaseStatistic>>> getStatistics() {
-		return statistics;
+
+	/**
+	 * 标识数达到上限后才建立该type的最小堆，未达到上限时统计不需要维护堆
+	 */
+	private void heapify(TypeSketch sketch) {
+		if(sketch.heap == null || sketch.heap.length < identifyMaxSize) {
+			sketch.heap = new int[identifyMaxSize];
+		}
+		int heapSize = 0;
+		for(int i = 0; i < size; i++) {
+			if(sketches[i] == sketch && i != sketch.otherIndex) {
+				sketch.heap[heapSize] = i;
+				heapPositions[i] = heapSize;
+				heapSize++;
+			}
+		}
+		sketch.heapSize = heapSize;
+		for(int pos = (heapSize >>> 1) - 1; pos >= 0; pos--) {
+			siftDown(sketch.heap, heapSize, pos);
+		}
+		sketch.saturated = true;
+	}
+
+	private void siftDown(int[] heap, int heapSize, int pos) {
+		int index = heap[pos];
+		long weight = weights[index];
+		while(true) {
+			int child = (pos << 1) + 1;
+			if(child >= heapSize) {
+				break;
+			}
+			if(child + 1 < heapSize && weights[heap[child + 1]] < weights[heap[child]]) {
+				child++;
+			}
+			if(weights[heap[child]] >= weight) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPositions[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = index;
+		heapPositions[index] = pos;
 	}
-	
+
+	private void resize(int capacity) {
+		hashes = copy(hashes, capacity);
+		types = types != null ? Arrays.copyOf(types, capacity) : new String[capacity];
+		identifies = identifies != null ? Arrays.copyOf(identifies, capacity) : new String[capacity];
+		sketches = sketches != null ? Arrays.copyOf(sketches, capacity) : new TypeSketch[capacity];
+		weights = copy(weights, capacity, 0);
+		heapPositions = heapPositions != null ? Arrays.copyOf(heapPositions, capacity) : new int[capacity];
+		Arrays.fill(heapPositions, size, capacity, -1);
+		statisticTypes = statisticTypes != null ? Arrays.copyOf(statisticTypes, capacity) : new int[capacity];
+		qpsNum = copy(qpsNum, capacity, 0);
+		qpsErrorNum = copy(qpsErrorNum, capacity, 0);
+		rtNum = copy(rtNum, capacity, 0);
+		rtErrorNum = copy(rtErrorNum, capacity, 0);
+		rtTotal = copy(rtTotal, capacity, 0);
+		rtMin = copy(rtMin, capacity, -1);
+		rtMax = copy(rtMax, capacity, -1);
+		histograms = histograms != null ? Arrays.copyOf(histograms, capacity) : new HistogramStatistic[capacity];
+		distincts = distincts != null ? Arrays.copyOf(distincts, capacity) : new DistinctStatistic[capacity];
+	}
+
+	private void rehash() {
+		slots = new int[hashes.length << 1];
+		int mask = slots.length - 1;
+		for(int index = 0; index < size; index++) {
+			int i = hashes[index] & mask;
+			while(slots[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = index + 1;
+		}
+	}
+
+	private static int[] copy(int[] values, int capacity) {
+		return values != null ? Arrays.copyOf(values, capacity) : new int[capacity];
+	}
+
+	private static long[] copy(long[] values, int capacity, long initValue) {
+		int oldLength = values == null ? 0 : values.length;
+		long[] newValues = values == null ? new long[capacity] : Arrays.copyOf(values, capacity);
+		if(initValue != 0) {
+			Arrays.fill(newValues, oldLength, capacity, initValue);
+		}
+		return newValues;
+	}
+
+	private static long mergeValue(long value, long otherValue, boolean min) {
+		if(otherValue == -1) {
+			return value;
+		}
+		if(value == -1) {
+			return otherValue;
+		}
+		return min ? Math.min(value, otherValue) : Math.max(value, otherValue);
+	}
+
+	/**
+	 * 计算type与identify前length个字符的hash，identify不需要截取时使用String缓存的hashCode
+	 */
+	private static int hash(String type, String identify, int length) {
+		int identifyHash;
+		if(length == identify.length()) {
+			identifyHash = identify.hashCode();
+		} else {
+			identifyHash = 0;
+			for(int i = 0; i < length; i++) {
+				identifyHash = 31 * identifyHash + identify.charAt(i);
+			}
+		}
+		int hash = type.hashCode() * 31 + identifyHash;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean identifyEquals(String saved, String identify, int length) {
+		if(length == identify.length()) {
+			return saved.equals(identify);
+		}
+		return saved.length() == length && saved.regionMatches(0, identify, 0, length);
+	}
+
+	/**
+	 * 一个type的标识数及淘汰状态，跨窗口复用
+	 */
+	private static final class TypeSketch {
+		private final String type;
+		private int size;// 不含OTHER_IDENTIFY的标识数
+		private int otherIndex = -1;// OTHER_IDENTIFY的条目下标
+		private boolean saturated;// 是否已建立最小堆
+		private int[] heap;// 按权重的最小堆，值为条目下标
+		private int heapSize;
+		private long foldNum;// 淘汰次数
+
+		private TypeSketch(String type) {
+			this.type = type;
+		}
+
+		private void clear() {
+			size = 0;
+			otherIndex = -1;
+			saturated = false;
+			heapSize = 0;
+			foldNum = 0;
+		}
+	}
+
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.profiler;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.yametech.yangjian.agent.api.IAppStatusListener;
+import com.yametech.yangjian.agent.api.IConfigReader;
+import com.yametech.yangjian.agent.api.base.IReportData;
+import com.yametech.yangjian.agent.api.bean.ConfigNotifyType;
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.api.common.CustomThreadFactory;
+import com.yametech.yangjian.agent.api.common.MultiReportFactory;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.core.common.CoreConstants;
+
+/**
+ * 低频线程栈采样：按profiler.*配置在独立的守护线程中定时采集线程栈，聚合到StackTrie，
+ * 每隔输出间隔按collapsed格式（a;b;c count）通过report输出一次后清空；
+ * 配置变更（包括远程配置）时按新配置重新开始，开启时长到期后自动停止，直到配置再次变更
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class StackProfiler implements IAppStatusListener, IConfigReader {
+    private static final ILogger LOG = LoggerFactory.getLogger(StackProfiler.class);
+    private static final String STATUS_KEY = "profiler.status";
+    private static final String DURATION_KEY = "profiler.duration";
+    private static final String SAMPLE_INTERVAL_KEY = "profiler.interval.sample";
+    private static final String OUTPUT_INTERVAL_KEY = "profiler.interval.output";
+    private static final String MAX_DEPTH_KEY = "profiler.maxDepth";
+    private static final String MAX_NODES_KEY = "profiler.maxNodes";
+    private static final String THREAD_INCLUDE_KEY = "profiler.thread.include";
+    private static final String THREAD_EXCLUDE_KEY = "profiler.thread.exclude";
+    private static final String THREAD_STATES_KEY = "profiler.thread.states";
+    private static final String PROFILER = "profiler";
+    private IReportData report = MultiReportFactory.getReport("profiler");
+    private ProfilerConfig config = ProfilerConfig.parse(Collections.emptyMap());
+    private boolean running;
+    private ScheduledThreadPoolExecutor executor;
+    private Session session;
+
+    @Override
+    public Set<String> configKey() {
+        return new HashSet<>(Collections.singletonList("profiler\\..*"));
+    }
+
+    @Override
+    public ConfigNotifyType notifyType() {
+        return ConfigNotifyType.CHANGE;
+    }
+
+    @Override
+    public synchronized void configKeyValue(Map<String, String> kv) {
+        if (kv == null) {
+            return;
+        }
+        ProfilerConfig newConfig = ProfilerConfig.parse(kv);
+        if (newConfig.equals(config)) {
+            return;
+        }
+        config = newConfig;
+        if (running) {
+            restart();
+        }
+    }
+
+    @Override
+    public synchronized void beforeRun() {
+        running = true;
+        restart();
+    }
+
+    @Override
+    public synchronized boolean shutdown(Duration duration) {
+        running = false;
+        return stop(duration.toMillis());
+    }
+
+    private void restart() {
+        stop(1000);
+        if (!config.enable) {
+            return;
+        }
+        session = new Session(config);
+        executor = new ScheduledThreadPoolExecutor(1, new CustomThreadFactory("agent-profiler", true));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.scheduleAtFixedRate(session::sample, 0, config.sampleIntervalMillis, TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(session::output, config.outputIntervalSeconds, config.outputIntervalSeconds, TimeUnit.SECONDS);
+        int durationSeconds = config.durationSeconds;
+        if (durationSeconds > 0) {
+            ScheduledThreadPoolExecutor current = executor;
+            Session currentSession = session;
+            executor.schedule(() -> {
+                currentSession.output();
+                current.shutdown();
+                LOG.info("profiler stopped after {} seconds", durationSeconds);
+            }, durationSeconds, TimeUnit.SECONDS);
+        }
+        LOG.info("profiler started: {}", config);
+    }
+
+    /**
+     * 停止采样，在采样线程中输出未输出的数据
+     */
+    private boolean stop(long timeoutMillis) {
+        if (executor == null) {
+            return true;
+        }
+        try {
+            executor.execute(session::output);
+        } catch (RejectedExecutionException e) {
+            // 已因开启时长到期停止
+        }
+        executor.shutdown();
+        boolean terminated;
+        try {
+            terminated = executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        executor = null;
+        session = null;
+        return terminated;
+    }
+
+    /**
+     * 一次开启期间的采样数据，只在采样线程中访问
+     */
+    private class Session {
+        private final StackSampler sampler;
+        private final StackTrie trie;
+        private final int maxNodes;
+        private long lastOutputMillis = System.currentTimeMillis();
+        private long sampleNanos;
+
+        private Session(ProfilerConfig config) {
+            this.sampler = new StackSampler(config.maxDepth, config.include, config.exclude, config.states);
+            this.trie = new StackTrie(config.maxNodes);
+            this.maxNodes = config.maxNodes;
+        }
+
+        private void sample() {
+            try {
+                long start = System.nanoTime();
+                sampler.sample(trie);
+                sampleNanos += System.nanoTime() - start;
+            } catch (Exception e) {
+                LOG.error(e, "sample thread stacks error");
+            }
+        }
+
+        private void output() {
+            long now = System.currentTimeMillis();
+            long interval = Math.max(1, (now - lastOutputMillis) / 1000);
+            lastOutputMillis = now;
+            long samples = trie.getSamples();
+            if (samples == 0) {
+                return;
+            }
+            try {
+                trie.forEach((stack, count) -> {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put("stack", stack);
+                    params.put("count", count);
+                    params.put("samples", samples);
+                    params.put("interval", interval);
+                    report.report(MetricData.get(null, CoreConstants.BASE_PATH_STATUS + PROFILER, params));
+                });
+                if (trie.getTruncatedSamples() > 0) {
+                    LOG.warn("profiler stack nodes exceed {}, {} samples truncated", maxNodes, trie.getTruncatedSamples());
+                }
+                LOG.debug("profiler samples: {}, nodes: {}, sample cost: {}ms", samples, trie.getNodeNum(),
+                        TimeUnit.NANOSECONDS.toMillis(sampleNanos));
+            } catch (Exception e) {
+                LOG.error(e, "output thread stacks error");
+            }
+            trie.clear();
+            sampleNanos = 0;
+        }
+    }
+
+    private static class ProfilerConfig {
+        private boolean enable;
+        private int durationSeconds;
+        private int sampleIntervalMillis;
+        private int outputIntervalSeconds;
+        private int maxDepth;
+        private int maxNodes;
+        private Pattern include;
+        private Pattern exclude;
+        private Set<Thread.State> states;
+
+        private static ProfilerConfig parse(Map<String, String> kv) {
+            ProfilerConfig config = new ProfilerConfig();
+            config.enable = CoreConstants.CONFIG_KEY_ENABLE.equals(kv.get(STATUS_KEY));
+            config.durationSeconds = positive(kv, DURATION_KEY, 0, 0);
+            config.sampleIntervalMillis = positive(kv, SAMPLE_INTERVAL_KEY, 50, 1);
+            config.outputIntervalSeconds = positive(kv, OUTPUT_INTERVAL_KEY, 60, 1);
+            config.maxDepth = positive(kv, MAX_DEPTH_KEY, 64, 1);
+            config.maxNodes = positive(kv, MAX_NODES_KEY, 10000, 1);
+            config.include = pattern(kv, THREAD_INCLUDE_KEY);
+            config.exclude = pattern(kv, THREAD_EXCLUDE_KEY);
+            config.states = states(kv.get(THREAD_STATES_KEY));
+            return config;
+        }
+
+        private static int positive(Map<String, String> kv, String key, int defaultValue, int min) {
+            String value = kv.get(key);
+            Integer result = IConfigReader.getIntValue(value, null);
+            if (result == null || result < min) {
+                if (value != null) {
+                    LOG.warn("{} config error: {}", key, value);
+                }
+                return defaultValue;
+            }
+            return result;
+        }
+
+        private static Pattern pattern(Map<String, String> kv, String key) {
+            String value = kv.get(key);
+            if (value == null || value.trim().isEmpty()) {
+                return null;
+            }
+            try {
+                return Pattern.compile(value.trim());
+            } catch (PatternSyntaxException e) {
+                LOG.warn("{} config error: {}", key, value);
+                return null;
+            }
+        }
+
+        private static Set<Thread.State> states(String value) {
+            Set<Thread.State> states = EnumSet.noneOf(Thread.State.class);
+            if (value == null) {
+                return states;
+            }
+            for (String state : value.split(",")) {
+                if (state.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    states.add(Thread.State.valueOf(state.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("{} config error: {}", THREAD_STATES_KEY, value);
+                }
+            }
+            return states;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ProfilerConfig)) {
+                return false;
+            }
+            ProfilerConfig that = (ProfilerConfig) o;
+            return enable == that.enable && durationSeconds == that.durationSeconds
+                    && sampleIntervalMillis == that.sampleIntervalMillis && outputIntervalSeconds == that.outputIntervalSeconds
+                    && maxDepth == that.maxDepth && maxNodes == that.maxNodes
+                    && Objects.equals(patternString(include), patternString(that.include))
+                    && Objects.equals(patternString(exclude), patternString(that.exclude))
+                    && states.equals(that.states);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enable, durationSeconds, sampleIntervalMillis, outputIntervalSeconds, maxDepth, maxNodes,
+                    patternString(include), patternString(exclude), states);
+        }
+
+        private static String patternString(Pattern pattern) {
+            return pattern == null ? null : pattern.pattern();
+        }
+
+        @Override
+        public String toString() {
+            return "duration=" + durationSeconds + "s, interval=" + sampleIntervalMillis + "ms, output=" + outputIntervalSeconds
+                    + "s, maxDepth=" + maxDepth + ", maxNodes=" + maxNodes + ", include=" + include + ", exclude=" + exclude
+                    + ", states=" + states;
+        }
+    }
+}
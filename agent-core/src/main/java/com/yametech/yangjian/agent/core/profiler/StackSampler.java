@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.profiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.yametech.yangjian.agent.core.util.ThreadNameUtil;
+
+/**
+ * 通过ThreadMXBean采集线程栈并加入StackTrie：
+ * 线程名及是否采集只在线程第一次出现时通过getThreadInfo(ids, 0)获取并判断（不获取堆栈），之后缓存；
+ * 每次采样只对选中的线程调用一次getThreadInfo(ids, maxDepth)，栈超过maxDepth时只保留靠近栈顶的maxDepth帧；
+ * 栈底增加线程池名（线程名去掉末尾的数字及分隔符）作为根节点，不采集调用采样的线程自身。非线程安全
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class StackSampler {
+    private final ThreadMXBean threadMXBean;
+    private final int maxDepth;
+    private final Pattern include;
+    private final Pattern exclude;
+    private final Set<Thread.State> states;
+    private final Map<Long, ThreadState> threads = new HashMap<>();
+    private long[] selectedIds = new long[0];
+    private int generation;
+
+    /**
+     * @param maxDepth 每个线程栈的最大帧数
+     * @param include  需要采集的线程名正则，为null时采集所有线程
+     * @param exclude  不采集的线程名正则，为null时不排除
+     * @param states   需要采集的线程状态，为空时不限制
+     */
+    public StackSampler(int maxDepth, Pattern include, Pattern exclude, Set<Thread.State> states) {
+        this(ManagementFactory.getThreadMXBean(), maxDepth, include, exclude, states);
+    }
+
+    StackSampler(ThreadMXBean threadMXBean, int maxDepth, Pattern include, Pattern exclude, Set<Thread.State> states) {
+        this.threadMXBean = threadMXBean;
+        this.maxDepth = maxDepth;
+        this.include = include;
+        this.exclude = exclude;
+        this.states = states == null || states.isEmpty() ? Collections.emptySet() : EnumSet.copyOf(states);
+    }
+
+    /**
+     * 采集一次所有选中线程的栈
+     *
+     * @return 加入trie的线程数
+     */
+    public int sample(StackTrie trie) {
+        long[] ids = threadMXBean.getAllThreadIds();
+        resolveThreads(ids);
+        generation++;
+        long selfId = Thread.currentThread().getId();
+        int num = 0;
+        for (long id : ids) {
+            ThreadState state = threads.get(id);
+            if (state == null) {// 获取线程名时已退出
+                continue;
+            }
+            state.generation = generation;
+            if (state.selected && id != selfId) {
+                if (num == selectedIds.length) {
+                    selectedIds = Arrays.copyOf(selectedIds, Math.max(16, num * 2));
+                }
+                selectedIds[num++] = id;
+            }
+        }
+        // 删除已退出的线程
+        Iterator<ThreadState> iterator = threads.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().generation != generation) {
+                iterator.remove();
+            }
+        }
+        if (num == 0) {
+            return 0;
+        }
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(num == selectedIds.length ? selectedIds : Arrays.copyOf(selectedIds, num), maxDepth);
+        int sampled = 0;
+        for (ThreadInfo info : infos) {
+            if (info == null || (!states.isEmpty() && !states.contains(info.getThreadState()))) {
+                continue;
+            }
+            StackTraceElement[] frames = info.getStackTrace();
+            if (frames.length == 0) {// 虚拟机内部线程等没有Java栈
+                continue;
+            }
+            ThreadState state = threads.get(info.getThreadId());
+            trie.add(state == null ? ThreadNameUtil.poolName(info.getThreadName()) : state.poolName, frames);
+            sampled++;
+        }
+        return sampled;
+    }
+
+    /**
+     * 获取新出现的线程的线程名并判断是否采集
+     */
+    private void resolveThreads(long[] ids) {
+        long[] newIds = new long[ids.length];
+        int num = 0;
+        for (long id : ids) {
+            if (!threads.containsKey(id)) {
+                newIds[num++] = id;
+            }
+        }
+        if (num == 0) {
+            return;
+        }
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(num == ids.length ? newIds : Arrays.copyOf(newIds, num), 0);
+        for (ThreadInfo info : infos) {
+            if (info != null) {
+                String name = info.getThreadName();
+                threads.put(info.getThreadId(), new ThreadState(ThreadNameUtil.poolName(name), isSelected(name)));
+            }
+        }
+    }
+
+    boolean isSelected(String threadName) {
+        return (include == null || include.matcher(threadName).matches())
+                && (exclude == null || !exclude.matcher(threadName).matches());
+    }
+
+    private static class ThreadState {
+        private final String poolName;
+        private final boolean selected;
+        private int generation;
+
+        private ThreadState(String poolName, boolean selected) {
+            this.poolName = poolName;
+            this.selected = selected;
+        }
+    }
+}
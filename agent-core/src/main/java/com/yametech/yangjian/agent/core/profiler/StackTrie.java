@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.profiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 按栈帧聚合线程栈的前缀树：从栈底（如Thread.run）到栈顶逐层共用节点，每个节点记录以该帧为栈顶的采样次数；
+ * 节点数达到上限后，新出现的分支不再展开，采样计入所在位置下的[truncated]节点，内存占用不随采样时长增长。非线程安全
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class StackTrie {
+    public static final String TRUNCATED = "[truncated]";
+    private final int maxNodes;
+    private final Node root = new Node(null, null, false);
+    private int nodeNum;
+    private long samples;
+    private long truncatedSamples;
+
+    /**
+     * @param maxNodes 最大节点数（不含根节点及[truncated]节点）
+     */
+    public StackTrie(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * 增加一次采样
+     *
+     * @param prefix 作为栈底的节点名（如线程池名），为null时不添加
+     * @param frames 线程栈，下标0为栈顶
+     */
+    public void add(String prefix, StackTraceElement[] frames) {
+        samples++;
+        Node node = root;
+        if (prefix != null) {
+            node = child(node, prefix, null);
+            if (node.isTruncated()) {
+                node.selfCount++;
+                return;
+            }
+        }
+        for (int i = frames.length - 1; i >= 0; i--) {
+            StackTraceElement frame = frames[i];
+            node = child(node, frame.getClassName(), frame.getMethodName());
+            if (node.isTruncated()) {
+                break;
+            }
+        }
+        node.selfCount++;
+    }
+
+    /**
+     * 查找子节点，不存在时创建，超过节点数上限时返回[truncated]节点
+     */
+    private Node child(Node parent, String className, String methodName) {
+        List<Node> children = parent.children;
+        if (children != null) {
+            for (int i = 0, size = children.size(); i < size; i++) {
+                Node child = children.get(i);
+                if (child.matches(className, methodName)) {
+                    return child;
+                }
+            }
+        }
+        if (nodeNum >= maxNodes) {
+            truncatedSamples++;
+            return parent.truncated();
+        }
+        nodeNum++;
+        return parent.addChild(new Node(className, methodName, false));
+    }
+
+    /**
+     * 按collapsed格式（帧之间使用';'分隔）输出每个有采样的栈及其次数，如：main;Foo.run;Foo.work 12
+     */
+    public void forEach(ObjLongConsumer<String> consumer) {
+        StringBuilder builder = new StringBuilder(256);
+        if (root.children != null) {
+            for (Node child : root.children) {
+                walk(child, builder, consumer);
+            }
+        }
+    }
+
+    /**
+     * @return 每个栈一行的collapsed格式文本
+     */
+    public List<String> collapse() {
+        List<String> lines = new ArrayList<>();
+        forEach((stack, count) -> lines.add(stack + ' ' + count));
+        return lines;
+    }
+
+    private static void walk(Node node, StringBuilder builder, ObjLongConsumer<String> consumer) {
+        int length = builder.length();
+        if (length > 0) {
+            builder.append(';');
+        }
+        node.appendTo(builder);
+        if (node.selfCount > 0) {
+            consumer.accept(builder.toString(), node.selfCount);
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                walk(child, builder, consumer);
+            }
+        }
+        builder.setLength(length);
+    }
+
+    public void clear() {
+        root.children = null;
+        nodeNum = 0;
+        samples = 0;
+        truncatedSamples = 0;
+    }
+
+    public int getNodeNum() {
+        return nodeNum;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return 因节点数达到上限未完整记录的采样次数
+     */
+    public long getTruncatedSamples() {
+        return truncatedSamples;
+    }
+
+    private static class Node {
+        private final String className;
+        private final String methodName;
+        private final boolean truncatedNode;
+        private List<Node> children;
+        private Node truncated;
+        private long selfCount;
+
+        private Node(String className, String methodName, boolean truncatedNode) {
+            this.className = className;
+            this.methodName = methodName;
+            this.truncatedNode = truncatedNode;
+        }
+
+        private boolean matches(String className, String methodName) {
+            return !truncatedNode && this.className.equals(className)
+                    && (this.methodName == null ? methodName == null : this.methodName.equals(methodName));
+        }
+
+        private boolean isTruncated() {
+            return truncatedNode;
+        }
+
+        private Node addChild(Node child) {
+            if (children == null) {
+                children = new ArrayList<>(2);
+            }
+            children.add(child);
+            return child;
+        }
+
+        private Node truncated() {
+            if (truncated == null) {
+                truncated = addChild(new Node(TRUNCATED, null, true));
+            }
+            return truncated;
+        }
+
+        /**
+         * 输出帧名，去掉会破坏collapsed格式的';'及换行
+         */
+        private void appendTo(StringBuilder builder) {
+            append(builder, className);
+            if (methodName != null) {
+                builder.append('.');
+                append(builder, methodName);
+            }
+        }
+
+        private static void append(StringBuilder builder, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                builder.append(c == ';' || c == '\n' || c == '\r' ? '_' : c);
+            }
+        }
+    }
+}
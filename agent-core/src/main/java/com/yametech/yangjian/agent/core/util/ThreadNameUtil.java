@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.util;
+
+/**
+ * 线程名处理
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class ThreadNameUtil {
+
+    private ThreadNameUtil() {
+    }
+
+    /**
+     * 去掉线程名末尾的数字及分隔符，如http-nio-8080-exec-12为http-nio-8080-exec，GC Thread#3为GC Thread，
+     * kafka-producer-network-thread | producer-1为kafka-producer-network-thread | producer
+     */
+    public static String poolName(String threadName) {
+        if (threadName == null) {
+            return "";
+        }
+        int end = threadName.length();
+        while (end > 0) {
+            int digitStart = end;
+            while (digitStart > 0 && Character.isDigit(threadName.charAt(digitStart - 1))) {
+                digitStart--;
+            }
+            if (digitStart == end) {
+                break;
+            }
+            end = digitStart;
+            while (end > 0 && isSeparator(threadName.charAt(end - 1))) {
+                end--;
+            }
+        }
+        return end == 0 ? threadName : threadName.substring(0, end);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == '_' || c == '#' || c == '.' || c == ' ' || c == ':';
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.InterceptorMatcher;
+import com.yametech.yangjian.agent.api.base.IConfigMatch;
+import com.yametech.yangjian.agent.api.base.MethodType;
+import com.yametech.yangjian.agent.api.bean.BeforeResult;
+import com.yametech.yangjian.agent.api.bean.ClassDefined;
+import com.yametech.yangjian.agent.api.bean.LoadClassKey;
+import com.yametech.yangjian.agent.api.bean.MethodDefined;
+import com.yametech.yangjian.agent.api.common.Config;
+import com.yametech.yangjian.agent.api.interceptor.IAdviceSupport;
+import com.yametech.yangjian.agent.api.interceptor.IMethodAOP;
+import com.yametech.yangjian.agent.core.common.BaseMatcherProxy;
+import com.yametech.yangjian.agent.core.core.elementmatch.ElementMatcherConvert;
+import com.yametech.yangjian.agent.core.core.interceptor.InterceptorWrapper;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.method.MethodList;
+import net.bytebuddy.description.type.TypeDescription;
+
+public class AgentTransformerTest {
+	private final Set<Object> interceptors = new LinkedHashSet<>();
+	private final Map<Object, InterceptorMatcher> sources = new HashMap<>();
+	private final Map<String, String> remote = new HashMap<>();
+
+	@After
+	public void clear() {
+		Config.refreshRemoteConfig(Collections.emptyMap());
+	}
+
+	@Test
+	public void testDefaultMode() {
+		add(new AdviceAOP(true), new AdviceMatcher());
+		assertFalse(AgentTransformer.useAdvice(interceptors, sources));
+		mode(AgentTransformer.ENHANCE_MODE_KEY, AgentTransformer.ENHANCE_MODE_ADVICE);
+		assertTrue(AgentTransformer.useAdvice(interceptors, sources));
+	}
+
+	@Test
+	public void testAdviceSupport() {
+		mode(AgentTransformer.ENHANCE_MODE_KEY, AgentTransformer.ENHANCE_MODE_ADVICE);
+		add(new AdviceAOP(false), new AdviceMatcher());
+		assertFalse(AgentTransformer.useAdvice(interceptors, sources));
+
+		interceptors.clear();
+		add(new AdviceAOP(true), new AdviceMatcher());
+		add(new DelegationAOP(), new AdviceMatcher());
+		// 只要有一个拦截器不支持advice，就使用MethodDelegation
+		assertFalse(AgentTransformer.useAdvice(interceptors, sources));
+	}
+
+	@Test
+	public void testMatcherMode() {
+		mode(AgentTransformer.ENHANCE_MODE_KEY, AgentTransformer.ENHANCE_MODE_ADVICE);
+		mode(AgentTransformer.ENHANCE_MODE_KEY + "." + OtherMatcher.class.getSimpleName(), "delegation");
+		add(new AdviceAOP(true), new AdviceMatcher());
+		assertTrue(AgentTransformer.useAdvice(interceptors, sources));
+		add(new AdviceAOP(true), new OtherMatcher());
+		assertFalse(AgentTransformer.useAdvice(interceptors, sources));
+	}
+
+	@Test
+	public void testMatcherProxy() {
+		mode(AgentTransformer.ENHANCE_MODE_KEY + "." + AdviceMatcher.class.getSimpleName(), AgentTransformer.ENHANCE_MODE_ADVICE);
+		// 使用被代理matcher的类名读取配置
+		add(new AdviceAOP(true), new Proxy(new AdviceMatcher()));
+		assertTrue(AgentTransformer.useAdvice(interceptors, sources));
+		add(new AdviceAOP(true), new Proxy(new OtherMatcher()));
+		assertFalse(AgentTransformer.useAdvice(interceptors, sources));
+	}
+
+	@Test
+	public void testMethodDefined() {
+		TypeDescription type = TypeDescription.ForLoadedType.of(AdviceAOP.class);
+		ClassDefined classDefined = ElementMatcherConvert.convert(type);
+		ElementMatcherConvert.clearCache();
+		MethodList<MethodDescription.InDefinedShape> methods = type.getDeclaredMethods();
+		List<MethodDefined> methodDefineds = new ArrayList<>(classDefined.getMethods());
+		// 缓存的方法顺序与getDeclaredMethods不一致时按签名查找
+		Collections.reverse(methodDefineds);
+		for(int i = 0; i < methods.size(); i++) {
+			MethodDefined methodDefined = AgentTransformer.methodDefined(classDefined, methodDefineds, i, methods.get(i));
+			assertEquals(methods.get(i).toString(), methodDefined.getMethodDes());
+		}
+		MethodDefined methodDefined = AgentTransformer.methodDefined(classDefined, Collections.emptyList(), 0, methods.get(0));
+		assertEquals(methods.get(0).toString(), methodDefined.getMethodDes());
+	}
+
+	private void add(Object interceptor, InterceptorMatcher matcher) {
+		interceptors.add(new InterceptorWrapper<>(interceptor));
+		sources.put(interceptor, matcher);
+	}
+
+	private void mode(String key, String value) {
+		remote.put(key, value);
+		Config.refreshRemoteConfig(remote);
+	}
+
+	static class AdviceAOP implements IMethodAOP<Object>, IAdviceSupport {
+		private final boolean support;
+
+		AdviceAOP(boolean support) {
+			this.support = support;
+		}
+
+		@Override
+		public boolean adviceSupport() {
+			return support;
+		}
+
+		@Override
+		public BeforeResult<Object> before(Object thisObj, Object[] allArguments, Method method) throws Throwable {
+			return null;
+		}
+
+		@Override
+		public Object after(Object thisObj, Object[] allArguments, Method method, BeforeResult<Object> beforeResult,
+				Object ret, Throwable t, Map<Class<?>, Object> globalVar) throws Throwable {
+			return ret;
+		}
+	}
+
+	static class DelegationAOP implements IMethodAOP<Object> {
+		@Override
+		public BeforeResult<Object> before(Object thisObj, Object[] allArguments, Method method) throws Throwable {
+			return null;
+		}
+
+		@Override
+		public Object after(Object thisObj, Object[] allArguments, Method method, BeforeResult<Object> beforeResult,
+				Object ret, Throwable t, Map<Class<?>, Object> globalVar) throws Throwable {
+			return ret;
+		}
+	}
+
+	static class AdviceMatcher implements InterceptorMatcher {
+		@Override
+		public IConfigMatch match() {
+			return null;
+		}
+
+		@Override
+		public LoadClassKey loadClass(MethodType type, MethodDefined methodDefined) {
+			return null;
+		}
+	}
+
+	static class OtherMatcher extends AdviceMatcher {
+	}
+
+	static class Proxy extends BaseMatcherProxy<InterceptorMatcher, Object> {
+		Proxy(InterceptorMatcher matcher) {
+			super(matcher);
+		}
+
+		@Override
+		public void init(Object obj, ClassLoader classLoader, MethodType type, MethodDefined methodDefined) {
+		}
+
+		@Override
+		public LoadClassKey loadClass(MethodType type, MethodDefined methodDefined) {
+			return matcher.loadClass(type, methodDefined);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.classloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AgentClassLoaderTest {
+	private static final String PLUGIN_PATH = Plugin.class.getName().replace('.', '/') + ".class";
+	private static final String RESOURCE = "META-INF/services/plugin";
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void loadIndexedClass() throws Exception {
+		File first = jar("first.jar", "com/other/Other.txt", "first".getBytes(StandardCharsets.UTF_8));
+		File second = jar("second.jar", PLUGIN_PATH, classBytes());
+		AgentClassLoader loader = new AgentClassLoader(platformClassLoader(), JarIndex.build(Arrays.asList(first, second)));
+		Class<?> cls = loader.loadClass(Plugin.class.getName());
+		assertSame(loader, cls.getClassLoader());
+		assertEquals("plugin", ((Supplier<?>) cls.newInstance()).get());
+		assertSame(cls, loader.loadClass(Plugin.class.getName()));
+	}
+
+	@Test
+	public void findResources() throws Exception {
+		File first = jar("first.jar", RESOURCE, "first".getBytes(StandardCharsets.UTF_8));
+		File second = jar("second.jar", RESOURCE, "second".getBytes(StandardCharsets.UTF_8));
+		AgentClassLoader loader = new AgentClassLoader(platformClassLoader(), JarIndex.build(Arrays.asList(first, second)));
+		// 多个jar包含同一资源时，getResource返回第一个
+		assertEquals("first", read(loader.getResource(RESOURCE)));
+		List<URL> urls = Collections.list(loader.getResources(RESOURCE));
+		assertEquals(2, urls.size());
+		assertEquals("second", read(urls.get(1)));
+		assertNull(loader.getResource("META-INF/services/none"));
+		assertNull(loader.getResource("none/plugin"));
+	}
+
+	@Test
+	public void missingClass() throws Exception {
+		File file = jar("plugin.jar", PLUGIN_PATH, classBytes());
+		AgentClassLoader loader = new AgentClassLoader(platformClassLoader(), JarIndex.build(Collections.singletonList(file)));
+		for(int i = 0; i < 2; i++) {// 第二次查找命中未找到的缓存
+			try {
+				loader.loadClass(Plugin.class.getName() + "Missing");
+				fail();
+			} catch (ClassNotFoundException e) {
+				assertTrue(e.getMessage().endsWith("Missing"));
+			}
+		}
+		assertNotNull(loader.loadClass(Plugin.class.getName()));
+	}
+
+	private File jar(String name, String entryName, byte[] data) throws IOException {
+		File file = folder.newFile(name);
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+			out.putNextEntry(new JarEntry(entryName));
+			out.write(data);
+			out.closeEntry();
+		}
+		return file;
+	}
+
+	private static byte[] classBytes() throws IOException {
+		try (InputStream is = AgentClassLoaderTest.class.getClassLoader().getResourceAsStream(PLUGIN_PATH)) {
+			return readAll(is);
+		}
+	}
+
+	private static String read(URL url) throws IOException {
+		try (InputStream is = url.openStream()) {
+			return new String(readAll(is), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int num;
+		while ((num = is.read(buffer)) != -1) {
+			baos.write(buffer, 0, num);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * 不能加载测试类的classloader，保证类由AgentClassLoader定义
+	 */
+	private static ClassLoader platformClassLoader() {
+		return ClassLoader.getSystemClassLoader().getParent();
+	}
+
+	public static class Plugin implements Supplier<String> {
+		@Override
+		public String get() {
+			return "plugin";
+		}
+	}
+}
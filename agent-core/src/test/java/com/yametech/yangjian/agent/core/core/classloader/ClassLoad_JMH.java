@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.classloader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 模拟启动时加载插件的耗时：每次使用新的classloader加载所有jar中的类（不存在的类按parent加载不到的业务类计算）
+ * 插件目录通过-Dplugins.dir指定（如打包后的deploy/plugins），未指定时使用classpath中的jar
+ * linear为之前的方式（遍历所有jar，通过jar:file: URL逐字节读取），indexed为当前方式
+ */
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ClassLoad_JMH {
+	private static final int MISSING_NUM = 2000;
+	@Param({"linear", "indexed"})
+	private String loader;
+	private List<File> jarFiles;
+	private List<String> classNames;
+	private List<JarFile> linearJars;
+	private JarIndex jarIndex;
+
+	@Setup
+	public void setup() throws IOException {
+		jarFiles = jarFiles();
+		classNames = new ArrayList<>();
+		for(File file : jarFiles) {
+			try (JarFile jarFile = new JarFile(file)) {
+				Enumeration<JarEntry> entries = jarFile.entries();
+				while(entries.hasMoreElements()) {
+					String name = entries.nextElement().getName();
+					if(name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+						classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+					}
+				}
+			}
+		}
+		for(int i = 0; i < MISSING_NUM; i++) {
+			classNames.add("com.business.service.Missing" + i);
+		}
+		System.out.println("\njar: " + jarFiles.size() + ", class: " + classNames.size());
+		if("linear".equals(loader)) {
+			linearJars = new ArrayList<>();
+			for(File file : jarFiles) {
+				linearJars.add(new JarFile(file));
+			}
+		} else {
+			jarIndex = JarIndex.build(jarFiles);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if(linearJars != null) {
+			for(JarFile jarFile : linearJars) {
+				jarFile.close();
+			}
+		}
+	}
+
+	@Benchmark
+	public int loadAll() {
+		ClassLoader classLoader = "linear".equals(loader) ? new LinearClassLoader(parent(), linearJars) : new AgentClassLoader(parent(), jarIndex);
+		int loaded = 0;
+		for(String className : classNames) {
+			try {
+				classLoader.loadClass(className);
+				loaded++;
+			} catch (ClassNotFoundException | LinkageError e) {
+				// 依赖的类不存在或者重复定义
+			}
+		}
+		return loaded;
+	}
+
+	private static ClassLoader parent() {
+		return ClassLoader.getSystemClassLoader().getParent();
+	}
+
+	private static List<File> jarFiles() {
+		List<File> files = new ArrayList<>();
+		String pluginsDir = System.getProperty("plugins.dir");
+		if(pluginsDir != null) {
+			File[] jars = new File(pluginsDir).listFiles((dir, name) -> name.endsWith(".jar"));
+			if(jars != null) {
+				for(File jar : jars) {
+					files.add(jar);
+				}
+			}
+			return files;
+		}
+		for(String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if(path.endsWith(".jar") && new File(path).isFile()) {
+				files.add(new File(path));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * 优化前的AgentClassLoader.findClass
+	 */
+	private static class LinearClassLoader extends ClassLoader {
+		private final List<JarFile> jars;
+		private final List<File> files = new ArrayList<>();
+
+		private LinearClassLoader(ClassLoader parent, List<JarFile> jars) {
+			super(parent);
+			this.jars = jars;
+			for(JarFile jarFile : jars) {
+				files.add(new File(jarFile.getName()));
+			}
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			String path = name.replace('.', '/').concat(".class");
+			for(int i = 0; i < jars.size(); i++) {
+				if(jars.get(i).getJarEntry(path) == null) {
+					continue;
+				}
+				try {
+					URL classFileUrl = new URL("jar:file:" + files.get(i).getAbsolutePath() + "!/" + path);
+					byte[] data;
+					try (BufferedInputStream is = new BufferedInputStream(classFileUrl.openStream());
+							ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+						int ch;
+						while((ch = is.read()) != -1) {
+							baos.write(ch);
+						}
+						data = baos.toByteArray();
+					}
+					return defineClass(name, data, 0, data.length);
+				} catch (IOException e) {
+					// 与之前的逻辑一致，继续查找下一个jar
+				}
+			}
+			throw new ClassNotFoundException("Can't find " + name);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(ClassLoad_JMH.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+
+}
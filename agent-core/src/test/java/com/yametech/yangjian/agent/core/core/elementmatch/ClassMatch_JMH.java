@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.elementmatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.base.IConfigMatch;
+import com.yametech.yangjian.agent.api.bean.ClassDefined;
+import com.yametech.yangjian.agent.api.bean.MethodDefined;
+import com.yametech.yangjian.agent.api.configmatch.ClassAnnotationMatch;
+import com.yametech.yangjian.agent.api.configmatch.ClassMatch;
+import com.yametech.yangjian.agent.api.configmatch.CombineAndMatch;
+import com.yametech.yangjian.agent.api.configmatch.CombineOrMatch;
+import com.yametech.yangjian.agent.api.configmatch.InterfaceMatch;
+import com.yametech.yangjian.agent.api.configmatch.MethodNameMatch;
+import com.yametech.yangjian.agent.api.configmatch.SuperClassMatch;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.implementation.FixedValue;
+
+/**
+ * 模拟启动阶段类加载时的匹配耗时：生成数千个合成类，执行ignore/type匹配及transform中的方法匹配
+ * linear为未使用索引及ClassDefined缓存的方式（每个类转换3次，遍历所有规则），indexed为当前方式
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class ClassMatch_JMH {
+	private static final String[] INTERFACES = {"java.io.Serializable", "java.lang.Runnable", "java.lang.Comparable", "java.lang.AutoCloseable"};
+	@Param({"3000"})
+	private int classNum;
+	@Param({"50", "300"})
+	private int matchNum;
+	private List<TypeDescription> types;
+	private List<IConfigMatch> matches;
+	private ClassElementMatcher linearMatcher;
+	private ClassElementMatcher indexedMatcher;
+	private MatchIndex<IConfigMatch> transformIndex;
+
+	@Setup
+	public void setup() throws Exception {
+		types = new ArrayList<>(classNum);
+		for(int i = 0; i < classNum; i++) {
+			types.add(new ByteBuddy().subclass(Object.class)
+					.name("bench.pkg" + (i % 50) + ".Type" + i)
+					.implement(Class.forName(INTERFACES[i % INTERFACES.length]))
+					.defineMethod("get", String.class, Visibility.PUBLIC).intercept(FixedValue.nullValue())
+					.defineMethod("set", void.class, Visibility.PUBLIC).withParameters(String.class).intercept(FixedValue.originType())
+					.defineMethod("call" + (i % 10), Object.class, Visibility.PUBLIC).intercept(FixedValue.nullValue())
+					.make().getTypeDescription());
+		}
+		matches = new ArrayList<>(matchNum);
+		for(int i = 0; i < matchNum; i++) {
+			switch (i % 4) {
+			case 0:
+				matches.add(new ClassMatch("com.plugin" + i + ".Client"));
+				break;
+			case 1:
+				matches.add(new CombineAndMatch(Arrays.asList(new InterfaceMatch("com.plugin" + i + ".Api"), new MethodNameMatch("execute"))));
+				break;
+			case 2:
+				matches.add(new CombineAndMatch(Arrays.asList(new SuperClassMatch("com.plugin" + i + ".Base"), new MethodNameMatch("invoke"))));
+				break;
+			default:
+				matches.add(new CombineOrMatch(Arrays.asList(new ClassAnnotationMatch("com.plugin" + i + ".Service"),
+						new ClassMatch("bench.pkg1.Type" + i))));
+			}
+		}
+		linearMatcher = new ClassElementMatcher(new CombineOrMatch(matches), "class_match");
+		indexedMatcher = new ClassElementMatcher(matches, "class_match");
+		transformIndex = new MatchIndex<>(match -> match);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int linear() {
+		int matched = 0;
+		for(TypeDescription type : types) {
+			ElementMatcherConvert.clearCache();
+			if(!linearMatcher.matches(type)) {
+				continue;
+			}
+			ElementMatcherConvert.clearCache();
+			ClassDefined classDefined = ElementMatcherConvert.convert(type);
+			for(MethodDefined methodDefined : classDefined.getMethods()) {
+				for(IConfigMatch match : matches) {
+					if(match.isMatch(methodDefined)) {
+						matched++;
+					}
+				}
+			}
+		}
+		ElementMatcherConvert.clearCache();
+		return matched;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int indexed() {
+		int matched = 0;
+		for(TypeDescription type : types) {
+			if(indexedMatcher.matches(type)) {
+				ClassDefined classDefined = ElementMatcherConvert.convert(type);
+				List<IConfigMatch> candidates = transformIndex.candidates(matches, classDefined);
+				for(MethodDefined methodDefined : classDefined.getMethods()) {
+					for(IConfigMatch match : candidates) {
+						if(match.isMatch(methodDefined)) {
+							matched++;
+						}
+					}
+				}
+			}
+			ElementMatcherConvert.clearCache();// 对应AgentListener.onComplete
+		}
+		return matched;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(ClassMatch_JMH.class.getSimpleName())
+				.forks(1)
+				.build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.elementmatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.base.IConfigMatch;
+import com.yametech.yangjian.agent.api.bean.ClassDefined;
+import com.yametech.yangjian.agent.api.bean.MethodDefined;
+import com.yametech.yangjian.agent.api.configmatch.AnyMatch;
+import com.yametech.yangjian.agent.api.configmatch.ClassAnnotationMatch;
+import com.yametech.yangjian.agent.api.configmatch.ClassMatch;
+import com.yametech.yangjian.agent.api.configmatch.CombineAndMatch;
+import com.yametech.yangjian.agent.api.configmatch.CombineOrMatch;
+import com.yametech.yangjian.agent.api.configmatch.InterfaceMatch;
+import com.yametech.yangjian.agent.api.configmatch.MethodNameMatch;
+import com.yametech.yangjian.agent.api.configmatch.MethodRegexMatch;
+import com.yametech.yangjian.agent.api.configmatch.NotMatch;
+import com.yametech.yangjian.agent.api.configmatch.SuperClassMatch;
+
+import net.bytebuddy.description.type.TypeDescription;
+
+public class MatchIndexTest {
+
+	@Test
+	public void testKeys() {
+		assertEquals("[C:java.util.ArrayList]", MatchIndex.keys(new ClassMatch("java.util.ArrayList")).toString());
+		assertEquals("[I:java.util.List]", MatchIndex.keys(new CombineAndMatch(Arrays.asList(
+				new MethodNameMatch("add"), new InterfaceMatch("java.util.List")))).toString());
+		assertEquals(2, MatchIndex.keys(new CombineOrMatch(Arrays.asList(
+				new SuperClassMatch("java.util.AbstractList"), new ClassAnnotationMatch("java.lang.Deprecated")))).size());
+		// 任意一个子规则无法索引，则Or无法索引
+		assertNull(MatchIndex.keys(new CombineOrMatch(Arrays.asList(new ClassMatch("a.B"), new MethodNameMatch("add")))));
+		assertNull(MatchIndex.keys(new NotMatch(new ClassMatch("a.B"))));
+		assertNull(MatchIndex.keys(new MethodRegexMatch(".*add.*")));
+	}
+
+	@Test
+	public void testSameAsLinear() {
+		List<IConfigMatch> matches = Arrays.asList(
+				new ClassMatch("java.util.ArrayList"),
+				new CombineAndMatch(Arrays.asList(new InterfaceMatch("java.util.Map"), new MethodNameMatch("put"))),
+				new CombineAndMatch(Arrays.asList(new SuperClassMatch("java.util.AbstractList"), new MethodNameMatch("get"))),
+				new ClassAnnotationMatch("java.lang.FunctionalInterface"),
+				new CombineOrMatch(Arrays.asList(new ClassMatch("java.lang.Thread"), new InterfaceMatch("java.lang.Runnable"))),
+				new MethodRegexMatch(".*java\\.lang\\.String\\.trim\\(.*"),
+				new NotMatch(new AnyMatch()));
+		MatchIndex<IConfigMatch> index = new MatchIndex<>(match -> match);
+		Class<?>[] classes = {java.util.ArrayList.class, java.util.LinkedList.class, java.util.HashMap.class, java.util.TreeMap.class,
+				Thread.class, String.class, Runnable.class, java.util.function.Supplier.class, Object.class, java.util.Vector.class};
+		for(Class<?> cls : classes) {
+			ClassDefined classDefined = ElementMatcherConvert.convert(TypeDescription.ForLoadedType.of(cls));
+			List<IConfigMatch> candidates = index.candidates(matches, classDefined);
+			for(MethodDefined methodDefined : classDefined.getMethods()) {
+				List<IConfigMatch> linear = matches.stream().filter(match -> match.isMatch(methodDefined)).collect(Collectors.toList());
+				List<IConfigMatch> indexed = candidates.stream().filter(match -> match.isMatch(methodDefined)).collect(Collectors.toList());
+				assertEquals(cls + " " + methodDefined.getMethodDes(), linear, indexed);
+			}
+			ElementMatcherConvert.clearCache();
+		}
+		ClassDefined object = ElementMatcherConvert.convert(TypeDescription.ForLoadedType.of(Object.class));
+		// Object只会返回无法索引的规则
+		assertEquals(2, index.candidates(matches, object).size());
+		ElementMatcherConvert.clearCache();
+	}
+
+	@Test
+	public void testAppend() {
+		List<IConfigMatch> matches = new ArrayList<>();
+		MatchIndex<IConfigMatch> index = new MatchIndex<>(match -> match);
+		ClassDefined classDefined = ElementMatcherConvert.convert(TypeDescription.ForLoadedType.of(java.util.ArrayList.class));
+		assertTrue(index.candidates(matches, classDefined).isEmpty());
+		matches.add(new InterfaceMatch("java.util.List"));
+		assertEquals(1, index.candidates(matches, classDefined).size());
+		ElementMatcherConvert.clearCache();
+	}
+
+	@Test
+	public void testConvertCache() {
+		TypeDescription type = TypeDescription.ForLoadedType.of(java.util.ArrayList.class);
+		ClassDefined classDefined = ElementMatcherConvert.convert(type);
+		assertTrue(classDefined == ElementMatcherConvert.convert(type));
+		ElementMatcherConvert.clearCache();
+		assertTrue(classDefined != ElementMatcherConvert.convert(type));
+		ElementMatcherConvert.clearCache();
+		// 不同classLoader中的同名类不复用
+		ClassLoader classLoader = new ClassLoader() {};
+		ElementMatcherConvert.discover(classLoader);
+		classDefined = ElementMatcherConvert.convert(type);
+		assertTrue(classDefined == ElementMatcherConvert.convert(type, classLoader));
+		assertTrue(classDefined != ElementMatcherConvert.convert(type, null));
+		ElementMatcherConvert.discover(classLoader);
+		assertTrue(classDefined != ElementMatcherConvert.convert(type));
+		ElementMatcherConvert.clearCache();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.BeforeResult;
+import com.yametech.yangjian.agent.api.interceptor.IStaticMethodAOP;
+import com.yametech.yangjian.agent.core.core.interceptor.InvocationFrameTest.RecordAOP;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+
+public class AdviceDispatcherTest {
+
+	@Test
+	public void testInstanceAdvice() throws Exception {
+		List<String> calls = new ArrayList<>();
+		Class<?> cls = enhance(Target.class, "add", YmInstanceAdvice.class, new RecordAOP("a", calls), new RecordAOP("b", calls));
+		Object target = cls.newInstance();
+		Object ret = cls.getMethod("add", int.class, int.class).invoke(target, 1, 2);
+		assertEquals(3, ret);
+		// 同一类型的拦截器共用globalVar的key，after中读取到最后一个before的值
+		assertEquals("[a-before, b-before, b-after-b, a-after-b]", calls.toString());
+		assertEquals(0, InvocationFrameStack.depth());
+	}
+
+	@Test
+	public void testInstanceAdviceException() throws Exception {
+		List<String> calls = new ArrayList<>();
+		Class<?> cls = enhance(Target.class, "fail", YmInstanceAdvice.class, new RecordAOP("a", calls));
+		try {
+			cls.getMethod("fail").invoke(cls.newInstance());
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+			calls.add("throw");
+		}
+		assertEquals("[a-before, a-exception, a-after-a, throw]", calls.toString());
+		assertEquals(0, InvocationFrameStack.depth());
+	}
+
+	@Test
+	public void testStaticAdvice() throws Exception {
+		StaticRecordAOP aop = new StaticRecordAOP();
+		Class<?> cls = enhance(Target.class, "join", YmStaticAdvice.class, aop);
+		assertEquals("x-y", cls.getMethod("join", String.class, String.class).invoke(null, "x", "y"));
+		// void方法，after中的返回值为null
+		enhance(Target.class, "run", YmStaticAdvice.class, aop).getMethod("run").invoke(null);
+		assertEquals("[before-join, after-join-x-y, before-run, after-run-null]", aop.calls.toString());
+		assertEquals(0, InvocationFrameStack.depth());
+	}
+
+	@Test
+	public void testEnterFailPopFrame() throws Exception {
+		// 拦截器数组中存在null，enter中出现异常，advice中异常被忽略且不会执行exit，frame需在enter中出栈
+		InterceptorWrapper<?>[] wrappers = new InterceptorWrapper[] {new InterceptorWrapper<>(new RecordAOP("a", new ArrayList<>())), null};
+		int id = AdviceDispatcher.register(wrappers, "add", "(II)I");
+		try {
+			AdviceDispatcher.enterInstance(id, Target.class, new Target(), new Object[] {1, 2});
+			fail();
+		} catch (NullPointerException e) {
+			// ignore
+		}
+		assertEquals(0, InvocationFrameStack.depth());
+		id = AdviceDispatcher.register(new InterceptorWrapper[] {null}, "join", "(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;");
+		try {
+			AdviceDispatcher.enterStatic(id, Target.class, new Object[] {"x", "y"});
+			fail();
+		} catch (NullPointerException e) {
+			// ignore
+		}
+		assertEquals(0, InvocationFrameStack.depth());
+	}
+
+	private static Class<?> enhance(Class<?> target, String methodName, Class<?> advice, Object... aops) {
+		InterceptorWrapper<?>[] wrappers = new InterceptorWrapper[aops.length];
+		for(int i = 0; i < aops.length; i++) {
+			wrappers[i] = new InterceptorWrapper<>(aops[i]);
+		}
+		TypeDescription type = TypeDescription.ForLoadedType.of(target);
+		MethodDescription.InDefinedShape method = type.getDeclaredMethods()
+				.filter(net.bytebuddy.matcher.ElementMatchers.named(methodName)).getOnly();
+		int id = AdviceDispatcher.register(wrappers, method.getInternalName(), method.getDescriptor());
+		return new ByteBuddy().redefine(target)
+				.visit(Advice.withCustomMapping().bind(AdviceId.class, id).to(advice).on(net.bytebuddy.matcher.ElementMatchers.is(method)))
+				.make()
+				.load(new ClassLoader(AdviceDispatcherTest.class.getClassLoader()) {}, ClassLoadingStrategy.Default.CHILD_FIRST)
+				.getLoaded();
+	}
+
+	public static class Target {
+		public int add(int a, int b) {
+			return a + b;
+		}
+
+		public void fail() {
+			throw new IllegalStateException("test");
+		}
+
+		public static String join(String a, String b) {
+			return a + "-" + b;
+		}
+
+		public static void run() {
+		}
+	}
+
+	static class StaticRecordAOP implements IStaticMethodAOP<Object> {
+		private final List<String> calls = new ArrayList<>();
+
+		@Override
+		public BeforeResult<Object> before(Object[] allArguments, Method method) {
+			calls.add("before-" + method.getName());
+			return null;
+		}
+
+		@Override
+		public Object after(Object[] allArguments, Method method, BeforeResult<Object> beforeResult, Object ret,
+				Throwable t, Map<Class<?>, Object> globalVar) {
+			calls.add("after-" + method.getName() + "-" + ret);
+			return ret;
+		}
+	}
+}
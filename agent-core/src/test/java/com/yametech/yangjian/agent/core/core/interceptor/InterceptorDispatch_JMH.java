@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.interceptor.IMethodAOP;
+import com.yametech.yangjian.agent.core.core.interceptor.InvocationFrameTest.NoopAOP;
+import com.yametech.yangjian.agent.core.metric.base.ConvertMethodAOP;
+
+/**
+ * 拦截调度路径的耗时及内存分配，使用-prof gc查看gc.alloc.rate.norm，稳定后应为0 B/op
+ * 注意：直接调用intercept，不包含byte-buddy生成的@AllArguments数组及@Morph实例
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class InterceptorDispatch_JMH {
+	private static final Object[] ARGS = new Object[] {"arg"};
+	private YmInstanceInterceptor interceptor;
+	private YmInstanceInterceptor nestedInterceptor;
+	private OverrideCallable callable;
+	private OverrideCallable nestedCallable;
+	private Method method;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setup() throws Exception {
+		method = Object.class.getMethod("toString");
+		interceptor = new YmInstanceInterceptor(new InterceptorWrapper[] {
+				new InterceptorWrapper<IMethodAOP<?>>(new NoopAOP()),
+				new InterceptorWrapper<IMethodAOP<?>>(new ConvertMethodAOP())});
+		nestedInterceptor = new YmInstanceInterceptor(new InterceptorWrapper[] {
+				new InterceptorWrapper<IMethodAOP<?>>(new ConvertMethodAOP())});
+		callable = args -> args[0];
+		nestedCallable = args -> {
+			try {
+				return interceptor.intercept(this, args, callable, method);
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object dispatch() throws Throwable {
+		return interceptor.intercept(this, ARGS, callable, method);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object nestedDispatch() throws Throwable {
+		return nestedInterceptor.intercept(this, ARGS, nestedCallable, method);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(InterceptorDispatch_JMH.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.forks(1)
+				.build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.core.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.BeforeResult;
+import com.yametech.yangjian.agent.api.interceptor.IMethodAOP;
+import com.yametech.yangjian.agent.core.metric.base.ConvertMethodAOP;
+
+public class InvocationFrameTest {
+	private static final Object[] ARGS = new Object[0];
+
+	@SuppressWarnings("unchecked")
+	private static YmInstanceInterceptor interceptor(IMethodAOP<?>... aops) {
+		InterceptorWrapper<IMethodAOP<?>>[] wrappers = new InterceptorWrapper[aops.length];
+		for(int i = 0; i < aops.length; i++) {
+			wrappers[i] = new InterceptorWrapper<>(aops[i]);
+		}
+		return new YmInstanceInterceptor(wrappers);
+	}
+
+	@Test
+	public void testNestedOrder() throws Throwable {
+		List<String> calls = new ArrayList<>();
+		RecordAOP outer = new RecordAOP("outer", calls);
+		RecordAOP inner = new RecordAOP("inner", calls);
+		YmInstanceInterceptor innerInterceptor = interceptor(inner, new ConvertMethodAOP());
+		YmInstanceInterceptor outerInterceptor = interceptor(outer, new ConvertMethodAOP());
+		Method method = Object.class.getMethod("toString");
+
+		Object ret = outerInterceptor.intercept(this, ARGS, args -> {
+			assertEquals(1, InvocationFrameStack.depth());
+			// 嵌套其他拦截器后再重入同一个拦截器
+			return call(innerInterceptor, innerArgs -> {
+				assertEquals(2, InvocationFrameStack.depth());
+				return call(outerInterceptor, a -> "ret", method);
+			}, method);
+		}, method);
+
+		assertEquals("ret", ret);
+		assertEquals(0, InvocationFrameStack.depth());
+		assertNull(InvocationFrameStack.current());
+		assertEquals("[outer-before, inner-before, outer-before, outer-after-outer, inner-after-inner, outer-after-outer]", calls.toString());
+	}
+
+	private Object call(YmInstanceInterceptor interceptor, OverrideCallable callable, Method method) {
+		try {
+			return interceptor.intercept(this, ARGS, callable, method);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void testException() throws Throwable {
+		List<String> calls = new ArrayList<>();
+		YmInstanceInterceptor interceptor = interceptor(new RecordAOP("a", calls));
+		Method method = Object.class.getMethod("toString");
+		try {
+			interceptor.intercept(this, ARGS, args -> {
+				throw new IllegalStateException("test");
+			}, method);
+		} catch (IllegalStateException e) {
+			calls.add("throw");
+		}
+		assertEquals("[a-before, a-exception, a-after-a, throw]", calls.toString());
+		assertEquals(0, InvocationFrameStack.depth());
+	}
+
+	@Test
+	public void testNoAllocation() throws Throwable {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if(!threadBean.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		YmInstanceInterceptor interceptor = interceptor(new NoopAOP(), new ConvertMethodAOP(), new NoopAOP());
+		Method method = Object.class.getMethod("toString");
+		String ret = "ret";
+		OverrideCallable callable = args -> ret;
+		for(int i = 0; i < 100000; i++) {
+			interceptor.intercept(this, ARGS, callable, method);
+		}
+		long threadId = Thread.currentThread().getId();
+		long start = threadBean.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < 100000; i++) {
+			interceptor.intercept(this, ARGS, callable, method);
+		}
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+		// getThreadAllocatedBytes本身会有少量分配，如果每次调用都分配对象，总量会远大于该值
+		assertTrue("allocated bytes: " + allocated, allocated < 64 * 1024);
+	}
+
+	static class NoopAOP implements IMethodAOP<Object> {
+		@Override
+		public BeforeResult<Object> before(Object thisObj, Object[] allArguments, Method method) {
+			return null;
+		}
+
+		@Override
+		public Object after(Object thisObj, Object[] allArguments, Method method, BeforeResult<Object> beforeResult,
+				Object ret, Throwable t, Map<Class<?>, Object> globalVar) {
+			return ret;
+		}
+	}
+
+	static class RecordAOP implements IMethodAOP<Object> {
+		private final String name;
+		private final List<String> calls;
+
+		RecordAOP(String name, List<String> calls) {
+			this.name = name;
+			this.calls = calls;
+		}
+
+		@Override
+		public BeforeResult<Object> before(Object thisObj, Object[] allArguments, Method method) {
+			calls.add(name + "-before");
+			return new BeforeResult<>(null, null, name);
+		}
+
+		@Override
+		public Object after(Object thisObj, Object[] allArguments, Method method, BeforeResult<Object> beforeResult,
+				Object ret, Throwable t, Map<Class<?>, Object> globalVar) {
+			calls.add(name + "-after-" + globalVar.get(RecordAOP.class));
+			return ret;
+		}
+
+		@Override
+		public void exception(Object thisObj, Object[] allArguments, Method method, BeforeResult<Object> beforeResult,
+				Throwable t, Map<Class<?>, Object> globalVar) {
+			calls.add(name + "-exception");
+		}
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.collector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.core.jvm.metrics.GcNotificationMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.GcPauseMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.GcPoolMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.JVMGcMetrics;
+
+/**
+ * GcNotificationCollector测试，不同回收器在子进程中强制GC后检查采集结果
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class GcNotificationCollectorTest {
+    private static final String EDEN = "G1 Eden Space";
+    private static final String OLD = "G1 Old Gen";
+
+    /**
+     * 按gcAction区分类型，不依赖回收器名称
+     */
+    @Test
+    public void kind() {
+        assertEquals(GcPauseMetrics.KIND_MINOR, GcNotificationCollector.kind("end of minor GC"));
+        assertEquals(GcPauseMetrics.KIND_MAJOR, GcNotificationCollector.kind("end of major GC"));
+        assertEquals(GcPauseMetrics.KIND_CYCLE, GcNotificationCollector.kind("end of GC cycle"));
+        assertEquals(GcPauseMetrics.KIND_PAUSE, GcNotificationCollector.kind("end of GC pause"));
+        assertEquals(GcPauseMetrics.KIND_PAUSE, GcNotificationCollector.kind("Init Mark"));
+        assertEquals("g1_eden_space", GcNotificationCollector.key(EDEN));
+        assertEquals("cms_old_gen", GcNotificationCollector.key(" CMS Old Gen"));
+        assertEquals(GcPoolMetrics.GENERATION_YOUNG, GcNotificationCollector.generation(EDEN, 3));
+        assertEquals(GcPoolMetrics.GENERATION_YOUNG, GcNotificationCollector.generation("ZGC Young Generation", 2));
+        assertEquals(GcPoolMetrics.GENERATION_OLD, GcNotificationCollector.generation(OLD, 3));
+        assertEquals(GcPoolMetrics.GENERATION_OLD, GcNotificationCollector.generation("Tenured Gen", 3));
+        assertEquals(GcPoolMetrics.GENERATION_OTHER, GcNotificationCollector.generation("G1 Survivor Space", 3));
+        assertEquals(GcPoolMetrics.GENERATION_YOUNG, GcNotificationCollector.generation("ZHeap", 1));
+    }
+
+    /**
+     * 按回收器及GC原因统计耗时分布，采集后清零
+     */
+    @Test
+    public void histogram() {
+        AtomicLong now = new AtomicLong();
+        GcNotificationCollector collector = new GcNotificationCollector(Collections.emptyList(), Collections.emptyMap(), now::get);
+        for (long duration : new long[] {0, 1, 3, 3, 15, 700, 20000}) {
+            collector.record("G1 Young Generation", "end of minor GC", "G1 Evacuation Pause", duration, null, null);
+        }
+        collector.record("G1 Young Generation", "end of minor GC", null, 2, null, null);
+        collector.record("G1 Old Generation", "end of major GC", "System.gc()", 40, null, null);
+        collector.record("ZGC Cycles", "end of GC cycle", "Allocation Rate", 80, null, null);
+
+        GcNotificationMetrics metrics = collector.collect();
+        Map<String, GcPauseMetrics> pauses = byName(metrics);
+        assertEquals(4, pauses.size());
+        GcPauseMetrics evacuation = pauses.get("G1 Young Generation/G1 Evacuation Pause");
+        assertEquals(GcPauseMetrics.KIND_MINOR, evacuation.getKind());
+        assertEquals(7, evacuation.getCount());
+        assertEquals(20722, evacuation.getTotalTime());
+        assertEquals(20000, evacuation.getMaxTime());
+        assertArrayEquals(new long[] {2, 0, 2, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 1}, evacuation.getBuckets());
+        assertEquals(1, pauses.get("G1 Young Generation/unknown").getCount());
+
+        JVMGcMetrics jvmGcMetrics = metrics.toJVMGcMetrics();
+        assertEquals(8, jvmGcMetrics.getYoungGcCount());
+        assertEquals(20724, jvmGcMetrics.getYoungGcTime());
+        assertEquals(1, jvmGcMetrics.getFullGcCount());// 并发周期不计入
+        assertEquals(40, jvmGcMetrics.getFullGcTime());
+
+        assertTrue(collector.collect().getPauses().isEmpty());
+    }
+
+    /**
+     * 两次GC之间的增长计为分配，GC过程中的增长计为晋升
+     */
+    @Test
+    public void poolRate() {
+        AtomicLong now = new AtomicLong();
+        Map<String, Long> usage = new LinkedHashMap<>();
+        usage.put(EDEN, 100L);
+        usage.put(OLD, 1000L);
+        GcNotificationCollector collector = new GcNotificationCollector(Collections.emptyList(), usage, now::get);
+        collector.record("G1 Young Generation", "end of minor GC", "G1 Evacuation Pause", 1,
+                usage(EDEN, 600, OLD, 1000, "Metaspace", 10), usage(EDEN, 0, OLD, 1200, "Metaspace", 10));
+        collector.record("G1 Young Generation", "end of minor GC", "G1 Evacuation Pause", 1,
+                usage(EDEN, 800, OLD, 1300), usage(EDEN, 0, OLD, 1350));
+        collector.record("G1 Old Generation", "end of major GC", "System.gc()", 1,
+                usage(EDEN, 200, OLD, 1350), usage(EDEN, 0, OLD, 500));
+        now.set(2000);
+
+        Map<String, GcPoolMetrics> pools = new HashMap<>();
+        for (GcPoolMetrics pool : collector.collect().getPools()) {
+            pools.put(pool.getName(), pool);
+        }
+        assertEquals(2, pools.size());
+        GcPoolMetrics eden = pools.get(EDEN);
+        assertEquals("g1_eden_space", eden.getKey());
+        assertTrue(eden.isYoung());
+        assertEquals(500 + 800 + 200, eden.getAllocated());
+        assertEquals(0, eden.getPromoted());
+        assertEquals(750, eden.getAllocationRate());
+        GcPoolMetrics old = pools.get(OLD);
+        assertTrue(old.isOld());
+        assertEquals(100, old.getAllocated());// 两次GC之间直接分配到老年代
+        assertEquals(200 + 50, old.getPromoted());
+        assertEquals(125, old.getPromotionRate());
+
+        now.set(3000);
+        assertEquals(0, collector.collect().getPools().get(0).getAllocated());
+    }
+
+    /**
+     * 不支持通知的回收器轮询累计值，按平均耗时计入分布
+     */
+    @Test
+    public void polling() {
+        PollingBean bean = new PollingBean("Legacy GC");
+        bean.count = 3;
+        bean.time = 30;
+        GcNotificationCollector collector = new GcNotificationCollector(Collections.singletonList(bean), Collections.emptyMap(), System::currentTimeMillis);
+        assertFalse(collector.isNotificationEnabled());
+        assertTrue(collector.collect().getPauses().isEmpty());
+
+        bean.count = 7;
+        bean.time = 70;
+        List<GcPauseMetrics> pauses = collector.collect().getPauses();
+        assertEquals(1, pauses.size());
+        assertEquals("Legacy GC", pauses.get(0).getName());
+        assertEquals("unknown", pauses.get(0).getCause());
+        assertEquals(GcPauseMetrics.KIND_PAUSE, pauses.get(0).getKind());
+        assertEquals(4, pauses.get(0).getCount());
+        assertEquals(40, pauses.get(0).getTotalTime());
+        assertEquals(4, pauses.get(0).getBuckets()[GcPauseMetrics.bucketIndex(10)]);
+        assertTrue(collector.collect().getPauses().isEmpty());
+    }
+
+    /**
+     * 当前进程中强制GC
+     */
+    @Test
+    public void forceGc() throws InterruptedException {
+        GcNotificationCollector collector = new GcNotificationCollector();
+        try {
+            Assume.assumeTrue(collector.isNotificationEnabled());
+            GcResult result = GcWorker.run(collector, Collections.singleton("System.gc()"));
+            assertTrue(result.toString(), result.causes.contains("System.gc()"));
+            assertTrue(result.toString(), result.allocated > 0);
+        } finally {
+            collector.close();
+        }
+    }
+
+    /**
+     * 不同回收器在子进程中强制GC，检查GC类型、原因及分配量
+     */
+    @Test
+    public void collectors() throws Exception {
+        String[][] cases = {
+                {"-XX:+UseSerialGC", "minor,major"},
+                {"-XX:+UseParallelGC", "minor,major"},
+                {"-XX:+UseG1GC", "minor,major"},
+                {"-XX:+UseZGC", "pause,cycle"},
+                {"-XX:+UseShenandoahGC", "pause,cycle"}};
+        int tested = 0;
+        for (String[] testCase : cases) {
+            if (!supports(testCase[0])) {
+                continue;
+            }
+            Process process = new ProcessBuilder(java(), "-Xmx64m", testCase[0], "-cp", System.getProperty("java.class.path"),
+                    GcWorker.class.getName(), testCase[1]).redirectErrorStream(true).start();
+            String output = read(process.getInputStream());
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(testCase[0] + ": " + output, 0, process.exitValue());
+            tested++;
+        }
+        assertTrue(tested >= 3);
+    }
+
+    private static boolean supports(String flag) throws Exception {
+        Process process = new ProcessBuilder(java(), flag, "-version").redirectErrorStream(true).start();
+        read(process.getInputStream());
+        return process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0;
+    }
+
+    private static String java() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static String read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = input.read(buffer)) > 0) {
+            output.write(buffer, 0, len);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, GcPauseMetrics> byName(GcNotificationMetrics metrics) {
+        Map<String, GcPauseMetrics> pauses = new HashMap<>();
+        for (GcPauseMetrics pause : metrics.getPauses()) {
+            pauses.put(pause.getName() + "/" + pause.getCause(), pause);
+        }
+        return pauses;
+    }
+
+    private static Map<String, MemoryUsage> usage(Object... nameAndUsed) {
+        Map<String, MemoryUsage> usage = new HashMap<>();
+        for (int i = 0; i < nameAndUsed.length; i += 2) {
+            long used = ((Number) nameAndUsed[i + 1]).longValue();
+            usage.put((String) nameAndUsed[i], new MemoryUsage(0, used, Math.max(used, 1 << 20), -1));
+        }
+        return usage;
+    }
+
+    private static class GcResult {
+        private final Set<String> kinds = new HashSet<>();
+        private final Set<String> causes = new HashSet<>();
+        private long allocated;
+
+        @Override
+        public String toString() {
+            return "kinds=" + kinds + ", causes=" + causes + ", allocated=" + allocated;
+        }
+    }
+
+    /**
+     * 在子进程中执行：分配对象并强制GC，采集结果包含参数中指定的GC类型、原因为System.gc()及分配量大于0时正常退出
+     */
+    public static class GcWorker {
+        private static volatile Object sink;
+
+        public static void main(String[] args) throws InterruptedException {
+            GcNotificationCollector collector = new GcNotificationCollector();
+            if (!collector.isNotificationEnabled()) {
+                System.out.println("notification not supported");
+                System.exit(2);
+            }
+            Set<String> kinds = new HashSet<>(Arrays.asList(args[0].split(",")));
+            GcResult result = run(collector, kinds);
+            System.out.println(result);
+            System.exit(result.kinds.containsAll(kinds) && result.allocated > 0 ? 0 : 1);
+        }
+
+        /**
+         * 分配对象并强制GC，直到采集结果包含expected（GC类型或原因）或超时
+         */
+        private static GcResult run(GcNotificationCollector collector, Set<String> expected) throws InterruptedException {
+            GcResult result = new GcResult();
+            List<byte[]> retained = new ArrayList<>();
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 200000; i++) {
+                    byte[] data = new byte[256];
+                    sink = data;
+                    if (i % 100 == 0 && retained.size() < 20000) {
+                        retained.add(data);// 部分对象存活以产生晋升
+                    }
+                }
+                System.gc();
+                Thread.sleep(100);// 通知是异步发送的
+                GcNotificationMetrics metrics = collector.collect();
+                for (GcPauseMetrics pause : metrics.getPauses()) {
+                    result.kinds.add(pause.getKind());
+                    result.causes.add(pause.getCause());
+                }
+                for (GcPoolMetrics pool : metrics.getPools()) {
+                    result.allocated += pool.getAllocated();
+                }
+                Set<String> found = new HashSet<>(result.kinds);
+                found.addAll(result.causes);
+                if (found.containsAll(expected) && result.allocated > 0 && round >= 2) {
+                    break;
+                }
+            }
+            sink = retained;
+            return result;
+        }
+    }
+
+    private static class PollingBean implements GarbageCollectorMXBean {
+        private final String name;
+        private long count;
+        private long time;
+
+        private PollingBean(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public long getCollectionCount() {
+            return count;
+        }
+
+        @Override
+        public long getCollectionTime() {
+            return time;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public String[] getMemoryPoolNames() {
+            return new String[0];
+        }
+
+        @Override
+        public ObjectName getObjectName() {
+            return null;
+        }
+    }
+}
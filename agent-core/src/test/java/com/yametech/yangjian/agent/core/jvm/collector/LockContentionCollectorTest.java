@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.core.jvm.metrics.DeadlockMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.LockContentionMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.LockTopMetrics;
+
+/**
+ * LockContentionCollector测试：构造确定的synchronized锁竞争、ReentrantLock竞争及死锁，检查聚合及死锁检测
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class LockContentionCollectorTest {
+    private final List<Thread> threads = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * 3个线程等待同一个monitor：按锁类型及持有者获取锁的栈帧聚合，释放后等待时间计入上次等待的锁（线程需存活到下次采集）
+     */
+    @Test
+    public void monitor() throws InterruptedException {
+        LockContentionCollector collector = new LockContentionCollector(5);
+        MonitorLock lock = new MonitorLock();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        start("monitor-owner", () -> lock.hold(locked, release));
+        locked.await();
+        for (int i = 1; i <= 3; i++) {
+            start("monitor-waiter-" + i, () -> {
+                lock.enter();
+                await(finish);
+            });
+        }
+        awaitState(Thread.State.BLOCKED, "monitor-waiter-", 3);
+        Thread.sleep(200);
+
+        LockContentionMetrics contention = find(collector.collect().getMonitors(), MonitorLock.class.getName());
+        assertEquals(LockContentionMetrics.TYPE_MONITOR, contention.getType());
+        assertEquals(3, contention.getThreads());
+        assertEquals(3, contention.getBlockedCount());
+        assertTrue(contention.getOwnerFrame(), contention.getOwnerFrame().startsWith(MonitorLock.class.getName() + ".hold:"));
+        long blockedTime = contention.getBlockedTime();
+
+        release.countDown();
+        awaitState(Thread.State.WAITING, "monitor-waiter-", 3);
+        LockTopMetrics metrics = collector.collect();
+        contention = find(metrics.getMonitors(), MonitorLock.class.getName());
+        assertEquals(0, contention.getThreads());
+        assertEquals(0, contention.getBlockedCount());
+        if (ManagementFactory.getThreadMXBean().isThreadContentionMonitoringSupported()) {
+            // 虚拟机实现不同，等待中的时间可能在等待结束时才累加
+            blockedTime += contention.getBlockedTime();
+            assertTrue(String.valueOf(blockedTime), blockedTime >= 3 * 150);
+            assertTrue(metrics.getBlockedTime() >= contention.getBlockedTime());
+        }
+        assertTrue(collector.collect().getMonitors().stream().noneMatch(m -> m.getLockClass().equals(MonitorLock.class.getName())));
+        finish.countDown();
+        joinAll();
+    }
+
+    /**
+     * 2个线程等待ReentrantLock：按AQS实现类及持有者正在执行的非JDK栈帧聚合，Condition.await等没有持有者的等待不计入
+     */
+    @Test
+    public void synchronizer() throws InterruptedException {
+        LockContentionCollector collector = new LockContentionCollector(5);
+        ReentrantLock lock = new ReentrantLock();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start("sync-owner", () -> holdLock(lock, locked, release));
+        locked.await();
+        for (int i = 1; i <= 2; i++) {
+            start("sync-waiter-" + i, () -> {
+                lock.lock();
+                lock.unlock();
+            });
+        }
+        start("sync-idle", () -> await(release));
+        awaitState(Thread.State.WAITING, "sync-waiter-", 2);
+
+        LockTopMetrics metrics = collector.collect();
+        LockContentionMetrics contention = find(metrics.getSynchronizers(), "java.util.concurrent.locks.ReentrantLock$NonfairSync");
+        assertEquals(LockContentionMetrics.TYPE_SYNCHRONIZER, contention.getType());
+        assertEquals(2, contention.getThreads());
+        assertTrue(contention.getWaitedCount() >= 2);
+        assertTrue(contention.getOwnerFrame(), contention.getOwnerFrame().startsWith(LockContentionCollectorTest.class.getName() + ".holdLock:"));
+        assertTrue(metrics.getSynchronizers().stream().noneMatch(m -> m.getLockClass().contains("CountDownLatch")));
+        assertTrue(metrics.getDeadlocks().isEmpty());
+
+        release.countDown();
+        joinAll();
+    }
+
+    /**
+     * 等待ReentrantLock之前的park不计入该锁：第一次发现等待时只计次数，之后计入等待期间的采集间隔
+     */
+    @Test
+    public void synchronizerWaitedTime() throws InterruptedException {
+        LockContentionCollector collector = new LockContentionCollector(5);
+        ReentrantLock lock = new ReentrantLock();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start("sync-owner", () -> holdLock(lock, locked, release));
+        locked.await();
+        start("sync-parker", () -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(300));
+            lock.lock();
+            lock.unlock();
+        });
+        for (int i = 0; i < 500 && !lock.hasQueuedThreads(); i++) {
+            Thread.sleep(10);
+        }
+        awaitState(Thread.State.WAITING, "sync-parker", 1);
+
+        String lockClass = "java.util.concurrent.locks.ReentrantLock$NonfairSync";
+        LockContentionMetrics contention = find(collector.collect().getSynchronizers(), lockClass);
+        assertEquals(1, contention.getThreads());
+        assertEquals(1, contention.getWaitedCount());
+        assertEquals(0, contention.getWaitedTime());
+
+        Thread.sleep(200);
+        contention = find(collector.collect().getSynchronizers(), lockClass);
+        assertEquals(0, contention.getWaitedCount());
+        assertTrue(String.valueOf(contention.getWaitedTime()), contention.getWaitedTime() >= 150);
+
+        release.countDown();
+        joinAll();
+    }
+
+    /**
+     * 两个线程按相反顺序获取两个ReentrantLock形成死锁
+     */
+    @Test
+    public void deadlock() throws InterruptedException {
+        LockContentionCollector collector = new LockContentionCollector(5);
+        ReentrantLock first = new ReentrantLock();
+        ReentrantLock second = new ReentrantLock();
+        CountDownLatch bothLocked = new CountDownLatch(2);
+        start("deadlock-1", () -> lockBoth(first, second, bothLocked));
+        start("deadlock-2", () -> lockBoth(second, first, bothLocked));
+        awaitState(Thread.State.WAITING, "deadlock-", 2);
+        for (int i = 0; i < 500 && !(first.hasQueuedThreads() && second.hasQueuedThreads()); i++) {
+            Thread.sleep(10);
+        }
+        awaitState(Thread.State.WAITING, "deadlock-", 2);
+
+        LockTopMetrics metrics = collector.collect();
+        List<DeadlockMetrics> deadlocks = metrics.getDeadlocks();
+        assertEquals(2, deadlocks.size());
+        for (DeadlockMetrics deadlock : deadlocks) {
+            assertTrue(deadlock.getThreadName().startsWith("deadlock-"));
+            assertTrue(deadlock.getOwnerName().startsWith("deadlock-"));
+            assertTrue(!deadlock.getThreadName().equals(deadlock.getOwnerName()));
+            assertTrue(deadlock.getLockName(), deadlock.getLockName().startsWith("java.util.concurrent.locks.ReentrantLock$NonfairSync@"));
+        }
+        assertEquals(2, find(metrics.getSynchronizers(), "java.util.concurrent.locks.ReentrantLock$NonfairSync").getThreads());
+
+        // lockInterruptibly可中断，结束死锁
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        joinAll();
+        assertTrue(collector.collect().getDeadlocks().isEmpty());
+    }
+
+    @Test
+    public void topN() throws InterruptedException {
+        LockContentionCollector collector = new LockContentionCollector(1);
+        MonitorLock lock = new MonitorLock();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start("top-owner", () -> lock.hold(locked, release));
+        locked.await();
+        start("top-waiter-1", lock::enter);
+        awaitState(Thread.State.BLOCKED, "top-waiter-", 1);
+        assertEquals(1, collector.collect().getMonitors().size());
+        release.countDown();
+        joinAll();
+        assertTrue(new LockContentionCollector(0).collect().getMonitors().isEmpty());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            // 忽略
+        }
+    }
+
+    private static void holdLock(ReentrantLock lock, CountDownLatch locked, CountDownLatch release) {
+        lock.lock();
+        try {
+            locked.countDown();
+            release.await();
+        } catch (InterruptedException e) {
+            // 忽略
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void lockBoth(ReentrantLock first, ReentrantLock second, CountDownLatch bothLocked) {
+        try {
+            first.lockInterruptibly();
+            try {
+                bothLocked.countDown();
+                bothLocked.await();
+                second.lockInterruptibly();
+                second.unlock();
+            } finally {
+                first.unlock();
+            }
+        } catch (InterruptedException e) {
+            // 忽略
+        }
+    }
+
+    private void start(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    private void joinAll() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        threads.clear();
+    }
+
+    private void awaitState(Thread.State state, String namePrefix, int num) throws InterruptedException {
+        Predicate<Thread> matched = thread -> thread.getName().startsWith(namePrefix) && thread.getState() == state;
+        for (int i = 0; i < 500; i++) {
+            if (threads.stream().filter(matched).count() == num) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError(namePrefix + " not " + state);
+    }
+
+    private static LockContentionMetrics find(List<LockContentionMetrics> metrics, String lockClass) {
+        for (LockContentionMetrics contention : metrics) {
+            if (contention.getLockClass().equals(lockClass)) {
+                return contention;
+            }
+        }
+        throw new AssertionError(lockClass + " not found");
+    }
+
+    private static class MonitorLock {
+
+        private synchronized void hold(CountDownLatch locked, CountDownLatch release) {
+            locked.countDown();
+            await(release);
+        }
+
+        private synchronized void enter() {
+            // 只获取锁
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.core.jvm.metrics.ThreadTopMetrics;
+import com.yametech.yangjian.agent.core.jvm.metrics.ThreadUsageMetrics;
+
+/**
+ * ThreadUsageCollector测试：构造消耗CPU及分配内存的线程，检查排序及分组；大量线程时的采集耗时
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ThreadUsageCollectorTest {
+    private static volatile Object sink;
+    private static volatile long counter;
+
+    /**
+     * 消耗CPU的线程池按CPU排在前面，分配内存的线程池按分配量排在前面，空闲线程不输出
+     */
+    @Test
+    public void busyAndAllocating() throws InterruptedException {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean().isThreadCpuTimeSupported());
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch stop = new CountDownLatch(1);
+        for (int i = 1; i <= 2; i++) {
+            workers.add(start("busy-worker-" + i, () -> {
+                while (stop.getCount() > 0) {
+                    for (int j = 0; j < 100000; j++) {
+                        counter += j;
+                    }
+                }
+            }));
+        }
+        workers.add(start("alloc-worker-1", () -> {
+            while (stop.getCount() > 0) {
+                for (int j = 0; j < 1000; j++) {
+                    sink = new byte[1024];
+                }
+                Thread.yield();
+            }
+        }));
+        for (int i = 1; i <= 3; i++) {
+            workers.add(start("idle-worker-" + i, () -> {
+                try {
+                    stop.await();
+                } catch (InterruptedException e) {
+                    // 忽略
+                }
+            }));
+        }
+        ThreadUsageCollector collector = new ThreadUsageCollector(3);
+        Thread.sleep(1000);
+        ThreadTopMetrics metrics = collector.collect();
+        stop.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<ThreadUsageMetrics> poolsByCpu = metrics.getPoolsByCpu();
+        assertTrue(poolsByCpu.size() <= 3);
+        assertEquals(names(poolsByCpu), "busy-worker", poolsByCpu.get(0).getName());
+        assertEquals(2, poolsByCpu.get(0).getThreads());
+        assertTrue(poolsByCpu.get(0).getCpuUsagePercent() > 10);
+        assertTrue(poolsByCpu.get(0).getCpuTime() >= poolsByCpu.get(poolsByCpu.size() - 1).getCpuTime());
+        assertTrue(metrics.getThreadsByCpu().get(0).getName().startsWith("busy-worker-"));
+
+        List<ThreadUsageMetrics> poolsByAllocation = metrics.getPoolsByAllocation();
+        assertEquals(names(poolsByAllocation), "alloc-worker", poolsByAllocation.get(0).getName());
+        assertTrue(poolsByAllocation.get(0).getAllocatedBytes() > 1 << 20);
+        assertTrue(poolsByAllocation.get(0).getAllocationRate() > 0);
+        assertEquals("alloc-worker-1", metrics.getThreadsByAllocation().get(0).getName());
+
+        for (ThreadUsageMetrics usage : metrics.getThreadsByCpu()) {
+            assertTrue(!usage.getName().startsWith("idle-worker"));
+        }
+        // 线程退出后不再输出
+        for (ThreadUsageMetrics usage : collector.collect().getThreadsByCpu()) {
+            assertTrue(usage.getName(), !usage.getName().startsWith("busy-worker"));
+        }
+    }
+
+    /**
+     * 5000个线程时每次采集只有批量调用，线程名只在第一次出现时获取
+     */
+    @Test
+    public void manyThreads() throws InterruptedException {
+        int threadNum = 5000;
+        CountDownLatch stop = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(threadNum);
+        try {
+            for (int i = 0; i < threadNum; i++) {
+                Thread thread = new Thread(null, () -> {
+                    try {
+                        stop.await();
+                    } catch (InterruptedException e) {
+                        // 忽略
+                    }
+                }, "parked-" + i, 64 * 1024);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            long start = System.nanoTime();
+            ThreadUsageCollector collector = new ThreadUsageCollector(10);
+            long first = System.nanoTime() - start;
+            long total = 0;
+            int rounds = 10;
+            for (int i = 0; i < rounds; i++) {
+                start = System.nanoTime();
+                ThreadTopMetrics metrics = collector.collect();
+                total += System.nanoTime() - start;
+                assertTrue(metrics.getThreadsByCpu().size() <= 10);
+            }
+            long avg = total / rounds;
+            System.out.println("threads: " + threadNum + ", first sample: " + TimeUnit.NANOSECONDS.toMicros(first)
+                    + "us, collect: " + TimeUnit.NANOSECONDS.toMicros(avg) + "us");
+        } finally {
+            stop.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private static Thread start(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String names(List<ThreadUsageMetrics> metrics) {
+        StringBuilder builder = new StringBuilder();
+        for (ThreadUsageMetrics usage : metrics) {
+            builder.append(usage.getName()).append('=').append(usage.getCpuTime()).append('/').append(usage.getAllocatedBytes()).append(' ');
+        }
+        return builder.toString();
+    }
+}
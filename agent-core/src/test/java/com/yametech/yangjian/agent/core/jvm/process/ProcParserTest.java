@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.jvm.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 使用src/test/resources/proc/self下采集的/proc文件测试解析及读取
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ProcParserTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parseStatus() throws Exception {
+        byte[] data = fixture("status");
+        ProcStat stat = new ProcStat();
+        assertTrue(ProcParser.parseStatus(data, data.length, stat));
+        assertEquals(87096, stat.getRssKb());
+        assertEquals(0, stat.getSwapKb());
+        assertEquals(1, stat.getVoluntaryCtxtSwitches());
+        assertEquals(1, stat.getNonvoluntaryCtxtSwitches());
+
+        data = "VmRSS:\t  123456 kB\nVmSwap:\t    2048 kB\nvoluntary_ctxt_switches:\t42".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(ProcParser.parseStatus(data, data.length, stat));
+        assertEquals(123456, stat.getRssKb());
+        assertEquals(2048, stat.getSwapKb());
+        assertEquals(42, stat.getVoluntaryCtxtSwitches());
+        assertEquals(1, stat.getNonvoluntaryCtxtSwitches());// 缺少的字段保持原值
+    }
+
+    @Test
+    public void parseIo() throws Exception {
+        byte[] data = fixture("io");
+        ProcStat stat = new ProcStat();
+        assertTrue(ProcParser.parseIo(data, data.length, stat));
+        assertEquals(0, stat.getReadBytes());
+        assertEquals(1105920, stat.getWriteBytes());// 不能匹配cancelled_write_bytes
+    }
+
+    @Test
+    public void parseSchedstat() throws Exception {
+        byte[] data = fixture("schedstat");
+        ProcStat stat = new ProcStat();
+        assertTrue(ProcParser.parseSchedstat(data, data.length, stat));
+        assertEquals(92423, stat.getRunQueueWaitNanos());
+
+        data = "1 2".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(ProcParser.parseSchedstat(data, data.length, stat));
+        assertEquals(92423, stat.getRunQueueWaitNanos());
+    }
+
+    /**
+     * 上下文切换次数及运行队列等待时间为task目录下所有线程之和，值不变时重复读取结果不变，不存在的文件跳过
+     */
+    @Test
+    public void readFixture() throws Exception {
+        ProcStat stat = new ProcStat();
+        try (ProcReader reader = new ProcReader(fixtureDir())) {
+            assertTrue(reader.read(stat));
+            assertEquals(87096, stat.getRssKb());
+            assertEquals(1105920, stat.getWriteBytes());
+            assertEquals(1 + 43 + 13, stat.getVoluntaryCtxtSwitches());
+            assertEquals(1 + 1286 + 5, stat.getNonvoluntaryCtxtSwitches());
+            assertEquals(92423L + 740998926L + 2105769L, stat.getRunQueueWaitNanos());
+            assertTrue(reader.read(stat));
+            assertEquals(1 + 43 + 13, stat.getVoluntaryCtxtSwitches());
+            assertEquals(92423L + 740998926L + 2105769L, stat.getRunQueueWaitNanos());
+        }
+
+        ProcStat missing = new ProcStat();
+        try (ProcReader reader = new ProcReader(fixtureDir().resolve("not-exists"))) {
+            assertFalse(reader.read(missing));
+            assertFalse(reader.read(missing));
+        }
+        assertEquals(0, missing.getRssKb());
+    }
+
+    /**
+     * 线程退出后累计值不减少，新线程累加其全部值，存活线程累加增量
+     */
+    @Test
+    public void threadExit() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        writeTask(dir, 1, 10, 100);
+        writeTask(dir, 2, 20, 200);
+        ProcStat stat = new ProcStat();
+        try (ProcReader reader = new ProcReader(dir)) {
+            reader.read(stat);
+            assertEquals(30, stat.getVoluntaryCtxtSwitches());
+            assertEquals(300, stat.getRunQueueWaitNanos());
+
+            Files.delete(dir.resolve("task/2/status"));
+            Files.delete(dir.resolve("task/2/schedstat"));
+            Files.delete(dir.resolve("task/2"));
+            writeTask(dir, 1, 15, 150);
+            writeTask(dir, 3, 4, 40);
+            reader.read(stat);
+            assertEquals(30 + 5 + 4, stat.getVoluntaryCtxtSwitches());
+            assertEquals(300 + 50 + 40, stat.getRunQueueWaitNanos());
+        }
+    }
+
+    private static void writeTask(Path dir, int tid, long ctxtSwitches, long runQueueWait) throws IOException {
+        Path task = Files.createDirectories(dir.resolve("task").resolve(String.valueOf(tid)));
+        Files.write(task.resolve("status"), ("voluntary_ctxt_switches:\t" + ctxtSwitches + "\nnonvoluntary_ctxt_switches:\t0\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        Files.write(task.resolve("schedstat"), ("1000 " + runQueueWait + " 10\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 重复读取当前进程的/proc/self，累计值不减少
+     */
+    @Test
+    public void readSelf() {
+        Path self = Paths.get("/proc/self");
+        Assume.assumeTrue(Files.isReadable(self.resolve("status")));
+        ProcStat first = new ProcStat();
+        ProcStat second = new ProcStat();
+        try (ProcReader reader = new ProcReader(self)) {
+            assertTrue(reader.read(first));
+            assertTrue(reader.read(second));
+        }
+        assertTrue(second.getRssKb() > 0);
+        assertTrue(second.getVoluntaryCtxtSwitches() > 0);
+        assertTrue(second.getVoluntaryCtxtSwitches() >= first.getVoluntaryCtxtSwitches());
+        assertTrue(second.getRunQueueWaitNanos() >= first.getRunQueueWaitNanos());
+    }
+
+    private static Path fixtureDir() throws URISyntaxException {
+        return Paths.get(ProcParserTest.class.getResource("/proc/self").toURI());
+    }
+
+    private static byte[] fixture(String name) throws IOException, URISyntaxException {
+        return Files.readAllBytes(fixtureDir().resolve(name));
+    }
+}
@@ -16,19 +16,28 @@
 package com.yametech.yangjian.agent.core.log;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.yametech.yangjian.agent.api.common.Config;
 import com.yametech.yangjian.agent.api.common.Constants;
 import com.yametech.yangjian.agent.core.log.appender.RollingFileAppender;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author zcn
  * @date: 2019-10-15
  */
 public class RollingFileAppenderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     @BeforeClass
     public static void beforeClass(){
@@ -61,6 +70,35 @@ public class RollingFileAppenderTest {
         }
     }
 
+    /**
+     * 没有新日志时按log.flush_interval写入文件
+     */
+    @Test
+    public void testFlushByTime() throws IOException, InterruptedException {
+        Config.setConfig(Constants.LOG_TRACE_DIR, folder.getRoot().getAbsolutePath());
+        Config.setConfig("log.flush_interval", "100");
+        RollingFileAppender appender = new RollingFileAppender(AppenderFactory.TRACE_APPENDER);
+        for (int i = 0; i < 3; i++) {
+            appender.append(new LogEvent(LogLevel.INFO, "line" + i, null, RollingFileAppenderTest.class.getCanonicalName()));
+        }
+        File dir = new File(folder.getRoot(), "test");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countLines(dir) < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, countLines(dir));
+        assertTrue(dir.list().length >= 2);// log.max_file_size=10，两行超过10字节后切换文件
+    }
+
+    private static long countLines(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        long lines = 0;
+        for (int i = 0; files != null && i < files.length; i++) {
+            lines += Files.readAllLines(files[i].toPath()).size();
+        }
+        return lines;
+    }
+
     private static void deleteDir(File dir) {
         if (dir.isDirectory()) {
             String[] children = dir.list();
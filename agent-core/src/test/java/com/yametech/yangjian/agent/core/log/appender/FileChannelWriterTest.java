@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.log.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.yametech.yangjian.agent.api.common.Constants;
+
+/**
+ * FileChannelWriter编码、按大小及日期滚动、文件数限制测试
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class FileChannelWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File dir;
+    private final AtomicLong now = new AtomicLong(millis(2020, 4, 24, 10));
+
+    @Before
+    public void init() {
+        dir = new File(folder.getRoot(), "logs");
+    }
+
+    /**
+     * 与String.getBytes(UTF_8)一致，超过缓存大小的行分多次写入
+     */
+    @Test
+    public void encode() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longLine.append("中文😀abc");
+        }
+        List<String> lines = Arrays.asList("ascii line", "中文 ß 😀", "lone\uD83Dsurrogate", "", longLine.toString());
+        try (FileChannelWriter writer = writer(1 << 20, 10, 64)) {
+            for (String line : lines) {
+                writer.write(line);
+            }
+            StringBuilder builder = new StringBuilder();
+            builder.append(lines.get(3));
+            writer.write(builder);
+        }
+        List<String> expected = new ArrayList<>();
+        for (String line : lines) {
+            expected.add(new String(line.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        }
+        expected.add("");
+        assertEquals(expected, read(new File(dir, "statistic.20200424.1.log")));
+    }
+
+    /**
+     * flush前内容在缓存中，flush后写入文件
+     */
+    @Test
+    public void flush() throws IOException {
+        FileChannelWriter writer = writer(1 << 20, 10, 1024);
+        writer.write("line1");
+        assertEquals(5 + Constants.LINE_SEPARATOR.length(), writer.pendingBytes());
+        File file = writer.currentFile();
+        assertEquals(0, file.length());
+        writer.flush();
+        assertEquals(0, writer.pendingBytes());
+        assertEquals(Arrays.asList("line1"), read(file));
+        writer.close();
+    }
+
+    /**
+     * 超过maxFileSize后下一行写入新文件，内容按顺序分布在各个文件中
+     */
+    @Test
+    public void rollBySize() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (FileChannelWriter writer = writer(100, 100, 1024)) {
+            for (int i = 0; i < 50; i++) {
+                String line = String.format("line-%03d", i);
+                lines.add(line);
+                writer.write(line);
+            }
+        }
+        File[] files = dir.listFiles();
+        int lineBytes = 8 + Constants.LINE_SEPARATOR.length();
+        int linesPerFile = 100 / lineBytes + 1;
+        assertEquals((50 + linesPerFile - 1) / linesPerFile, files.length);
+        List<String> all = new ArrayList<>();
+        for (int i = 1; i <= files.length; i++) {
+            File file = new File(dir, "statistic.20200424." + i + ".log");
+            assertTrue(file.length() <= 100 + lineBytes);
+            all.addAll(read(file));
+        }
+        assertEquals(lines, all);
+    }
+
+    /**
+     * 缓存小于文件大小时，写入一行的过程中缓存满先写入文件，文件大小仍按实际写入的字节数计算
+     */
+    @Test
+    public void rollBySizeAcrossBuffer() throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            padding.append('x');
+        }
+        try (FileChannelWriter writer = writer(10000, 100, 100)) {
+            for (int i = 0; i < 2000; i++) {
+                String line = String.format("line-%04d-", i) + padding;
+                lines.add(line);
+                writer.write(line);
+            }
+        }
+        File[] files = dir.listFiles();
+        int lineBytes = 70 + Constants.LINE_SEPARATOR.length();
+        int linesPerFile = 10000 / lineBytes + 1;
+        assertEquals((2000 + linesPerFile - 1) / linesPerFile, files.length);
+        List<String> all = new ArrayList<>();
+        for (int i = 1; i <= files.length; i++) {
+            File file = new File(dir, "statistic.20200424." + i + ".log");
+            assertTrue(file.length() <= 10000 + lineBytes);
+            all.addAll(read(file));
+        }
+        assertEquals(lines, all);
+    }
+
+    /**
+     * 跨天后写入新日期的文件，序号从1开始
+     */
+    @Test
+    public void rollByDay() throws IOException {
+        try (FileChannelWriter writer = writer(100, 100, 1024)) {
+            for (int i = 0; i < 20; i++) {
+                writer.write("day1-" + i);
+            }
+            writer.flush();
+            now.set(millis(2020, 4, 25, 0));
+            writer.write("day2-0");
+            writer.flush();
+            assertEquals(new File(dir, "statistic.20200425.1.log"), writer.currentFile());
+        }
+        assertEquals(Arrays.asList("day2-0"), read(new File(dir, "statistic.20200425.1.log")));
+    }
+
+    /**
+     * 文件数超过maxFileNum时删除最早的文件（包括之前运行时生成的）
+     */
+    @Test
+    public void maxFileNum() throws IOException {
+        assertTrue(dir.mkdirs());
+        assertTrue(new File(dir, "statistic.20200423.1.log").createNewFile());
+        assertTrue(new File(dir, "statistic.20200423.2.log").createNewFile());
+        assertTrue(new File(dir, "other.log").createNewFile());
+        try (FileChannelWriter writer = writer(10, 3, 1024)) {
+            for (int i = 0; i < 5; i++) {// 每个文件2行
+                writer.write("line-" + i);
+            }
+        }
+        List<String> names = Arrays.asList(dir.list());
+        assertEquals(4, names.size());
+        assertTrue(names.toString(), names.containsAll(Arrays.asList("other.log", "statistic.20200424.1.log",
+                "statistic.20200424.2.log", "statistic.20200424.3.log")));
+    }
+
+    /**
+     * 重启后继续写入当天最新的未满的文件，已满时使用下一个序号
+     */
+    @Test
+    public void reopen() throws IOException {
+        try (FileChannelWriter writer = writer(100, 10, 1024)) {
+            writer.write("first");
+        }
+        try (FileChannelWriter writer = writer(100, 10, 1024)) {
+            writer.write("second");
+        }
+        assertEquals(Arrays.asList("first", "second"), read(new File(dir, "statistic.20200424.1.log")));
+
+        Files.write(new File(dir, "statistic.20200424.1.log").toPath(), new byte[100]);
+        try (FileChannelWriter writer = writer(100, 10, 1024)) {
+            writer.write("third");
+        }
+        assertEquals(Arrays.asList("third"), read(new File(dir, "statistic.20200424.2.log")));
+    }
+
+    private FileChannelWriter writer(long maxFileSize, int maxFileNum, int bufferSize) {
+        return new FileChannelWriter(dir, "statistic", maxFileSize, maxFileNum, bufferSize, now::get);
+    }
+
+    private static List<String> read(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static long millis(int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.log.appender;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.common.Constants;
+
+/**
+ * 日志写入线程每秒写入的行数，加-prof gc查看每行分配的内存
+ * outputStream为原RollingFileAppender的写法：拼接换行符、getBytes后写FileOutputStream；fileChannel为FileChannelWriter
+ * 行内容为一条统计日志（约150字节），文件超过64M后清空，避免占用过多磁盘
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class FileChannelWriter_JMH {
+    private static final long MAX_FILE_SIZE = 64L * 1024 * 1024;
+    private static final String LINE = "2020-04-24 10:00:00.123[INFO]-[agent-log-writer]-[RTEventListener.report]: "
+            + "statistic/mysql-sql/RT?sign=select+id+from+t_user&num=100&rt_total=1200&rt_max=80&rt_min=1";
+    private Path dir;
+    private FileOutputStream outputStream;
+    private long outputStreamSize;
+    private int lineNum;
+    private FileChannelWriter writer;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("log-benchmark");
+        outputStream = new FileOutputStream(new File(dir.toFile(), "stream.log"), true);
+        writer = new FileChannelWriter(new File(dir.toFile(), "channel"), "statistic", MAX_FILE_SIZE, 2, 64 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        outputStream.close();
+        writer.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void outputStream() throws IOException {
+        String message = LINE + Constants.LINE_SEPARATOR;
+        outputStream.write(message.getBytes());
+        outputStreamSize += message.length();
+        if (++lineNum % 100 == 0) {
+            outputStream.flush();
+            if (outputStreamSize > MAX_FILE_SIZE) {
+                outputStream.getChannel().truncate(0);
+                outputStreamSize = 0;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void fileChannel() throws IOException {
+        writer.write(LINE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(FileChannelWriter_JMH.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
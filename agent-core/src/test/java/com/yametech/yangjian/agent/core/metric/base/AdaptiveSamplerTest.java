@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+import com.yametech.yangjian.agent.core.metric.consume.RTEventConsume;
+import com.yametech.yangjian.agent.util.eventbus.EventBusBuilder;
+import com.yametech.yangjian.agent.util.eventbus.consume.BaseConfigConsume;
+import com.yametech.yangjian.agent.util.eventbus.process.EventBus;
+
+public class AdaptiveSamplerTest {
+	private static final StatisticType[] STATISTIC_TYPES = {StatisticType.QPS, StatisticType.RT};
+
+	/**
+	 * 占用超过高水位时按间隔翻倍直至上限，低于低水位时按较长的间隔减半，两者之间保持不变
+	 */
+	@Test
+	public void ramp() {
+		AtomicLong clock = new AtomicLong();
+		AdaptiveSampler sampler = new AdaptiveSampler(0.75, 0.25, 16, clock::get);
+		assertEquals(1, sampler.sample(0.5));
+		int[] expected = {2, 4, 8, 16, 16};
+		for(int weight : expected) {
+			clock.addAndGet(1_000_000L);
+			sampler.sample(0.9);
+			sampler.sample(0.9);// 间隔内不会重复调整
+			assertEquals(weight, sampler.getWeight());
+		}
+		clock.addAndGet(1_000_000_000L);
+		sampler.sample(0.5);
+		assertEquals(16, sampler.getWeight());
+		sampler.sample(0.1);
+		assertEquals(8, sampler.getWeight());
+		clock.addAndGet(100_000_000L);
+		sampler.sample(0.1);
+		assertEquals(8, sampler.getWeight());
+		for(int weight : new int[] {4, 2, 1, 1}) {
+			clock.addAndGet(200_000_000L);
+			sampler.sample(0.1);
+			assertEquals(weight, sampler.getWeight());
+		}
+		assertEquals(1.0, sampler.getRate(), 0);
+	}
+
+	/**
+	 * 发布事件的权重合计与事件总数的偏差在统计误差范围内
+	 */
+	@Test
+	public void unbiased() {
+		AtomicLong clock = new AtomicLong();
+		AdaptiveSampler sampler = new AdaptiveSampler(0.75, 0.25, 32, clock::get);
+		for(int i = 0; i < 5; i++) {
+			clock.addAndGet(1_000_000L);
+			sampler.sample(1);
+		}
+		assertEquals(32, sampler.getWeight());
+		int eventNum = 1000000;
+		long estimate = 0;
+		for(int i = 0; i < eventNum; i++) {
+			estimate += sampler.sample(0.5);
+		}
+		// 标准差约为sqrt(eventNum * 32) = 5657
+		assertEquals(eventNum, estimate, eventNum * 0.02);
+	}
+
+	/**
+	 * 消费慢于发布时：仅丢弃的调用次数明显偏少，采样后的估算值接近实际值
+	 */
+	@Test
+	public void slowConsumer() throws InterruptedException {
+		int eventNum = 300000;
+		long discardOnly = publish(null, eventNum);
+		long sampled = publish(new AdaptiveSampler(), eventNum);
+		assertTrue("discard: " + discardOnly, discardOnly < eventNum * 0.7);
+		assertEquals("sampled: " + sampled, eventNum, sampled, eventNum * 0.05);
+	}
+
+	/**
+	 * 模拟MetricEventBus的发布及RTEventConsume的消费，发布线程每个事件耗时约0.5微秒，消费线程每个事件额外耗时约2微秒
+	 * @return	统计的调用次数
+	 */
+	private static long publish(AdaptiveSampler sampler, int eventNum) throws InterruptedException {
+		RTEventConsume consume = new RTEventConsume();
+		BaseConfigConsume<ConvertTimeEvent> slowConsume = event -> {
+			spin(2000);
+			consume.accept(event);
+		};
+		EventBus<ConvertTimeEvent> eventBus = EventBusBuilder.create(() -> Collections.singletonList(slowConsume))
+				.bufferSize(1024)
+				.setDiscardFull(true)
+				.build(ConvertTimeEvent.class);
+		for(int i = 0; i < eventNum; i++) {
+			spin(500);
+			int weight = 1;
+			if(sampler != null) {
+				long remaining = eventBus.getRingBuffer().remainingCapacity();
+				weight = sampler.sample(1 - (double) remaining / eventBus.getRingBuffer().getBufferSize());
+				if(weight == 0) {
+					continue;
+				}
+			}
+			int eventWeight = weight;
+			int index = i;
+			eventBus.publish(event -> {
+				if(event == null) {
+					return;// 缓存已满，丢弃
+				}
+				event.setConvert(null);
+				event.setStatisticTypes(STATISTIC_TYPES);
+				event.setType("test");
+				event.setIdentify("identify" + (index % 10));
+				event.setUseTime(10);
+				event.setNumber(1);
+				event.setErrorNum(0);
+				event.setWeight(eventWeight);
+			});
+		}
+		assertTrue(eventBus.shutdown(Duration.ofSeconds(30)));
+		long num = 0;
+		for(BaseStatistic statistic : consume.getReportStatistics(1, System.currentTimeMillis() + 3600 * 1000L)) {
+			Map<String, Object> kvs = statistic.statisticKV();
+			if(statistic.statisticType() == StatisticType.QPS) {
+				num += (Long) kvs.get("num");
+			} else {
+				assertEquals(10L, kvs.get("rt_min"));// 平均耗时不受权重影响
+			}
+		}
+		return num;
+	}
+
+	private static void spin(long nanos) {
+		long end = System.nanoTime() + nanos;
+		while(System.nanoTime() < end) {
+			// 模拟业务或消费耗时
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.util.eventbus.EventBusBuilder;
+import com.yametech.yangjian.agent.util.eventbus.consume.BaseConfigConsume;
+import com.yametech.yangjian.agent.util.eventbus.process.EventBus;
+
+/**
+ * 多线程发布时，逐条发布（每条一次next/publish）与批量发布（一次next(n)/publish(lo, hi)）的吞吐量对比，单位为事件数
+ * discard=true时缓存满后丢弃，吞吐量包含丢弃的事件
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class EventBusPublish_JMH {
+	private static final int BATCH_NUM = 16;
+	@Param({"false", "true"})
+	private boolean discard;
+	private EventBus<ConvertTimeEvent> eventBus;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BaseConfigConsume<ConvertTimeEvent> consume = event -> {};
+		eventBus = EventBusBuilder.create(() -> Collections.singletonList(consume))
+				.bufferSize(4096)
+				.setDiscardFull(discard)
+				.build(ConvertTimeEvent.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		eventBus.shutdown(Duration.ofSeconds(5));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_NUM)
+	public void single() {
+		for(int i = 0; i < BATCH_NUM; i++) {
+			eventBus.publish(event -> initEvent(event, 0));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_NUM)
+	public int batch() {
+		return eventBus.publish(EventBusPublish_JMH::initEvent, BATCH_NUM);
+	}
+
+	private static void initEvent(ConvertTimeEvent event, int index) {
+		event.setType("mysql-sql");
+		event.setIdentify("t_user.Select");
+		event.setUseTime(index);
+		event.setNumber(1);
+		event.setErrorNum(0);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(EventBusPublish_JMH.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+
+public class MetricEventBusTest {
+
+	/**
+	 * 预聚合关闭后再开启复用同一个PreAggregator，不重复注册定时任务
+	 */
+	@Test
+	public void toggleReuseAggregator() {
+		MetricEventBus eventBus = new MetricEventBus();
+		List<TimeEvent> events = Collections.singletonList(event());
+		eventBus.configKeyValue(Collections.singletonMap("eventPublish.preAggregate.metric", "false"));
+		assertNull(eventBus.getPreAggregator());
+		assertFalse(eventBus.aggregate(events, "default"));
+		eventBus.configKeyValue(Collections.singletonMap("eventPublish.preAggregate.metric", "true"));
+		PreAggregator aggregator = eventBus.getPreAggregator();
+		assertTrue(eventBus.aggregate(events, "default"));
+		eventBus.configKeyValue(Collections.singletonMap("eventPublish.preAggregate.metric", "false"));
+		assertFalse(eventBus.aggregate(events, "default"));
+		eventBus.configKeyValue(Collections.singletonMap("eventPublish.preAggregate.metric", "true"));
+		assertSame(aggregator, eventBus.getPreAggregator());
+		assertTrue(eventBus.aggregate(events, "default"));
+	}
+
+	/**
+	 * 默认不采样，配置未变化时刷新配置保留同一个AdaptiveSampler
+	 */
+	@Test
+	public void samplerConfig() {
+		MetricEventBus eventBus = new MetricEventBus();
+		assertNull(eventBus.getSampler());
+		eventBus.configKeyValue(Collections.emptyMap());
+		assertNull(eventBus.getSampler());
+		Map<String, String> kv = new HashMap<>();
+		kv.put("eventPublish.sample.metric", "true");
+		eventBus.configKeyValue(kv);
+		AdaptiveSampler sampler = eventBus.getSampler();
+		assertNotNull(sampler);
+		eventBus.configKeyValue(new HashMap<>(kv));
+		assertSame(sampler, eventBus.getSampler());
+		kv.put("eventPublish.sample.metric.maxWeight", "8");
+		eventBus.configKeyValue(kv);
+		assertNotSame(sampler, eventBus.getSampler());
+		kv.put("eventPublish.sample.metric", "false");
+		eventBus.configKeyValue(kv);
+		assertNull(eventBus.getSampler());
+	}
+
+	private static TimeEvent event() {
+		TimeEvent event = new TimeEvent();
+		event.setIdentify("a");
+		event.setStatisticTypes(new StatisticType[] {StatisticType.QPS});
+		event.setNumber(1);
+		return event;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.core.metric.consume.RTEventListener;
+import com.yametech.yangjian.agent.util.eventbus.EventBusBuilder;
+import com.yametech.yangjian.agent.util.eventbus.process.EventBus;
+
+/**
+ * 同步转换事件的发布吞吐量，生产阻塞等待消费，perEvent为每次调用发布一个事件，preAggregate为在调用线程按秒预聚合后发布分段
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PreAggregate_JMH {
+	private static final int IDENTIFY_NUM = 128;
+	private static final StatisticType[] STATISTIC_TYPES = {StatisticType.QPS, StatisticType.RT};
+	@Param({"perEvent", "preAggregate"})
+	private String path;
+	private EventBus<ConvertTimeEvent> eventBus;
+	private PreAggregator aggregator;
+	private final List<List<TimeEvent>> datas = new ArrayList<>();
+
+	@State(Scope.Thread)
+	public static class Index {
+		private int value;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		for(int i = 0; i < IDENTIFY_NUM; i++) {
+			TimeEvent timeEvent = new TimeEvent();
+			timeEvent.setIdentify("com.demo.Service.method" + i + "()");
+			timeEvent.setStatisticTypes(STATISTIC_TYPES);
+			timeEvent.setUseTime(i % 20);
+			timeEvent.setNumber(1);
+			datas.add(Collections.singletonList(timeEvent));
+		}
+		RTEventListener listener = new RTEventListener();
+		eventBus = EventBusBuilder.create(() -> Collections.singletonList(listener))
+				.bufferSize(4096)
+				.build(ConvertTimeEvent.class);
+		aggregator = new PreAggregator(partial -> eventBus.publish(event -> {
+			event.setConvert(null);
+			event.setData(null);
+			event.setWeight(1);
+			event.setPartial(partial);
+		}));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		aggregator.flushAll();
+		eventBus.shutdown(Duration.ofSeconds(10));
+	}
+
+	@Benchmark
+	public void publish(Index index) {
+		List<TimeEvent> timeEvents = datas.get(index.value++ & (IDENTIFY_NUM - 1));
+		if("preAggregate".equals(path) && aggregator.add(timeEvents, "method")) {
+			return;
+		}
+		TimeEvent timeEvent = timeEvents.get(0);
+		eventBus.publish(event -> {
+			event.setConvert(null);
+			event.setData(null);
+			event.setPartial(null);
+			event.setType("method");
+			event.setStatisticTypes(timeEvent.getStatisticTypes());
+			event.setIdentify(timeEvent.getIdentify());
+			event.setUseTime(timeEvent.getUseTime());
+			event.setNumber(timeEvent.getNumber());
+			event.setErrorNum(timeEvent.getErrorNum());
+			event.setWeight(1);
+		});
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(PreAggregate_JMH.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+
+}
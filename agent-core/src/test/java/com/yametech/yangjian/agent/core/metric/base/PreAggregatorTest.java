@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+import com.yametech.yangjian.agent.core.metric.consume.RTEventConsume;
+import com.yametech.yangjian.agent.core.metric.consume.SecondStatisticBean;
+
+public class PreAggregatorTest {
+	private static final StatisticType[] STATISTIC_TYPES = {StatisticType.QPS, StatisticType.RT};
+	private static final long START_MILLIS = 1600000000000L;
+
+	/**
+	 * 秒切换时由调用线程发布上一秒的分段
+	 */
+	@Test
+	public void handoffOnSecondChange() {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		List<SecondStatisticBean> partials = new ArrayList<>();
+		PreAggregator aggregator = new PreAggregator(partials::add, clock::get);
+		assertTrue(aggregator.add(events(0, 10), "default"));
+		assertTrue(aggregator.add(events(10, 10), "default"));
+		assertTrue(partials.isEmpty());
+		clock.addAndGet(1000);
+		assertTrue(aggregator.add(events(20, 1), "default"));
+		assertEquals(1, partials.size());
+		assertEquals(START_MILLIS / 1000, (long) partials.get(0).getSecond());
+		assertEquals(2, partials.get(0).getEventNum());
+		Sink sink = new Sink();
+		partials.forEach(sink::accept);
+		assertEquals(2, sink.consume.getTotalNum());// 消费计数为分段聚合的事件数
+		Map<String, long[]> totals = sink.report();
+		assertEquals(2, totals.size());// 两个identify，未指定type的使用默认type
+		assertEquals(10, totals.get("default/a")[0]);
+		assertEquals(10, totals.get("custom/b")[0]);
+	}
+
+	/**
+	 * 空闲线程的分段由定时任务取走，线程仍存活时保留缓存
+	 */
+	@Test
+	public void flushIdleThread() {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		List<SecondStatisticBean> partials = new ArrayList<>();
+		PreAggregator aggregator = new PreAggregator(partials::add, clock::get);
+		aggregator.add(events(0, 4), "default");
+		aggregator.execute();
+		assertTrue(partials.isEmpty());// 当前秒未结束
+		clock.addAndGet(1000);
+		aggregator.execute();
+		assertEquals(1, partials.size());
+		assertEquals(1, aggregator.getThreadNum());
+		aggregator.execute();
+		assertEquals(1, partials.size());// 不会重复取走
+		aggregator.add(events(0, 4), "default");
+		clock.addAndGet(1000);
+		aggregator.add(events(0, 4), "default");
+		assertEquals(2, partials.size());
+	}
+
+	/**
+	 * 已结束线程的分段不等待秒切换直接取走，并移除该线程的缓存
+	 */
+	@Test
+	public void flushDeadThread() throws InterruptedException {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		List<SecondStatisticBean> partials = Collections.synchronizedList(new ArrayList<>());
+		PreAggregator aggregator = new PreAggregator(partials::add, clock::get);
+		Thread thread = new Thread(() -> aggregator.add(events(0, 6), "default"));
+		thread.start();
+		thread.join();
+		assertEquals(1, aggregator.getThreadNum());
+		aggregator.execute();
+		assertEquals(1, partials.size());
+		assertEquals(0, aggregator.getThreadNum());
+		Sink sink = new Sink();
+		partials.forEach(sink::accept);
+		assertEquals(3, sink.report().get("default/a")[0]);
+	}
+
+	/**
+	 * 缓存已满发布失败时暂存，下次定时任务重试，超过上限时合并，统计值不丢失
+	 */
+	@Test
+	public void retainWhenFull() {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		AtomicBoolean full = new AtomicBoolean(true);
+		Sink sink = new Sink();
+		PreAggregator aggregator = new PreAggregator(partial -> !full.get() && sink.accept(partial), clock::get);
+		int secondNum = PreAggregator.MAX_RETAINED * 2;
+		for(int i = 0; i < secondNum; i++) {
+			aggregator.add(events(0, 2), "default");
+			clock.addAndGet(1000);
+			aggregator.execute();
+		}
+		assertEquals(PreAggregator.MAX_RETAINED, aggregator.getRetainedNum());
+		full.set(false);
+		aggregator.execute();
+		assertEquals(0, aggregator.getRetainedNum());
+		assertEquals(secondNum, sink.report().get("default/a")[0]);
+		assertEquals(secondNum, sink.consume.getTotalNum());// 合并的分段计数不变
+	}
+
+	/**
+	 * 存在无法在调用线程统计的事件时整批不聚合
+	 */
+	@Test
+	public void notAggregatable() {
+		List<SecondStatisticBean> partials = new ArrayList<>();
+		PreAggregator aggregator = new PreAggregator(partials::add);
+		TimeEvent noIdentify = events(0, 1).get(0);
+		noIdentify.setIdentify(null);
+		assertFalse(aggregator.add(Arrays.asList(events(0, 1).get(0), noIdentify), "default"));
+		TimeEvent zero = events(0, 1).get(0);
+		zero.setNumber(0);
+		assertFalse(aggregator.add(Collections.singletonList(zero), "default"));
+		assertFalse(aggregator.add(Collections.singletonList(null), "default"));
+		aggregator.flushAll();
+		assertTrue(partials.isEmpty());
+	}
+
+	/**
+	 * 多个线程持续写入并推进时间，定时任务并发取走分段，部分线程中途结束，所有事件仅被统计一次
+	 */
+	@Test
+	public void concurrentFlush() throws InterruptedException {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		Sink sink = new Sink();
+		PreAggregator aggregator = new PreAggregator(sink::accept, clock::get);
+		int threadNum = 4;
+		int[] eventNums = {200000, 50000, 200000, 1000};
+		CountDownLatch done = new CountDownLatch(threadNum);
+		for(int t = 0; t < threadNum; t++) {
+			int eventNum = eventNums[t];
+			new Thread(() -> {
+				for(int i = 0; i < eventNum; i++) {
+					aggregator.add(events(i, 1), "default");
+					if(i % 1000 == 0) {
+						clock.addAndGet(100);
+					}
+				}
+				done.countDown();
+			}).start();
+		}
+		while(done.getCount() > 0) {
+			aggregator.execute();
+			Thread.yield();
+		}
+		aggregator.flushAll();
+		long expectedA = 0;
+		long expectedUseTime = 0;
+		for(int eventNum : eventNums) {
+			for(int i = 0; i < eventNum; i++) {
+				expectedA += i % 2 == 0 ? 1 : 0;
+				expectedUseTime += i % 2 == 0 ? i % 100 : 0;
+			}
+		}
+		long[] totalA = sink.report().get("default/a");
+		assertEquals(expectedA, totalA[0]);
+		assertEquals(Arrays.stream(eventNums).sum(), sink.consume.getTotalNum());
+		assertEquals(expectedUseTime, totalA[1]);
+	}
+
+	/**
+	 * 偶数下标的事件使用默认type、identify为a，奇数下标的事件指定type为custom、identify为b
+	 */
+	private static List<TimeEvent> events(int start, int num) {
+		List<TimeEvent> events = new ArrayList<>();
+		for(int i = start; i < start + num; i++) {
+			TimeEvent event = new TimeEvent();
+			event.setType(i % 2 == 0 ? null : "custom");
+			event.setIdentify(i % 2 == 0 ? "a" : "b");
+			event.setStatisticTypes(STATISTIC_TYPES);
+			event.setUseTime(i % 100);
+			event.setNumber(1);
+			events.add(event);
+		}
+		return events;
+	}
+
+	/**
+	 * 模拟消费线程，分段作为事件交给RTEventConsume合并
+	 */
+	private static class Sink {
+		private final RTEventConsume consume = new RTEventConsume();
+
+		synchronized boolean accept(SecondStatisticBean partial) {
+			ConvertTimeEvent event = new ConvertTimeEvent();
+			event.setPartial(partial);
+			if(consume.test(event)) {
+				consume.accept(event);
+			}
+			return true;
+		}
+
+		/**
+		 * @return	key为type/identify，值为RT统计的调用次数、总耗时
+		 */
+		synchronized Map<String, long[]> report() {
+			Map<String, long[]> totals = new HashMap<>();
+			for(BaseStatistic statistic : consume.getReportStatistics(1, System.currentTimeMillis() + 3600 * 1000L)) {
+				if(statistic.statisticType() != StatisticType.RT) {
+					continue;
+				}
+				Map<String, Object> kvs = statistic.statisticKV();
+				long[] total = totals.computeIfAbsent(statistic.getType() + "/" + statistic.getSign(), key -> new long[2]);
+				total[0] += (Long) kvs.get("num");
+				total[1] += (Long) kvs.get("rt_total");
+			}
+			return totals;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.consume;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.IAsyncConvert;
+import com.yametech.yangjian.agent.core.metric.base.ConvertTimeEvent;
+import com.yametech.yangjian.agent.util.eventbus.EventBusBuilder;
+import com.yametech.yangjian.agent.util.eventbus.process.EventBus;
+
+/**
+ * 单一类型（如全部为mysql）事件的消费吞吐量，生产阻塞等待消费，吞吐量即为消费能力
+ * partition=type为按type分配线程（优化前），identify为按type、identify分配
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MetricPartition_JMH {
+	private static final int DATA_NUM = 1024;
+	@Param({"1", "2", "4"})
+	private int threadNum;
+	@Param({"type", "identify"})
+	private String partition;
+	private EventBus<ConvertTimeEvent> eventBus;
+	private final IAsyncConvert convert = new SimulateConvert();
+	private final Object[] datas = new Object[DATA_NUM];
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		for(int i = 0; i < DATA_NUM; i++) {
+			datas[i] = "t_" + (i % 100) + ".Select";
+		}
+		RTEventListener listener = "type".equals(partition) ? new TypePartitionListener() : new RTEventListener();
+		listener.configKeyValue(Collections.singletonMap("consume.threadNum.metric", String.valueOf(threadNum)));
+		eventBus = EventBusBuilder.create(() -> Collections.singletonList(listener))
+				.bufferSize(4096)
+				.build(ConvertTimeEvent.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		eventBus.shutdown(Duration.ofSeconds(10));
+	}
+
+	@Benchmark
+	public void publish() {
+		Object data = datas[index++ & (DATA_NUM - 1)];
+		eventBus.publish(event -> {
+			event.setConvert(convert);
+			event.setData(data);
+			event.setType("mysql-sql");
+			event.setIdentify(null);
+		});
+	}
+
+	/**
+	 * 模拟异步转换耗时（如sql解析），在消费线程执行
+	 */
+	private static class SimulateConvert implements IAsyncConvert {
+		@Override
+		public List<TimeEvent> convert(Object eventBean) {
+			Blackhole.consumeCPU(256);
+			TimeEvent timeEvent = new TimeEvent();
+			timeEvent.setIdentify((String) eventBean);
+			timeEvent.setUseTime(10);
+			return Collections.singletonList(timeEvent);
+		}
+	}
+
+	/**
+	 * 优化前的分配方式
+	 */
+	private static class TypePartitionListener extends RTEventListener {
+		@Override
+		protected int eventHashCode(ConvertTimeEvent event) {
+			return event.getType().hashCode();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(MetricPartition_JMH.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+
+}
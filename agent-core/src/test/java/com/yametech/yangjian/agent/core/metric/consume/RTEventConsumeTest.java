@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.consume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+import com.yametech.yangjian.agent.core.metric.base.ConvertTimeEvent;
+
+public class RTEventConsumeTest {
+	private static final StatisticType[] STATISTIC_TYPES = {StatisticType.RT};
+	private static final long START_MILLIS = 1600000000000L;
+
+	/**
+	 * 无事件时，已结束的当前窗口由输出线程取走
+	 */
+	@Test
+	public void reportIdleWindow() {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		RTEventConsume consume = new RTEventConsume(1, clock::get);
+		consume.accept(event(0));
+		assertTrue(consume.getReportStatistics(1, clock.get()).isEmpty());
+		List<BaseStatistic> statistics = consume.getReportStatistics(1, clock.get() + 2000);
+		assertEquals(1, statistics.size());
+		assertEquals(START_MILLIS / 1000, statistics.get(0).getSecond());
+		assertTrue(consume.getReportStatistics(1, clock.get() + 10000).isEmpty());
+		// 取走后继续消费同一秒的数据，使用新的窗口
+		consume.accept(event(1));
+		assertEquals(1, consume.getReportStatistics(1, clock.get() + 2000).size());
+	}
+
+	/**
+	 * 关闭时不等待窗口结束，窗口大于1秒时最后一个窗口也可输出
+	 */
+	@Test
+	public void flushWindow() {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		RTEventConsume consume = new RTEventConsume(10, clock::get);
+		consume.accept(event(0));
+		clock.addAndGet(1000);
+		assertTrue(consume.getReportStatistics(1, clock.get()).isEmpty());
+		assertEquals(1, consume.getReportStatistics(0, clock.get()).size());
+		assertTrue(consume.getReportStatistics(0, clock.get() + 20000).isEmpty());
+	}
+
+	/**
+	 * 长时间未输出时，超过上限的窗口合并到之后的窗口，总数不变
+	 */
+	@Test
+	public void mergeWhenStalled() {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		RTEventConsume consume = new RTEventConsume(1, clock::get);
+		int windowNum = RTEventConsume.MAX_PENDING_WINDOW * 3;
+		for(int i = 0; i < windowNum; i++) {
+			consume.accept(event(i));
+			clock.addAndGet(1000);
+		}
+		Totals totals = new Totals();
+		totals.add(consume.getReportStatistics(1, clock.get() + 5000));
+		assertEquals(windowNum, totals.num);
+		assertTrue(totals.seconds.size() <= RTEventConsume.MAX_PENDING_WINDOW + 1);
+	}
+
+	/**
+	 * 消费线程持续写入并推进时间，输出线程随机停顿（超过待输出窗口上限），所有事件仅被统计一次
+	 */
+	@Test
+	public void stalledReporter() throws Exception {
+		stress(1, 1);
+		stress(5, 1);
+		stress(5, 5);
+	}
+
+	private void stress(int periodSecond, int windowSecond) throws Exception {
+		AtomicLong clock = new AtomicLong(START_MILLIS);
+		RTEventConsume consume = new RTEventConsume(windowSecond, clock::get);
+		int eventNum = 2000000;
+		Totals totals = new Totals();
+		Thread consumer = new Thread(() -> {
+			for(int i = 0; i < eventNum; i++) {
+				ConvertTimeEvent event = event(i);
+				if(consume.test(event)) {
+					consume.accept(event);
+				}
+				if(i % 100 == 0) {
+					clock.addAndGet(100);
+				}
+			}
+		});
+		consumer.start();
+		Random random = new Random(periodSecond * 31 + windowSecond);
+		while(consumer.isAlive()) {
+			totals.add(consume.getReportStatistics(periodSecond, clock.get()));
+			Thread.sleep(random.nextInt(10) == 0 ? 50 : random.nextInt(3));
+		}
+		consumer.join();
+		totals.add(consume.getReportStatistics(periodSecond, clock.get() + 3600 * 1000L));
+		long expectedError = 0;
+		long expectedUseTime = 0;
+		for(int i = 0; i < eventNum; i++) {
+			expectedError += i % 7 == 0 ? 1 : 0;
+			expectedUseTime += i % 100;
+		}
+		assertEquals(eventNum, consume.getTotalNum());
+		assertEquals(eventNum, totals.num);
+		assertEquals(expectedError, totals.error);
+		assertEquals(expectedUseTime, totals.useTime);
+	}
+
+	private static ConvertTimeEvent event(int i) {
+		ConvertTimeEvent event = new ConvertTimeEvent();
+		event.setType("mysql-table");
+		event.setIdentify("t_" + (i % 10) + ".Select");
+		event.setStatisticTypes(STATISTIC_TYPES);
+		event.setUseTime(i % 100);
+		event.setNumber(1);
+		event.setErrorNum(i % 7 == 0 ? 1 : 0);
+		return event;
+	}
+
+	private static class Totals {
+		private final Map<String, Boolean> keys = new HashMap<>();
+		private final Set<Long> seconds = new HashSet<>();
+		private long num;
+		private long error;
+		private long useTime;
+
+		private void add(List<BaseStatistic> statistics) {
+			for(BaseStatistic statistic : new ArrayList<>(statistics)) {
+				Map<String, Object> kvs = statistic.statisticKV();
+				num += (Long) kvs.get("num");
+				error += (Long) kvs.get("error_total");
+				useTime += (Long) kvs.get("rt_total");
+				// 同一窗口输出多次说明重复统计
+				assertNull(keys.put(statistic.getSecond() + "/" + statistic.getSign(), true));
+				seconds.add(statistic.getSecond());
+			}
+		}
+	}
+}
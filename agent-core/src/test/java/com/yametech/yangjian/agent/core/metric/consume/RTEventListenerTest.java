@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.consume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+import com.yametech.yangjian.agent.core.metric.base.ConvertTimeEvent;
+import com.yametech.yangjian.agent.util.eventbus.assignor.MultiThreadAssignor;
+
+public class RTEventListenerTest {
+	private static final StatisticType[] STATISTIC_TYPES = {StatisticType.RT, StatisticType.QPS, StatisticType.HISTOGRAM};
+	private static final long NOW = 1600000000500L;
+
+	/**
+	 * 同一类型的事件按identify分散到多个consume，合并后的输出与单个consume一致
+	 */
+	@Test
+	public void mergePartitioned() {
+		List<ConvertTimeEvent> events = events();
+		// consume按当前时间的秒聚合，使用固定时间，两次输出统计的秒相同
+		Map<String, Map<String, Object>> single = output(1, events);
+		Map<String, Map<String, Object>> partitioned = output(4, events);
+		assertTrue(single.size() > 0);
+		assertEquals(single, partitioned);
+	}
+
+	/**
+	 * 同一类型的事件分布到多个consume
+	 */
+	@Test
+	public void spreadSingleType() {
+		RTEventListener listener = listener(4);
+		MultiThreadAssignor<ConvertTimeEvent> assignor = listener.assignor();
+		Set<Integer> threads = new HashSet<>();
+		for(ConvertTimeEvent event : events()) {
+			threads.add(assignor.threadNum(event, 4));
+		}
+		assertEquals(4, threads.size());
+	}
+
+	private static Map<String, Map<String, Object>> output(int threadNum, List<ConvertTimeEvent> events) {
+		RTEventListener listener = listener(threadNum);
+		List<RTEventConsume> consumes = new ArrayList<>();
+		for(int i = 0; i < threadNum; i++) {
+			consumes.add((RTEventConsume) listener.getConsume());
+		}
+		MultiThreadAssignor<ConvertTimeEvent> assignor = listener.assignor();
+		for(ConvertTimeEvent event : events) {
+			RTEventConsume consume = consumes.get(assignor == null ? 0 : assignor.threadNum(event, threadNum));
+			if(consume.test(event)) {
+				consume.accept(event);
+			}
+		}
+		Map<String, Map<String, Object>> output = new HashMap<>();
+		// 当前秒的统计值需等到下一秒后才能输出
+		assertTrue(listener.getReportStatistics(NOW).isEmpty());
+		for(BaseStatistic statistic : listener.getReportStatistics(NOW + 5000)) {
+			Map<String, Object> kvs = new HashMap<>();
+			for(Entry<String, Object> entry : statistic.kv()) {
+				kvs.put(entry.getKey(), entry.getValue());
+			}
+			String key = statistic.getSecond() + "/" + statistic.getType() + "/" + statistic.statisticType() + "/" + statistic.getSign();
+			// 事件可能跨秒，相同key多次输出说明合并错误
+			assertEquals(null, output.put(key, kvs));
+		}
+		return output;
+	}
+
+	private static RTEventListener listener(int threadNum) {
+		RTEventListener listener = new RTEventListener(() -> NOW);
+		listener.configKeyValue(Collections.singletonMap("consume.threadNum.metric", String.valueOf(threadNum)));
+		return listener;
+	}
+
+	private static List<ConvertTimeEvent> events() {
+		Random random = new Random(1);
+		List<ConvertTimeEvent> events = new ArrayList<>();
+		for(int i = 0; i < 10000; i++) {
+			ConvertTimeEvent event = new ConvertTimeEvent();
+			event.setType("mysql-table");
+			event.setIdentify("t_" + random.nextInt(50) + ".Select");
+			event.setStatisticTypes(STATISTIC_TYPES);
+			event.setUseTime(random.nextInt(100));
+			event.setErrorNum(random.nextInt(10) == 0 ? 1 : 0);
+			events.add(event);
+		}
+		return events;
+	}
+}
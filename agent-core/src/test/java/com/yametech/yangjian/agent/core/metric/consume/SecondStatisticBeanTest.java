@@ -0,0 +1,308 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.consume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+
+public class SecondStatisticBeanTest {
+	private static final StatisticType[][] STATISTIC_TYPES = {
+			{StatisticType.QPS}, {StatisticType.RT}, {StatisticType.QPS, StatisticType.RT},
+			{StatisticType.QPS, StatisticType.RT, StatisticType.HISTOGRAM}, {StatisticType.QPS, StatisticType.DISTINCT}};
+	private static final String LONG_IDENTIFY = new String(new char[400]).replace('\0', 'a');
+
+	/**
+	 * 与逐个统计实例合并的结果一致（含批量事件、超长identify截取）
+	 */
+	@Test
+	public void sameAsStatistic() throws Exception {
+		SecondStatisticBean bean = new SecondStatisticBean(10);
+		Map<String, BaseStatistic> expected = new HashMap<>();
+		Random random = new Random(1);
+		for(int i = 0; i < 100000; i++) {
+			TimeEvent event = event(random);
+			bean.statistic(event);
+			combine(expected, event, 10);
+		}
+		assertEquals(kvs(expected.values()), kvs(report(bean)));
+	}
+
+	/**
+	 * 原地清空后复用，之前输出的统计值不受影响
+	 */
+	@Test
+	public void reset() throws Exception {
+		SecondStatisticBean bean = new SecondStatisticBean(10);
+		Random random = new Random(2);
+		Map<String, BaseStatistic> expected = new HashMap<>();
+		for(int i = 0; i < 10000; i++) {
+			TimeEvent event = event(random);
+			bean.statistic(event);
+			combine(expected, event, 10);
+		}
+		List<BaseStatistic> reported = report(bean);
+		Map<String, Map<String, Object>> before = kvs(reported);
+
+		bean.reset(11);
+		assertEquals(0, bean.size());
+		assertTrue(report(bean).isEmpty());
+		Map<String, BaseStatistic> expectedNext = new HashMap<>();
+		for(int i = 0; i < 10000; i++) {
+			TimeEvent event = event(random);
+			bean.statistic(event);
+			combine(expectedNext, event, 11);
+		}
+		assertEquals(kvs(expectedNext.values()), kvs(report(bean)));
+		assertEquals(before, kvs(reported));
+		assertEquals(kvs(expected.values()), before);
+	}
+
+	/**
+	 * 合并其他窗口，统计值的时间为当前窗口
+	 */
+	@Test
+	public void merge() throws Exception {
+		SecondStatisticBean bean = new SecondStatisticBean(10);
+		SecondStatisticBean other = new SecondStatisticBean(11);
+		Map<String, BaseStatistic> expected = new HashMap<>();
+		Random random = new Random(3);
+		for(int i = 0; i < 20000; i++) {
+			TimeEvent event = event(random);
+			(i % 3 == 0 ? bean : other).statistic(event);
+			combine(expected, event, 10);
+		}
+		bean.merge(other);
+		assertEquals(kvs(expected.values()), kvs(report(bean)));
+	}
+
+	/**
+	 * 每个type的identify数有上限，超过的合并到OTHER_IDENTIFY，合计不变，不影响其他type
+	 */
+	@Test
+	public void identifyLimit() {
+		SecondStatisticBean bean = new SecondStatisticBean(10, 100);
+		for(int i = 0; i < 1000; i++) {
+			bean.statistic(event("redis", "key" + i, 1));
+		}
+		bean.statistic(event("mysql", "key0", 1));
+		assertEquals(100 + 1 + 1, bean.size());
+		assertEquals(900, bean.foldNum("redis"));
+		assertEquals(0, bean.foldNum("mysql"));
+		Map<String, Long> nums = nums(report(bean), "redis");
+		assertEquals(101, nums.size());
+		assertEquals(1000, sum(nums));
+		assertEquals(900, (long) nums.get(SecondStatisticBean.OTHER_IDENTIFY));
+		// 淘汰次数作为OTHER_IDENTIFY统计值的fold_num输出
+		for(BaseStatistic statistic : report(bean)) {
+			boolean other = SecondStatisticBean.OTHER_IDENTIFY.equals(statistic.getSign());
+			assertEquals(other ? 900 : 0, statistic.getFoldNum());
+			assertEquals(other, Arrays.stream(statistic.kv()).anyMatch(kv -> "fold_num".equals(kv.getKey())));
+		}
+	}
+
+	/**
+	 * 标识超过上限后才出现的高频标识不会被忽略（之前按到达顺序保留，之后出现的全部丢弃）
+	 */
+	@Test
+	public void lateHeavyHitter() {
+		SecondStatisticBean bean = new SecondStatisticBean(10, 100);
+		for(int i = 0; i < 10000; i++) {
+			bean.statistic(event("redis", "key" + i, 1));
+		}
+		for(int i = 0; i < 1000; i++) {
+			bean.statistic(event("redis", "hot", 1));
+			bean.statistic(event("redis", "tail" + i, 1));
+		}
+		Map<String, Long> nums = nums(report(bean), "redis");
+		assertTrue(nums.get("hot") >= 1000 - 10000 / 100 - 1);
+		assertEquals(12000, sum(nums));
+	}
+
+	/**
+	 * Zipf分布下，调用次数超过总次数/上限的标识一定保留，偏少的部分不超过总次数/上限，合计不变
+	 */
+	@Test
+	public void zipfHeavyHitters() {
+		zipf(1.0, 10000, 100, 1);
+		zipf(1.2, 100000, 500, 2);
+		zipf(0.8, 50000, 1000, 3);
+	}
+
+	/**
+	 * 合并窗口后保留的标识同样满足误差上限
+	 */
+	@Test
+	public void zipfMerge() {
+		int identifyNum = 20000;
+		int maxSize = 200;
+		ZipfGenerator zipf = new ZipfGenerator(1.1, identifyNum, new Random(4));
+		SecondStatisticBean bean = new SecondStatisticBean(10, maxSize);
+		SecondStatisticBean other = new SecondStatisticBean(11, maxSize);
+		long[] counts = new long[identifyNum];
+		int eventNum = 400000;
+		for(int i = 0; i < eventNum; i++) {
+			int identify = zipf.next();
+			counts[identify]++;
+			(i % 2 == 0 ? bean : other).statistic(event("mysql-sql", "sql" + identify, 1));
+		}
+		bean.merge(other);
+		assertHeavyHitters(nums(report(bean), "mysql-sql"), counts, eventNum, maxSize);
+	}
+
+	private static void zipf(double exponent, int identifyNum, int maxSize, long seed) {
+		ZipfGenerator zipf = new ZipfGenerator(exponent, identifyNum, new Random(seed));
+		SecondStatisticBean bean = new SecondStatisticBean(10, maxSize);
+		long[] counts = new long[identifyNum];
+		int eventNum = 500000;
+		for(int i = 0; i < eventNum; i++) {
+			int identify = zipf.next();
+			counts[identify]++;
+			bean.statistic(event("mysql-sql", "sql" + identify, 1));
+		}
+		assertTrue(bean.foldNum("mysql-sql") > 0);
+		assertHeavyHitters(nums(report(bean), "mysql-sql"), counts, eventNum, maxSize);
+	}
+
+	private static void assertHeavyHitters(Map<String, Long> nums, long[] counts, long eventNum, int maxSize) {
+		assertEquals(eventNum, sum(nums));
+		assertTrue(nums.size() <= maxSize + 1);
+		long errorBound = eventNum / maxSize;
+		int heavyNum = 0;
+		for(int i = 0; i < counts.length; i++) {
+			Long num = nums.get("sql" + i);
+			if(counts[i] > errorBound) {
+				heavyNum++;
+				assertTrue("sql" + i + "未保留", num != null);
+			}
+			if(num != null) {
+				assertTrue(num <= counts[i]);
+				assertTrue("sql" + i + "：" + num + "/" + counts[i], counts[i] - num <= errorBound);
+			}
+		}
+		assertTrue(heavyNum > 0);
+	}
+
+	private static TimeEvent event(String type, String identify, long number) {
+		TimeEvent event = new TimeEvent();
+		event.setType(type);
+		event.setIdentify(identify);
+		event.setStatisticTypes(STATISTIC_TYPES[2]);
+		event.setNumber(number);
+		event.setUseTime(number);
+		return event;
+	}
+
+	private static Map<String, Long> nums(List<BaseStatistic> statistics, String type) {
+		Map<String, Long> nums = new HashMap<>();
+		for(BaseStatistic statistic : statistics) {
+			if(type.equals(statistic.getType()) && statistic.statisticType() == StatisticType.QPS) {
+				nums.put(statistic.getSign(), (Long) statistic.statisticKV().get("num"));
+			}
+		}
+		return nums;
+	}
+
+	private static long sum(Map<String, Long> nums) {
+		long sum = 0;
+		for(Long num : nums.values()) {
+			sum += num;
+		}
+		return sum;
+	}
+
+	private static TimeEvent event(Random random) {
+		TimeEvent event = new TimeEvent();
+		event.setType(random.nextBoolean() ? "mysql-table" : "redis-key");
+		int identify = random.nextInt(300);
+		event.setIdentify(identify % 50 == 0 ? LONG_IDENTIFY + identify : "identify-" + identify);
+		event.setStatisticTypes(STATISTIC_TYPES[identify % STATISTIC_TYPES.length]);
+		event.setNumber(random.nextInt(10) == 0 ? 1 + random.nextInt(5) : 1);
+		event.setUseTime(random.nextInt(1000));
+		event.setErrorNum(random.nextInt(7) == 0 ? 1 : 0);
+		event.setDistinctHash(random.nextInt(1000));
+		return event;
+	}
+
+	private static void combine(Map<String, BaseStatistic> statistics, TimeEvent event, long second) throws Exception {
+		String identify = event.getIdentify().length() > 300 ? event.getIdentify().substring(0, 300) : event.getIdentify();
+		for(StatisticType type : event.getStatisticTypes()) {
+			String key = event.getType() + "/" + identify + "/" + type;
+			BaseStatistic statistic = statistics.get(key);
+			if(statistic == null) {
+				statistic = type.getStatistic();
+				statistic.reset(event.getType(), identify, second);
+				statistics.put(key, statistic);
+			}
+			statistic.combine(event);
+		}
+	}
+
+	private static List<BaseStatistic> report(SecondStatisticBean bean) {
+		List<BaseStatistic> statistics = new ArrayList<>();
+		bean.report(statistics);
+		return statistics;
+	}
+
+	private static Map<String, Map<String, Object>> kvs(Collection<BaseStatistic> statistics) {
+		Map<String, Map<String, Object>> kvs = new HashMap<>();
+		for(BaseStatistic statistic : statistics) {
+			Map<String, Object> kv = new HashMap<>(statistic.statisticKV());
+			kv.put("second", statistic.getSecond());
+			kvs.put(statistic.getType() + "/" + statistic.getSign() + "/" + statistic.statisticType(), kv);
+		}
+		return kvs;
+	}
+
+	/**
+	 * 按Zipf分布生成0~n-1，0的概率最大
+	 */
+	private static class ZipfGenerator {
+		private final double[] cumulative;
+		private final Random random;
+
+		private ZipfGenerator(double exponent, int n, Random random) {
+			this.random = random;
+			cumulative = new double[n];
+			double sum = 0;
+			for(int i = 0; i < n; i++) {
+				sum += 1 / Math.pow(i + 1, exponent);
+				cumulative[i] = sum;
+			}
+			for(int i = 0; i < n; i++) {
+				cumulative[i] /= sum;
+			}
+		}
+
+		private int next() {
+			int index = Arrays.binarySearch(cumulative, random.nextDouble());
+			return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.consume;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.convert.statistic.StatisticType;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.BaseStatistic;
+
+/**
+ * 窗口统计的单事件耗时及内存分配，每WINDOW_EVENT_NUM个事件输出一次并切换窗口
+ * impl=map为嵌套HashMap及统计实例（优化前），table为开放寻址的long数组，输出后原地复用
+ * identifyNum=100000超过每个type的标识上限，map丢弃之后出现的标识，table按Space-Saving淘汰并合并到OTHER_IDENTIFY
+ * distribution=zipf时identify按Zipf分布（指数1.0）生成，接近实际的热点分布
+ * 内存分配使用：-prof gc
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SecondStatistic_JMH {
+	private static final int EVENT_NUM = 1 << 16;
+	private static final int WINDOW_EVENT_NUM = 100000;
+	private static final StatisticType[] STATISTIC_TYPES = {StatisticType.QPS, StatisticType.RT};
+	@Param({"10", "1000", "10000", "100000"})
+	private int identifyNum;
+	@Param({"uniform", "zipf"})
+	private String distribution;
+	@Param({"map", "table"})
+	private String impl;
+	private final TimeEvent[] events = new TimeEvent[EVENT_NUM];
+	private final List<BaseStatistic> reportStatistic = new ArrayList<>();
+	private MapStatisticBean mapBean;
+	private SecondStatisticBean tableBean;
+	private long second;
+	private int index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		String[] identifies = new String[identifyNum];
+		for(int i = 0; i < identifyNum; i++) {
+			identifies[i] = "select * from t_" + i + " where id = ?";
+		}
+		double[] cumulative = new double[identifyNum];
+		double sum = 0;
+		for(int i = 0; i < identifyNum; i++) {
+			sum += "zipf".equals(distribution) ? 1.0 / (i + 1) : 1;
+			cumulative[i] = sum;
+		}
+		for(int i = 0; i < EVENT_NUM; i++) {
+			int identify = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+			identify = Math.min(identify < 0 ? -identify - 1 : identify, identifyNum - 1);
+			TimeEvent event = new TimeEvent();
+			event.setType("mysql-sql");
+			event.setIdentify(identifies[identify]);
+			event.setStatisticTypes(STATISTIC_TYPES);
+			event.setUseTime(random.nextInt(100));
+			events[i] = event;
+		}
+		mapBean = new MapStatisticBean(second);
+		tableBean = new SecondStatisticBean(second);
+	}
+
+	@Benchmark
+	public void statistic(Blackhole blackhole) {
+		TimeEvent event = events[index & (EVENT_NUM - 1)];
+		boolean map = "map".equals(impl);
+		if(map) {
+			mapBean.statistic(event);
+		} else {
+			tableBean.statistic(event);
+		}
+		if(++index % WINDOW_EVENT_NUM != 0) {
+			return;
+		}
+		second++;
+		if(map) {
+			for(Map<String, Map<StatisticType, BaseStatistic>> identifyMap : mapBean.statistics.values()) {
+				for(Map<StatisticType, BaseStatistic> statisticMap : identifyMap.values()) {
+					reportStatistic.addAll(statisticMap.values());
+				}
+			}
+			mapBean = new MapStatisticBean(second);
+		} else {
+			tableBean.report(reportStatistic);
+			tableBean.reset(second);
+		}
+		blackhole.consume(reportStatistic.size());
+		reportStatistic.clear();
+	}
+
+	/**
+	 * 优化前的实现：type -> identify -> StatisticType的嵌套HashMap，每个标识创建统计实例
+	 */
+	private static class MapStatisticBean {
+		private final long second;
+		private final Map<String, Map<String, Map<StatisticType, BaseStatistic>>> statistics = new HashMap<>();
+
+		private MapStatisticBean(long second) {
+			this.second = second;
+		}
+
+		private void statistic(TimeEvent timeEvent) {
+			String identify = timeEvent.getIdentify().length() > 300 ? timeEvent.getIdentify().substring(0, 300) : timeEvent.getIdentify();
+			Map<String, Map<StatisticType, BaseStatistic>> identifyMap = statistics.computeIfAbsent(timeEvent.getType(), key -> new HashMap<>());
+			Map<StatisticType, BaseStatistic> statisticTypeMap = identifyMap.get(identify);
+			if(statisticTypeMap == null) {
+				if(identifyMap.size() > 10000) {
+					return;
+				}
+				statisticTypeMap = new EnumMap<>(StatisticType.class);
+				identifyMap.put(identify, statisticTypeMap);
+			}
+			for(StatisticType type : timeEvent.getStatisticTypes()) {
+				BaseStatistic secondStatistic = statisticTypeMap.get(type);
+				if(secondStatistic == null) {
+					try {
+						secondStatistic = type.getStatistic();
+					} catch (InstantiationException | IllegalAccessException e) {
+						continue;
+					}
+					secondStatistic.reset(timeEvent.getType(), identify, second);
+					statisticTypeMap.put(type, secondStatistic);
+				}
+				secondStatistic.combine(timeEvent);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(SecondStatistic_JMH.class.getSimpleName())
+				.addProfiler("gc")
+				.build();
+		new Runner(opt).run();
+	}
+
+}
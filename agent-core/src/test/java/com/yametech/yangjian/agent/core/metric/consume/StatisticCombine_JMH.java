@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.metric.consume;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yametech.yangjian.agent.api.bean.TimeEvent;
+import com.yametech.yangjian.agent.api.common.HyperLogLog;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.DistinctStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.HistogramStatistic;
+import com.yametech.yangjian.agent.api.convert.statistic.impl.RTStatistic;
+
+/**
+ * 统计记录耗时：RT、HISTOGRAM、DISTINCT对比，单线程为consume线程独占，多线程为多个consume线程写入同一实例（最差情况）
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class StatisticCombine_JMH {
+	private static final int EVENT_NUM = 1024;
+	private final RTStatistic rt = new RTStatistic();
+	private final HistogramStatistic histogram = new HistogramStatistic();
+	private final DistinctStatistic distinct = new DistinctStatistic();
+	private TimeEvent[] events;
+
+	@Setup
+	public void setup() {
+		rt.reset("test", "sign", 0);
+		histogram.reset("test", "sign", 0);
+		distinct.reset("test", "sign", 0);
+		events = new TimeEvent[EVENT_NUM];
+		for(int i = 0; i < EVENT_NUM; i++) {
+			events[i] = new TimeEvent();
+			events[i].setUseTime((long) Math.exp(3 + ThreadLocalRandom.current().nextGaussian()));
+			events[i].setDistinctHash(HyperLogLog.hash("key:" + i));
+		}
+	}
+
+	@Benchmark
+	public void rt() {
+		rt.combine(events[ThreadLocalRandom.current().nextInt(EVENT_NUM)]);
+	}
+
+	@Benchmark
+	public void histogram() {
+		histogram.combine(events[ThreadLocalRandom.current().nextInt(EVENT_NUM)]);
+	}
+
+	@Benchmark
+	public void distinct() {
+		distinct.combine(events[ThreadLocalRandom.current().nextInt(EVENT_NUM)]);
+	}
+
+	@Benchmark
+	public long distinctCardinality() {
+		return distinct.getHll().cardinality();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void rtConcurrent() {
+		rt.combine(events[ThreadLocalRandom.current().nextInt(EVENT_NUM)]);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void histogramConcurrent() {
+		histogram.combine(events[ThreadLocalRandom.current().nextInt(EVENT_NUM)]);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(StatisticCombine_JMH.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+
+}
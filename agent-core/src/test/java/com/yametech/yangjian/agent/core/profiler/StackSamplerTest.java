@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * StackSampler测试：构造停在已知方法上的线程，检查线程过滤、状态过滤、栈深度限制
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class StackSamplerTest {
+    private final CountDownLatch stop = new CountDownLatch(1);
+    private final List<Thread> threads = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        stop.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void filter() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(3);
+        start("sampler-target-1", started, 0);
+        start("sampler-target-2", started, 0);
+        start("sampler-other-1", started, 0);
+        started.await();
+
+        StackTrie trie = new StackTrie(1000);
+        StackSampler sampler = new StackSampler(64, Pattern.compile("sampler-.*"), Pattern.compile("sampler-other-.*"), null);
+        assertEquals(2, awaitParked(sampler, trie, 2));
+        List<String> lines = trie.collapse();
+        assertEquals(lines.toString(), 1, lines.size());
+        String line = lines.get(0);
+        assertTrue(line, line.startsWith("sampler-target;java.lang.Thread.run;"));
+        assertTrue(line, line.contains(";" + StackSamplerTest.class.getName() + ".parkHere;"));
+        assertTrue(line, line.endsWith(" 2"));
+
+        // 不限制线程名时也不采集调用采样的线程
+        trie.clear();
+        new StackSampler(64, null, null, null).sample(trie);
+        for (String stack : trie.collapse()) {
+            assertFalse(stack, stack.contains(StackSampler.class.getName() + ".sample"));
+        }
+    }
+
+    @Test
+    public void states() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        start("sampler-state-1", started, 0);
+        started.await();
+        StackTrie trie = new StackTrie(1000);
+        awaitParked(new StackSampler(64, Pattern.compile("sampler-state-.*"), null, null), trie, 1);
+
+        trie.clear();
+        StackSampler runnable = new StackSampler(64, Pattern.compile("sampler-state-.*"), null, EnumSet.of(Thread.State.RUNNABLE));
+        assertEquals(0, runnable.sample(trie));
+        assertEquals(0, trie.getSamples());
+
+        StackSampler waiting = new StackSampler(64, Pattern.compile("sampler-state-.*"), null,
+                EnumSet.of(Thread.State.WAITING, Thread.State.TIMED_WAITING));
+        assertEquals(1, waiting.sample(trie));
+    }
+
+    /**
+     * 栈深度超过maxDepth时只保留靠近栈顶的帧
+     */
+    @Test
+    public void maxDepth() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        start("sampler-deep-1", started, 100);
+        started.await();
+        StackTrie trie = new StackTrie(1000);
+        awaitParked(new StackSampler(10, Pattern.compile("sampler-deep-.*"), null, Collections.emptySet()), trie, 1);
+        String line = trie.collapse().get(0);
+        String stack = line.substring(0, line.lastIndexOf(' '));
+        String[] frames = stack.split(";");
+        assertEquals(line, 1 + 10, frames.length);
+        assertEquals("sampler-deep", frames[0]);
+        assertTrue(line, frames[1].endsWith(".recurse"));
+    }
+
+    @Test
+    public void isSelected() {
+        StackSampler sampler = new StackSampler(64, Pattern.compile("http-.*|main"), Pattern.compile(".*-acceptor"), null);
+        assertTrue(sampler.isSelected("http-nio-8080-exec-1"));
+        assertTrue(sampler.isSelected("main"));
+        assertFalse(sampler.isSelected("http-nio-8080-acceptor"));
+        assertFalse(sampler.isSelected("pool-1-thread-1"));
+    }
+
+    /**
+     * 等待目标线程都停在parkHere后采样一次
+     */
+    private static int awaitParked(StackSampler sampler, StackTrie trie, int threadNum) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            StackTrie probe = new StackTrie(1000);
+            if (sampler.sample(probe) == threadNum && parked(probe, threadNum)) {
+                return sampler.sample(trie);
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("threads not parked");
+    }
+
+    private static boolean parked(StackTrie trie, int threadNum) {
+        long parked = 0;
+        for (String line : trie.collapse()) {
+            if (line.contains(".parkHere;")) {
+                parked += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        return parked == threadNum;
+    }
+
+    private void start(String name, CountDownLatch started, int depth) {
+        Thread thread = new Thread(() -> recurse(depth, started), name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    private void recurse(int depth, CountDownLatch started) {
+        if (depth > 0) {
+            recurse(depth - 1, started);
+            return;
+        }
+        parkHere(started);
+    }
+
+    private void parkHere(CountDownLatch started) {
+        started.countDown();
+        try {
+            stop.await();
+        } catch (InterruptedException e) {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.profiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 一次采样的耗时（微秒），threadNum个线程停在深度为depth的调用栈上，线程池名分为10组；
+ * all为采集所有线程，filtered为只采集其中一个线程池（其他线程只在第一次出现时获取线程名）
+ * 采样期间线程会进入安全点，耗时随线程数及栈深度增长，可按结果确定采样间隔
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class StackSampler_JMH {
+    @Param({"10", "100", "1000"})
+    private int threadNum;
+    @Param({"64"})
+    private int depth;
+    private CountDownLatch stop;
+    private List<Thread> threads;
+    private StackSampler all;
+    private StackSampler filtered;
+    private StackTrie trie;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        stop = new CountDownLatch(1);
+        threads = new ArrayList<>(threadNum);
+        CountDownLatch started = new CountDownLatch(threadNum);
+        for (int i = 0; i < threadNum; i++) {
+            Thread thread = new Thread(() -> recurse(depth, started), "bench-" + (i % 10) + "-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+        all = new StackSampler(64, null, null, null);
+        filtered = new StackSampler(64, Pattern.compile("bench-0-.*"), null, null);
+        trie = new StackTrie(10000);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        trie.clear();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        stop.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int all() {
+        return all.sample(trie);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int filtered() {
+        return filtered.sample(trie);
+    }
+
+    private void recurse(int depth, CountDownLatch started) {
+        if (depth > 0) {
+            recurse(depth - 1, started);
+            return;
+        }
+        started.countDown();
+        try {
+            stop.await();
+        } catch (InterruptedException e) {
+            // 忽略
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(StackSampler_JMH.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * StackTrie测试：公共前缀的合并、collapsed格式输出、节点数上限
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class StackTrieTest {
+
+    @Test
+    public void aggregate() {
+        StackTrie trie = new StackTrie(100);
+        trie.add("pool", stack("A.run", "B.call", "C.work"));
+        trie.add("pool", stack("A.run", "B.call", "C.work"));
+        trie.add("pool", stack("A.run", "B.call", "D.sleep"));
+        trie.add("pool", stack("A.run", "B.call"));
+        trie.add("main", stack("A.run", "B.call", "C.work"));
+        trie.add(null, stack("A.run"));
+
+        Map<String, Long> stacks = collapse(trie);
+        assertEquals(5, stacks.size());
+        assertEquals(Long.valueOf(2), stacks.get("pool;A.run;B.call;C.work"));
+        assertEquals(Long.valueOf(1), stacks.get("pool;A.run;B.call;D.sleep"));
+        assertEquals(Long.valueOf(1), stacks.get("pool;A.run;B.call"));
+        assertEquals(Long.valueOf(1), stacks.get("main;A.run;B.call;C.work"));
+        assertEquals(Long.valueOf(1), stacks.get("A.run"));
+        assertEquals(6, trie.getSamples());
+        // pool、A.run、B.call、C.work、D.sleep、main、A.run、B.call、C.work、A.run
+        assertEquals(10, trie.getNodeNum());
+        assertEquals(0, trie.getTruncatedSamples());
+
+        // 父节点在子节点之前输出，同一节点的子节点按出现顺序输出
+        assertEquals(Arrays.asList("pool;A.run;B.call 1", "pool;A.run;B.call;C.work 2", "pool;A.run;B.call;D.sleep 1",
+                "main;A.run;B.call;C.work 1", "A.run 1"), trie.collapse());
+    }
+
+    /**
+     * 类名相同方法名不同、方法名相同类名不同的帧为不同节点
+     */
+    @Test
+    public void distinctFrames() {
+        StackTrie trie = new StackTrie(100);
+        trie.add(null, stack("A.run", "B.x"));
+        trie.add(null, stack("A.run", "C.x"));
+        trie.add(null, stack("A.run", "B.y"));
+        assertEquals(Arrays.asList("A.run;B.x 1", "A.run;C.x 1", "A.run;B.y 1"), trie.collapse());
+    }
+
+    /**
+     * 节点数达到上限后新分支计入[truncated]，已有的分支继续计数
+     */
+    @Test
+    public void maxNodes() {
+        StackTrie trie = new StackTrie(3);
+        trie.add(null, stack("A.run", "B.call", "C.work"));
+        trie.add(null, stack("A.run", "B.call", "D.sleep", "E.park"));
+        trie.add(null, stack("A.run", "F.other"));
+        trie.add(null, stack("G.run"));
+        trie.add(null, stack("A.run", "B.call", "C.work"));
+
+        assertEquals(3, trie.getNodeNum());
+        assertEquals(3, trie.getTruncatedSamples());
+        Map<String, Long> stacks = collapse(trie);
+        assertEquals(Long.valueOf(2), stacks.get("A.run;B.call;C.work"));
+        assertEquals(Long.valueOf(1), stacks.get("A.run;B.call;" + StackTrie.TRUNCATED));
+        assertEquals(Long.valueOf(1), stacks.get("A.run;" + StackTrie.TRUNCATED));
+        assertEquals(Long.valueOf(1), stacks.get(StackTrie.TRUNCATED));
+        long total = 0;
+        for (long count : stacks.values()) {
+            total += count;
+        }
+        assertEquals(trie.getSamples(), total);
+
+        // 大量不同的栈时节点数不超过上限
+        StackTrie bounded = new StackTrie(1000);
+        for (int i = 0; i < 10000; i++) {
+            bounded.add("pool", stack("A.run", "B.call" + i, "C.work" + i));
+        }
+        assertEquals(1000, bounded.getNodeNum());
+        assertEquals(10000, bounded.getSamples());
+        assertTrue(bounded.collapse().size() <= 1001);
+    }
+
+    @Test
+    public void clear() {
+        StackTrie trie = new StackTrie(2);
+        trie.add("pool", stack("A.run", "B.call"));
+        trie.add("pool", stack("A.run", "C.call"));
+        trie.clear();
+        assertEquals(0, trie.getSamples());
+        assertEquals(0, trie.getNodeNum());
+        assertEquals(0, trie.getTruncatedSamples());
+        assertTrue(trie.collapse().isEmpty());
+
+        trie.add("pool", stack("A.run", "C.call"));
+        assertEquals(Arrays.asList("pool;A.run;" + StackTrie.TRUNCATED + " 1"), trie.collapse());
+    }
+
+    /**
+     * 帧名及根节点中的';'、换行替换为'_'，不破坏collapsed格式；帧名中的空格保留
+     */
+    @Test
+    public void escape() {
+        StackTrie trie = new StackTrie(100);
+        trie.add("a;b\nc", stack("A$$Lambda$1/123.run", "B.<init>"));
+        trie.add("GC Thread", stack("A.run"));
+        assertEquals(Arrays.asList("a_b_c;A$$Lambda$1/123.run;B.<init> 1", "GC Thread;A.run 1"), trie.collapse());
+    }
+
+    /**
+     * @param frames 从栈底到栈顶的“类名.方法名”
+     * @return 下标0为栈顶的线程栈
+     */
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] elements = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            String frame = frames[i];
+            int index = frame.lastIndexOf('.');
+            elements[frames.length - 1 - i] = new StackTraceElement(frame.substring(0, index), frame.substring(index + 1), null, -1);
+        }
+        return elements;
+    }
+
+    private static Map<String, Long> collapse(StackTrie trie) {
+        Map<String, Long> stacks = new LinkedHashMap<>();
+        trie.forEach(stacks::put);
+        return stacks;
+    }
+}
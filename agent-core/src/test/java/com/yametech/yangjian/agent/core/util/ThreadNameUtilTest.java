@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.core.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ThreadNameUtilTest {
+
+    @Test
+    public void poolName() {
+        assertEquals("http-nio-8080-exec", ThreadNameUtil.poolName("http-nio-8080-exec-12"));
+        assertEquals("pool-3-thread", ThreadNameUtil.poolName("pool-3-thread-7"));
+        assertEquals("ForkJoinPool.commonPool-worker", ThreadNameUtil.poolName("ForkJoinPool.commonPool-worker-3"));
+        assertEquals("GC Thread", ThreadNameUtil.poolName("GC Thread#3"));
+        assertEquals("C2 CompilerThread", ThreadNameUtil.poolName("C2 CompilerThread0"));
+        assertEquals("kafka-producer-network-thread | producer", ThreadNameUtil.poolName("kafka-producer-network-thread | producer-1"));
+        assertEquals("worker", ThreadNameUtil.poolName("worker-1-2"));
+        assertEquals("main", ThreadNameUtil.poolName("main"));
+        assertEquals("123", ThreadNameUtil.poolName("123"));
+        assertEquals("", ThreadNameUtil.poolName(null));
+    }
+}
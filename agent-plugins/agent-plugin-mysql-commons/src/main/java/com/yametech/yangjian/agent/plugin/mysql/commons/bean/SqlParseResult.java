@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.plugin.mysql.commons.bean;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * sql解析结果，解析一次后缓存复用，除accessed、counted外不可变
+ */
+public class SqlParseResult {
+	private final String sql;// 解析的sql（含字面量时为参数化后的sql），用于校验hash冲突
+	private final List<TableOperation> tableOperations;// 表操作，如：t_user.select
+	private final String parameterizedSql;// 参数化后的sql，为null表示解析失败或无语句，不生成事件
+	private final String statementType;// 语句类型，如：SQLSelectStatement
+	private volatile boolean accessed;// 缓存淘汰使用，最近是否命中过
+	private volatile boolean counted;// 是否已由缓存查找计数，嵌套查找返回的结果外层不重复计数
+
+	public SqlParseResult(String sql, List<TableOperation> tableOperations, String parameterizedSql, String statementType) {
+		this.sql = sql;
+		this.tableOperations = tableOperations;
+		this.parameterizedSql = parameterizedSql;
+		this.statementType = statementType;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public List<TableOperation> getTableOperations() {
+		return tableOperations;
+	}
+
+	public String getParameterizedSql() {
+		return parameterizedSql;
+	}
+
+	public String getStatementType() {
+		return statementType;
+	}
+
+	public boolean isAccessed() {
+		return accessed;
+	}
+
+	public void setAccessed(boolean accessed) {
+		this.accessed = accessed;
+	}
+
+	public boolean isCounted() {
+		return counted;
+	}
+
+	public void setCounted(boolean counted) {
+		this.counted = counted;
+	}
+
+	public static class TableOperation {
+		private final String identify;// 表名 + 分隔符 + 操作
+		private final long count;
+
+		public TableOperation(String identify, long count) {
+			this.identify = identify;
+			this.count = count;
+		}
+
+		public String getIdentify() {
+			return identify;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
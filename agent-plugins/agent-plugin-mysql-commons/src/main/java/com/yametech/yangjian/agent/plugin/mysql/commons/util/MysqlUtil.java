@@ -25,6 +25,7 @@ import com.yametech.yangjian.agent.api.log.ILogger;
 import com.yametech.yangjian.agent.api.log.LoggerFactory;
 import com.yametech.yangjian.agent.plugin.mysql.commons.bean.ConnectionInfo;
 import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlBean;
+import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlParseResult;
 import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.SQLUtils;
 import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.ast.SQLStatement;
 import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.visitor.ParameterizedOutputVisitorUtils;
@@ -33,6 +34,7 @@ import com.yametech.yangjian.agent.plugin.mysql.commons.druid.stat.TableStat;
 import com.yametech.yangjian.agent.plugin.mysql.commons.druid.util.JdbcConstants;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +54,7 @@ public class MysqlUtil {
      * 限制sql最大长度
      */
     private static final int SQL_MAX_LENGTH = 250;
+    private static final SqlParseCache SQL_PARSE_CACHE = SqlParseCache.create(MysqlUtil::parseSql);
 
     /**
      * 判断sql是否排除
@@ -77,44 +80,90 @@ public class MysqlUtil {
      */
     public static List<TimeEvent> buildSqlTimeEvent(SqlBean sqlBean) {
         List<TimeEvent> timeEvents = new ArrayList<>();
+        SqlParseResult parseResult = SQL_PARSE_CACHE.get(sqlBean.getSql());
+        if (parseResult.getParameterizedSql() == null) {
+            return timeEvents;
+        }
+        for (SqlParseResult.TableOperation operation : parseResult.getTableOperations()) {
+            timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_TABLE, operation.getIdentify(), operation.getCount()));
+        }
+        timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_SQL, parseResult.getParameterizedSql(), 1));
+        return timeEvents;
+    }
+
+    /**
+     * 解析sql，获取表操作及参数化sql，结果通过SQL_PARSE_CACHE缓存
+     * 优先使用SqlNormalizer词法分析，无法识别的语句才使用druid解析语法树；
+     * 含字面量的sql按参数化后的sql解析及缓存，返回结果的sql为参数化后的sql，不会按原始sql缓存
+     *
+     * @param sql
+     * @return
+     */
+    public static SqlParseResult parseSql(String sql) {
+        SqlNormalizer.NormalizedSql normalized;
+        try {
+            normalized = SqlNormalizer.normalize(sql);
+        } catch (Throwable t) {
+            normalized = null;
+        }
+        if (normalized == null) {// 词法分析失败，使用druid解析及参数化
+            return parseByDruid(sql, null);
+        }
+        if (normalized.isClassified()) {
+            return new SqlParseResult(normalized.isFolded() ? normalized.getSql() : sql, normalized.getTableOperations(),
+                    normalized.getSql(), normalized.getStatementType());
+        }
+        if (normalized.isFolded() && !normalized.getSql().equals(sql)) {// 字面量不同的sql共用参数化后sql的解析结果
+            return SQL_PARSE_CACHE.get(normalized.getSql());
+        }
+        return parseByDruid(sql, normalized.getSql());
+    }
+
+    /**
+     * 使用druid解析语法树获取表操作
+     *
+     * @param sql
+     * @param parameterizedSql 参数化后的sql，为null时使用druid参数化
+     * @return
+     */
+    private static SqlParseResult parseByDruid(String sql, String parameterizedSql) {
         try {
-            List<SQLStatement> stmtList = SQLUtils.parseStatements(sqlBean.getSql(), JdbcConstants.MYSQL);
-            if (stmtList != null && stmtList.size() > 0) {
-                // 只处理第一条
-                SQLStatement stmt = stmtList.get(0);
-                // 统计SQL中使用的表、操作
-                SchemaStatVisitor statVisitor = SQLUtils.createSchemaStatVisitor(JdbcConstants.MYSQL);
-                stmt.accept(statVisitor);
-
-                // 遍历获取每张表的delete、update、insert、select次数
-                for (Map.Entry<TableStat.Name, TableStat> entry : statVisitor.getTables().entrySet()) {
-                    TableStat tableStat = entry.getValue();
-                    if (tableStat.getInsertCount() > 0) {
-                        timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_TABLE, entry.getKey() +
-                                Constants.IDENTIFY_SEPARATOR + Constants.DbOperation.INSERT, tableStat.getInsertCount()));
-                    }
-                    if (tableStat.getUpdateCount() > 0) {
-                        timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_TABLE, entry.getKey() +
-                                Constants.IDENTIFY_SEPARATOR + Constants.DbOperation.UPDATE, tableStat.getUpdateCount()));
-                    }
-                    if (tableStat.getSelectCount() > 0) {
-                        timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_TABLE, entry.getKey() +
-                                Constants.IDENTIFY_SEPARATOR + Constants.DbOperation.SELECT, tableStat.getSelectCount()));
-                    }
-                    if (tableStat.getDeleteCount() > 0) {
-                        timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_TABLE, entry.getKey() +
-                                Constants.IDENTIFY_SEPARATOR + Constants.DbOperation.DELETE, tableStat.getDeleteCount()));
-                    }
-                }
+            List<SQLStatement> stmtList = SQLUtils.parseStatements(sql, JdbcConstants.MYSQL);
+            if (stmtList == null || stmtList.isEmpty()) {
+                return new SqlParseResult(sql, Collections.emptyList(), null, null);
+            }
+            // 只处理第一条
+            SQLStatement stmt = stmtList.get(0);
+            // 统计SQL中使用的表、操作
+            SchemaStatVisitor statVisitor = SQLUtils.createSchemaStatVisitor(JdbcConstants.MYSQL);
+            stmt.accept(statVisitor);
+
+            // 遍历获取每张表的delete、update、insert、select次数
+            List<SqlParseResult.TableOperation> operations = new ArrayList<>();
+            for (Map.Entry<TableStat.Name, TableStat> entry : statVisitor.getTables().entrySet()) {
+                TableStat tableStat = entry.getValue();
+                addOperation(operations, entry.getKey(), Constants.DbOperation.INSERT, tableStat.getInsertCount());
+                addOperation(operations, entry.getKey(), Constants.DbOperation.UPDATE, tableStat.getUpdateCount());
+                addOperation(operations, entry.getKey(), Constants.DbOperation.SELECT, tableStat.getSelectCount());
+                addOperation(operations, entry.getKey(), Constants.DbOperation.DELETE, tableStat.getDeleteCount());
+            }
 
+            if (parameterizedSql == null) {
                 // 参数化sql 如：select * from t where id = 1会变成select * from t where id = ?, 方便sql统计
-                String parameterizedSql = ParameterizedOutputVisitorUtils.parameterize(sqlBean.getSql(), JdbcConstants.MYSQL);
-                timeEvents.add(initMysqlTimeEvent(sqlBean, Constants.EventType.MYSQL_SQL, parameterizedSql, 1));
+                parameterizedSql = ParameterizedOutputVisitorUtils.parameterize(sql, JdbcConstants.MYSQL);
             }
+            return new SqlParseResult(sql, operations, parameterizedSql, stmt.getClass().getSimpleName());
         } catch (Throwable t) {
-            LOG.error(t, "buildSqlTimeEvent(sql:{}) error.", sqlBean.getSql());
+            // 解析失败的结果也会缓存，相同的sql不会重复解析及打印日志
+            LOG.error(t, "buildSqlTimeEvent(sql:{}) error.", sql);
+            return new SqlParseResult(sql, Collections.emptyList(), null, null);
+        }
+    }
+
+    private static void addOperation(List<SqlParseResult.TableOperation> operations, TableStat.Name table, String operation, int count) {
+        if (count > 0) {
+            operations.add(new SqlParseResult.TableOperation(table + Constants.IDENTIFY_SEPARATOR + operation, count));
         }
-        return timeEvents;
     }
 
     private static TimeEvent initMysqlTimeEvent(SqlBean sqlBean, String type, String identify, long num) {
@@ -0,0 +1,604 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.plugin.mysql.commons.util;
+
+import com.yametech.yangjian.agent.api.common.Constants;
+import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlParseResult;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.dialect.mysql.parser.MySqlLexer;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.parser.Token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于MySqlLexer的sql参数化及表提取，只做词法分析，不构建语法树
+ *
+ * 1.参数化：字面量替换为?，IN列表合并为(?)，批量insert的多组VALUES只保留第一组，去除注释、hint及多余空白，关键字统一大写
+ * 如：select * from t where id in (1, 2,3) and name='a' 会变成 SELECT * FROM t WHERE id IN (?) AND name = ?
+ * 2.表提取：不含子查询、union的select及单表的insert/replace/update/delete，直接从FROM/JOIN/INTO/UPDATE后的token中获取表名，
+ * 其他无法识别的语句（classified为false）由调用方使用druid完整解析兜底
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class SqlNormalizer {
+    private static final String PLACEHOLDER = "?";
+    private static final String COLLAPSED_LIST = "(?)";
+    private static final String[] SOFT_KEYWORDS = {"IGNORE", "LOW_PRIORITY", "QUICK", "DELAYED", "HIGH_PRIORITY",
+            "STRAIGHT_JOIN", "USING", "FORCE", "DUPLICATE", "SHARE", "MODE"};
+    /**
+     * 期望表名的状态
+     */
+    private static final int TABLE_NONE = 0;
+    private static final int TABLE_EXPECT = 1;
+    private static final int TABLE_NAME = 2;
+    private static final int TABLE_DOT = 3;
+    /**
+     * 批量VALUES合并的状态
+     */
+    private static final int VALUES_NONE = 0;
+    private static final int VALUES_FIRST = 1;
+    private static final int VALUES_AFTER_FIRST = 2;
+    private static final int VALUES_SKIP = 3;
+    private static final int VALUES_DONE = 4;
+
+    private final StringBuilder builder;
+    private Token prev;// 上一个输出的token，字面量按QUES记录
+    private Token pendingSign;// 可能为负数（正数）符号的-（+），等待下一个token确定
+    private int depth;// 括号深度
+    private boolean folded;// 是否替换了字面量，为true时原始sql随参数变化，不适合作为缓存key（PreparedStatement的?列表长度有限，不影响）
+    // IN列表合并
+    private int inListStart = -1;
+    private int inListDepth;
+    private boolean inListPlaceholderOnly;
+    // 批量VALUES合并
+    private int valuesState = VALUES_NONE;
+    // 表提取
+    private Token statement;// 第一个token，语句类型
+    private boolean classified = true;
+    private int step;// 语句内的阶段，含义由语句类型决定
+    private boolean fromClause;
+    private int tableState = TABLE_NONE;
+    private String table;
+    private final Map<String, Integer> tables = new LinkedHashMap<>();
+
+    private SqlNormalizer(int length) {
+        this.builder = new StringBuilder(length);
+    }
+
+    /**
+     * 参数化sql并提取表操作
+     *
+     * @param sql
+     * @return 词法分析失败返回null
+     */
+    public static NormalizedSql normalize(String sql) {
+        return new SqlNormalizer(sql.length()).run(sql);
+    }
+
+    private NormalizedSql run(String sql) {
+        MySqlLexer lexer = new MySqlLexer(sql);
+        lexer.nextToken();
+        for (Token token = lexer.token(); token != Token.EOF; lexer.nextToken(), token = lexer.token()) {
+            if (token == Token.ERROR) {
+                return null;
+            }
+            if (token == Token.SEMI) {// 与druid一致，只处理第一条
+                break;
+            }
+            if (token == Token.HINT || token == Token.LINE_COMMENT || token == Token.MULTI_LINE_COMMENT) {
+                continue;
+            }
+            String text = token.name == null ? lexer.stringVal() : token.name;
+            if (token == Token.IDENTIFIER) {
+                if (isLiteralPrefix(text, sql, lexer.pos())) {// 跳过前缀，后面的字符串统一替换为?
+                    continue;
+                }
+                if (isSoftKeyword(text)) {
+                    text = text.toUpperCase();
+                }
+            }
+            if (classified) {
+                classify(token, text);
+            }
+            if (valuesState == VALUES_SKIP && skipValues(token)) {
+                continue;
+            }
+            accept(token, text);
+        }
+        if (pendingSign != null) {
+            append(pendingSign, pendingSign.name);
+        }
+        if (classified) {
+            finish();
+        }
+        return new NormalizedSql(builder.toString(), folded, classified ? statementType(statement) : null, classified ? operations() : null);
+    }
+
+    private void accept(Token token, String text) {
+        if (isLiteral(token)) {
+            pendingSign = null;// 负数连同符号一起替换
+            folded = true;
+            append(Token.QUES, PLACEHOLDER);
+            return;
+        }
+        if (pendingSign != null) {
+            append(pendingSign, pendingSign.name);
+            pendingSign = null;
+        }
+        if ((token == Token.SUB || token == Token.PLUS) && !isOperand(prev)) {
+            pendingSign = token;
+            return;
+        }
+        if (token == Token.LPAREN) {
+            boolean inList = prev == Token.IN && inListStart < 0;
+            append(token, text);
+            depth++;
+            if (inList) {
+                inListStart = builder.length() - 1;
+                inListDepth = depth;
+                inListPlaceholderOnly = true;
+            }
+            return;
+        }
+        if (token == Token.RPAREN) {
+            if (inListStart >= 0 && depth == inListDepth) {
+                if (inListPlaceholderOnly && (prev == Token.QUES || prev == Token.RPAREN)) {
+                    builder.setLength(inListStart);
+                    builder.append(COLLAPSED_LIST);
+                    prev = Token.RPAREN;
+                } else {
+                    append(token, text);
+                }
+                inListStart = -1;
+            } else {
+                append(token, text);
+            }
+            depth--;
+            if (valuesState == VALUES_FIRST && depth == 0) {
+                valuesState = VALUES_AFTER_FIRST;
+            }
+            return;
+        }
+        if (valuesState == VALUES_AFTER_FIRST && depth == 0) {
+            if (token == Token.COMMA) {
+                // 第一组之后的值全部跳过
+                valuesState = VALUES_SKIP;
+                return;
+            }
+            valuesState = VALUES_DONE;
+        }
+        if (token == Token.VALUES && depth == 0 && valuesState == VALUES_NONE
+                && (statement == Token.INSERT || statement == Token.REPLACE)) {
+            valuesState = VALUES_FIRST;
+        }
+        append(token, text);
+    }
+
+    /**
+     * 跳过批量VALUES中第一组之后的值，每组结束后重新判断是否还有下一组
+     *
+     * @param token
+     * @return 是否跳过该token
+     */
+    private boolean skipValues(Token token) {
+        if (depth == 0 && token != Token.LPAREN) {// 非(值)格式，不再合并
+            valuesState = VALUES_DONE;
+            return false;
+        }
+        if (isLiteral(token)) {
+            folded = true;
+        }
+        if (token == Token.LPAREN) {
+            depth++;
+        } else if (token == Token.RPAREN) {
+            depth--;
+            if (depth == 0) {
+                valuesState = VALUES_AFTER_FIRST;
+            }
+        }
+        return true;
+    }
+
+    private void append(Token token, String text) {
+        if (inListStart >= 0 && depth >= inListDepth) {// 支持多列IN，如：(a, b) in ((1, 2), (3, 4))
+            if (token != Token.QUES && token != Token.COMMA && token != Token.LPAREN && token != Token.RPAREN) {
+                inListPlaceholderOnly = false;
+            }
+        }
+        if (prev != null && needSpace(prev, token)) {
+            builder.append(' ');
+        }
+        builder.append(text);
+        prev = token;
+    }
+
+    private boolean needSpace(Token prev, Token token) {
+        if (token == Token.COMMA || token == Token.RPAREN || token == Token.DOT) {
+            return false;
+        }
+        if (prev == Token.LPAREN || prev == Token.DOT) {
+            return false;
+        }
+        if (token != Token.LPAREN) {
+            return true;
+        }
+        // 函数调用及insert的字段列表，如：count(*)、t(a, b)、on duplicate key update a = values(a)
+        return prev != Token.IDENTIFIER && !(prev == Token.VALUES && valuesState == VALUES_DONE);
+    }
+
+    private boolean isLiteral(Token token) {
+        switch (token) {
+            case LITERAL_INT:
+            case LITERAL_FLOAT:
+            case LITERAL_HEX:
+            case LITERAL_CHARS:
+            case LITERAL_NCHARS:
+                return true;
+            case LITERAL_ALIAS:// mysql中双引号为字符串，AS后的为别名
+                return prev != Token.AS;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param token 上一个token
+     * @return 是否为操作数，操作数后的-、+为二元运算符，否则为正负号
+     */
+    private static boolean isOperand(Token token) {
+        if (token == null) {
+            return false;
+        }
+        switch (token) {
+            case IDENTIFIER:
+            case VARIANT:
+            case QUES:
+            case RPAREN:
+            case LITERAL_ALIAS:
+            case NULL:
+            case TRUE:
+            case FALSE:
+            case END:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 根据token判断语句是否可以不通过语法树提取表，并记录表名
+     *
+     * @param token
+     * @param text
+     */
+    private void classify(Token token, String text) {
+        if (statement == null) {
+            statement = token;
+            switch (token) {
+                case SELECT:
+                    break;
+                case UPDATE:
+                    tableState = TABLE_EXPECT;
+                    break;
+                case INSERT:
+                case REPLACE:
+                case DELETE:
+                    break;
+                default:
+                    classified = false;
+            }
+            return;
+        }
+        if (token == Token.SELECT || token == Token.UNION || token == Token.WITH) {// 子查询、insert select、union
+            classified = false;
+            return;
+        }
+        if (tableState != TABLE_NONE && !readTable(token, text)) {
+            return;
+        }
+        if (!classified) {
+            return;
+        }
+        switch (statement) {
+            case SELECT:
+                classifySelect(token, text);
+                break;
+            case INSERT:
+            case REPLACE:
+                classifyInsert(token, text);
+                break;
+            case UPDATE:
+                classifyUpdate(token);
+                break;
+            case DELETE:
+                classifyDelete(token, text);
+                break;
+            default:
+                classified = false;
+        }
+    }
+
+    /**
+     * 读取表名，支持库名.表名
+     *
+     * @param token
+     * @param text
+     * @return token是否需要继续处理
+     */
+    private boolean readTable(Token token, String text) {
+        if (tableState == TABLE_EXPECT) {
+            if (token == Token.IDENTIFIER && step == 0 && isModifier(text)) {// 如：update ignore t
+                return false;
+            }
+            if (token != Token.IDENTIFIER) {// 派生表、dual等
+                classified = false;
+                return false;
+            }
+            table = unquote(text);
+            tableState = TABLE_NAME;
+            return false;
+        }
+        if (tableState == TABLE_DOT) {
+            if (token != Token.IDENTIFIER) {
+                classified = false;
+                return false;
+            }
+            table = table + '.' + unquote(text);
+            addTable();
+            return false;
+        }
+        if (token == Token.DOT) {
+            tableState = TABLE_DOT;
+            return false;
+        }
+        addTable();
+        return true;
+    }
+
+    private void addTable() {
+        tables.merge(table, 1, Integer::sum);
+        table = null;
+        tableState = TABLE_NONE;
+        if (step == 0) {
+            step = 1;
+        }
+    }
+
+    private void classifySelect(Token token, String text) {
+        if (depth > 0) {
+            return;
+        }
+        switch (token) {
+            case FROM:
+                fromClause = true;
+                tableState = TABLE_EXPECT;
+                break;
+            case JOIN:
+            case COMMA:
+                if (fromClause) {
+                    tableState = TABLE_EXPECT;
+                }
+                break;
+            case IDENTIFIER:
+                if (fromClause && "STRAIGHT_JOIN".equals(text)) {
+                    tableState = TABLE_EXPECT;
+                }
+                break;
+            case INTO:// select into
+                classified = false;
+                break;
+            case WHERE:
+            case GROUP:
+            case HAVING:
+            case ORDER:
+            case LIMIT:
+            case FOR:
+            case LOCK:
+                fromClause = false;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * INSERT [LOW_PRIORITY | DELAYED | HIGH_PRIORITY] [IGNORE] INTO t ...
+     */
+    private void classifyInsert(Token token, String text) {
+        if (step > 0) {
+            return;
+        }
+        if (token == Token.INTO) {
+            tableState = TABLE_EXPECT;
+        } else if (token != Token.IDENTIFIER || !isModifier(text)) {
+            classified = false;
+        }
+    }
+
+    /**
+     * UPDATE [LOW_PRIORITY] [IGNORE] t [[AS] alias] SET ...
+     */
+    private void classifyUpdate(Token token) {
+        if (step != 1) {
+            return;
+        }
+        if (token == Token.SET) {
+            step = 2;
+        } else if (token != Token.AS && token != Token.IDENTIFIER) {// 多表update
+            classified = false;
+        }
+    }
+
+    /**
+     * DELETE [LOW_PRIORITY] [QUICK] [IGNORE] FROM t [WHERE ...] [ORDER BY ...] [LIMIT ...]
+     */
+    private void classifyDelete(Token token, String text) {
+        if (step == 0) {
+            if (token == Token.FROM) {
+                tableState = TABLE_EXPECT;
+            } else if (token != Token.IDENTIFIER || !isModifier(text)) {// 多表delete
+                classified = false;
+            }
+        } else if (step == 1) {
+            if (token == Token.WHERE || token == Token.ORDER || token == Token.LIMIT) {
+                step = 2;
+            } else {// 别名、USING、JOIN等
+                classified = false;
+            }
+        }
+    }
+
+    private void finish() {
+        if (tableState == TABLE_NAME) {
+            addTable();
+        } else if (tableState != TABLE_NONE) {
+            classified = false;
+            return;
+        }
+        if (statement == Token.INSERT || statement == Token.REPLACE || statement == Token.UPDATE || statement == Token.DELETE) {
+            // 未读取到表或update缺少SET
+            classified = tables.size() == 1 && (statement != Token.UPDATE || step == 2);
+        }
+    }
+
+    private List<SqlParseResult.TableOperation> operations() {
+        if (tables.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String operation = operation(statement);
+        List<SqlParseResult.TableOperation> operations = new ArrayList<>(tables.size());
+        for (Map.Entry<String, Integer> entry : tables.entrySet()) {
+            operations.add(new SqlParseResult.TableOperation(entry.getKey() + Constants.IDENTIFY_SEPARATOR + operation, entry.getValue()));
+        }
+        return operations;
+    }
+
+    /**
+     * 字符串前紧跟的十六进制、二进制及字符集前缀，如：X'0A'、b'01'、_utf8'a'
+     *
+     * @param text
+     * @param sql
+     * @param pos 标识符后的位置
+     * @return
+     */
+    private static boolean isLiteralPrefix(String text, String sql, int pos) {
+        if (pos >= sql.length() || sql.charAt(pos) != '\'') {
+            return false;
+        }
+        return text.length() == 1 ? "XxBb".indexOf(text.charAt(0)) >= 0 : text.charAt(0) == '_';
+    }
+
+    /**
+     * 词法分析为标识符的关键字，统一大写，与druid输出一致（与之同名的字段、表也会大写）
+     *
+     * @param text
+     * @return
+     */
+    private static boolean isSoftKeyword(String text) {
+        for (String keyword : SOFT_KEYWORDS) {
+            if (keyword.equalsIgnoreCase(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isModifier(String text) {
+        return "IGNORE".equalsIgnoreCase(text) || "LOW_PRIORITY".equalsIgnoreCase(text) || "QUICK".equalsIgnoreCase(text)
+                || "DELAYED".equalsIgnoreCase(text) || "HIGH_PRIORITY".equalsIgnoreCase(text);
+    }
+
+    private static String unquote(String name) {
+        if (name.length() > 1 && name.charAt(0) == '`' && name.charAt(name.length() - 1) == '`') {
+            return name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    private static String operation(Token statement) {
+        switch (statement) {
+            case INSERT:
+            case REPLACE:
+                return Constants.DbOperation.INSERT;
+            case UPDATE:
+                return Constants.DbOperation.UPDATE;
+            case DELETE:
+                return Constants.DbOperation.DELETE;
+            default:
+                return Constants.DbOperation.SELECT;
+        }
+    }
+
+    /**
+     * @param statement
+     * @return 与druid解析的语句类名保持一致
+     */
+    private static String statementType(Token statement) {
+        switch (statement) {
+            case INSERT:
+                return "MySqlInsertStatement";
+            case REPLACE:
+                return "SQLReplaceStatement";
+            case UPDATE:
+                return "MySqlUpdateStatement";
+            case DELETE:
+                return "MySqlDeleteStatement";
+            default:
+                return "SQLSelectStatement";
+        }
+    }
+
+    public static class NormalizedSql {
+        private final String sql;// 参数化后的sql
+        private final boolean folded;// 是否替换了字面量
+        private final String statementType;// 未识别时为null
+        private final List<SqlParseResult.TableOperation> tableOperations;// 未识别时为null
+
+        NormalizedSql(String sql, boolean folded, String statementType, List<SqlParseResult.TableOperation> tableOperations) {
+            this.sql = sql;
+            this.folded = folded;
+            this.statementType = statementType;
+            this.tableOperations = tableOperations;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public boolean isFolded() {
+            return folded;
+        }
+
+        /**
+         * @return 是否已通过词法分析获取到表操作，为false时需使用druid解析
+         */
+        public boolean isClassified() {
+            return tableOperations != null;
+        }
+
+        public String getStatementType() {
+            return statementType;
+        }
+
+        public List<SqlParseResult.TableOperation> getTableOperations() {
+            return tableOperations;
+        }
+    }
+}
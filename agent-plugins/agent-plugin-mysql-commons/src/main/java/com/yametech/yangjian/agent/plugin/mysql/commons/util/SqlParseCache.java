@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.plugin.mysql.commons.util;
+
+import com.yametech.yangjian.agent.api.IConfigReader;
+import com.yametech.yangjian.agent.api.ISchedule;
+import com.yametech.yangjian.agent.api.base.IReportData;
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.api.common.Config;
+import com.yametech.yangjian.agent.api.common.Constants;
+import com.yametech.yangjian.agent.api.common.InstanceManage;
+import com.yametech.yangjian.agent.api.common.MultiReportFactory;
+import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlParseResult;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * sql解析结果缓存，使用原始sql的64位hash作为key，有界（超出时按second-chance淘汰），并定时输出命中、未命中、淘汰数
+ * 同一条sql（PreparedStatement的sql或参数化后相同的拼接sql）仅解析一次
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class SqlParseCache implements ISchedule, IConfigReader {
+    private static final String MAX_SIZE_KEY = "mysql.sqlCache.maxSize";
+    private static final String INTERVAL_KEY = "metricOutput.interval.mysqlSqlCache";
+    private static final int DEFAULT_MAX_SIZE = 2048;
+    /**
+     * 超过该长度的sql不缓存（一般为批量拼接的sql，基本不会重复，缓存反而占用内存）
+     */
+    private static final int CACHE_SQL_MAX_LENGTH = 4096;
+    private final ConcurrentHashMap<Long, SqlParseResult> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final Function<String, SqlParseResult> parser;
+    private final ToLongFunction<String> hashFunction;
+    private final LongAdder hitNum = new LongAdder();
+    private final LongAdder missNum = new LongAdder();
+    private final LongAdder evictionNum = new LongAdder();
+    private volatile int maxSize;
+    private int interval = 60;
+    private IReportData report;
+
+    private SqlParseCache(Function<String, SqlParseResult> parser) {
+        this(parser, SqlParseCache::hash, IConfigReader.getIntValue(Config.getKv(MAX_SIZE_KEY), DEFAULT_MAX_SIZE));
+    }
+
+    SqlParseCache(Function<String, SqlParseResult> parser, ToLongFunction<String> hashFunction, int maxSize) {
+        this.parser = parser;
+        this.hashFunction = hashFunction;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 创建缓存并托管，托管后可接收配置及定时输出统计
+     *
+     * @param parser sql解析
+     * @return
+     */
+    public static SqlParseCache create(Function<String, SqlParseResult> parser) {
+        SqlParseCache cache = new SqlParseCache(parser);
+        InstanceManage.registry(cache);
+        return cache;
+    }
+
+    /**
+     * 获取sql解析结果，缓存中不存在时解析并放入缓存
+     *
+     * @param sql
+     * @return
+     */
+    public SqlParseResult get(String sql) {
+        if (maxSize <= 0 || sql.length() > CACHE_SQL_MAX_LENGTH) {
+            return parse(sql);
+        }
+        Long key = hashFunction.applyAsLong(sql);
+        SqlParseResult result = cache.get(key);
+        if (result != null && result.getSql().equals(sql)) {
+            if (!result.isAccessed()) {// 减少volatile写
+                result.setAccessed(true);
+            }
+            hitNum.increment();
+            return result;
+        }
+        result = parse(sql);
+        if (!result.getSql().equals(sql)) {// 含字面量的sql，结果按参数化后的sql缓存
+            return result;
+        }
+        cache.put(key, result);// hash冲突时覆盖旧值
+        if (cache.size() > maxSize) {
+            evict();
+        }
+        return result;
+    }
+
+    /**
+     * 未命中时解析，每次查找只计数一次：含字面量的sql在解析中会嵌套查找参数化后的sql，嵌套查找已计入命中或未命中，外层不再计数
+     */
+    private SqlParseResult parse(String sql) {
+        SqlParseResult result = parser.apply(sql);
+        if (!result.isCounted()) {
+            missNum.increment();
+            result.setCounted(true);
+        }
+        return result;
+    }
+
+    /**
+     * second-chance淘汰：最近命中过的清除标识后保留，未命中的删除，直到数量降到maxSize的3/4
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int targetSize = maxSize * 3 / 4;
+            for (int i = 0; i < 2 && cache.size() > targetSize; i++) {// 第一遍可能全部为命中过的，第二遍必定可淘汰
+                Iterator<SqlParseResult> iterator = cache.values().iterator();
+                while (iterator.hasNext() && cache.size() > targetSize) {
+                    SqlParseResult result = iterator.next();
+                    if (result.isAccessed()) {
+                        result.setAccessed(false);
+                        continue;
+                    }
+                    iterator.remove();
+                    evictionNum.increment();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * 64位FNV-1a hash
+     *
+     * @param sql
+     * @return
+     */
+    static long hash(String sql) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sql.length(); i++) {
+            hash ^= sql.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitNum() {
+        return hitNum.sum();
+    }
+
+    public long getMissNum() {
+        return missNum.sum();
+    }
+
+    public long getEvictionNum() {
+        return evictionNum.sum();
+    }
+
+    @Override
+    public Set<String> configKey() {
+        return new HashSet<>(Arrays.asList(MAX_SIZE_KEY.replaceAll("\\.", "\\\\."), INTERVAL_KEY.replaceAll("\\.", "\\\\.")));
+    }
+
+    @Override
+    public void configKeyValue(Map<String, String> kv) {
+        if (kv == null) {
+            return;
+        }
+        maxSize = IConfigReader.getIntValue(kv.get(MAX_SIZE_KEY), maxSize);
+        interval = IConfigReader.getIntValue(kv.get(INTERVAL_KEY), interval);
+        if (maxSize <= 0) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public int interval() {
+        return interval;
+    }
+
+    @Override
+    public void execute() {
+        if (report == null) {
+            report = MultiReportFactory.getReport("collect");
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("hit_num", hitNum.sumThenReset());
+        params.put("miss_num", missNum.sumThenReset());
+        params.put("eviction_num", evictionNum.sumThenReset());
+        params.put("size", cache.size());
+        params.put("period_seconds", interval);
+        report.report(MetricData.get(null, "statistic/" + Constants.EventType.MYSQL_SQL + "/parseCache", params));
+    }
+}
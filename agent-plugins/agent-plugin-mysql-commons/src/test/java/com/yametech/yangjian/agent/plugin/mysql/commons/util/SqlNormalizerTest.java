@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.plugin.mysql.commons.util;
+
+import com.yametech.yangjian.agent.api.common.Constants;
+import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlParseResult;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.SQLUtils;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.ast.SQLStatement;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.sql.visitor.SchemaStatVisitor;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.stat.TableStat;
+import com.yametech.yangjian.agent.plugin.mysql.commons.druid.util.JdbcConstants;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 词法分析参数化、表提取与druid语法树解析结果对比
+ */
+public class SqlNormalizerTest {
+    /**
+     * druid会改写为insert into t(a, b) values (?, ?)，只对比表操作
+     */
+    private static final String INSERT_SET_SQL = "insert into t set a = 1, b = 'x'";
+    /**
+     * 可通过词法分析提取表的sql
+     */
+    private static final String[] CLASSIFIED_CORPUS = {
+            "select * from t where id = 1",
+            "select id, name from t_user where id = ? and status = ?",
+            "SELECT a.id, b.name FROM `db`.`user` a left join order_item b on a.id=b.uid where a.id in (1,2,3) and b.x = 'abc' limit 10, 20",
+            "select count(*) from t1, t2 where t1.id=t2.id and t1.v > -5.5",
+            "select o.id, u.name from t_order o inner join t_user u on o.user_id = u.id join t_sku s using (sku_id) where o.create_time > ? order by o.id desc limit 100",
+            "select * from t a join t b on a.id = b.pid",
+            "select * from t as a straight_join t2 as b on a.id = b.id",
+            "select * from t force index (idx_a) where a = 1 for update",
+            "select * from t where x is null and y is not null group by z having count(*) > 2",
+            "select * from t where name like 'abc%' and a between 1 and 10 lock in share mode",
+            "/* comment */ select id from t -- tail\n where id = 0x1F",
+            "select 1",
+            "select now(), version()",
+            "select * from t where id in (?, ?, ?) and b not in ('a', 'b')",
+            "select * from t where (a, b) in ((1, 2), (3, 4))",
+            "select * from t where a = -1 and b = 2 - 1 and c = -d",
+            "select * from t where a = \"double\" and b = N'n' and c = X'0A'",
+            "insert into t(a,b) values (1,'x'),(2,'y'),(3,'z')",
+            "insert into t(a,b) values (1,'x') on duplicate key update b='y', a = values(a)",
+            "insert ignore into `db`.t (a, b, c) values (?, now(), ?), (?, now(), ?)",
+            INSERT_SET_SQL,
+            "replace into t values(1)",
+            "update t set a = -1, b = 'x' where id = 3",
+            "update low_priority t_order o set o.status = ? where o.id in (1, 2) limit 1",
+            "delete from t where id in (1, 2) ",
+            "delete quick from t_cart where user_id = ? order by id limit 10",
+            "delete from t",
+            "select * from t where id = 1; select * from t2",
+    };
+    /**
+     * 需要druid兜底的sql
+     */
+    private static final String[] FALLBACK_CORPUS = {
+            "select * from t where a in (select id from t2)",
+            "select * from (select id from t) x where x.id > 1",
+            "select a from t1 union all select a from t2",
+            "insert into t(a) select a from t2 where b = 1",
+            "update t1, t2 set t1.a = t2.a where t1.id = t2.id",
+            "update t1 join t2 on t1.id = t2.id set t1.a = 1",
+            "delete t1 from t1 join t2 on t1.id = t2.id where t2.a = 1",
+            "delete from t1 using t1, t2 where t1.id = t2.id",
+            "select 1 from dual",
+            "show tables",
+            "create table t (id int)",
+    };
+
+    @Test
+    public void classifiedCorpus() {
+        for (String sql : CLASSIFIED_CORPUS) {
+            SqlNormalizer.NormalizedSql normalized = SqlNormalizer.normalize(sql);
+            assertNotNull(sql, normalized);
+            assertTrue(sql, normalized.isClassified());
+            SQLStatement stmt = SQLUtils.parseStatements(sql, JdbcConstants.MYSQL).get(0);
+            assertEquals(sql, stmt.getClass().getSimpleName(), normalized.getStatementType());
+            assertEquals(sql, druidOperations(stmt), operations(normalized));
+            if (!INSERT_SET_SQL.equals(sql)) {
+                assertParameterized(sql, normalized);
+            }
+        }
+    }
+
+    @Test
+    public void fallbackCorpus() {
+        for (String sql : FALLBACK_CORPUS) {
+            SqlNormalizer.NormalizedSql normalized = SqlNormalizer.normalize(sql);
+            assertNotNull(sql, normalized);
+            assertFalse(sql, normalized.isClassified());
+            assertParameterized(sql, normalized);
+            // 参数化后的sql可以被druid解析，且表操作与原始sql一致
+            SQLStatement stmt = SQLUtils.parseStatements(sql, JdbcConstants.MYSQL).get(0);
+            SQLStatement normalizedStmt = SQLUtils.parseStatements(normalized.getSql(), JdbcConstants.MYSQL).get(0);
+            assertEquals(sql, druidOperations(stmt), druidOperations(normalizedStmt));
+        }
+    }
+
+    @Test
+    public void normalize() {
+        assertNormalized("SELECT a.id, b.name FROM `db`.`user` a LEFT JOIN order_item b ON a.id = b.uid WHERE a.id IN (?) AND b.x = ? LIMIT ?, ?",
+                "SELECT a.id, b.name FROM `db`.`user` a left join order_item b on a.id=b.uid where a.id in (1,2,3) and b.x = 'abc' limit 10, 20");
+        assertNormalized("INSERT INTO t(a, b) VALUES (?, ?) ON DUPLICATE KEY UPDATE b = ?, a = VALUES(a)",
+                "insert into t(a,b) values (1,'x'), (2, 'y') on duplicate key update b='y', a = values(a)");
+        assertNormalized("SELECT * FROM t WHERE a = ? AND b = ? - ? AND c = - d", "select * from t where a = -1 and b = 2 - 1 and c = -d");
+        assertNormalized("SELECT count(*) AS \"cnt\" FROM t WHERE id IN (?)", "/*+ hint */ select count(*) as \"cnt\" from t where id in (?, ?)");
+        assertNormalized("INSERT INTO t SET a = ?, b = ?", INSERT_SET_SQL);
+        assertNormalized("SELECT * FROM t WHERE (a, b) IN (?)", "select * from t where (a, b) in ((1, 2), (3, 4))");
+    }
+
+    @Test
+    public void folded() {
+        assertFalse(SqlNormalizer.normalize("select * from t where id = ? and b in (?)").isFolded());
+        assertFalse(SqlNormalizer.normalize("select * from t where id in (?, ?)").isFolded());
+        assertFalse(SqlNormalizer.normalize("insert into t(a, b) values (?, ?), (?, ?)").isFolded());
+        assertTrue(SqlNormalizer.normalize("select * from t where id = 1").isFolded());
+        assertTrue(SqlNormalizer.normalize("select * from t where id in (?, 1)").isFolded());
+        assertTrue(SqlNormalizer.normalize("insert into t(a, b) values (?, ?), (?, 1)").isFolded());
+        // 字面量不同的sql参数化后相同
+        assertEquals(SqlNormalizer.normalize("select * from t where id in (1, 2, 3) and name = 'a'").getSql(),
+                SqlNormalizer.normalize("SELECT * FROM t WHERE id IN (4) AND name = 'bb'").getSql());
+    }
+
+    private static void assertNormalized(String expected, String sql) {
+        assertEquals(expected, SqlNormalizer.normalize(sql).getSql());
+    }
+
+    /**
+     * 词法分析参数化后的sql与druid参数化后再词法分析的结果一致，且参数化结果再次参数化不变
+     */
+    private static void assertParameterized(String sql, SqlNormalizer.NormalizedSql normalized) {
+        String druidParameterized = ParameterizedOutputVisitorUtils.parameterize(sql, JdbcConstants.MYSQL);
+        assertEquals(sql, SqlNormalizer.normalize(druidParameterized).getSql(), normalized.getSql());
+        SqlNormalizer.NormalizedSql again = SqlNormalizer.normalize(normalized.getSql());
+        assertEquals(sql, normalized.getSql(), again.getSql());
+        assertFalse(sql, again.isFolded());
+    }
+
+    private static Map<String, Long> operations(SqlNormalizer.NormalizedSql normalized) {
+        Map<String, Long> operations = new TreeMap<>();
+        for (SqlParseResult.TableOperation operation : normalized.getTableOperations()) {
+            operations.put(operation.getIdentify(), operation.getCount());
+        }
+        return operations;
+    }
+
+    private static Map<String, Long> druidOperations(SQLStatement stmt) {
+        SchemaStatVisitor statVisitor = SQLUtils.createSchemaStatVisitor(JdbcConstants.MYSQL);
+        stmt.accept(statVisitor);
+        Map<String, Long> operations = new TreeMap<>();
+        for (Map.Entry<TableStat.Name, TableStat> entry : statVisitor.getTables().entrySet()) {
+            TableStat tableStat = entry.getValue();
+            put(operations, entry.getKey(), Constants.DbOperation.INSERT, tableStat.getInsertCount());
+            put(operations, entry.getKey(), Constants.DbOperation.UPDATE, tableStat.getUpdateCount());
+            put(operations, entry.getKey(), Constants.DbOperation.SELECT, tableStat.getSelectCount());
+            put(operations, entry.getKey(), Constants.DbOperation.DELETE, tableStat.getDeleteCount());
+        }
+        return operations;
+    }
+
+    private static void put(Map<String, Long> operations, TableStat.Name table, String operation, int count) {
+        if (count > 0) {
+            // druid对部分语句（如insert into `db`.t）保留了反引号，词法分析统一去除
+            operations.put(table.toString().replace("`", "") + Constants.IDENTIFY_SEPARATOR + operation, (long) count);
+        }
+    }
+}
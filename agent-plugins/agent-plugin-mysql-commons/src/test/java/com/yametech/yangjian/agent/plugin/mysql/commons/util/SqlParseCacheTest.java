@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.plugin.mysql.commons.util;
+
+import com.yametech.yangjian.agent.plugin.mysql.commons.bean.SqlParseResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * sql解析缓存的命中、淘汰、hash冲突及禁用
+ */
+public class SqlParseCacheTest {
+    private final List<String> parsed = new ArrayList<>();
+
+    private SqlParseResult parse(String sql) {
+        parsed.add(sql);
+        return new SqlParseResult(sql, Collections.emptyList(), sql, "SQLSelectStatement");
+    }
+
+    @Test
+    public void testHit() {
+        SqlParseCache cache = new SqlParseCache(this::parse, SqlParseCache::hash, 16);
+        SqlParseResult result = cache.get("select 1");
+        assertSame(result, cache.get("select 1"));
+        assertEquals(1, parsed.size());
+        assertEquals(1, cache.getHitNum());
+        assertEquals(1, cache.getMissNum());
+        // 含字面量的sql参数化后与原始sql不同，不缓存
+        SqlParseCache literal = new SqlParseCache(sql -> new SqlParseResult("select ?", null, "select ?", null), SqlParseCache::hash, 16);
+        literal.get("select 2");
+        assertEquals(0, literal.size());
+    }
+
+    @Test
+    public void testNestedLookup() {
+        // 含字面量的sql解析时嵌套查找参数化后的sql，每次外层查找只计数一次
+        SqlParseCache[] holder = new SqlParseCache[1];
+        SqlParseCache cache = new SqlParseCache(sql -> sql.equals("select ?") ? parse(sql) : holder[0].get("select ?"), SqlParseCache::hash, 16);
+        holder[0] = cache;
+        for (int i = 0; i < 10; i++) {
+            assertEquals("select ?", cache.get("select " + i).getSql());
+        }
+        assertEquals(1, parsed.size());
+        assertEquals(9, cache.getHitNum());
+        assertEquals(1, cache.getMissNum());
+    }
+
+    @Test
+    public void testEviction() {
+        SqlParseCache cache = new SqlParseCache(this::parse, SqlParseCache::hash, 8);
+        for (int i = 0; i < 8; i++) {
+            cache.get("select " + i);
+        }
+        assertEquals(8, cache.size());
+        assertEquals(0, cache.getEvictionNum());
+        // 命中过的sql在第一遍淘汰时保留
+        cache.get("select 0");
+        cache.get("select 1");
+        cache.get("select 8");
+        assertEquals(6, cache.size());
+        assertEquals(3, cache.getEvictionNum());
+        parsed.clear();
+        cache.get("select 0");
+        cache.get("select 1");
+        assertTrue(parsed.isEmpty());
+        // 多次插入后大小不超过上限
+        for (int i = 100; i < 200; i++) {
+            cache.get("select " + i);
+        }
+        assertTrue(cache.size() <= 8);
+        assertEquals(109, cache.getEvictionNum() + cache.size());
+    }
+
+    @Test
+    public void testHashCollision() {
+        SqlParseCache cache = new SqlParseCache(this::parse, sql -> 1L, 16);
+        SqlParseResult a = cache.get("select a");
+        SqlParseResult b = cache.get("select b");
+        // hash相同的sql不返回错误的结果，后解析的覆盖旧值
+        assertEquals("select b", b.getSql());
+        assertNotSame(a, b);
+        assertEquals(1, cache.size());
+        assertSame(b, cache.get("select b"));
+        assertEquals("select a", cache.get("select a").getSql());
+        assertEquals(3, parsed.size());
+        assertEquals(1, cache.getHitNum());
+    }
+
+    @Test
+    public void testDisabled() {
+        SqlParseCache cache = new SqlParseCache(this::parse, SqlParseCache::hash, 0);
+        cache.get("select 1");
+        cache.get("select 1");
+        assertEquals(0, cache.size());
+        assertEquals(2, parsed.size());
+        assertEquals(2, cache.getMissNum());
+        // 运行中修改为禁用时清空缓存
+        cache = new SqlParseCache(this::parse, SqlParseCache::hash, 16);
+        cache.get("select 1");
+        assertEquals(1, cache.size());
+        cache.configKeyValue(Collections.singletonMap("mysql.sqlCache.maxSize", "0"));
+        assertEquals(0, cache.size());
+        parsed.clear();
+        cache.get("select 1");
+        assertEquals(1, parsed.size());
+        assertEquals(0, cache.size());
+    }
+}
@@ -16,29 +16,73 @@
 
 package com.yametech.yangjian.agent.plugin.reporter.http;
 
+import com.yametech.yangjian.agent.api.IAppStatusListener;
 import com.yametech.yangjian.agent.api.IConfigReader;
 import com.yametech.yangjian.agent.api.IReport;
+import com.yametech.yangjian.agent.api.ISchedule;
+import com.yametech.yangjian.agent.api.base.IReportData;
 import com.yametech.yangjian.agent.api.bean.ConfigNotifyType;
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.api.common.Config;
+import com.yametech.yangjian.agent.api.common.MultiReportFactory;
 import com.yametech.yangjian.agent.api.common.StringUtil;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.util.BatchHttpSender;
+import com.yametech.yangjian.agent.util.BatchHttpSender.SendResult;
 import com.yametech.yangjian.agent.util.HttpClient;
 import com.yametech.yangjian.agent.util.HttpRequest;
 import com.yametech.yangjian.agent.util.HttpResponse;
+import com.yametech.yangjian.agent.util.spool.DiskSpool;
+import com.yametech.yangjian.agent.util.spool.SpoolBatch;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 默认每条数据一个请求；配置report.{type}.batch.enable=true后，数据放入BatchHttpSender按批量gzip压缩后上报（复用连接、限制并发请求数、失败重试），
+ * 批量上报地址为report.{type}.batch.url，未配置时使用defaultBatchUrl()，都为空时不启用批量上报；
+ * 配置report.{type}.spool.enable=true后，上报失败（含批量队列已满）的数据写入DiskSpool，每秒按写入顺序重放，暂存的数据未重放完时新数据也写入spool以保证顺序；
+ * 4xx（429除外）及编码失败重试也不会成功，计数后丢弃，不写入spool，重放时也跳过，避免一条错误的数据阻塞之后所有数据的上报
+ *
  * @author dengliming
  */
-public abstract class AbstractHttpReporter implements IReport, IConfigReader {
+public abstract class AbstractHttpReporter implements IReport, IConfigReader, IAppStatusListener, ISchedule {
+    private static final ILogger LOG = LoggerFactory.getLogger(AbstractHttpReporter.class);
+    /**
+     * 每次调度最多重放的批次数
+     */
+    private static final int MAX_REPLAY_BATCH = 20;
+    /**
+     * spool监控数据上报间隔（调度次数，即秒）
+     */
+    private static final int SPOOL_METRIC_INTERVAL = 10;
 
     /**
      * 上报的URL
      */
     protected String url;
+    private volatile BatchHttpSender batchSender;
+    private String batchConfig;
+    private volatile DiskSpool spool;
+    private String spoolConfig;
+    private int replayRecords = 500;
+    private long replayNum;
+    private final AtomicLong droppedNum = new AtomicLong();
+    private long lastAppendNum;
+    private long lastEvictedNum;
+    private int executeNum;
+    private IReportData metricReport;
 
     @Override
     public Set<String> configKey() {
@@ -46,7 +90,9 @@ public abstract class AbstractHttpReporter implements IReport, IConfigReader {
         if (urlConfigKey == null) {
             return null;
         }
-        return new HashSet<>(Arrays.asList(urlConfigKey.replaceAll("\\.", "\\\\.")));
+        return new HashSet<>(Arrays.asList(urlConfigKey.replaceAll("\\.", "\\\\."),
+                batchConfigPrefix().replaceAll("\\.", "\\\\.") + ".*",
+                spoolConfigPrefix().replaceAll("\\.", "\\\\.") + ".*"));
     }
 
     @Override
@@ -58,20 +104,155 @@ public abstract class AbstractHttpReporter implements IReport, IConfigReader {
         if (kv.containsKey(urlConfigKey)) {
             url = kv.get(urlConfigKey);
         }
+        refreshBatchSender(kv);
+        refreshSpool(kv);
+    }
+
+    /**
+     * 批量配置变化时重新创建BatchHttpSender，未变化时保留原实例
+     */
+    private synchronized void refreshBatchSender(Map<String, String> kv) {
+        String prefix = batchConfigPrefix();
+        boolean enable = Boolean.parseBoolean(kv.get(prefix + "enable"));
+        String batchUrl = kv.getOrDefault(prefix + "url", StringUtil.isEmpty(url) ? null : defaultBatchUrl());
+        String config = enable && !StringUtil.isEmpty(batchUrl) ? batchUrl + kv.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .map(Object::toString).sorted().reduce("", String::concat) : null;
+        if (config == null ? batchConfig == null : config.equals(batchConfig)) {
+            return;
+        }
+        BatchHttpSender oldSender = batchSender;
+        batchSender = null;
+        batchConfig = config;
+        if (config != null) {
+            try {
+                batchSender = BatchHttpSender.create(batchUrl)
+                        .format(batchFormat())
+                        .maxBatchRecords(Integer.parseInt(kv.getOrDefault(prefix + "maxRecords", "500")))
+                        .maxBatchBytes(Integer.parseInt(kv.getOrDefault(prefix + "maxBytes", "524288")))
+                        .lingerMillis(Long.parseLong(kv.getOrDefault(prefix + "lingerMillis", "1000")))
+                        .maxInFlight(Integer.parseInt(kv.getOrDefault(prefix + "maxInFlight", "2")))
+                        .maxRetries(Integer.parseInt(kv.getOrDefault(prefix + "maxRetries", "3")))
+                        .gzip(Boolean.parseBoolean(kv.getOrDefault(prefix + "gzip", "true")))
+                        .queueSize(Integer.parseInt(kv.getOrDefault(prefix + "queueSize", "10000")))
+                        .onFailure(records -> records.forEach(this::spoolRecord))
+                        .build();
+            } catch (NumberFormatException e) {
+                LOG.warn("{}批量上报配置错误，使用单条上报：{}", type(), e.getMessage());
+            }
+        }
+        if (oldSender != null) {
+            oldSender.close(Duration.ofSeconds(3));
+        }
+    }
+
+    private String batchConfigPrefix() {
+        return "report." + type() + ".batch.";
+    }
+
+    /**
+     * spool配置变化时关闭原实例（已暂存的数据保留在原目录，使用相同目录时重新打开后继续重放）并按新配置打开
+     */
+    private synchronized void refreshSpool(Map<String, String> kv) {
+        String prefix = spoolConfigPrefix();
+        String config = Boolean.parseBoolean(kv.get(prefix + "enable")) ? kv.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .map(Object::toString).sorted().reduce("", String::concat) : null;
+        if (config == null ? spoolConfig == null : config.equals(spoolConfig)) {
+            return;
+        }
+        closeSpool();
+        spoolConfig = config;
+        if (config == null) {
+            return;
+        }
+        String serviceName = Config.SERVICE_NAME.getValue();
+        String dir = kv.getOrDefault(prefix + "dir", Paths.get(System.getProperty("java.io.tmpdir"), "yangjian-spool",
+                StringUtil.isEmpty(serviceName) ? "default" : serviceName, type()).toString());
+        try {
+            replayRecords = Math.max(1, Integer.parseInt(kv.getOrDefault(prefix + "replayRecords", "500")));
+            spool = new DiskSpool(Paths.get(dir), Long.parseLong(kv.getOrDefault(prefix + "maxBytes", "268435456")),
+                    Integer.parseInt(kv.getOrDefault(prefix + "segmentBytes", "8388608")));
+            lastAppendNum = 0;
+            lastEvictedNum = 0;
+            LOG.info("{}启用spool：{}，待重放{}条", type(), dir, spool.getDepth());
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn(e, "{}spool打开失败，上报失败的数据将丢弃：{}", type(), dir);
+        }
+    }
+
+    private void closeSpool() {
+        DiskSpool oldSpool = spool;
+        spool = null;
+        if (oldSpool != null) {
+            try {
+                oldSpool.close();
+            } catch (IOException e) {
+                LOG.warn(e, "{}spool关闭失败", type());
+            }
+        }
+    }
+
+    private String spoolConfigPrefix() {
+        return "report." + type() + ".spool.";
+    }
+
+    /**
+     * @return 未配置批量上报地址时使用的地址，默认为null（需配置report.{type}.batch.url）
+     */
+    protected String defaultBatchUrl() {
+        return null;
+    }
+
+    /**
+     * @return 批量上报的请求体格式，默认为MetricData的二进制编码（MetricEncoder）
+     */
+    protected BatchHttpSender.BatchFormat batchFormat() {
+        return BatchHttpSender.BatchFormat.METRIC;
     }
 
     public abstract String getConfigKey();
 
     @Override
     public boolean report(Object data) {
-        if (StringUtil.isEmpty(url) || data == null) {
+        if (data == null) {
             return false;
         }
+        DiskSpool currentSpool = spool;
+        if (currentSpool != null && currentSpool.getDepth() > 0) {
+            return spoolRecord(data.toString());
+        }
+        BatchHttpSender sender = batchSender;
+        if (sender != null) {
+            return sender.offer(data) || spoolRecord(data.toString());
+        }
+        String record = data.toString();
+        SendResult result = post(record);
+        return result == SendResult.SUCCESS || (result == SendResult.RETRY && spoolRecord(record));
+    }
+
+    private SendResult post(String record) {
+        if (StringUtil.isEmpty(url)) {
+            return SendResult.RETRY;
+        }
 
         HttpResponse httpResponse = HttpClient.doHttpRequest(new HttpRequest(url, HttpRequest.HttpMethod.POST)
-                .setDatas(data.toString()));
+                .setDatas(record));
         // 返回2XX即认为成功
-        return httpResponse != null && httpResponse.is2xxSuccessful();
+        SendResult result = httpResponse == null ? SendResult.RETRY : SendResult.of(httpResponse.getCode());
+        if (result == SendResult.DROP) {
+            droppedNum.getAndIncrement();
+            LOG.warn("{}上报失败({})，丢弃数据", type(), httpResponse.getCode());
+        }
+        return result;
+    }
+
+    /**
+     * @return 是否写入spool，未启用spool时返回false
+     */
+    private boolean spoolRecord(String record) {
+        DiskSpool currentSpool = spool;
+        return currentSpool != null && currentSpool.append(record.getBytes(StandardCharsets.UTF_8));
     }
 
     @Override
@@ -88,4 +269,101 @@ public abstract class AbstractHttpReporter implements IReport, IConfigReader {
     public ConfigNotifyType notifyType() {
         return ConfigNotifyType.ALWAYS;
     }
+
+    @Override
+    public int interval() {
+        return 1;
+    }
+
+    /**
+     * 重放spool中的数据，遇到可重试的失败时停止，下次调度继续，不可重试的数据丢弃后继续；定期上报spool深度
+     */
+    @Override
+    public void execute() {
+        DiskSpool currentSpool = spool;
+        if (currentSpool == null) {
+            return;
+        }
+        for (int i = 0; i < MAX_REPLAY_BATCH && currentSpool.getDepth() > 0; i++) {
+            SpoolBatch batch = currentSpool.peek(replayRecords);
+            List<String> datas = new ArrayList<>(batch.size());
+            for (byte[] record : batch.getRecords()) {
+                datas.add(new String(record, StandardCharsets.UTF_8));
+            }
+            int sent = replay(datas);
+            currentSpool.commit(batch.head(sent));
+            replayNum += sent;
+            if (sent < datas.size()) {
+                break;
+            }
+        }
+        currentSpool.flush();
+        if (++executeNum % SPOOL_METRIC_INTERVAL == 0) {
+            reportSpoolMetric(currentSpool);
+        }
+    }
+
+    /**
+     * @return 按顺序处理完成（发送成功或因不可重试被丢弃）的条数
+     */
+    private int replay(List<String> datas) {
+        BatchHttpSender sender = batchSender;
+        if (sender != null) {
+            SendResult result = sender.sendBatch(datas);
+            if (result == SendResult.DROP) {
+                droppedNum.getAndAdd(datas.size());
+            }
+            return result == SendResult.RETRY ? 0 : datas.size();
+        }
+        for (int i = 0; i < datas.size(); i++) {
+            if (post(datas.get(i)) == SendResult.RETRY) {
+                return i;
+            }
+        }
+        return datas.size();
+    }
+
+    private void reportSpoolMetric(DiskSpool currentSpool) {
+        if (metricReport == null) {
+            metricReport = MultiReportFactory.getReport("collect");
+        }
+        long appendNum = currentSpool.getAppendNum();
+        long evictedNum = currentSpool.getEvictedNum();
+        Map<String, Object> params = new HashMap<>();
+        params.put("sign", type());
+        params.put("depth", currentSpool.getDepth());
+        params.put("depth_bytes", currentSpool.getDepthBytes());
+        params.put("segment_num", currentSpool.getSegmentNum());
+        params.put("append_num", appendNum - lastAppendNum);
+        params.put("evicted_num", evictedNum - lastEvictedNum);
+        params.put("replay_num", replayNum);
+        params.put("dropped_num", droppedNum.getAndSet(0));
+        params.put("period_seconds", SPOOL_METRIC_INTERVAL);
+        lastAppendNum = appendNum;
+        lastEvictedNum = evictedNum;
+        replayNum = 0;
+        metricReport.report(MetricData.get(null, "statistic/report/spool", params));
+    }
+
+    @Override
+    public void beforeRun() {
+    }
+
+    /**
+     * 先关闭批量发送（发送失败的数据写入spool），再关闭spool
+     */
+    @Override
+    public boolean shutdown(Duration duration) {
+        BatchHttpSender sender = batchSender;
+        boolean success = sender == null || sender.close(duration);
+        synchronized (this) {
+            closeSpool();
+        }
+        return success;
+    }
+
+    @Override
+    public int weight() {
+        return IAppStatusListener.super.weight() + 80;// 高于ReportListener的权重，异步上报队列处理完后再关闭
+    }
 }
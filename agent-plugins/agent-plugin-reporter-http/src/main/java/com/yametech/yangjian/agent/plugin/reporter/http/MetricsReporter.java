@@ -33,4 +33,12 @@ public class MetricsReporter extends AbstractHttpReporter {
     public String getConfigKey() {
         return "report.http-statistic.url";
     }
+
+    /**
+     * agent-server的单条上报接口为/report，批量上报接口为/report/batch
+     */
+    @Override
+    protected String defaultBatchUrl() {
+        return url + "/batch";
+    }
 }
@@ -15,6 +15,8 @@
  */
 package com.yametech.yangjian.agent.plugin.reporter.http;
 
+import com.yametech.yangjian.agent.util.BatchHttpSender;
+
 /**
  * HTTP上报
  * <p>
@@ -35,4 +37,20 @@ public class TraceReporter extends AbstractHttpReporter {
         return "report.http-span.url";
     }
 
+    /**
+     * zipkin的span上报接口支持一次上报多个span及gzip压缩
+     */
+    @Override
+    protected String defaultBatchUrl() {
+        return url;
+    }
+
+    /**
+     * 每条数据为zipkin格式的span数组，批量上报时合并为一个数组
+     */
+    @Override
+    protected BatchHttpSender.BatchFormat batchFormat() {
+        return BatchHttpSender.BatchFormat.JSON_ARRAY;
+    }
+
 }
@@ -16,12 +16,27 @@
 package com.yametech.yangjian.agent.server.controller;
 
 import com.yametech.yangjian.agent.server.storage.DiskMetricStore;
+import com.yametech.yangjian.agent.util.codec.MetricCodec;
+import com.yametech.yangjian.agent.util.codec.MetricDecoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.yametech.yangjian.agent.server.model.MetricsParameter.*;
 
 /**
  * 供探针客户端通过Http方式上报
@@ -32,6 +47,7 @@ import java.util.Map;
 @RestController
 public class ReportController extends BaseController {
 
+    private static final String STATUS_PREFIX = "status/";
     private final DiskMetricStore diskMetricStore;
 
     public ReportController(DiskMetricStore diskMetricStore) {
@@ -42,12 +58,88 @@ public class ReportController extends BaseController {
     public String report(@RequestParam Map<String, Object> map, HttpServletRequest request) {
         String ip = getRequestIp(request);
         map.put("ip", ip);
+        write(map);
+        return "ok";
+    }
+
+    /**
+     * 批量上报（BatchHttpSender），请求头Content-Encoding为gzip时先解压；
+     * Content-Type为MetricCodec.CONTENT_TYPE时按MetricDecoder解码，否则每行一条与/report相同格式（表单编码）的数据
+     */
+    @PostMapping(value = "/report/batch")
+    public String batchReport(HttpServletRequest request) throws IOException {
+        String ip = getRequestIp(request);
+        InputStream input = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+            input = new GZIPInputStream(input);
+        }
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith(MetricCodec.CONTENT_TYPE)) {
+            try (InputStream body = input) {
+                decodeMetrics(body, ip);
+            }
+            return "ok";
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> map = parseForm(line);
+                map.put("ip", ip);
+                write(map);
+            }
+        }
+        return "ok";
+    }
+
+    private void decodeMetrics(InputStream input, String ip) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = input.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, length);
+        }
+        new MetricDecoder().decode(ByteBuffer.wrap(bytes.toByteArray()), metric -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            if (metric.getParams() != null) {
+                map.putAll(metric.getParams());
+            }
+            map.put(PARAM_DATA_TYPE_KEY, dataType(metric.getMetricType()));
+            map.put(PARAM_SERVICE_NAME_KEY, metric.getServiceName());
+            map.put(PARAM_SECOND_KEY, metric.getSecond());
+            map.put(PARAM_IP_KEY, ip);
+            write(map);
+        });
+    }
+
+    /**
+     * 探针中状态类数据的metricType带status/前缀（如status/resources），dataType不带前缀
+     */
+    private String dataType(String metricType) {
+        return metricType != null && metricType.startsWith(STATUS_PREFIX) ? metricType.substring(STATUS_PREFIX.length()) : metricType;
+    }
+
+    private Map<String, Object> parseForm(String line) throws UnsupportedEncodingException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String kv : line.split("&")) {
+            int index = kv.indexOf('=');
+            if (index <= 0) {
+                continue;
+            }
+            map.put(URLDecoder.decode(kv.substring(0, index), StandardCharsets.UTF_8.name()),
+                    URLDecoder.decode(kv.substring(index + 1), StandardCharsets.UTF_8.name()));
+        }
+        return map;
+    }
+
+    private void write(Map<String, Object> map) {
         StringBuilder builder = new StringBuilder();
         for (Map.Entry<String, Object> param : map.entrySet()) {
             builder.append(param.getKey()).append('=').append(param.getValue()).append('&');
         }
         builder.deleteCharAt(builder.length() - 1);
         diskMetricStore.write(builder.toString());
-        return "ok";
     }
 }
@@ -45,7 +45,10 @@ public class MetricsExporter extends Collector {
 
     public MetricsExporter(DiskMetricStore diskMetricStore) {
         metricsResolvers.add(new ThreadMetricsResolver());
+        metricsResolvers.add(new ThreadTopMetricsResolver());
+        metricsResolvers.add(new LockTopMetricsResolver());
         metricsResolvers.add(new JVMGcMetricsResolver());
+        metricsResolvers.add(new GcPauseMetricsResolver());
         metricsResolvers.add(new ClassMetricsResolver());
         metricsResolvers.add(new PoolMetricsResolver());
         metricsResolvers.add(new StatisticsMetricsResolver());
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.resolver;
+
+import com.yametech.yangjian.agent.server.metric.GaugeMetricFamily;
+import com.yametech.yangjian.agent.server.model.MetricsParameter;
+import io.prometheus.client.Collector;
+import org.apache.commons.collections4.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按回收器及GC原因统计的GC耗时分布
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class GcPauseMetricsResolver implements IMetricsResolver<MetricsParameter, List<Collector.MetricFamilySamples>> {
+
+    private static final List<String> LABEL_NAMES = Arrays.asList("serviceName", "instance", "gc", "cause", "kind");
+    private static final List<String> BUCKET_LABEL_NAMES = Arrays.asList("serviceName", "instance", "gc", "cause", "kind", "le");
+    private static final String BUCKET_PREFIX = "le_";
+
+    @Override
+    public boolean supports(MetricsParameter metricsParameter) {
+        if (metricsParameter == null || metricsParameter.getParams() == null) {
+            return false;
+        }
+        return metricsParameter.getParams().containsKey("gc_kind");
+    }
+
+    /**
+     * gc_name=G1 Young Generation&gc_cause=G1 Evacuation Pause&gc_kind=minor&count=3&time_total=12&time_max=8&le_1=1&le_2=1&le_5=2&le_10=3&...&le_inf=3&interval=5&serviceName=test&second=1587866400&ip=127.0.0.1
+     *
+     * @param metricsParameter
+     * @return
+     */
+    @Override
+    public List<Collector.MetricFamilySamples> resolve(MetricsParameter metricsParameter) {
+        long t = metricsParameter.getTimestamp();
+        Map<String, Object> params = metricsParameter.getParams();
+        List<String> labelValues = Arrays.asList(metricsParameter.getServiceName(), metricsParameter.getInstance(),
+                MapUtils.getString(params, "gc_name", ""), MapUtils.getString(params, "gc_cause", ""),
+                MapUtils.getString(params, "gc_kind", ""));
+        List<Collector.MetricFamilySamples> sampleFamilies = new ArrayList<>();
+        sampleFamilies.add(new GaugeMetricFamily("jvm_gc_pause_count", "GC count in the interval",
+                LABEL_NAMES, labelValues, MapUtils.getLongValue(params, "count", 0L), t));
+        sampleFamilies.add(new GaugeMetricFamily("jvm_gc_pause_time_total", "GC time(ms) in the interval",
+                LABEL_NAMES, labelValues, MapUtils.getLongValue(params, "time_total", 0L), t));
+        sampleFamilies.add(new GaugeMetricFamily("jvm_gc_pause_time_max", "Max GC time(ms) in the interval",
+                LABEL_NAMES, labelValues, MapUtils.getLongValue(params, "time_max", 0L), t));
+
+        GaugeMetricFamily bucketFamily = new GaugeMetricFamily("jvm_gc_pause_bucket",
+                "GC count with time(ms) less than or equal to le in the interval", BUCKET_LABEL_NAMES);
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (!entry.getKey().startsWith(BUCKET_PREFIX)) {
+                continue;
+            }
+            String le = entry.getKey().substring(BUCKET_PREFIX.length());
+            List<String> bucketLabelValues = new ArrayList<>(labelValues);
+            bucketLabelValues.add("inf".equals(le) ? "+Inf" : le);
+            bucketFamily.addMetric(bucketLabelValues, MapUtils.getLongValue(params, entry.getKey(), 0L), t);
+        }
+        sampleFamilies.add(bucketFamily);
+        return sampleFamilies;
+    }
+}
@@ -33,6 +33,9 @@ import java.util.Map;
 public class JVMGcMetricsResolver implements IMetricsResolver<MetricsParameter, List<Collector.MetricFamilySamples>> {
 
     private static final List<String> LABEL_NAMES = Arrays.asList("serviceName", "instance", "type");
+    private static final List<String> POOL_LABEL_NAMES = Arrays.asList("serviceName", "instance", "pool");
+    private static final String ALLOCATION_RATE_SUFFIX = "_allocation_rate";
+    private static final String PROMOTION_RATE_SUFFIX = "_promotion_rate";
 
     @Override
     public boolean supports(MetricsParameter metricsParameter) {
@@ -64,6 +67,41 @@ public class JVMGcMetricsResolver implements IMetricsResolver<MetricsParameter,
         gcTimeFamily.addMetric(Arrays.asList(serviceName, instance, "full_gc_time"), MapUtils.getIntValue(params, "full_gc_time", 0), t);
         gcTimeFamily.addMetric(Arrays.asList(serviceName, instance, "young_gc_time"), MapUtils.getIntValue(params, "young_gc_time", 0), t);
         sampleFamilies.add(gcTimeFamily);
+
+        GaugeMetricFamily allocationRateFamily = new GaugeMetricFamily("jvm_gc_pool_allocation_rate", "jvm_gc_pool_allocation_rate", POOL_LABEL_NAMES);
+        GaugeMetricFamily promotionRateFamily = new GaugeMetricFamily("jvm_gc_pool_promotion_rate", "jvm_gc_pool_promotion_rate", POOL_LABEL_NAMES);
+        for (String key : params.keySet()) {
+            if (key.endsWith(ALLOCATION_RATE_SUFFIX)) {
+                String pool = key.substring(0, key.length() - ALLOCATION_RATE_SUFFIX.length());
+                if (!isYoungPool(pool)) {
+                    continue;
+                }
+                allocationRateFamily.addMetric(Arrays.asList(serviceName, instance, pool), MapUtils.getLongValue(params, key, 0L), t);
+            } else if (key.endsWith(PROMOTION_RATE_SUFFIX)) {
+                String pool = key.substring(0, key.length() - PROMOTION_RATE_SUFFIX.length());
+                if (!isOldPool(pool)) {
+                    continue;
+                }
+                promotionRateFamily.addMetric(Arrays.asList(serviceName, instance, pool), MapUtils.getLongValue(params, key, 0L), t);
+            }
+        }
+        sampleFamilies.add(allocationRateFamily);
+        sampleFamilies.add(promotionRateFamily);
         return sampleFamilies;
     }
+
+    /**
+     * 分配速率只对年轻代（eden）有意义，单代的堆（如zheap、shenandoah）没有分代名称，也按年轻代处理
+     */
+    private static boolean isYoungPool(String pool) {
+        return pool.contains("eden") || pool.contains("young")
+                || !(isOldPool(pool) || pool.contains("survivor"));
+    }
+
+    /**
+     * 晋升速率只对老年代有意义
+     */
+    private static boolean isOldPool(String pool) {
+        return pool.contains("old") || pool.contains("tenured");
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.resolver;
+
+/**
+ * 标签值处理：线程名、锁类名等由应用决定的值作为标签时，去掉空白及控制字符并限制长度，避免时序数量及单个标签过大
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class LabelValueUtil {
+    public static final int MAX_LENGTH = 64;
+
+    private LabelValueUtil() {
+    }
+
+    /**
+     * 空白及控制字符替换为'_'，超过maxLength时截断
+     *
+     * @param value     标签值，为null时返回空字符串
+     * @param maxLength 最大长度
+     * @return 处理后的标签值
+     */
+    public static String normalize(String value, int maxLength) {
+        if (value == null) {
+            return "";
+        }
+        int length = Math.min(value.length(), maxLength);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            builder.append(Character.isWhitespace(c) || Character.isISOControl(c) ? '_' : c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.resolver;
+
+import com.yametech.yangjian.agent.server.metric.GaugeMetricFamily;
+import com.yametech.yangjian.agent.server.model.MetricsParameter;
+import io.prometheus.client.Collector;
+import org.apache.commons.collections4.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 按竞争时间及次数排序的前N个synchronized锁、java.util.concurrent锁，不使用排名作为标签，
+ * 持有者栈帧去掉行号，锁类名及栈帧去掉空白字符并限制长度
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class LockTopMetricsResolver implements IMetricsResolver<MetricsParameter, List<Collector.MetricFamilySamples>> {
+
+    private static final int MAX_LENGTH = 128;
+
+    private static final Pattern LINE_NUMBER = Pattern.compile(":\\d+$");
+
+    private static final List<String> LABEL_NAMES = Arrays.asList("serviceName", "instance", "type", "lock", "ownerFrame");
+
+    @Override
+    public boolean supports(MetricsParameter metricsParameter) {
+        if (metricsParameter == null || metricsParameter.getParams() == null) {
+            return false;
+        }
+        return metricsParameter.getParams().containsKey("owner_frame");
+    }
+
+    /**
+     * type=monitor&lock=com.example.Cache&owner_frame=com.example.Cache.refresh:120&threads=3&blocked_count=25&blocked_time=1520&waited_count=0&waited_time=0&interval=10&serviceName=test&second=1587952800&ip=127.0.0.1
+     *
+     * @param metricsParameter
+     * @return
+     */
+    @Override
+    public List<Collector.MetricFamilySamples> resolve(MetricsParameter metricsParameter) {
+        long t = metricsParameter.getTimestamp();
+        Map<String, Object> params = metricsParameter.getParams();
+        List<String> labelValues = Arrays.asList(metricsParameter.getServiceName(), metricsParameter.getInstance(),
+                MapUtils.getString(params, "type", ""),
+                LabelValueUtil.normalize(MapUtils.getString(params, "lock"), MAX_LENGTH),
+                LabelValueUtil.normalize(stripLineNumber(MapUtils.getString(params, "owner_frame")), MAX_LENGTH));
+        List<Collector.MetricFamilySamples> sampleFamilies = new ArrayList<>();
+        sampleFamilies.add(new GaugeMetricFamily("lock_top_threads", "Thread number waiting for the lock",
+                LABEL_NAMES, labelValues, MapUtils.getIntValue(params, "threads", 0), t));
+        sampleFamilies.add(new GaugeMetricFamily("lock_top_contention_count", "Blocked or waited count in the interval",
+                LABEL_NAMES, labelValues, MapUtils.getLongValue(params, "blocked_count", 0L) + MapUtils.getLongValue(params, "waited_count", 0L), t));
+        sampleFamilies.add(new GaugeMetricFamily("lock_top_contention_time", "Blocked or waited time(ms) in the interval",
+                LABEL_NAMES, labelValues, MapUtils.getLongValue(params, "blocked_time", 0L) + MapUtils.getLongValue(params, "waited_time", 0L), t));
+        return sampleFamilies;
+    }
+
+    /**
+     * 去掉栈帧末尾的行号，如com.example.Cache.refresh:120为com.example.Cache.refresh
+     */
+    private static String stripLineNumber(String frame) {
+        return frame == null ? null : LINE_NUMBER.matcher(frame).replaceFirst("");
+    }
+}
@@ -116,6 +116,42 @@ public class ProcessMetricsResolver implements IMetricsResolver<MetricsParameter
                 "The survivor memory in the process",
                 LABEL_NAMES, labelValues,
                 MapUtils.getInteger(params, "survivor", 0), timestamp));
+
+        sampleFamilies.add(new GaugeMetricFamily(
+                "process_memory_swap",
+                "Swap usage of the process",
+                LABEL_NAMES, labelValues,
+                MapUtils.getLongValue(params, "memory_swap", 0L), timestamp));
+
+        sampleFamilies.add(new GaugeMetricFamily(
+                "process_voluntary_ctxt_switches",
+                "Voluntary context switches in the interval",
+                LABEL_NAMES, labelValues,
+                MapUtils.getLongValue(params, "voluntary_ctxt_switches", 0L), timestamp));
+
+        sampleFamilies.add(new GaugeMetricFamily(
+                "process_nonvoluntary_ctxt_switches",
+                "Nonvoluntary context switches in the interval",
+                LABEL_NAMES, labelValues,
+                MapUtils.getLongValue(params, "nonvoluntary_ctxt_switches", 0L), timestamp));
+
+        sampleFamilies.add(new GaugeMetricFamily(
+                "process_io_read_bytes",
+                "Bytes read from storage in the interval",
+                LABEL_NAMES, labelValues,
+                MapUtils.getLongValue(params, "io_read_bytes", 0L), timestamp));
+
+        sampleFamilies.add(new GaugeMetricFamily(
+                "process_io_write_bytes",
+                "Bytes written to storage in the interval",
+                LABEL_NAMES, labelValues,
+                MapUtils.getLongValue(params, "io_write_bytes", 0L), timestamp));
+
+        sampleFamilies.add(new GaugeMetricFamily(
+                "process_run_queue_wait",
+                "Time(ms) spent waiting on the run queue in the interval",
+                LABEL_NAMES, labelValues,
+                MapUtils.getLongValue(params, "run_queue_wait", 0L), timestamp));
         return sampleFamilies;
     }
 }
@@ -38,6 +38,7 @@ public class StatisticsMetricsResolver implements IMetricsResolver<MetricsParame
 
     private static Pattern TYPE_PATTERN = Pattern.compile("statistic/(.*)/RT");
     private static final List<String> LABEL_NAME = Arrays.asList("serviceName", "instance", "type", "sign");
+    private static final List<String> FOLD_LABEL_NAME = Arrays.asList("serviceName", "instance", "type");
 
     @Override
     public boolean supports(MetricsParameter metricsParameter) {
@@ -70,6 +71,13 @@ public class StatisticsMetricsResolver implements IMetricsResolver<MetricsParame
         GaugeMetricFamily rtMetricFamily = new GaugeMetricFamily("response_time", "RT", LABEL_NAME);
         rtMetricFamily.addMetric(Arrays.asList(serviceName, instance, type, sign), num > 0 ? rtTotal / num * 1.0 : 0, metricsParameter.getTimestamp());
         sampleFamilies.add(rtMetricFamily);
+
+        // 标识数超过上限时，淘汰合并到__other__的次数
+        if (params.containsKey("fold_num")) {
+            GaugeMetricFamily foldMetricFamily = new GaugeMetricFamily("identify_fold_count", "Identify fold count", FOLD_LABEL_NAME);
+            foldMetricFamily.addMetric(Arrays.asList(serviceName, instance, type), MapUtils.getLongValue(params, "fold_num", 0), metricsParameter.getTimestamp());
+            sampleFamilies.add(foldMetricFamily);
+        }
         return sampleFamilies;
     }
 
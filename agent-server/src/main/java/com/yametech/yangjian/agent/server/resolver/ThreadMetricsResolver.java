@@ -79,6 +79,29 @@ public class ThreadMetricsResolver implements IMetricsResolver<MetricsParameter,
         threadStateFamily.addMetric(Arrays.asList(Thread.State.TIMED_WAITING.name(), serviceName, instance), MapUtils.getIntValue(params, "thread_timed_waiting", 0), metricsParameter.getTimestamp());
         threadStateFamily.addMetric(Arrays.asList(Thread.State.TERMINATED.name(), serviceName, instance), MapUtils.getIntValue(params, "thread_terminated", 0), metricsParameter.getTimestamp());
         sampleFamilies.add(threadStateFamily);
+
+        if (params.containsKey("thread_blocked_count")) {
+            GaugeMetricFamily blockedCountFamily = new GaugeMetricFamily(
+                    "jvm_threads_blocked_count",
+                    "Blocked count of all threads in the interval",
+                    Arrays.asList("serviceName", "instance"));
+            blockedCountFamily.addMetric(Arrays.asList(serviceName, instance), MapUtils.getLongValue(params, "thread_blocked_count", 0L), metricsParameter.getTimestamp());
+            sampleFamilies.add(blockedCountFamily);
+
+            GaugeMetricFamily blockedTimeFamily = new GaugeMetricFamily(
+                    "jvm_threads_blocked_time",
+                    "Blocked time(ms) of all threads in the interval",
+                    Arrays.asList("serviceName", "instance"));
+            blockedTimeFamily.addMetric(Arrays.asList(serviceName, instance), MapUtils.getLongValue(params, "thread_blocked_time", 0L), metricsParameter.getTimestamp());
+            sampleFamilies.add(blockedTimeFamily);
+
+            GaugeMetricFamily deadlockedFamily = new GaugeMetricFamily(
+                    "jvm_threads_deadlocked",
+                    "Deadlocked thread count of a JVM",
+                    Arrays.asList("serviceName", "instance"));
+            deadlockedFamily.addMetric(Arrays.asList(serviceName, instance), MapUtils.getIntValue(params, "thread_deadlocked", 0), metricsParameter.getTimestamp());
+            sampleFamilies.add(deadlockedFamily);
+        }
         return sampleFamilies;
     }
 }
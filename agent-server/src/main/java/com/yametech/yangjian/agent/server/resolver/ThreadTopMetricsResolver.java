@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.resolver;
+
+import com.yametech.yangjian.agent.server.metric.GaugeMetricFamily;
+import com.yametech.yangjian.agent.server.model.MetricsParameter;
+import io.prometheus.client.Collector;
+import org.apache.commons.collections4.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按CPU时间及内存分配排序的前N个线程池、线程，不使用排名作为标签，线程名去掉空白字符并限制长度
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class ThreadTopMetricsResolver implements IMetricsResolver<MetricsParameter, List<Collector.MetricFamilySamples>> {
+
+    private static final List<String> LABEL_NAMES = Arrays.asList("serviceName", "instance", "scope", "sortBy", "name");
+
+    @Override
+    public boolean supports(MetricsParameter metricsParameter) {
+        if (metricsParameter == null || metricsParameter.getParams() == null) {
+            return false;
+        }
+        return metricsParameter.getParams().containsKey("sort_by");
+    }
+
+    /**
+     * scope=pool&sort_by=cpu&name=http-nio-8080-exec&threads=200&cpu_time=1520&cpu_usage=15.2&allocated=10485760&allocation_rate=1048576&interval=10&serviceName=test&second=1587952800&ip=127.0.0.1
+     *
+     * @param metricsParameter
+     * @return
+     */
+    @Override
+    public List<Collector.MetricFamilySamples> resolve(MetricsParameter metricsParameter) {
+        long t = metricsParameter.getTimestamp();
+        Map<String, Object> params = metricsParameter.getParams();
+        List<String> labelValues = Arrays.asList(metricsParameter.getServiceName(), metricsParameter.getInstance(),
+                MapUtils.getString(params, "scope", ""), MapUtils.getString(params, "sort_by", ""),
+                LabelValueUtil.normalize(MapUtils.getString(params, "name"), LabelValueUtil.MAX_LENGTH));
+        List<Collector.MetricFamilySamples> sampleFamilies = new ArrayList<>();
+        sampleFamilies.add(new GaugeMetricFamily("thread_top_cpu_usage_percent", "Cpu usage percent of one core",
+                LABEL_NAMES, labelValues, MapUtils.getDoubleValue(params, "cpu_usage", 0.0), t));
+        sampleFamilies.add(new GaugeMetricFamily("thread_top_allocation_rate", "Allocation rate(byte/s)",
+                LABEL_NAMES, labelValues, MapUtils.getLongValue(params, "allocation_rate", 0L), t));
+        sampleFamilies.add(new GaugeMetricFamily("thread_top_threads", "Thread number of the pool",
+                LABEL_NAMES, labelValues, MapUtils.getIntValue(params, "threads", 0), t));
+        return sampleFamilies;
+    }
+}
@@ -26,6 +26,10 @@ public class MetricFile {
     private String fileName;
     private int day;
     private int num;
+    /**
+     * 文件的唯一标识，文件重命名后不变
+     */
+    private String fileKey;
 
     public MetricFile(String fileName, int day, int num) {
         this.fileName = fileName;
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 按字节偏移增量读取指标文件，每次从上次读取的完整行之后继续读取，不再从文件开头跳过已读取的行
+ * 文件由log4j2滚动生成：当前写入的文件为metrics.log，滚动时重命名为metrics.yyyyMMdd.N.log（N越大越新）
+ * 读取时持有已打开的FileChannel，文件被重命名后仍读取原文件，读完后按顺序切换到下一个文件，最后一行未写完整时下次重新读取
+ * 非线程安全
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class MetricFileReader implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricFileReader.class);
+    private static final Pattern LOG_NAME_PATTERN = Pattern.compile("metrics\\.(\\d{8})\\.(\\d+)\\.log");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final Path directory;
+    private final String activeName;
+    private final ByteBuffer buffer;
+    // 跨buffer的行
+    private byte[] lineBuffer = new byte[1024];
+    private int lineLength;
+    private FileChannel channel;
+    private String fileName;
+    private String fileKey;
+    private long offset;
+
+    public MetricFileReader(Path directory, String activeName) {
+        this(directory, activeName, BUFFER_SIZE);
+    }
+
+    MetricFileReader(Path directory, String activeName, int bufferSize) {
+        this.directory = directory;
+        this.activeName = activeName;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * 从保存的位置继续读取，优先按fileKey查找（文件可能已被重命名），找不到时按文件名查找，都找不到时从最早的文件开始读取
+     *
+     * @param position
+     * @throws IOException
+     */
+    public void restore(MetricPosition position) throws IOException {
+        List<MetricFile> files = listFiles();
+        MetricFile file = null;
+        if (position.getFileKey() != null) {
+            file = files.stream().filter(it -> position.getFileKey().equals(it.getFileKey())).findFirst().orElse(null);
+        } else {
+            file = files.stream().filter(it -> position.getFileName().equals(it.getFileName())).findFirst().orElse(null);
+        }
+        if (file != null) {
+            open(file, position.getOffset());
+            return;
+        }
+        // 文件已被删除，下次读取时从该文件之后的文件开始
+        LOGGER.warn("{} not found, read from the next file.", position);
+        close();
+        fileName = position.getFileName();
+        fileKey = position.getFileKey();
+        offset = 0;
+    }
+
+    /**
+     * 兼容之前按行号保存的位置，跳过指定行数后继续读取
+     *
+     * @param fileName
+     * @param line     已读取的行数
+     * @throws IOException
+     */
+    public void restoreLine(String fileName, int line) throws IOException {
+        MetricFile file = listFiles().stream().filter(it -> fileName.equals(it.getFileName())).findFirst().orElse(null);
+        if (file == null) {
+            LOGGER.warn("{} not found, read from the first file.", fileName);
+            close();
+            return;
+        }
+        open(file, 0);
+        long position = 0;
+        int skipLines = 0;
+        while (skipLines < line) {
+            buffer.clear();
+            int num = channel.read(buffer, position);
+            if (num <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < num && skipLines < line; i++) {
+                if (bytes[i] == '\n') {
+                    skipLines++;
+                    offset = position + i + 1;
+                }
+            }
+            position += num;
+        }
+    }
+
+    /**
+     * 读取完整的行（忽略空行），当前文件读完且已滚动时继续读取下一个文件
+     *
+     * @param limit 最多读取的行数
+     * @return 读取的行，没有新数据时为空
+     * @throws IOException
+     */
+    public List<String> read(int limit) throws IOException {
+        List<String> lines = new ArrayList<>(Math.min(limit, 1024));
+        if (channel == null && !openNext()) {
+            return lines;
+        }
+        while (lines.size() < limit) {
+            readLines(lines, limit);
+            if (lines.size() >= limit || !isRotated()) {
+                break;
+            }
+            // 判断滚动前可能又写入了数据，滚动后原文件不会再写入，再读一次即可读完
+            readLines(lines, limit);
+            if (lines.size() >= limit) {
+                break;
+            }
+            if (lineLength > 0) {
+                // 已滚动的文件最后一行没有换行符
+                addLine(lines, lineBuffer, 0, 0);
+                offset = channel.size();
+            }
+            if (!openNext()) {
+                break;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return 当前读取位置，未读取任何文件时为null
+     */
+    public MetricPosition position() {
+        return fileName == null ? null : new MetricPosition(fileName, fileKey, offset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void readLines(List<String> lines, int limit) throws IOException {
+        lineLength = 0;
+        long position = offset;
+        if (channel.size() < offset) {
+            LOGGER.warn("{} truncated, read from the beginning.", fileName);
+            position = offset = 0;
+        }
+        while (lines.size() < limit) {
+            buffer.clear();
+            int num = channel.read(buffer, position);
+            if (num <= 0) {
+                return;
+            }
+            byte[] bytes = buffer.array();
+            int start = 0;
+            for (int i = 0; i < num && lines.size() < limit; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                addLine(lines, bytes, start, i);
+                start = i + 1;
+                offset = position + start;
+            }
+            if (lines.size() >= limit) {
+                return;
+            }
+            appendLine(bytes, start, num);
+            position += num;
+        }
+    }
+
+    /**
+     * 添加lineBuffer中的数据及bytes[start, end)为一行
+     */
+    private void addLine(List<String> lines, byte[] bytes, int start, int end) {
+        if (lineLength > 0) {
+            appendLine(bytes, start, end);
+            bytes = lineBuffer;
+            start = 0;
+            end = lineLength;
+            lineLength = 0;
+        }
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end > start) {
+            lines.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void appendLine(byte[] bytes, int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        if (lineLength + length > lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineLength + length, lineBuffer.length << 1));
+        }
+        System.arraycopy(bytes, start, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * @return 当前文件是否已滚动（metrics.log已不是当前读取的文件）
+     */
+    private boolean isRotated() throws IOException {
+        return !Objects.equals(fileKey, fileKey(directory.resolve(activeName)));
+    }
+
+    /**
+     * 打开当前文件之后的下一个文件，未打开过文件时打开最早的文件
+     *
+     * @return 是否打开了新文件
+     */
+    private boolean openNext() throws IOException {
+        List<MetricFile> files = listFiles();
+        int next = fileName == null ? 0 : nextIndex(files);
+        if (next >= files.size()) {
+            return false;
+        }
+        open(files.get(next), 0);
+        return true;
+    }
+
+    private int nextIndex(List<MetricFile> files) {
+        for (int i = 0; i < files.size(); i++) {
+            if (Objects.equals(fileKey, files.get(i).getFileKey())) {
+                return i + 1;
+            }
+        }
+        // 当前文件已被删除，按文件名找下一个，之前读取的是metrics.log时，下一个为新的metrics.log
+        MetricFile current = toMetricFile(fileName);
+        for (int i = 0; i < files.size(); i++) {
+            MetricFile file = files.get(i);
+            if (current == null || compare(file, current) > 0 || activeName.equals(file.getFileName())) {
+                return i;
+            }
+        }
+        return files.size();
+    }
+
+    private void open(MetricFile file, long position) throws IOException {
+        close();
+        channel = FileChannel.open(directory.resolve(file.getFileName()), StandardOpenOption.READ);
+        fileName = file.getFileName();
+        fileKey = file.getFileKey();
+        offset = position;
+        lineLength = 0;
+        LOGGER.info("read {} from {}", fileName, position);
+    }
+
+    /**
+     * @return 所有的指标文件，按写入顺序排序（metrics.log最新）
+     */
+    List<MetricFile> listFiles() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        List<MetricFile> files;
+        try (Stream<Path> allPaths = Files.list(directory)) {
+            files = allPaths.map(it -> toMetricFile(it.getFileName().toString())).filter(Objects::nonNull).collect(toList());
+        }
+        List<MetricFile> existFiles = new ArrayList<>(files.size());
+        for (MetricFile file : files) {
+            file.setFileKey(fileKey(directory.resolve(file.getFileName())));
+            if (file.getFileKey() != null) {
+                existFiles.add(file);
+            }
+        }
+        existFiles.sort(this::compare);
+        return existFiles;
+    }
+
+    private int compare(MetricFile file1, MetricFile file2) {
+        boolean active1 = activeName.equals(file1.getFileName());
+        boolean active2 = activeName.equals(file2.getFileName());
+        if (active1 || active2) {
+            return Boolean.compare(active1, active2);
+        }
+        return Comparator.comparingInt(MetricFile::getDay).thenComparingInt(MetricFile::getNum).compare(file1, file2);
+    }
+
+    private MetricFile toMetricFile(String fileName) {
+        if (activeName.equals(fileName)) {
+            return new MetricFile(fileName, 0, 0);
+        }
+        Matcher matcher = LOG_NAME_PATTERN.matcher(fileName);
+        if (matcher.matches()) {
+            return new MetricFile(fileName, Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        }
+        return null;
+    }
+
+    /**
+     * 文件的唯一标识，文件重命名后不变，不支持fileKey的文件系统使用创建时间
+     *
+     * @param path
+     * @return 文件不存在时返回null
+     */
+    private static String fileKey(Path path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Object key = attributes.fileKey();
+            return key != null ? key.toString() : String.valueOf(attributes.creationTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.storage;
+
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * 指标文件的读取位置，offset为已读取的完整行之后的字节偏移
+ * fileKey为文件的唯一标识（如inode），用于文件滚动重命名后找到原文件
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+@Getter
+public class MetricPosition {
+    private static final char SEPARATOR = '|';
+    private final String fileName;
+    private final String fileKey;
+    private final long offset;
+
+    public MetricPosition(String fileName, String fileKey, long offset) {
+        this.fileName = fileName;
+        this.fileKey = fileKey;
+        this.offset = offset;
+    }
+
+    /**
+     * 格式：文件名|偏移|fileKey
+     *
+     * @return
+     */
+    public String encode() {
+        return fileName + SEPARATOR + offset + SEPARATOR + StringUtils.defaultString(fileKey);
+    }
+
+    /**
+     * 解析encode的结果
+     *
+     * @param position
+     * @return 格式错误时返回null
+     */
+    public static MetricPosition parse(String position) {
+        if (StringUtils.isBlank(position)) {
+            return null;
+        }
+        String[] positions = StringUtils.splitPreserveAllTokens(position.trim(), SEPARATOR);
+        if (positions.length != 3 || StringUtils.isBlank(positions[0]) || !NumberUtils.isDigits(positions[1])) {
+            return null;
+        }
+        return new MetricPosition(positions[0], StringUtils.defaultIfEmpty(positions[2], null), Long.parseLong(positions[1]));
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.server.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date 2026/10/18
+ */
+public class MetricFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Path directory;
+    private Path active;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath();
+        active = directory.resolve("metrics.log");
+    }
+
+    @Test
+    public void readPartialLine() throws IOException {
+        MetricFileReader reader = reader();
+        assertTrue(reader.read(10).isEmpty());
+        assertNull(reader.position());
+        append(active, "dataType=a&v=1\ndataType=b&v=2\ndataType=c");
+        assertEquals(Arrays.asList("dataType=a&v=1", "dataType=b&v=2"), reader.read(10));
+        // 未写完整的行不读取
+        assertTrue(reader.read(10).isEmpty());
+        append(active, "&v=3\r\n\ndataType=d&v=4\n");
+        assertEquals(Arrays.asList("dataType=c&v=3", "dataType=d&v=4"), reader.read(10));
+        assertEquals(Files.size(active), reader.position().getOffset());
+    }
+
+    @Test
+    public void readLimit() throws IOException {
+        List<String> expected = lines("line", 100);
+        append(active, String.join("\n", expected) + "\n");
+        MetricFileReader reader = reader();
+        List<String> actual = new ArrayList<>();
+        List<String> lines;
+        while (!(lines = reader.read(7)).isEmpty()) {
+            assertTrue(lines.size() <= 7);
+            actual.addAll(lines);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void followRotation() throws IOException {
+        append(active, "a1\na2\n");
+        MetricFileReader reader = reader();
+        assertEquals(Arrays.asList("a1", "a2"), reader.read(10));
+        // 模拟log4j2滚动：读取后继续写入，之后重命名并创建新文件
+        append(active, "a3\na4");
+        rotate("metrics.20200320.1.log");
+        append(active, "b1\n");
+        assertEquals(Arrays.asList("a3", "a4", "b1"), reader.read(10));
+        append(active, "b2\n");
+        rotate("metrics.20200320.2.log");
+        append(active, "c1\n");
+        assertEquals(Collections.singletonList("b2"), reader.read(1));
+        assertEquals("metrics.log", reader.position().getFileName());
+        assertEquals(Collections.singletonList("c1"), reader.read(10));
+        assertTrue(reader.read(10).isEmpty());
+    }
+
+    @Test
+    public void restoreRotated() throws IOException {
+        append(active, "a1\na2\n");
+        MetricFileReader reader = reader();
+        assertEquals(Collections.singletonList("a1"), reader.read(1));
+        MetricPosition position = MetricPosition.parse(reader.position().encode());
+        reader.close();
+        rotate("metrics.20200320.1.log");
+        append(active, "b1\n");
+        // 重启后按fileKey找到重命名后的文件
+        MetricFileReader restored = reader();
+        restored.restore(position);
+        assertEquals(Arrays.asList("a2", "b1"), restored.read(10));
+    }
+
+    @Test
+    public void restoreDeleted() throws IOException {
+        append(directory.resolve("metrics.20200319.1.log"), "a1\n");
+        append(directory.resolve("metrics.20200320.1.log"), "b1\n");
+        append(active, "c1\n");
+        MetricFileReader reader = reader();
+        reader.restore(new MetricPosition("metrics.20200319.2.log", "deleted", 10));
+        assertEquals(Arrays.asList("b1", "c1"), reader.read(10));
+    }
+
+    @Test
+    public void restoreLine() throws IOException {
+        append(directory.resolve("metrics.20200320.1.log"), "a1\na2\na3\n");
+        append(active, "b1\n");
+        MetricFileReader reader = reader();
+        reader.restoreLine("metrics.20200320.1.log", 2);
+        assertEquals(Arrays.asList("a3", "b1"), reader.read(10));
+    }
+
+    @Test
+    public void position() {
+        MetricPosition position = new MetricPosition("metrics.log", "(dev=803,ino=1)", 123);
+        MetricPosition parsed = MetricPosition.parse(position.encode());
+        assertEquals("metrics.log", parsed.getFileName());
+        assertEquals("(dev=803,ino=1)", parsed.getFileKey());
+        assertEquals(123, parsed.getOffset());
+        assertNull(MetricPosition.parse("metrics.log|12"));
+        assertNull(MetricPosition.parse("metrics.log|a|b"));
+    }
+
+    private MetricFileReader reader() {
+        // 较小的buffer，测试跨buffer的行
+        return new MetricFileReader(directory, "metrics.log", 8);
+    }
+
+    private void rotate(String fileName) throws IOException {
+        Files.move(active, directory.resolve(fileName));
+    }
+
+    private static void append(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static List<String> lines(String prefix, int num) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            lines.add(prefix + i);
+        }
+        return lines;
+    }
+}
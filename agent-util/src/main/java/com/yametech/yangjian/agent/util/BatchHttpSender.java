@@ -0,0 +1,650 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util;
+
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.api.common.CustomThreadFactory;
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+import com.yametech.yangjian.agent.util.codec.MetricCodec;
+import com.yametech.yangjian.agent.util.codec.MetricEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 批量HTTP发送：记录先放入有界队列，发送线程按条数、字节数及等待时间合并为一个请求，gzip压缩后POST，
+ * 使用HttpURLConnection的keep-alive连接池复用连接（读完响应且不调用disconnect），同时发送的请求数不超过maxInFlight，
+ * 发送失败（IO异常、5xx、429）按指数退避重试，超过重试次数后回调onFailure；其他4xx及编码失败重试也不会成功，计数后丢弃；
+ * 队列已满时offer返回false，不阻塞调用线程
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class BatchHttpSender {
+    private static final ILogger LOGGER = LoggerFactory.getLogger(BatchHttpSender.class);
+    private final String url;
+    private final BatchFormat format;
+    private final int maxBatchRecords;
+    private final int maxBatchBytes;
+    private final long lingerMillis;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final int timeoutMillis;
+    private final boolean gzip;
+    private final Consumer<List<String>> onFailure;
+    private final BlockingQueue<Object> queue;
+    private final Semaphore inFlight;
+    private final ExecutorService sendExecutor;
+    private final Thread batchThread;
+    private volatile boolean closed = false;
+    private final AtomicLong requestNum = new AtomicLong();
+    private final AtomicLong sentNum = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong retryNum = new AtomicLong();
+    private final AtomicLong failedNum = new AtomicLong();
+    private final AtomicLong droppedNum = new AtomicLong();
+    private final AtomicLong rejectedNum = new AtomicLong();
+
+    private BatchHttpSender(Builder builder) {
+        this.url = builder.url;
+        this.format = builder.format;
+        this.maxBatchRecords = builder.maxBatchRecords;
+        this.maxBatchBytes = builder.maxBatchBytes;
+        this.lingerMillis = builder.lingerMillis;
+        this.maxInFlight = builder.maxInFlight;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMillis = builder.retryBackoffMillis;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.gzip = builder.gzip;
+        this.onFailure = builder.onFailure;
+        this.queue = new ArrayBlockingQueue<>(builder.queueSize);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.sendExecutor = Executors.newFixedThreadPool(maxInFlight, new CustomThreadFactory("batch-http-send", true));
+        this.batchThread = new CustomThreadFactory("batch-http", true).newThread(this::batchLoop);
+        batchThread.start();
+    }
+
+    public static Builder create(String url) {
+        return new Builder(url);
+    }
+
+    /**
+     * @param record 一条记录，按format编码（METRIC格式时为MetricData或其toString()，其他格式使用toString()）
+     * @return 是否放入队列，队列已满或已关闭时返回false
+     */
+    public boolean offer(Object record) {
+        if (closed || record == null) {
+            return false;
+        }
+        if (queue.offer(record)) {
+            return true;
+        }
+        rejectedNum.getAndIncrement();
+        return false;
+    }
+
+    /**
+     * 停止接收记录，发送队列中剩余的记录并等待已发出的请求完成
+     *
+     * @param duration 最长等待时间
+     * @return 是否在等待时间内发送完成
+     */
+    public boolean close(Duration duration) {
+        closed = true;
+        long deadline = System.nanoTime() + duration.toNanos();
+        try {
+            batchThread.join(Math.max(1, duration.toMillis()));
+            sendExecutor.shutdown();
+            return sendExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            sendExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 从队列中收集一批记录：条数达到maxBatchRecords、字节数达到maxBatchBytes或第一条记录等待超过lingerMillis时发送
+     */
+    private void batchLoop() {
+        List<Object> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long bytes = format.size(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < maxBatchRecords && bytes < maxBatchBytes) {
+                    Object record = queue.poll();
+                    while (record == null && !closed) {
+                        // 分段等待，关闭时不必等到linger结束
+                        long waitNanos = Math.min(deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(100));
+                        if (waitNanos <= 0) {
+                            break;
+                        }
+                        record = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    }
+                    if (record == null) {
+                        break;
+                    }
+                    batch.add(record);
+                    bytes += format.size(record);
+                }
+                inFlight.acquire();// 达到maxInFlight时阻塞，队列随之堆积，由offer拒绝新的记录
+                List<Object> sendBatch = batch;
+                batch = new ArrayList<>();
+                sendExecutor.execute(() -> {
+                    try {
+                        sendWithRetry(sendBatch);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                LOGGER.error(e, "batch error: {}", url);
+            }
+        }
+    }
+
+    /**
+     * 在当前线程同步发送一批记录，不重试、不回调onFailure，用于重放暂存的数据
+     *
+     * @param batch 记录
+     * @return 发送结果，DROP时记录已计入droppedNum，调用方不应再重试
+     */
+    public SendResult sendBatch(List<?> batch) {
+        byte[] body;
+        try {
+            body = encode(batch);
+        } catch (IOException e) {
+            LOGGER.error(e, "encode batch error: {}", url);
+            drop(batch, "encode error");
+            return SendResult.DROP;
+        }
+        int code = send(body);
+        SendResult result = SendResult.of(code);
+        if (result == SendResult.SUCCESS) {
+            sentNum.getAndAdd(batch.size());
+        } else if (result == SendResult.DROP) {
+            drop(batch, String.valueOf(code));
+        }
+        return result;
+    }
+
+    private void sendWithRetry(List<Object> batch) {
+        byte[] body;
+        try {
+            body = encode(batch);
+        } catch (IOException e) {
+            LOGGER.error(e, "encode batch error: {}", url);
+            drop(batch, "encode error");
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            int code = send(body);
+            SendResult result = SendResult.of(code);
+            if (result == SendResult.SUCCESS) {
+                sentNum.getAndAdd(batch.size());
+                return;
+            }
+            if (result == SendResult.DROP) {
+                drop(batch, String.valueOf(code));
+                return;
+            }
+            if (attempt >= maxRetries) {
+                LOGGER.warn("batch report failed({}), {} records to onFailure: {}", code, batch.size(), url);
+                fail(batch);
+                return;
+            }
+            retryNum.getAndIncrement();
+            if (!sleep(backoff(attempt))) {
+                fail(batch);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 第n次重试前等待retryBackoffMillis * 2^n，加上不超过一半的随机值避免多个实例同时重试
+     */
+    long backoff(int attempt) {
+        long delay = retryBackoffMillis << Math.min(attempt, 10);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * 不可重试的失败，计数后丢弃
+     */
+    private void drop(List<?> batch, String reason) {
+        droppedNum.getAndAdd(batch.size());
+        LOGGER.warn("batch report failed({}), drop {} records: {}", reason, batch.size(), url);
+    }
+
+    private void fail(List<Object> batch) {
+        failedNum.getAndAdd(batch.size());
+        if (onFailure != null) {
+            try {
+                List<String> records = new ArrayList<>(batch.size());
+                for (Object record : batch) {
+                    records.add(record.toString());
+                }
+                onFailure.accept(records);
+            } catch (Exception e) {
+                LOGGER.error(e, "onFailure error: {}", url);
+            }
+        }
+    }
+
+    private byte[] encode(List<?> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(maxBatchBytes, 1 << 16));
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes, 8192) : bytes) {
+            format.write(batch, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return HTTP状态码，IO异常时返回-1
+     */
+    private int send(byte[] body) {
+        requestNum.getAndIncrement();
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setConnectTimeout(timeoutMillis);
+            conn.setReadTimeout(timeoutMillis);
+            conn.setRequestMethod(HttpRequest.HttpMethod.POST.name());
+            conn.setRequestProperty("Content-Type", format.contentType());
+            if (gzip) {
+                conn.setRequestProperty("Content-Encoding", "gzip");
+            }
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+            int code = conn.getResponseCode();
+            sentBytes.getAndAdd(body.length);
+            // 读完响应体后连接才会放回keep-alive缓存
+            drain(code < 400 ? conn.getInputStream() : conn.getErrorStream());
+            return code;
+        } catch (IOException e) {
+            LOGGER.warn("batch request error: {}, {}", url, e.getMessage());
+            if (conn != null) {
+                drainQuietly(conn);
+            }
+            return -1;
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) >= 0) {
+                // 丢弃响应内容
+            }
+        }
+    }
+
+    private static void drainQuietly(HttpURLConnection conn) {
+        try {
+            drain(conn.getErrorStream());
+        } catch (IOException e) {
+            conn.disconnect();// 连接已不可复用
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return 发出的请求数（含重试）
+     */
+    public long getRequestNum() {
+        return requestNum.get();
+    }
+
+    /**
+     * @return 发送成功的记录数
+     */
+    public long getSentNum() {
+        return sentNum.get();
+    }
+
+    /**
+     * @return 发送的请求体字节数（压缩后）
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public long getRetryNum() {
+        return retryNum.get();
+    }
+
+    /**
+     * @return 重试后仍失败的记录数
+     */
+    public long getFailedNum() {
+        return failedNum.get();
+    }
+
+    /**
+     * @return 不可重试（4xx、编码失败）被丢弃的记录数
+     */
+    public long getDroppedNum() {
+        return droppedNum.get();
+    }
+
+    /**
+     * @return 队列已满被拒绝的记录数
+     */
+    public long getRejectedNum() {
+        return rejectedNum.get();
+    }
+
+    /**
+     * 发送结果
+     */
+    public enum SendResult {
+        /**
+         * 2xx
+         */
+        SUCCESS,
+        /**
+         * IO异常、5xx、429，稍后重试可能成功
+         */
+        RETRY,
+        /**
+         * 其他状态码（如4xx）或编码失败，重试也不会成功
+         */
+        DROP;
+
+        /**
+         * @param code HTTP状态码，小于等于0表示IO异常
+         */
+        public static SendResult of(int code) {
+            if (code >= 200 && code < 300) {
+                return SUCCESS;
+            }
+            return code <= 0 || code >= 500 || code == 429 ? RETRY : DROP;
+        }
+    }
+
+    /**
+     * 请求体格式
+     */
+    public enum BatchFormat {
+        /**
+         * 每行一条记录
+         */
+        LINES("text/plain; charset=UTF-8") {
+            @Override
+            void write(List<?> batch, OutputStream out) throws IOException {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (i > 0) {
+                        out.write('\n');
+                    }
+                    out.write(batch.get(i).toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        },
+        /**
+         * 每条记录为JSON数组（如zipkin的span上报格式），合并为一个JSON数组
+         */
+        JSON_ARRAY("application/json") {
+            @Override
+            void write(List<?> batch, OutputStream out) throws IOException {
+                out.write('[');
+                boolean first = true;
+                for (Object record : batch) {
+                    String trimmed = record.toString().trim();
+                    if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                        trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+                    }
+                    if (trimmed.isEmpty()) {
+                        continue;
+                    }
+                    if (!first) {
+                        out.write(',');
+                    }
+                    out.write(trimmed.getBytes(StandardCharsets.UTF_8));
+                    first = false;
+                }
+                out.write(']');
+            }
+        },
+        /**
+         * MetricEncoder编码的二进制批量（格式见MetricCodec），由agent-server的/report/batch解码；
+         * 从spool重放的记录为MetricData.toString()的格式，解析后编码（参数值均为字符串）
+         */
+        METRIC(MetricCodec.CONTENT_TYPE) {
+            private final ThreadLocal<MetricEncoder> encoders = ThreadLocal.withInitial(MetricEncoder::new);
+
+            @Override
+            void write(List<?> batch, OutputStream out) throws IOException {
+                MetricEncoder encoder = encoders.get().begin();
+                for (Object record : batch) {
+                    encoder.write(record instanceof MetricData ? (MetricData) record : parseMetric(record.toString()));
+                }
+                ByteBuffer buffer = encoder.finish();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.write(bytes);
+            }
+
+            /**
+             * 按参数个数估算编码后的大小，不调用toString()
+             */
+            @Override
+            int size(Object record) {
+                if (record instanceof MetricData) {
+                    Map<String, Object> params = ((MetricData) record).getParams();
+                    return 16 + (params == null ? 0 : params.size() * 8);
+                }
+                return super.size(record);
+            }
+        };
+
+        private final String contentType;
+
+        BatchFormat(String contentType) {
+            this.contentType = contentType;
+        }
+
+        String contentType() {
+            return contentType;
+        }
+
+        abstract void write(List<?> batch, OutputStream out) throws IOException;
+
+        /**
+         * @return 记录的大小，用于按maxBatchBytes拆分批量
+         */
+        int size(Object record) {
+            return record.toString().length();
+        }
+    }
+
+    /**
+     * 解析MetricData.toString()的格式：serviceName/second/metricType?key=value&...，参数为URL编码
+     */
+    static MetricData parseMetric(String record) throws IOException {
+        int serviceEnd = record.indexOf('/');
+        int secondEnd = serviceEnd < 0 ? -1 : record.indexOf('/', serviceEnd + 1);
+        if (secondEnd < 0) {
+            throw new IOException("metric格式错误：" + record);
+        }
+        int typeEnd = record.indexOf('?', secondEnd + 1);
+        MetricData metric = new MetricData();
+        metric.setServiceName(record.substring(0, serviceEnd));
+        try {
+            metric.setSecond(Long.parseLong(record.substring(serviceEnd + 1, secondEnd)));
+        } catch (NumberFormatException e) {
+            throw new IOException("metric格式错误：" + record, e);
+        }
+        metric.setMetricType(record.substring(secondEnd + 1, typeEnd < 0 ? record.length() : typeEnd));
+        if (typeEnd < 0) {
+            return metric;
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (String kv : record.substring(typeEnd + 1).split("&")) {
+            int index = kv.indexOf('=');
+            if (index > 0) {
+                params.put(URLDecoder.decode(kv.substring(0, index), StandardCharsets.UTF_8.name()),
+                        URLDecoder.decode(kv.substring(index + 1), StandardCharsets.UTF_8.name()));
+            }
+        }
+        metric.setParams(params);
+        return metric;
+    }
+
+    public static class Builder {
+        private final String url;
+        private BatchFormat format = BatchFormat.LINES;
+        private int maxBatchRecords = 500;
+        private int maxBatchBytes = 512 * 1024;
+        private long lingerMillis = 1000;
+        private int maxInFlight = 2;
+        private int maxRetries = 3;
+        private long retryBackoffMillis = 200;
+        private int timeoutMillis = 3000;
+        private boolean gzip = true;
+        private int queueSize = 10000;
+        private Consumer<List<String>> onFailure;
+
+        private Builder(String url) {
+            if (url == null || url.isEmpty()) {
+                throw new IllegalArgumentException("url不能为空");
+            }
+            this.url = url;
+        }
+
+        public Builder format(BatchFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        public Builder maxBatchRecords(int maxBatchRecords) {
+            this.maxBatchRecords = Math.max(1, maxBatchRecords);
+            return this;
+        }
+
+        /**
+         * @param maxBatchBytes 一批记录的最大字符数（未压缩，METRIC格式按编码后的大小估算），超过后立即发送
+         */
+        public Builder maxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = Math.max(1, maxBatchBytes);
+            return this;
+        }
+
+        public Builder lingerMillis(long lingerMillis) {
+            this.lingerMillis = Math.max(0, lingerMillis);
+            return this;
+        }
+
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = Math.max(0, maxRetries);
+            return this;
+        }
+
+        public Builder retryBackoffMillis(long retryBackoffMillis) {
+            this.retryBackoffMillis = Math.max(1, retryBackoffMillis);
+            return this;
+        }
+
+        public Builder timeoutMillis(int timeoutMillis) {
+            this.timeoutMillis = Math.max(1, timeoutMillis);
+            return this;
+        }
+
+        public Builder gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        public Builder queueSize(int queueSize) {
+            this.queueSize = Math.max(1, queueSize);
+            return this;
+        }
+
+        /**
+         * @param onFailure 重试后仍发送失败的记录回调，在发送线程中执行
+         */
+        public Builder onFailure(Consumer<List<String>> onFailure) {
+            this.onFailure = onFailure;
+            return this;
+        }
+
+        public BatchHttpSender build() {
+            return new BatchHttpSender(this);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yametech.yangjian.agent.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 直接将字符编码为UTF-8写入ByteBuffer，不创建中间byte[]；结果与String.getBytes(UTF_8)一致，不成对的代理字符按'?'编码
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class Utf8Util {
+
+    private Utf8Util() {
+    }
+
+    /**
+     * @return value按UTF-8编码后的字节数
+     */
+    public static int length(CharSequence value) {
+        int length = 0;
+        for (int i = 0, size = value.length(); i < size; i++) {
+            int charLength = charLength(value, i);
+            length += charLength;
+            if (charLength == 4) {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 从start开始编码，buffer剩余空间不足以写入下一个字符时停止
+     *
+     * @param value  字符
+     * @param start  开始编码的字符下标
+     * @param buffer 写入的缓存
+     * @return 下一个未编码的字符下标，等于value.length()时已全部写入
+     */
+    public static int encode(CharSequence value, int start, ByteBuffer buffer) {
+        int size = value.length();
+        int i = start;
+        while (i < size) {
+            char c = value.charAt(i);
+            int charLength = charLength(value, i);
+            if (buffer.remaining() < charLength) {
+                return i;
+            }
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (charLength == 4) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return 下标index的字符编码后的字节数，成对的代理字符（占两个下标）为4
+     */
+    private static int charLength(CharSequence value, int index) {
+        char c = value.charAt(index);
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800) {
+            return 2;
+        }
+        if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+            return 4;
+        }
+        return Character.isSurrogate(c) ? 1 : 3;
+    }
+}
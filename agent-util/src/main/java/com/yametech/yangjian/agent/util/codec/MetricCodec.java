@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.codec;
+
+/**
+ * MetricData批量二进制格式（版本1），MetricEncoder编码、MetricDecoder解码，格式如下：
+ * <pre>
+ * 批量：MAGIC(2字节) VERSION(1字节) 记录数(4字节，大端) 记录...
+ * 记录：serviceName(字符串) second(与上一条记录second的差值，zigzag varint，第一条与0比较) metricType(字符串)
+ *      参数个数+1(varint，0表示params为null) 参数...
+ * 参数：key(字符串) 值类型(1字节) 值
+ * 字符串：varint，0表示后跟新字符串（UTF-8字节数varint + UTF-8字节）并按出现顺序加入批量内的字典，n表示字典中第n-1个字符串
+ * 值：TAG_LONG/TAG_INT为zigzag varint，TAG_DOUBLE/TAG_FLOAT为IEEE 754大端，TAG_STRING为字符串，TAG_NULL/TAG_TRUE/TAG_FALSE无值，
+ *    其他类型按toString()编码为TAG_STRING
+ * </pre>
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class MetricCodec {
+    /**
+     * 批量上报（BatchHttpSender）使用的Content-Type
+     */
+    public static final String CONTENT_TYPE = "application/x-yangjian-metric";
+
+    static final byte MAGIC_0 = 'Y';
+    static final byte MAGIC_1 = 'M';
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 7;
+    static final int COUNT_OFFSET = 3;
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_LONG = 1;
+    static final byte TAG_INT = 2;
+    static final byte TAG_DOUBLE = 3;
+    static final byte TAG_FLOAT = 4;
+    static final byte TAG_STRING = 5;
+    static final byte TAG_TRUE = 6;
+    static final byte TAG_FALSE = 7;
+
+    private MetricCodec() {
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.codec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.yametech.yangjian.agent.api.bean.MetricData;
+
+import static com.yametech.yangjian.agent.util.codec.MetricCodec.*;
+
+/**
+ * 解码MetricEncoder生成的批量，格式错误（含截断）时抛出IllegalArgumentException；字典及读取缓存在批量间复用，非线程安全
+ * 解码后params为LinkedHashMap（按编码顺序），值的类型为Long、Integer、Double、Float、Boolean、String或null
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class MetricDecoder {
+    private final List<String> dictionary = new ArrayList<>();
+    private byte[] bytes = new byte[1 << 8];
+
+    /**
+     * 解码buffer中position至limit的一个批量，解码后position移动到批量结束位置
+     *
+     * @param buffer 编码后的数据
+     * @return 解码的数据
+     */
+    public List<MetricData> decode(ByteBuffer buffer) {
+        List<MetricData> metrics = new ArrayList<>();
+        decode(buffer, metrics::add);
+        return metrics;
+    }
+
+    /**
+     * @param buffer   编码后的数据
+     * @param consumer 按编码顺序回调解码的数据，格式错误时已回调的数据仍有效
+     */
+    public void decode(ByteBuffer buffer, Consumer<MetricData> consumer) {
+        dictionary.clear();
+        try {
+            if (buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+                throw new IllegalArgumentException("metric格式错误：MAGIC不匹配");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("metric格式错误：不支持的版本" + version);
+            }
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new IllegalArgumentException("metric格式错误：记录数" + count);
+            }
+            long second = 0;
+            for (int i = 0; i < count; i++) {
+                MetricData metric = new MetricData();
+                metric.setServiceName(readString(buffer));
+                second += unzigzag(readVarLong(buffer));
+                metric.setSecond(second);
+                metric.setMetricType(readString(buffer));
+                long paramNum = readVarLong(buffer) - 1;
+                if (paramNum < -1 || paramNum > buffer.remaining() / 2) {// 每个参数至少2字节
+                    throw new IllegalArgumentException("metric格式错误：参数个数" + paramNum);
+                }
+                if (paramNum >= 0) {
+                    Map<String, Object> params = new LinkedHashMap<>();
+                    for (long j = 0; j < paramNum; j++) {
+                        String key = readString(buffer);
+                        params.put(key, readValue(buffer));
+                    }
+                    metric.setParams(params);
+                }
+                consumer.accept(metric);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("metric格式错误：数据不完整", e);
+        }
+    }
+
+    private Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_LONG:
+                return unzigzag(readVarLong(buffer));
+            case TAG_INT:
+                long value = unzigzag(readVarLong(buffer));
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("metric格式错误：int溢出" + value);
+                }
+                return (int) value;
+            case TAG_DOUBLE:
+                return buffer.getDouble();
+            case TAG_FLOAT:
+                return buffer.getFloat();
+            case TAG_STRING:
+                return readString(buffer);
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            default:
+                throw new IllegalArgumentException("metric格式错误：值类型" + tag);
+        }
+    }
+
+    private String readString(ByteBuffer buffer) {
+        long ref = readVarLong(buffer);
+        if (ref != 0) {
+            if (ref < 0 || ref > dictionary.size()) {
+                throw new IllegalArgumentException("metric格式错误：字典下标" + ref);
+            }
+            return dictionary.get((int) ref - 1);
+        }
+        long length = readVarLong(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("metric格式错误：字符串长度" + length);
+        }
+        int size = (int) length;
+        if (bytes.length < size) {
+            bytes = new byte[Math.max(size, bytes.length << 1)];
+        }
+        buffer.get(bytes, 0, size);
+        String value = new String(bytes, 0, size, StandardCharsets.UTF_8);
+        dictionary.add(value);
+        return value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("metric格式错误：varint过长");
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.util.Utf8Util;
+
+import static com.yametech.yangjian.agent.util.codec.MetricCodec.*;
+
+/**
+ * 将MetricData批量编码为二进制格式（参见MetricCodec），写入复用的堆外缓存，字典表也在批量间复用，稳定后除遍历params外编码过程不分配对象
+ * 使用方式：begin() -> write(metricData)... -> finish()，finish返回的缓存在下次begin前有效；非线程安全
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class MetricEncoder {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private ByteBuffer buffer;
+    private final StringTable dictionary = new StringTable();
+    private int count;
+    private long lastSecond;
+
+    public MetricEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initCapacity 缓存初始大小，不足时按2倍扩容
+     */
+    public MetricEncoder(int initCapacity) {
+        buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE, initCapacity));
+        begin();
+    }
+
+    /**
+     * 开始一个新批量，之前finish返回的缓存失效
+     *
+     * @return this
+     */
+    public MetricEncoder begin() {
+        buffer.clear();
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).putInt(0);
+        dictionary.clear();
+        count = 0;
+        lastSecond = 0;
+        return this;
+    }
+
+    /**
+     * 编码一个批量
+     *
+     * @param metrics 需编码的数据
+     * @return 编码后的缓存，position至limit为编码结果，下次调用前有效
+     */
+    public ByteBuffer encode(Collection<MetricData> metrics) {
+        begin();
+        for (MetricData metric : metrics) {
+            write(metric);
+        }
+        return finish();
+    }
+
+    public void write(MetricData metric) {
+        writeString(metric.getServiceName());
+        writeVarLong(zigzag(metric.getSecond() - lastSecond));
+        lastSecond = metric.getSecond();
+        writeString(metric.getMetricType());
+        Map<String, Object> params = metric.getParams();
+        if (params == null) {
+            writeVarLong(0);
+        } else {
+            writeVarLong(params.size() + 1L);
+            for (Entry<String, Object> param : params.entrySet()) {
+                writeString(param.getKey());
+                writeValue(param.getValue());
+            }
+        }
+        count++;
+    }
+
+    /**
+     * @return 当前批量已写入的记录数
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return 当前批量已写入的字节数
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * 结束当前批量
+     *
+     * @return 编码后的缓存（复用实例），position至limit为编码结果，下次begin前有效
+     */
+    public ByteBuffer finish() {
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte(TAG_NULL);
+        } else if (value instanceof Long) {
+            writeByte(TAG_LONG);
+            writeVarLong(zigzag((Long) value));
+        } else if (value instanceof Integer) {
+            writeByte(TAG_INT);
+            writeVarLong(zigzag((Integer) value));
+        } else if (value instanceof Double) {
+            ensure(9);
+            buffer.put(TAG_DOUBLE).putDouble((Double) value);
+        } else if (value instanceof Float) {
+            ensure(5);
+            buffer.put(TAG_FLOAT).putFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else {
+            writeByte(TAG_STRING);
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * 字符串为null时按空字符串编码
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            value = "";
+        }
+        int index = dictionary.indexOf(value);
+        if (index >= 0) {
+            writeVarLong(index + 1L);
+            return;
+        }
+        dictionary.add(value);
+        int length = Utf8Util.length(value);
+        ensure(11 + length);
+        putVarLong(0);
+        putVarLong(length);
+        Utf8Util.encode(value, 0, buffer);
+    }
+
+    private void writeByte(byte value) {
+        ensure(1);
+        buffer.put(value);
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        putVarLong(value);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < length) {
+            capacity <<= 1;
+        }
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    /**
+     * 字符串到字典下标的开放寻址表，清空时保留已分配的数组
+     */
+    private static class StringTable {
+        private String[] keys = new String[1 << 8];
+        private int[] values = new int[1 << 8];
+        private int size;
+
+        int indexOf(String key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key.hashCode()) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot].equals(key)) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        void add(String key) {
+            if ((size + 1) << 1 > keys.length) {
+                String[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new String[oldKeys.length << 1];
+                values = new int[oldKeys.length << 1];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            put(key, size++);
+        }
+
+        private void put(String key, int value) {
+            int mask = keys.length - 1;
+            int slot = mix(key.hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(keys, null);
+                size = 0;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.yametech.yangjian.agent.util.eventbus.process;
 
 
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.dsl.Disruptor;
@@ -41,5 +42,30 @@ public class DiscardEventBus<T> extends EventBus<T> {
 		}
 		return publish(consumer, sequence);
     }
+	
+	/**
+	 * 批量发布消息，剩余容量不足时只发布可申请到的部分，其余丢弃（丢弃尾部的事件）
+	 * @param consumer	发布消费者，参数为事件及在批量中的下标，按下标顺序回调，丢弃的事件不会回调
+	 * @param num	发布数量
+	 * @return	发布成功的数量，num - 返回值为丢弃的数量
+	 */
+	@Override
+	public int publish(ObjIntConsumer<T> consumer, int num) {
+		int index = 0;
+		while(index < num) {
+			int batchNum = (int) Math.min(num - index, ringBuffer.remainingCapacity());
+			if(batchNum <= 0) {
+				break;
+			}
+			long hi;
+			try {
+				hi = ringBuffer.tryNext(batchNum);
+			} catch (InsufficientCapacityException e) {
+				continue;// 多线程发布时剩余容量可能已被其他线程申请，按最新的剩余容量重试
+			}
+			index = publish(consumer, index, hi - batchNum + 1, hi);
+		}
+		return index;
+	}
 
 }
@@ -19,6 +19,7 @@ package com.yametech.yangjian.agent.util.eventbus.process;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.TimeoutException;
@@ -51,6 +52,41 @@ public class EventBus<T> {
 		return true;
 	}
     
+    /**
+     * 批量发布消息，每次申请连续的多个sequence（next(n)/publish(lo, hi)），减少多线程发布时的sequence竞争
+     * @param consumer	发布消费者，用于初始化事件值（事件实例是共用的），参数为事件及在批量中的下标，按下标顺序回调
+     * @param num	发布数量，超过bufferSize时分多次申请
+     * @return	发布成功的数量，未发布的不会回调consumer
+     */
+    public int publish(ObjIntConsumer<T> consumer, int num) {
+    	int index = 0;
+    	while(index < num) {
+    		int batchNum = Math.min(num - index, ringBuffer.getBufferSize());
+    		long hi = ringBuffer.next(batchNum);
+    		index = publish(consumer, index, hi - batchNum + 1, hi);
+    	}
+    	return num;
+    }
+    
+    /**
+     * 初始化并发布已申请的sequence
+     * @param consumer	发布消费者
+     * @param index	第一个事件在批量中的下标
+     * @param lo	申请的第一个sequence
+     * @param hi	申请的最后一个sequence
+     * @return	下一个事件在批量中的下标
+     */
+    protected int publish(ObjIntConsumer<T> consumer, int index, long lo, long hi) {
+    	try {
+    		for(long sequence = lo; sequence <= hi; sequence++) {
+    			consumer.accept(ringBuffer.get(sequence), index++);
+    		}
+    	} finally {
+    		ringBuffer.publish(lo, hi);// 已申请的sequence必须发布，否则会阻塞后续消费
+    	}
+    	return index;
+    }
+    
     /**
      * 谨慎使用，获取到sequence后必须执行publish
      * @return
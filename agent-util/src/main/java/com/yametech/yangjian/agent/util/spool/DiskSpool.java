@@ -0,0 +1,566 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.yametech.yangjian.agent.api.log.ILogger;
+import com.yametech.yangjian.agent.api.log.LoggerFactory;
+
+/**
+ * 基于内存映射文件的磁盘缓存队列，用于上报失败时暂存数据，恢复后按写入顺序重放
+ * 目录下按序号存储多个固定大小的段文件（{序号}.seg），只追加写入；每条记录格式为：长度(int) + CRC32(int) + 数据，先写数据及校验值，最后写长度，
+ * 进程崩溃后启动时逐段扫描，遇到长度为0、越界或校验失败的记录即认为该段结束（未完整写入的记录丢弃）；
+ * 消费位置（段序号 + 段内偏移）记录在checkpoint文件中，消费位置损坏时从最早的段重放（至少一次）；
+ * peek返回读取结束的位置，commit按位置提交，peek与commit之间追加记录导致最早的段被删除时不会跳过未读取的记录；
+ * 段数超过maxBytes / segmentBytes时删除最早的段（其中未消费的记录计入evictedNum）
+ * 方法均为同步方法，同一目录只能被一个实例打开（文件锁）
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class DiskSpool implements Closeable {
+    private static final ILogger LOG = LoggerFactory.getLogger(DiskSpool.class);
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = "lock";
+    static final int RECORD_HEADER = 8;
+    private static final int CHECKPOINT_SIZE = 16;
+    private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final CRC32 crc = new CRC32();
+    /**
+     * 按序号升序，第一个为当前消费的段，最后一个为当前写入的段
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;
+    private int readOffset;
+    private int readIndex;
+    private long depth;
+    private long appendNum;
+    private long rejectedNum;
+    private long evictedNum;
+    private long corruptedNum;
+    private boolean closed = false;
+
+    /**
+     * 打开目录并执行恢复扫描
+     *
+     * @param dir          存储目录，不存在时创建
+     * @param maxBytes     所有段文件的最大总大小，不足两个段时按两个段
+     * @param segmentBytes 单个段文件大小，单条记录不能超过该值 - 8
+     * @throws IOException 目录无法创建、被其他实例占用或文件无法映射
+     */
+    public DiskSpool(Path dir, long maxBytes, int segmentBytes) throws IOException {
+        if (segmentBytes <= RECORD_HEADER) {
+            throw new IllegalArgumentException("segmentBytes过小：" + segmentBytes);
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(2, Math.min(Integer.MAX_VALUE, maxBytes / segmentBytes));
+        Files.createDirectories(dir);
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        } catch (OverlappingFileLockException e) {// 同一进程中已打开
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IOException("spool目录已被其他进程使用：" + dir);
+        }
+        lock = fileLock;
+        checkpointChannel = FileChannel.open(dir.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_SIZE);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    seqs.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOG.warn("忽略非spool文件：{}", path);
+                }
+            }
+        }
+        Collections.sort(seqs);
+        long checkpointSeq = -1;
+        int checkpointOffset = 0;
+        if (checkpoint.getInt(12) == checksum(checkpoint, 0, 12) && checkpoint.getLong(0) != 0) {
+            checkpointSeq = checkpoint.getLong(0) - 1;// 存储时+1，区分未写入的全0文件
+            checkpointOffset = checkpoint.getInt(8);
+        } else if (!seqs.isEmpty()) {
+            LOG.warn("spool消费位置无效，从最早的数据开始重放：{}", dir);
+        }
+        for (int i = 0; i < seqs.size(); i++) {
+            long seq = seqs.get(i);
+            Path path = segmentPath(seq);
+            if (seq < checkpointSeq) {// 已消费完
+                Files.deleteIfExists(path);
+                continue;
+            }
+            Segment segment = new Segment(seq, path, (int) Math.min(Integer.MAX_VALUE, Files.size(path)));
+            boolean last = i == seqs.size() - 1;
+            scan(segment, last);
+            if (!last && !segments.isEmpty()) {
+                segment.release();// 只保留消费及写入的段的映射
+            }
+            segments.addLast(segment);
+        }
+        Segment first = segments.peekFirst();
+        if (first != null && first.seq == checkpointSeq) {
+            int index = indexOf(first, checkpointOffset);
+            if (index >= 0) {
+                readOffset = checkpointOffset;
+                readIndex = index;
+            } else {
+                LOG.warn("spool消费位置{}不在记录边界，从段开始重放：{}", checkpointOffset, first.path);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(createSegment(Math.max(0, checkpointSeq)));
+        }
+        for (Segment segment : segments) {
+            depth += segment.records;
+        }
+        depth -= readIndex;
+        while (segments.size() > maxSegments) {
+            evictOldest();
+        }
+        saveCheckpoint();
+    }
+
+    /**
+     * 扫描段内的完整记录，确定记录数及写入位置；最后一个段将写入位置之后的内容清零，避免残留的数据在后续追加后被误认为记录
+     */
+    private void scan(Segment segment, boolean last) throws IOException {
+        MappedByteBuffer buffer = segment.map();
+        int pos = 0;
+        int records = 0;
+        while (pos + RECORD_HEADER <= segment.capacity) {
+            int length = buffer.getInt(pos);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > segment.capacity - pos - RECORD_HEADER
+                    || buffer.getInt(pos + 4) != checksum(buffer, pos + RECORD_HEADER, length)) {
+                corruptedNum++;
+                LOG.warn("spool记录损坏，丢弃段{}偏移{}之后的数据", segment.path, pos);
+                break;
+            }
+            pos += RECORD_HEADER + length;
+            records++;
+        }
+        segment.writePos = pos;
+        segment.records = records;
+        if (last) {
+            for (int i = pos; i < segment.capacity; i++) {
+                if (buffer.get(i) != 0) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return offset之前的记录数，offset不在记录边界时返回-1
+     */
+    private int indexOf(Segment segment, int offset) throws IOException {
+        MappedByteBuffer buffer = segment.map();
+        int pos = 0;
+        int index = 0;
+        while (pos < offset && pos < segment.writePos) {
+            pos += RECORD_HEADER + buffer.getInt(pos);
+            index++;
+        }
+        return pos == offset ? index : -1;
+    }
+
+    /**
+     * 追加一条记录，空间不足时新建段，段数超过上限时删除最早的段
+     *
+     * @param data 记录内容，长度0用于标识段结束，不能写入
+     * @return 是否写入成功，记录为空、超过段大小、已关闭或IO异常时返回false
+     */
+    public synchronized boolean append(byte[] data) {
+        if (closed || data.length == 0 || data.length > segmentBytes - RECORD_HEADER) {
+            rejectedNum++;
+            return false;
+        }
+        try {
+            Segment segment = segments.peekLast();
+            if (segment.capacity - segment.writePos < RECORD_HEADER + data.length) {
+                segment = roll();
+            }
+            MappedByteBuffer buffer = segment.map();
+            int pos = segment.writePos;
+            buffer.position(pos + RECORD_HEADER);
+            buffer.put(data);
+            buffer.putInt(pos + 4, checksum(data));
+            buffer.putInt(pos, data.length);// 最后写入长度，崩溃时不完整的记录长度为0或校验失败
+            segment.writePos = pos + RECORD_HEADER + data.length;
+            segment.records++;
+            depth++;
+            appendNum++;
+            return true;
+        } catch (IOException e) {
+            LOG.error(e, "spool写入失败：{}", dir);
+            rejectedNum++;
+            return false;
+        }
+    }
+
+    private Segment roll() throws IOException {
+        Segment previous = segments.peekLast();
+        Segment segment = createSegment(previous.seq + 1);
+        segments.addLast(segment);
+        if (previous != segments.peekFirst()) {
+            previous.release();// 中间的段消费时再映射
+        }
+        while (segments.size() > maxSegments) {
+            evictOldest();
+        }
+        return segment;
+    }
+
+    private Segment createSegment(long seq) throws IOException {
+        Path path = segmentPath(seq);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(new byte[1]), segmentBytes - 1L);// 稀疏文件，内容为0
+        }
+        Segment segment = new Segment(seq, path, segmentBytes);
+        segment.map();
+        return segment;
+    }
+
+    private void evictOldest() throws IOException {
+        Segment segment = segments.pollFirst();
+        long unread = segment.records - readIndex;
+        depth -= unread;
+        evictedNum += unread;
+        if (unread > 0) {
+            LOG.warn("spool超过大小限制，丢弃{}条未消费的记录：{}", unread, segment.path);
+        }
+        segment.delete();
+        readOffset = 0;
+        readIndex = 0;
+        saveCheckpoint();
+    }
+
+    /**
+     * 按写入顺序读取未消费的记录，不移动消费位置，处理成功后调用commit
+     *
+     * @param maxRecords 最大读取条数
+     * @return 读取的记录及每条记录结束的位置
+     */
+    public synchronized SpoolBatch peek(int maxRecords) {
+        List<byte[]> records = new ArrayList<>();
+        int capacity = (int) Math.max(0, Math.min(maxRecords, depth));
+        long[] seqs = new long[capacity];
+        int[] offsets = new int[capacity];
+        int[] indexes = new int[capacity];
+        if (closed) {
+            return new SpoolBatch(records, seqs, offsets, indexes);
+        }
+        try {
+            int offset = readOffset;
+            int index = readIndex;
+            for (Iterator<Segment> it = segments.iterator(); it.hasNext() && records.size() < capacity; offset = 0, index = 0) {
+                Segment segment = it.next();
+                boolean temporary = segment.buffer == null;// 中间的段读取时临时映射，读完释放
+                MappedByteBuffer buffer = segment.map();
+                try {
+                    while (offset < segment.writePos && records.size() < capacity) {
+                        int length = buffer.getInt(offset);
+                        byte[] data = new byte[length];
+                        ByteBuffer slice = buffer.duplicate();
+                        slice.position(offset + RECORD_HEADER);
+                        slice.get(data);
+                        offset += RECORD_HEADER + length;
+                        index++;
+                        seqs[records.size()] = segment.seq;
+                        offsets[records.size()] = offset;
+                        indexes[records.size()] = index;
+                        records.add(data);
+                    }
+                } finally {
+                    if (temporary) {
+                        segment.release();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.error(e, "spool读取失败：{}", dir);
+        }
+        return new SpoolBatch(records, seqs, offsets, indexes);
+    }
+
+    /**
+     * 将消费位置移动到batch读取结束的位置，已消费完的段（非当前写入的段）被删除；
+     * batch中的段已因超过大小限制被删除时只提交仍存在的部分，消费位置已超过batch时忽略
+     *
+     * @param batch peek返回的记录，只处理成功部分时使用batch.head(num)
+     */
+    public synchronized void commit(SpoolBatch batch) {
+        if (closed || batch.isEmpty()) {
+            return;
+        }
+        try {
+            while (segments.size() > 1 && segments.peekFirst().seq < batch.getSeq()) {
+                depth -= segments.peekFirst().records - readIndex;
+                nextSegment();
+            }
+            Segment segment = segments.peekFirst();
+            if (segment.seq == batch.getSeq() && batch.getIndex() > readIndex) {
+                depth -= batch.getIndex() - readIndex;
+                readIndex = batch.getIndex();
+                readOffset = batch.getOffset();
+            }
+            if (segments.size() > 1 && readIndex >= segments.peekFirst().records) {
+                nextSegment();
+            }
+            saveCheckpoint();
+        } catch (IOException e) {
+            LOG.error(e, "spool提交消费位置失败：{}", dir);
+        }
+    }
+
+    /**
+     * 删除已消费完的第一个段，从下一个段开始消费
+     */
+    private void nextSegment() throws IOException {
+        segments.pollFirst().delete();
+        segments.peekFirst().map();
+        readOffset = 0;
+        readIndex = 0;
+    }
+
+    private void saveCheckpoint() {
+        checkpoint.putLong(0, segments.peekFirst().seq + 1);
+        checkpoint.putInt(8, readOffset);
+        checkpoint.putInt(12, checksum(checkpoint, 0, 12));
+    }
+
+    /**
+     * 将当前写入的段及消费位置刷到磁盘；进程崩溃时映射的内容仍由操作系统写回，flush用于减少操作系统崩溃时丢失的数据（已切换的段由操作系统写回）
+     */
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        segments.peekLast().buffer.force();
+        checkpoint.force();
+    }
+
+    /**
+     * @return 未消费的记录数
+     */
+    public synchronized long getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return 未消费的记录占用的字节数（含记录头）
+     */
+    public synchronized long getDepthBytes() {
+        long bytes = -readOffset;
+        for (Segment segment : segments) {
+            bytes += segment.writePos;
+        }
+        return bytes;
+    }
+
+    public synchronized int getSegmentNum() {
+        return segments.size();
+    }
+
+    public synchronized long getAppendNum() {
+        return appendNum;
+    }
+
+    /**
+     * @return 超过大小限制被删除的未消费记录数
+     */
+    public synchronized long getEvictedNum() {
+        return evictedNum;
+    }
+
+    /**
+     * @return 为空、超过段大小或写入失败的记录数
+     */
+    public synchronized long getRejectedNum() {
+        return rejectedNum;
+    }
+
+    /**
+     * @return 恢复扫描时发现损坏的段数
+     */
+    public synchronized long getCorruptedNum() {
+        return corruptedNum;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        for (Segment segment : segments) {
+            segment.release();
+        }
+        unmap(checkpoint);
+        checkpointChannel.close();
+        lock.release();
+        lockChannel.close();
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("%020d%s", seq, SEGMENT_SUFFIX));
+    }
+
+    private int checksum(byte[] data) {
+        crc.reset();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset).limit(offset + length);
+        crc.reset();
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 立即释放映射（Java 9+使用Unsafe.invokeCleaner，Java 8使用DirectBuffer.cleaner()），
+     * 否则删除的段文件在映射被GC前仍占用磁盘，且打开的映射数不受段数限制；释放后不能再访问buffer及其duplicate
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        UNMAPPER.accept(buffer);
+    }
+
+    private static Consumer<ByteBuffer> unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8没有invokeCleaner
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object bufferCleaner = invoke(cleaner, buffer);
+                if (bufferCleaner != null) {
+                    invoke(clean, bufferCleaner);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("无法主动释放内存映射，由GC释放：{}", e.getMessage());
+            return buffer -> {
+            };
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("释放内存映射失败，由GC释放：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 段文件，buffer为null时未映射；release及delete时立即释放映射
+     */
+    private static class Segment {
+        private final long seq;
+        private final Path path;
+        private final int capacity;
+        private MappedByteBuffer buffer;
+        private int writePos;
+        private int records;
+
+        Segment(long seq, Path path, int capacity) {
+            this.seq = seq;
+            this.path = path;
+            this.capacity = capacity;
+        }
+
+        MappedByteBuffer map() throws IOException {
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                }
+            }
+            return buffer;
+        }
+
+        void release() {
+            if (buffer != null) {
+                MappedByteBuffer mapped = buffer;
+                buffer = null;
+                unmap(mapped);
+            }
+        }
+
+        void delete() throws IOException {
+            release();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.spool;
+
+import java.util.List;
+
+/**
+ * DiskSpool.peek读取的一批记录及每条记录结束的位置（段序号 + 段内偏移 + 段内记录序号），
+ * commit按最后一条记录的位置移动消费位置，peek与commit之间段被删除时不会跳过未读取的记录
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public final class SpoolBatch {
+    private final List<byte[]> records;
+    /**
+     * 每条记录结束的位置：段序号、段内偏移、段内记录序号
+     */
+    private final long[] seqs;
+    private final int[] offsets;
+    private final int[] indexes;
+
+    SpoolBatch(List<byte[]> records, long[] seqs, int[] offsets, int[] indexes) {
+        this.records = records;
+        this.seqs = seqs;
+        this.offsets = offsets;
+        this.indexes = indexes;
+    }
+
+    public List<byte[]> getRecords() {
+        return records;
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    /**
+     * @param num 条数
+     * @return 前num条记录，用于只提交处理成功的部分
+     */
+    public SpoolBatch head(int num) {
+        if (num >= records.size()) {
+            return this;
+        }
+        return new SpoolBatch(records.subList(0, Math.max(0, num)), seqs, offsets, indexes);
+    }
+
+    long getSeq() {
+        return seqs[records.size() - 1];
+    }
+
+    int getOffset() {
+        return offsets[records.size() - 1];
+    }
+
+    int getIndex() {
+        return indexes[records.size() - 1];
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yametech.yangjian.agent.api.bean.MetricData;
+import com.yametech.yangjian.agent.util.codec.MetricCodec;
+import com.yametech.yangjian.agent.util.codec.MetricDecoder;
+
+/**
+ * 使用本地HttpServer作为上报服务端，统计请求数、字节数、连接数及延迟
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class BatchHttpSenderTest {
+    private HttpServer server;
+    private String url;
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> contentTypes = new CopyOnWriteArrayList<>();
+    private final Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requestNum = new AtomicInteger();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile IntSupplier status = () -> 200;
+    private volatile long handleMillis = 0;
+    private volatile CountDownLatch block;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/report/batch", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/report/batch";
+    }
+
+    @After
+    public void stop() {
+        if (block != null) {
+            block.countDown();
+        }
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(current, Math::max);
+        try {
+            requestNum.incrementAndGet();
+            remotePorts.add(exchange.getRemoteAddress().getPort());
+            contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+            byte[] body = readAll(exchange.getRequestBody());
+            requestBytes.addAndGet(body.length);
+            if (block != null) {
+                block.await();
+            }
+            if (handleMillis > 0) {
+                Thread.sleep(handleMillis);
+            }
+            int code = status.getAsInt();
+            if (code == 200) {
+                InputStream input = new java.io.ByteArrayInputStream(body);
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    input = new GZIPInputStream(input);
+                }
+                byte[] data = readAll(input);
+                if (MetricCodec.CONTENT_TYPE.equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                    new MetricDecoder().decode(ByteBuffer.wrap(data), metric -> received.add(metric.toString()));
+                } else {
+                    received.addAll(Arrays.asList(new String(data, StandardCharsets.UTF_8).split("\n")));
+                }
+            }
+            byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * 10000条数据合并为少量请求，按顺序到达，连接复用
+     */
+    @Test
+    public void batch() {
+        BatchHttpSender sender = BatchHttpSender.create(url).maxBatchRecords(500).lingerMillis(20).maxInFlight(1).build();
+        List<String> records = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; i++) {
+            String record = "serviceName=demo&metricType=statistic%2Fmysql-sql%2FRT&num=" + i;
+            records.add(record);
+            assertTrue(sender.offer(record));
+        }
+        assertTrue(sender.close(Duration.ofSeconds(10)));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(records, received);
+        assertEquals(10000, sender.getSentNum());
+        assertEquals(0, sender.getFailedNum());
+        assertTrue("requests: " + requestNum, requestNum.get() >= 20 && requestNum.get() <= 40);
+        assertTrue("connections: " + remotePorts, remotePorts.size() <= 2);
+        long rawBytes = records.stream().mapToLong(record -> record.length() + 1).sum();
+        assertTrue("gzip: " + requestBytes, requestBytes.get() * 5 < rawBytes);
+        System.out.println(String.format("records: 10000, requests: %d, connections: %d, bytes: %d(raw %d), %dms",
+                requestNum.get(), remotePorts.size(), requestBytes.get(), rawBytes, millis));
+    }
+
+    /**
+     * 不足一批的数据等待lingerMillis后发送
+     */
+    @Test
+    public void linger() throws InterruptedException {
+        BatchHttpSender sender = BatchHttpSender.create(url).lingerMillis(200).gzip(false).build();
+        long start = System.nanoTime();
+        sender.offer("a=1");
+        sender.offer("a=2");
+        waitFor(() -> received.size() == 2);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("linger: " + millis, millis >= 150);
+        assertEquals(1, requestNum.get());
+        assertEquals(Arrays.asList("a=1", "a=2"), received);
+        sender.close(Duration.ofSeconds(1));
+    }
+
+    /**
+     * maxBatchBytes达到后立即发送，不等待linger
+     */
+    @Test
+    public void maxBytes() throws InterruptedException {
+        BatchHttpSender sender = BatchHttpSender.create(url).lingerMillis(60000).maxBatchBytes(10).build();
+        sender.offer("a=12345");
+        sender.offer("a=67890");
+        sender.offer("a=0");
+        waitFor(() -> received.size() == 2);
+        assertEquals(Arrays.asList("a=12345", "a=67890"), received);
+        sender.close(Duration.ofSeconds(1));
+        assertEquals(3, received.size());
+    }
+
+    /**
+     * 5xx按退避重试，成功后不重复上报
+     */
+    @Test
+    public void retry() {
+        AtomicInteger calls = new AtomicInteger();
+        status = () -> calls.incrementAndGet() <= 2 ? 503 : 200;
+        List<List<String>> failed = new CopyOnWriteArrayList<>();
+        BatchHttpSender sender = BatchHttpSender.create(url).lingerMillis(0).retryBackoffMillis(10)
+                .onFailure(failed::add).build();
+        sender.offer("a=1");
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        assertEquals(3, requestNum.get());
+        assertEquals(2, sender.getRetryNum());
+        assertEquals(Collections.singletonList("a=1"), received);
+        assertTrue(failed.isEmpty());
+    }
+
+    /**
+     * 4xx（429除外）不重试、不回调onFailure，计数后丢弃；超过重试次数后回调onFailure
+     */
+    @Test
+    public void failure() {
+        status = () -> 400;
+        List<List<String>> failed = new CopyOnWriteArrayList<>();
+        BatchHttpSender sender = BatchHttpSender.create(url).lingerMillis(0).onFailure(failed::add).build();
+        sender.offer("a=1");
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        assertEquals(1, requestNum.get());
+        assertTrue(failed.isEmpty());
+        assertEquals(1, sender.getDroppedNum());
+        assertEquals(0, sender.getFailedNum());
+        assertEquals(BatchHttpSender.SendResult.DROP, sender.sendBatch(Collections.singletonList("a=2")));
+        assertEquals(2, sender.getDroppedNum());
+
+        status = () -> 500;
+        failed.clear();
+        requestNum.set(0);
+        sender = BatchHttpSender.create(url).lingerMillis(0).maxRetries(2).retryBackoffMillis(1).onFailure(failed::add).build();
+        sender.offer("a=2");
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        assertEquals(3, requestNum.get());
+        assertEquals(1, sender.getFailedNum());
+        assertEquals(Collections.singletonList(Collections.singletonList("a=2")), failed);
+    }
+
+    /**
+     * 连接失败按IO异常重试后回调onFailure
+     */
+    @Test
+    public void connectError() {
+        server.stop(0);
+        List<List<String>> failed = new CopyOnWriteArrayList<>();
+        BatchHttpSender sender = BatchHttpSender.create(url).lingerMillis(0).maxRetries(1).retryBackoffMillis(1)
+                .timeoutMillis(500).onFailure(failed::add).build();
+        sender.offer("a=1");
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        assertEquals(1, sender.getRetryNum());
+        assertEquals(1, failed.size());
+    }
+
+    /**
+     * 同时发送的请求数不超过maxInFlight
+     */
+    @Test
+    public void maxInFlight() {
+        handleMillis = 50;
+        BatchHttpSender sender = BatchHttpSender.create(url).maxBatchRecords(10).lingerMillis(0).maxInFlight(3).build();
+        for (int i = 0; i < 300; i++) {
+            assertTrue(sender.offer("a=" + i));
+        }
+        assertTrue(sender.close(Duration.ofSeconds(20)));
+        assertEquals(300, received.size());
+        assertTrue("maxConcurrent: " + maxConcurrent, maxConcurrent.get() <= 3 && maxConcurrent.get() >= 2);
+    }
+
+    /**
+     * 服务端阻塞时队列堆积，队列满后offer返回false
+     */
+    @Test
+    public void queueFull() {
+        block = new CountDownLatch(1);
+        BatchHttpSender sender = BatchHttpSender.create(url).maxBatchRecords(5).lingerMillis(0).maxInFlight(1)
+                .queueSize(20).build();
+        int accepted = 0;
+        for (int i = 0; i < 200; i++) {
+            if (sender.offer("a=" + i)) {
+                accepted++;
+            }
+        }
+        assertTrue("accepted: " + accepted, accepted < 200);
+        assertEquals(200 - accepted, sender.getRejectedNum());
+        block.countDown();
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        assertEquals(accepted, received.size());
+        assertFalse(sender.offer("a=closed"));
+    }
+
+    /**
+     * zipkin格式的span数组合并为一个数组
+     */
+    @Test
+    public void jsonArray() {
+        BatchHttpSender sender = BatchHttpSender.create(url).format(BatchHttpSender.BatchFormat.JSON_ARRAY)
+                .lingerMillis(100).gzip(false).build();
+        sender.offer("[{\"id\":\"1\"}]");
+        sender.offer("[]");
+        sender.offer(" [{\"id\":\"2\"},{\"id\":\"3\"}] ");
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        assertEquals(Collections.singletonList("[{\"id\":\"1\"},{\"id\":\"2\"},{\"id\":\"3\"}]"), received);
+        assertEquals(Collections.singletonList("application/json"), contentTypes);
+    }
+
+    /**
+     * MetricData按二进制格式编码，MetricData.toString()格式的记录（spool重放）解析后编码
+     */
+    @Test
+    public void metric() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("cpu", 1.5);
+        params.put("heap", 1024L);
+        params.put("sign", "a&b=c");
+        MetricData metric = MetricData.get(1600000000L, "status/resources", params);
+        metric.setServiceName("demo");
+        BatchHttpSender sender = BatchHttpSender.create(url).format(BatchHttpSender.BatchFormat.METRIC).lingerMillis(100).build();
+        assertTrue(sender.offer(metric));
+        assertTrue(sender.offer(metric.toString()));
+        assertTrue(sender.close(Duration.ofSeconds(5)));
+        MetricData running = MetricData.get(1600000001L, "status/running");
+        running.setServiceName("demo");
+        assertEquals(BatchHttpSender.SendResult.SUCCESS, sender.sendBatch(Collections.singletonList(running)));
+        // 不是MetricData格式的记录编码失败，重试也不会成功
+        assertEquals(BatchHttpSender.SendResult.DROP, sender.sendBatch(Collections.singletonList("not a metric")));
+        assertEquals(1, sender.getDroppedNum());
+        assertEquals(Arrays.asList(metric.toString(), metric.toString(), running.toString()), received);
+        assertEquals(Arrays.asList(MetricCodec.CONTENT_TYPE, MetricCodec.CONTENT_TYPE), contentTypes);
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = input.read(buffer)) >= 0) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.yametech.yangjian.agent.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ * @date 2026/10/18
+ */
+public class Utf8UtilTest {
+    private static final String[] VALUES = {"", "abc", "中文", "😀emoji", "lone\uD83Dsurrogate", "\uDE00\uD83D", "߿ࠀ"};
+
+    @Test
+    public void length() {
+        for (String value : VALUES) {
+            assertEquals(value, value.getBytes(StandardCharsets.UTF_8).length, Utf8Util.length(value));
+        }
+    }
+
+    /**
+     * 缓存不足时在字符边界停止，清空缓存后继续编码，结果与String.getBytes一致
+     */
+    @Test
+    public void encode() {
+        for (int capacity = 4; capacity <= 8; capacity++) {
+            for (String value : VALUES) {
+                ByteBuffer buffer = ByteBuffer.allocate(capacity);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int index = 0;
+                do {
+                    index = Utf8Util.encode(value, index, buffer);
+                    out.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                } while (index < value.length());
+                assertArrayEquals(value, value.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+            }
+        }
+    }
+}
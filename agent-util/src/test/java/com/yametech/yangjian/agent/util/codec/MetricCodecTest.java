@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.api.bean.MetricData;
+
+/**
+ * MetricEncoder、MetricDecoder往返及异常数据测试
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class MetricCodecTest {
+
+    @Test
+    public void roundTrip() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("num", 10L);
+        params.put("rt_max", 35);
+        params.put("avg", 1.5d);
+        params.put("ratio", 0.25f);
+        params.put("ok", true);
+        params.put("sign", "select * from t_user where id=? & name='中文'");
+        params.put("empty", null);
+        params.put("other", new StringBuilder("sb"));
+        MetricData first = metric("demo", 1600000000L, "statistic/mysql-sql/RT", params);
+        MetricData second = metric("demo", 1599999999L, "statistic/mysql-sql/RT", null);
+        MetricData third = metric(null, Long.MIN_VALUE, "", new HashMap<>());
+
+        MetricEncoder encoder = new MetricEncoder(8);// 从最小容量开始扩容
+        ByteBuffer buffer = encoder.encode(Arrays.asList(first, second, third));
+        assertEquals(3, encoder.count());
+        List<MetricData> decoded = new MetricDecoder().decode(buffer);
+        assertEquals(3, decoded.size());
+        assertEquals(0, buffer.remaining());
+        assertSame(first, decoded.get(0));
+        assertEquals("sb", decoded.get(0).getParams().get("other"));
+        assertEquals(Integer.valueOf(35), decoded.get(0).getParams().get("rt_max"));
+        assertEquals(Float.valueOf(0.25f), decoded.get(0).getParams().get("ratio"));
+        assertSame(second, decoded.get(1));
+        assertNull(decoded.get(1).getParams());
+        assertEquals("", decoded.get(2).getServiceName());
+        assertEquals(Long.MIN_VALUE, decoded.get(2).getSecond());
+        assertTrue(decoded.get(2).getParams().isEmpty());
+    }
+
+    /**
+     * 随机数据往返，编码器、解码器在批量间复用
+     */
+    @Test
+    public void fuzzRoundTrip() {
+        Random random = new Random(20200420);
+        MetricEncoder encoder = new MetricEncoder(64);
+        MetricDecoder decoder = new MetricDecoder();
+        for (int batch = 0; batch < 500; batch++) {
+            List<MetricData> metrics = new ArrayList<>();
+            int num = random.nextInt(50);
+            long second = random.nextLong();
+            for (int i = 0; i < num; i++) {
+                second += random.nextInt(5) - 1;
+                metrics.add(randomMetric(random, second));
+            }
+            ByteBuffer buffer = encoder.encode(metrics);
+            // 同时验证堆内缓存的解码
+            ByteBuffer decodeBuffer = random.nextBoolean() ? buffer : copy(buffer);
+            List<MetricData> decoded = decoder.decode(decodeBuffer);
+            assertEquals(metrics.size(), decoded.size());
+            for (int i = 0; i < metrics.size(); i++) {
+                assertSame(metrics.get(i), decoded.get(i));
+            }
+        }
+    }
+
+    /**
+     * 截断、随机篡改的数据只抛出IllegalArgumentException或解码成功，不会抛出其他异常
+     */
+    @Test
+    public void fuzzCorrupted() {
+        Random random = new Random(42);
+        MetricEncoder encoder = new MetricEncoder();
+        MetricDecoder decoder = new MetricDecoder();
+        for (int batch = 0; batch < 200; batch++) {
+            List<MetricData> metrics = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(10); i++) {
+                metrics.add(randomMetric(random, 1600000000L + i));
+            }
+            byte[] bytes = toBytes(encoder.encode(metrics));
+            for (int length = 0; length < bytes.length; length++) {
+                expectError(decoder, Arrays.copyOf(bytes, length));
+            }
+            for (int i = 0; i < 50; i++) {
+                byte[] corrupted = bytes.clone();
+                for (int j = 0; j < 1 + random.nextInt(3); j++) {
+                    corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt();
+                }
+                try {
+                    decoder.decode(ByteBuffer.wrap(corrupted));
+                } catch (IllegalArgumentException e) {
+                    // 格式错误
+                }
+            }
+        }
+        byte[] random1 = new byte[64];
+        for (int i = 0; i < 1000; i++) {
+            random.nextBytes(random1);
+            random1[0] = MetricCodec.MAGIC_0;
+            random1[1] = MetricCodec.MAGIC_1;
+            random1[2] = MetricCodec.VERSION;
+            try {
+                decoder.decode(ByteBuffer.wrap(random1));
+            } catch (IllegalArgumentException e) {
+                // 格式错误
+            }
+        }
+    }
+
+    /**
+     * 重复的字符串只编码一次，秒数按差值编码
+     */
+    @Test
+    public void compact() {
+        List<MetricData> metrics = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("sign", "t_user.Select");
+            params.put("num", (long) i);
+            metrics.add(metric("demo-service", 1600000000L + i / 10, "statistic/mysql-table/QPS", params));
+        }
+        int binarySize = new MetricEncoder().encode(metrics).remaining();
+        int stringSize = 0;
+        for (MetricData metric : metrics) {
+            stringSize += metric.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        assertTrue(binarySize + "/" + stringSize, binarySize * 5 < stringSize);
+    }
+
+    private static void expectError(MetricDecoder decoder, byte[] bytes) {
+        try {
+            decoder.decode(ByteBuffer.wrap(bytes));
+            fail("truncated: " + bytes.length);
+        } catch (IllegalArgumentException e) {
+            // 数据不完整
+        }
+    }
+
+    private static MetricData randomMetric(Random random, long second) {
+        Map<String, Object> params = null;
+        if (random.nextInt(10) > 0) {
+            params = new HashMap<>();
+            int num = random.nextInt(8);
+            for (int i = 0; i < num; i++) {
+                params.put(randomString(random), randomValue(random));
+            }
+        }
+        return metric(random.nextInt(5) == 0 ? randomString(random) : "service", second,
+                "statistic/" + random.nextInt(3) + "/RT", params);
+    }
+
+    private static Object randomValue(Random random) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return null;
+            case 1:
+                return random.nextLong();
+            case 2:
+                return random.nextInt();
+            case 3:
+                return random.nextDouble() * 1e6;
+            case 4:
+                return random.nextFloat();
+            case 5:
+                return random.nextBoolean();
+            default:
+                return randomString(random);
+        }
+    }
+
+    /**
+     * 包含ASCII、中文、4字节字符及不成对代理字符（按'?'编码）
+     */
+    private static String randomString(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(20);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    builder.append((char) (0x4E00 + random.nextInt(0x5000)));
+                    break;
+                case 1:
+                    builder.appendCodePoint(0x10000 + random.nextInt(0x10000));
+                    break;
+                case 2:
+                    builder.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 3:
+                    builder.append(random.nextInt(50) == 0 ? '\uD800' : '&');
+                    break;
+                default:
+                    builder.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static MetricData metric(String serviceName, long second, String metricType, Map<String, Object> params) {
+        MetricData metric = new MetricData();
+        metric.setServiceName(serviceName);
+        metric.setSecond(second);
+        metric.setMetricType(metricType);
+        metric.setParams(params);
+        return metric;
+    }
+
+    /**
+     * 字符串按UTF-8往返后比较（不成对代理字符为'?'），其他类型的值按toString比较
+     */
+    private static void assertSame(MetricData expected, MetricData actual) {
+        assertEquals(utf8(expected.getServiceName() == null ? "" : expected.getServiceName()), actual.getServiceName());
+        assertEquals(expected.getSecond(), actual.getSecond());
+        assertEquals(utf8(expected.getMetricType()), actual.getMetricType());
+        if (expected.getParams() == null) {
+            assertNull(actual.getParams());
+            return;
+        }
+        assertEquals(expected.getParams().size(), actual.getParams().size());
+        for (Map.Entry<String, Object> entry : expected.getParams().entrySet()) {
+            String key = utf8(entry.getKey());
+            assertTrue(key, actual.getParams().containsKey(key));
+            Object value = entry.getValue();
+            Object actualValue = actual.getParams().get(key);
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                assertEquals(value, actualValue);
+            } else {
+                assertEquals(utf8(value.toString()), actualValue);
+            }
+        }
+    }
+
+    private static String utf8(String value) {
+        return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        return ByteBuffer.wrap(toBytes(buffer));
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.eventbus.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.yametech.yangjian.agent.util.eventbus.EventBusBuilder;
+import com.yametech.yangjian.agent.util.eventbus.consume.BaseConfigConsume;
+
+/**
+ * 批量发布测试
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class BatchPublishTest {
+	private static final int BUFFER_SIZE = 16;
+
+	/**
+	 * 超过bufferSize的批量分多次申请，所有事件按顺序消费
+	 */
+	@Test
+	public void publishLargerThanBuffer() throws InterruptedException {
+		List<Integer> consumed = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(100);
+		EventBus<Value> eventBus = build(false, value -> {
+			consumed.add(value.value);
+			latch.countDown();
+		});
+		assertEquals(100, eventBus.publish((event, index) -> event.value = index, 100));
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		eventBus.shutdown(Duration.ofSeconds(1));
+		for(int i = 0; i < 100; i++) {
+			assertEquals(i, consumed.get(i).intValue());
+		}
+	}
+
+	/**
+	 * 缓存满时只发布可申请的部分，丢弃尾部事件且不回调
+	 */
+	@Test
+	public void discardTail() throws InterruptedException {
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		List<Integer> consumed = Collections.synchronizedList(new ArrayList<>());
+		EventBus<Value> eventBus = build(true, value -> {
+			started.countDown();
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			consumed.add(value.value);
+		});
+		assertTrue(eventBus instanceof DiscardEventBus);
+		// 第一个事件阻塞消费线程，之后缓存中最多只能再放入BUFFER_SIZE - 1个未消费的事件
+		assertEquals(1, eventBus.publish((event, index) -> event.value = -1, 1));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		List<Integer> callbacks = new ArrayList<>();
+		int published = eventBus.publish((event, index) -> {
+			callbacks.add(index);
+			event.value = index;
+		}, 40);
+		assertEquals(BUFFER_SIZE - 1, published);
+		assertEquals(published, callbacks.size());
+		assertEquals(0, eventBus.publish((event, index) -> event.value = index, 5));
+		block.countDown();
+		eventBus.shutdown(Duration.ofSeconds(5));
+		assertEquals(BUFFER_SIZE, consumed.size());
+		for(int i = 0; i < published; i++) {
+			assertEquals(i, callbacks.get(i).intValue());
+			assertEquals(i, consumed.get(i + 1).intValue());
+		}
+	}
+
+	private EventBus<Value> build(boolean discardFull, Consumer<Value> consumer) {
+		BaseConfigConsume<Value> consume = consumer::accept;
+		return EventBusBuilder.create(() -> Collections.singletonList(consume))
+				.bufferSize(BUFFER_SIZE)
+				.setDiscardFull(discardFull)
+				.build(Value.class);
+	}
+
+	public static class Value {
+		private int value;
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2020 yametech.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yametech.yangjian.agent.util.spool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * DiskSpool写入、消费、恢复、容量限制测试，崩溃场景在子进程中写入后直接halt
+ *
+ * @author agent
+ * @date 2026/10/18
+ */
+public class DiskSpoolTest {
+    private static final int SEGMENT_BYTES = 1024;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Path dir;
+
+    @Before
+    public void init() throws IOException {
+        dir = folder.newFolder("spool").toPath();
+    }
+
+    /**
+     * 跨多个段按写入顺序读取，已消费完的段被删除
+     */
+    @Test
+    public void appendPeekCommit() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(spool.append(record(i)));
+            }
+            assertEquals(200, spool.getDepth());
+            assertTrue(spool.getSegmentNum() > 3);
+            assertEquals(200 * (DiskSpool.RECORD_HEADER + record(0).length), spool.getDepthBytes());
+            int next = 0;
+            while (spool.getDepth() > 0) {
+                SpoolBatch batch = spool.peek(7);
+                List<byte[]> records = batch.getRecords();
+                assertEquals(spool.peek(7).size(), records.size());// peek不移动消费位置
+                for (byte[] data : records) {
+                    assertEquals(string(record(next++)), string(data));
+                }
+                spool.commit(batch);
+            }
+            assertEquals(200, next);
+            assertEquals(1, spool.getSegmentNum());
+            assertEquals(1, segmentFiles().size());
+            assertEquals(0, spool.getDepthBytes());
+            assertTrue(spool.peek(10).isEmpty());
+        }
+    }
+
+    /**
+     * 正常关闭后重新打开，从消费位置继续
+     */
+    @Test
+    public void reopen() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            for (int i = 0; i < 100; i++) {
+                spool.append(record(i));
+            }
+            spool.commit(spool.peek(42));
+        }
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertEquals(58, spool.getDepth());
+            assertEquals(string(record(42)), string(spool.peek(1).getRecords().get(0)));
+            spool.append(record(100));
+            assertEquals(expected(42, 101), strings(spool.peek(1000)));
+            assertEquals(0, spool.getCorruptedNum());
+        }
+    }
+
+    /**
+     * 子进程写入、消费部分记录后直接halt（不flush、不close），重新打开后数据及消费位置完整
+     */
+    @Test
+    public void crashRecovery() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                CrashWriter.class.getName(), dir.toString(), "300", "120")
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(CrashWriter.EXIT_CODE, process.exitValue());
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertEquals(180, spool.getDepth());
+            assertEquals(expected(120, 300), strings(spool.peek(1000)));
+            assertEquals(0, spool.getCorruptedNum());
+        }
+    }
+
+    /**
+     * 写入中途崩溃留下的不完整记录（长度已写、数据未写完）在恢复时被丢弃，之后的写入正常
+     */
+    @Test
+    public void tornRecord() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(record(i));
+            }
+        }
+        Path segment = segmentFiles().get(0);
+        int end = 10 * (DiskSpool.RECORD_HEADER + record(0).length);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end);
+            file.writeInt(record(10).length);
+            file.writeInt(12345);
+            file.write(record(10), 0, 5);
+        }
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertEquals(1, spool.getCorruptedNum());
+            assertEquals(10, spool.getDepth());
+            spool.append(record(10));
+            spool.append(record(11));
+        }
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertEquals(0, spool.getCorruptedNum());
+            assertEquals(expected(0, 12), strings(spool.peek(1000)));
+        }
+    }
+
+    /**
+     * 记录内容损坏时丢弃该段之后的记录，其他段不受影响
+     */
+    @Test
+    public void corruptedRecord() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            for (int i = 0; i < 100; i++) {
+                spool.append(record(i));
+            }
+        }
+        int recordsPerSegment = SEGMENT_BYTES / (DiskSpool.RECORD_HEADER + record(0).length);
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            long pos = 3L * (DiskSpool.RECORD_HEADER + record(0).length) + DiskSpool.RECORD_HEADER + 2;
+            file.seek(pos);
+            int value = file.read();
+            file.seek(pos);
+            file.write(value ^ 0xFF);
+        }
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertEquals(1, spool.getCorruptedNum());
+            List<String> expected = expected(0, 3);
+            expected.addAll(expected(recordsPerSegment, 100));
+            assertEquals(expected, strings(spool.peek(1000)));
+            assertEquals(expected.size(), spool.getDepth());
+        }
+    }
+
+    /**
+     * 消费位置损坏时从最早的段重放
+     */
+    @Test
+    public void corruptedCheckpoint() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(record(i));
+            }
+            spool.commit(spool.peek(4));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve(DiskSpool.CHECKPOINT_FILE).toFile(), "rw")) {
+            file.seek(9);
+            file.write(0x7F);
+        }
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertEquals(expected(0, 10), strings(spool.peek(1000)));
+        }
+    }
+
+    /**
+     * 超过大小限制时删除最早的段，保留最新的数据
+     */
+    @Test
+    public void evictOldest() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 3 * SEGMENT_BYTES, SEGMENT_BYTES)) {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(spool.append(record(i)));
+            }
+            assertEquals(3, spool.getSegmentNum());
+            assertEquals(3, segmentFiles().size());
+            assertTrue(spool.getEvictedNum() > 0);
+            assertEquals(1000, spool.getAppendNum());
+            assertEquals(1000 - spool.getEvictedNum(), spool.getDepth());
+            List<String> records = strings(spool.peek(2000));
+            assertEquals(spool.getDepth(), records.size());
+            assertEquals(expected((int) spool.getEvictedNum(), 1000), records);
+
+            // 部分消费后淘汰，只计入未消费的记录
+            spool.commit(spool.peek(5));
+            long evicted = spool.getEvictedNum();
+            long depth = spool.getDepth();
+            int recordsPerSegment = SEGMENT_BYTES / (DiskSpool.RECORD_HEADER + record(0).length);
+            for (int i = 1000; i < 1000 + recordsPerSegment; i++) {
+                spool.append(record(i));
+            }
+            assertEquals(depth + recordsPerSegment - (spool.getEvictedNum() - evicted), spool.getDepth());
+            assertEquals(recordsPerSegment - 5, spool.getEvictedNum() - evicted);
+        }
+    }
+
+    /**
+     * 只提交处理成功的前几条记录
+     */
+    @Test
+    public void commitHead() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(spool.append(record(i)));
+            }
+            SpoolBatch batch = spool.peek(100);
+            spool.commit(batch.head(0));
+            assertEquals(100, spool.getDepth());
+            spool.commit(batch.head(45));
+            assertEquals(55, spool.getDepth());
+            assertEquals(expected(45, 100), strings(spool.peek(1000)));
+            spool.commit(batch);
+            assertEquals(0, spool.getDepth());
+            assertEquals(1, spool.getSegmentNum());
+        }
+    }
+
+    /**
+     * peek与commit之间追加记录导致最早的段被删除，commit按位置提交，不跳过未读取的记录
+     */
+    @Test
+    public void evictBetweenPeekAndCommit() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 3 * SEGMENT_BYTES, SEGMENT_BYTES)) {
+            int recordsPerSegment = SEGMENT_BYTES / (DiskSpool.RECORD_HEADER + record(0).length);
+            int num = recordsPerSegment * 2;
+            for (int i = 0; i < num; i++) {
+                assertTrue(spool.append(record(i)));
+            }
+            SpoolBatch batch = spool.peek(num);
+            assertEquals(num, batch.size());
+            // 发送期间继续追加，最早的段被删除
+            for (int i = num; i < num * 2; i++) {
+                assertTrue(spool.append(record(i)));
+            }
+            assertEquals(recordsPerSegment, spool.getEvictedNum());
+            spool.commit(batch);
+            assertEquals(num, spool.getDepth());
+            assertEquals(expected(num, num * 2), strings(spool.peek(10000)));
+            // 重复提交同一批忽略
+            spool.commit(batch);
+            assertEquals(num, spool.getDepth());
+        }
+    }
+
+    /**
+     * 只映射消费及写入的段，删除及切换的段立即释放映射（通过/proc/self/maps检查，非Linux跳过）
+     */
+    @Test
+    public void releaseMapping() throws IOException {
+        Path maps = Paths.get("/proc/self/maps");
+        Assume.assumeTrue(Files.isReadable(maps));
+        try (DiskSpool spool = new DiskSpool(dir, 4 * SEGMENT_BYTES, SEGMENT_BYTES)) {
+            for (int i = 0; i < 1000; i++) {
+                spool.append(record(i));
+            }
+            assertEquals(4, spool.getSegmentNum());
+            assertTrue(spool.getEvictedNum() > 0);
+            assertEquals(2, mappedSegments(maps));// checkpoint及写入的段，淘汰的段及切换的段均已释放
+            assertEquals(spool.getDepth(), spool.peek(2000).size());
+            assertEquals(2, mappedSegments(maps));
+            spool.commit(spool.peek((int) spool.getDepth()));
+            assertEquals(1, spool.getSegmentNum());
+            assertEquals(2, mappedSegments(maps));
+        }
+        assertEquals(0, mappedSegments(maps));
+    }
+
+    private long mappedSegments(Path maps) throws IOException {
+        String path = dir.toRealPath().toString();
+        try (Stream<String> lines = Files.lines(maps)) {
+            return lines.filter(line -> line.contains(path)).count();
+        }
+    }
+
+    @Test
+    public void reject() throws IOException {
+        try (DiskSpool spool = new DiskSpool(dir, 1 << 20, SEGMENT_BYTES)) {
+            assertFalse(spool.append(new byte[0]));
+            assertFalse(spool.append(new byte[SEGMENT_BYTES - DiskSpool.RECORD_HEADER + 1]));
+            assertTrue(spool.append(new byte[SEGMENT_BYTES - DiskSpool.RECORD_HEADER]));
+            assertEquals(2, spool.getRejectedNum());
+            try {
+                new DiskSpool(dir, 1 << 20, SEGMENT_BYTES);
+                fail("同一目录不能被打开两次");
+            } catch (IOException e) {
+                // 目录已被使用
+            }
+        }
+        new DiskSpool(dir, 1 << 20, SEGMENT_BYTES).close();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(DiskSpool.SEGMENT_SUFFIX)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] record(int i) {
+        return String.format("serviceName=demo&num=%06d", i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> expected(int from, int to) {
+        List<String> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(string(record(i)));
+        }
+        return records;
+    }
+
+    private static List<String> strings(SpoolBatch batch) {
+        return batch.getRecords().stream().map(DiskSpoolTest::string).collect(Collectors.toList());
+    }
+
+    private static String string(byte[] data) {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 在子进程中执行：写入num条记录，消费commit条后不关闭直接halt
+     */
+    public static class CrashWriter {
+        static final int EXIT_CODE = 37;
+
+        public static void main(String[] args) throws IOException {
+            DiskSpool spool = new DiskSpool(new File(args[0]).toPath(), 1 << 20, SEGMENT_BYTES);
+            for (int i = 0; i < Integer.parseInt(args[1]); i++) {
+                spool.append(record(i));
+            }
+            spool.commit(spool.peek(Integer.parseInt(args[2])));
+            Runtime.getRuntime().halt(EXIT_CODE);
+        }
+    }
+}